@@ -0,0 +1,944 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntBiFunction;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.log.Logging;
+import au.com.breakpoint.hedron.core.value.SafeLazyValue;
+
+/**
+ * IndexedCache that is bounded in size or weight and can expire entries. Eviction follows
+ * the W-TinyLFU policy: new entries enter a small LRU admission window, and an entry
+ * leaving the window only displaces the least recently used entry of the main segmented
+ * LRU region if a frequency sketch says it is used more often. This keeps the hit rate
+ * high for both recency- and frequency-biased workloads, and stops one-off lookups
+ * (scans) flushing the cache.
+ *
+ * A hit never blocks: it is recorded in a striped, lossy ReadBuffer that is replayed
+ * against the policy in batches, under the eviction lock, by whichever thread fills a
+ * stripe or next writes. A cache bounded only by expiry has no policy to reorder, so it
+ * neither records reads nor keeps a frequency sketch. Values are still fetched at most
+ * once per entry using SafeLazyValue, and getAll () fetches all missing keys in one call
+ * if the builder was given a batch fetcher. Create instances with IndexedCache.builder ().
+ *
+ * @param <A>
+ *            argument type for indexing the cache
+ * @param <V>
+ *            value type stored in the cache
+ */
+public class BoundedIndexedCache<A, V> extends IndexedCache<A, V>
+{
+    private BoundedIndexedCache (final Builder<A, V> b)
+    {
+        super (b.m_fetcher, b.m_batchFetcher);
+
+        final Function<Set<A>, Map<A, V>> batchFetcher = b.m_batchFetcher;
+        m_fetcher = b.m_fetcher != null ? b.m_fetcher : a -> batchFetcher.apply (Collections.singleton (a)).get (a);
+        m_batchFetcher = batchFetcher;
+        m_maximumWeight = b.m_maximumWeight;
+        m_weigher = b.m_weigher;
+        m_nsExpireAfterWrite = HcUtil.msecToNs (b.m_msecExpireAfterWrite);
+        m_nsExpireAfterAccess = HcUtil.msecToNs (b.m_msecExpireAfterAccess);
+        m_removalListener = b.m_removalListener;
+        m_clock = b.m_clock;
+
+        m_windowMaximumWeight = Math.max (1, m_maximumWeight / 100);
+        m_protectedMaximumWeight = (m_maximumWeight - m_windowMaximumWeight) * 80 / 100;
+
+        // Admission needs a sketch sized by entry count, which grows as entries are added.
+        m_sketch = m_maximumWeight == Long.MAX_VALUE ? null
+            : new FrequencySketch (Math.min (m_maximumWeight, INITIAL_SKETCH_ENTRIES));
+
+        final long nsMinExpiry = Math.min (m_nsExpireAfterWrite > 0 ? m_nsExpireAfterWrite : Long.MAX_VALUE,
+            m_nsExpireAfterAccess > 0 ? m_nsExpireAfterAccess : Long.MAX_VALUE);
+        m_nsSweepInterval = Math.max (nsMinExpiry, MIN_NS_SWEEP_INTERVAL);
+        m_nsNextSweep = m_clock.getAsLong () + m_nsSweepInterval;
+
+        if (b.m_usingClass != null)
+        {
+            // eg BoundedIndexedCache.cacheHit.DataManager.customers
+            m_countHit = Counter.of (BoundedIndexedCache.class,
+                HcUtil.qualifyName ("cacheHit", b.m_usingClass, b.m_name));
+            m_countMiss = Counter.of (BoundedIndexedCache.class,
+                HcUtil.qualifyName ("cacheMiss", b.m_usingClass, b.m_name));
+            m_countEviction = Counter.of (BoundedIndexedCache.class,
+                HcUtil.qualifyName ("cacheEviction", b.m_usingClass, b.m_name));
+        }
+        else
+        {
+            m_countHit = null;
+            m_countMiss = null;
+            m_countEviction = null;
+        }
+    }
+
+    /**
+     * Removes expired entries. This happens anyway as the cache is written to, but an idle
+     * cache can call this periodically to release memory.
+     */
+    public void cleanUp ()
+    {
+        final List<Node<A, V>> removed = GenericFactory.newArrayList ();
+
+        m_evictionLock.lock ();
+        try
+        {
+            drainReadBuffer ();
+            sweepExpired (m_clock.getAsLong (), removed);
+        }
+        finally
+        {
+            m_evictionLock.unlock ();
+        }
+
+        notifyRemovals (removed);
+    }
+
+    @Override
+    public V get (final A arg)
+    {
+        V value = null;
+        boolean done = false;
+
+        while (!done)
+        {
+            final long nsNow = m_clock.getAsLong ();
+
+            final Node<A, V> node = getLiveNode (arg, nsNow);
+            if (node != null)
+            {
+                value = node.m_value.get ();
+                done = true;
+            }
+            else
+            {
+                final Node<A, V> nodeNew = new Node<> (arg, SafeLazyValue.of ( () -> m_fetcher.apply (arg)), nsNow);
+
+                // For first time, nodeNew will be stored in the map. Otherwise nodeNew is
+                // discarded and the other thread's entry is used on the next iteration.
+                if (m_dataMap.putIfAbsent (arg, nodeNew) == null)
+                {
+                    increment (m_countMiss);
+                    value = load (nodeNew);
+                    done = true;
+                }
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Gets the values for the specified keys, fetching all the missing ones together if
+     * there is a batch fetcher. Keys the batch fetcher returns no value for are not cached.
+     *
+     * @return the values in the order of the keys, omitting keys that have no value
+     */
+    @Override
+    public Map<A, V> getAll (final Collection<? extends A> args)
+    {
+        final Map<A, V> results = GenericFactory.newLinkedHashMap ();
+
+        if (m_batchFetcher == null)
+        {
+            for (final A arg : args)
+            {
+                putIfNotNull (results, arg, get (arg));
+            }
+        }
+        else
+        {
+            final Map<A, Node<A, V>> nodes = GenericFactory.newLinkedHashMap ();
+            final Set<A> missing = GenericFactory.newLinkedHashSet ();
+            final List<Node<A, V>> missingNodes = GenericFactory.newArrayList ();
+
+            // As for IndexedCache, the new entries share one task that only this thread runs,
+            // once the set of missing keys is complete.
+            final FutureTask<Map<A, V>> batchTask = new FutureTask<> ( () -> m_batchFetcher.apply (missing));
+
+            try
+            {
+                for (final A arg : args)
+                {
+                    if (!nodes.containsKey (arg))
+                    {
+                        Node<A, V> node = null;
+                        while (node == null)
+                        {
+                            final long nsNow = m_clock.getAsLong ();
+
+                            node = getLiveNode (arg, nsNow);
+                            if (node == null)
+                            {
+                                final Node<A, V> nodeNew = new Node<> (arg,
+                                    SafeLazyValue.of ( () -> HcUtil.waitForFuture (batchTask).get (arg)), nsNow);
+
+                                if (m_dataMap.putIfAbsent (arg, nodeNew) == null)
+                                {
+                                    increment (m_countMiss);
+                                    node = nodeNew;
+                                    missing.add (arg);
+                                    missingNodes.add (nodeNew);
+                                }
+                            }
+                        }
+
+                        nodes.put (arg, node);
+                    }
+                }
+            }
+            finally
+            {
+                if (!missing.isEmpty ())
+                {
+                    loadBatch (batchTask, missingNodes);
+                }
+            }
+
+            for (final Map.Entry<A, Node<A, V>> e : nodes.entrySet ())
+            {
+                putIfNotNull (results, e.getKey (), e.getValue ().m_value.get ());
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * @return the total weight of the entries, which is the entry count if no weigher was
+     *         specified.
+     */
+    public long getWeightedSize ()
+    {
+        return m_weightedSize;
+    }
+
+    /**
+     * Discards the entry for the key, if present.
+     */
+    public void invalidate (final A arg)
+    {
+        final Node<A, V> node = m_dataMap.get (arg);
+        if (node != null)
+        {
+            removeNode (node, RemovalCause.Explicit);
+        }
+    }
+
+    /**
+     * Discards all entries.
+     */
+    public void invalidateAll ()
+    {
+        for (final Node<A, V> node : m_dataMap.values ())
+        {
+            removeNode (node, RemovalCause.Explicit);
+        }
+    }
+
+    public int size ()
+    {
+        return m_dataMap.size ();
+    }
+
+    /**
+     * Buffers a cache hit for the policy, draining the buffer if the thread's stripe is
+     * full and the lock is free. If the lock is busy the read may be lost.
+     */
+    private void afterRead (final Node<A, V> node)
+    {
+        if (m_sketch != null && m_readBuffer.offer (node) && m_evictionLock.tryLock ())
+        {
+            try
+            {
+                drainReadBuffer ();
+            }
+            finally
+            {
+                m_evictionLock.unlock ();
+            }
+        }
+    }
+
+    /** Replays buffered reads against the policy. Call with the eviction lock held. */
+    private void drainReadBuffer ()
+    {
+        if (m_sketch != null)
+        {
+            m_readBuffer.drain (m_onRead);
+        }
+    }
+
+    private void evictEntries (final List<Node<A, V>> removed)
+    {
+        // Entries overflowing the window compete with the main region's LRU entry.
+        while (m_windowWeight > m_windowMaximumWeight)
+        {
+            final Node<A, V> candidate = m_window.m_first;
+            m_window.remove (candidate);
+            m_windowWeight -= candidate.m_weight;
+
+            candidate.m_queue = Queue.Probation;
+            m_probation.addLast (candidate);
+
+            while (m_weightedSize > m_maximumWeight && candidate.m_queue != Queue.None)
+            {
+                Node<A, V> victim = m_probation.m_first;
+                if (victim == candidate)
+                {
+                    victim = m_protected.m_first;
+                }
+
+                final boolean admit =
+                    victim != null && m_sketch.frequency (candidate.m_key) > m_sketch.frequency (victim.m_key);
+                unlinkNode (admit ? victim : candidate, removed);
+            }
+        }
+
+        // Anything still over, eg due to a heavy entry.
+        while (m_weightedSize > m_maximumWeight)
+        {
+            Node<A, V> victim = m_probation.m_first;
+            if (victim == null)
+            {
+                victim = m_protected.m_first;
+            }
+            if (victim == null)
+            {
+                victim = m_window.m_first;
+            }
+            if (victim == null)
+            {
+                break;
+            }
+
+            unlinkNode (victim, removed);
+        }
+
+        for (final Node<A, V> node : removed)
+        {
+            if (node.m_removalCause == null)
+            {
+                node.m_removalCause = RemovalCause.Evicted;
+            }
+        }
+    }
+
+    /**
+     * @return the entry for the key after recording the hit, or null if there is none or it
+     *         has expired.
+     */
+    private Node<A, V> getLiveNode (final A arg, final long nsNow)
+    {
+        Node<A, V> node = m_dataMap.get (arg);
+        if (node != null && node.m_inPolicy && isExpired (node, nsNow))
+        {
+            removeNode (node, RemovalCause.Expired);
+            node = null;
+        }
+
+        if (node != null)
+        {
+            increment (m_countHit);
+            node.m_nsAccessed = nsNow;
+            afterRead (node);
+        }
+
+        return node;
+    }
+
+    private void increment (final Counter counter)
+    {
+        if (counter != null)
+        {
+            counter.increment ();
+        }
+    }
+
+    private boolean isExpired (final Node<A, V> node, final long nsNow)
+    {
+        return m_nsExpireAfterWrite > 0 && nsNow - node.m_nsWritten >= m_nsExpireAfterWrite
+            || m_nsExpireAfterAccess > 0 && nsNow - node.m_nsAccessed >= m_nsExpireAfterAccess;
+    }
+
+    /**
+     * Fetches the value for a newly mapped entry, then admits the entry to the policy.
+     */
+    private V load (final Node<A, V> node)
+    {
+        final V value;
+        try
+        {
+            value = node.m_value.get ();
+        }
+        catch (final RuntimeException e)
+        {
+            // Don't cache the failure.
+            m_dataMap.remove (node.m_key, node);
+            throw e;
+        }
+
+        final List<Node<A, V>> removed = GenericFactory.newArrayList ();
+
+        m_evictionLock.lock ();
+        try
+        {
+            // It may have been invalidated while loading.
+            if (m_dataMap.get (node.m_key) == node)
+            {
+                // Apply earlier reads first, so that they don't reorder the policy after this entry.
+                drainReadBuffer ();
+
+                node.m_weight = m_weigher == null ? 1 : m_weigher.applyAsInt (node.m_key, value);
+                ThreadContext.assertFault (node.m_weight >= 0, "Negative weight [%s]", node.m_weight);
+
+                node.m_queue = Queue.Window;
+                node.m_inPolicy = true;
+                m_window.addLast (node);
+                m_windowWeight += node.m_weight;
+                m_weightedSize += node.m_weight;
+                ++m_entryCount;
+
+                if (m_sketch != null)
+                {
+                    m_sketch.ensureCapacity (m_entryCount);
+                    m_sketch.increment (node.m_key);
+
+                    evictEntries (removed);
+                }
+
+                final long nsNow = m_clock.getAsLong ();
+                if (HcUtil.nsIsBefore (m_nsNextSweep, nsNow))
+                {
+                    sweepExpired (nsNow, removed);
+                }
+            }
+        }
+        finally
+        {
+            m_evictionLock.unlock ();
+        }
+
+        notifyRemovals (removed);
+
+        return value;
+    }
+
+    /**
+     * Runs the batch fetch for the new entries, then admits those that have a value.
+     */
+    private void loadBatch (final FutureTask<Map<A, V>> batchTask, final List<Node<A, V>> missingNodes)
+    {
+        batchTask.run ();
+
+        Map<A, V> batch = null;
+        try
+        {
+            batch = HcUtil.waitForFuture (batchTask);
+        }
+        finally
+        {
+            for (final Node<A, V> node : missingNodes)
+            {
+                if (batch != null && batch.get (node.m_key) != null)
+                {
+                    load (node);
+                }
+                else
+                {
+                    // Don't cache failures or keys that have no value.
+                    m_dataMap.remove (node.m_key, node);
+                }
+            }
+        }
+    }
+
+    private void notifyRemovals (final List<Node<A, V>> removed)
+    {
+        for (final Node<A, V> node : removed)
+        {
+            if (node.m_removalCause != RemovalCause.Explicit)
+            {
+                increment (m_countEviction);
+            }
+
+            if (m_removalListener != null)
+            {
+                try
+                {
+                    m_removalListener.onRemoval (node.m_key, node.m_value.get (), node.m_removalCause);
+                }
+                catch (final RuntimeException e)
+                {
+                    Logging.logError ("Cache removal listener failed for [%s]%n%s", node.m_key,
+                        HcUtil.getExceptionDetails (e));
+                }
+            }
+        }
+    }
+
+    private void onAccess (final Node<A, V> node)
+    {
+        switch (node.m_queue)
+        {
+            case Window:
+            {
+                m_window.moveToLast (node);
+                break;
+            }
+
+            case Probation:
+            {
+                // Promote to protected, demoting protected's LRU entries if it overflows.
+                m_probation.remove (node);
+                node.m_queue = Queue.Protected;
+                m_protected.addLast (node);
+                m_protectedWeight += node.m_weight;
+
+                while (m_protectedWeight > m_protectedMaximumWeight)
+                {
+                    final Node<A, V> demoted = m_protected.m_first;
+                    m_protected.remove (demoted);
+                    m_protectedWeight -= demoted.m_weight;
+
+                    demoted.m_queue = Queue.Probation;
+                    m_probation.addLast (demoted);
+                }
+                break;
+            }
+
+            case Protected:
+            {
+                m_protected.moveToLast (node);
+                break;
+            }
+
+            default:
+            {
+                // Not yet admitted, or already removed.
+                break;
+            }
+        }
+    }
+
+    /** Applies a buffered read, unless the entry has since left the policy */
+    private void onRead (final Node<A, V> node)
+    {
+        if (node.m_queue != Queue.None)
+        {
+            m_sketch.increment (node.m_key);
+            onAccess (node);
+        }
+    }
+
+    private void removeNode (final Node<A, V> node, final RemovalCause cause)
+    {
+        final List<Node<A, V>> removed = GenericFactory.newArrayList ();
+
+        m_evictionLock.lock ();
+        try
+        {
+            if (node.m_queue != Queue.None)
+            {
+                node.m_removalCause = cause;
+                unlinkNode (node, removed);
+            }
+            else
+            {
+                // Still loading, so only unmap it; load () then leaves it out of the policy.
+                m_dataMap.remove (node.m_key, node);
+            }
+        }
+        finally
+        {
+            m_evictionLock.unlock ();
+        }
+
+        notifyRemovals (removed);
+    }
+
+    private void sweepExpired (final long nsNow, final List<Node<A, V>> removed)
+    {
+        if (m_nsExpireAfterWrite > 0 || m_nsExpireAfterAccess > 0)
+        {
+            sweepExpired (m_window, nsNow, removed);
+            sweepExpired (m_probation, nsNow, removed);
+            sweepExpired (m_protected, nsNow, removed);
+        }
+
+        m_nsNextSweep = nsNow + m_nsSweepInterval;
+    }
+
+    private void sweepExpired (final AccessOrderDeque<A, V> deque, final long nsNow, final List<Node<A, V>> removed)
+    {
+        Node<A, V> node = deque.m_first;
+        while (node != null)
+        {
+            final Node<A, V> next = node.m_next;
+            if (isExpired (node, nsNow))
+            {
+                node.m_removalCause = RemovalCause.Expired;
+                unlinkNode (node, removed);
+            }
+            node = next;
+        }
+    }
+
+    /** Removes the node from the policy and the map. Call with the eviction lock held. */
+    private void unlinkNode (final Node<A, V> node, final List<Node<A, V>> removed)
+    {
+        switch (node.m_queue)
+        {
+            case Window:
+            {
+                m_window.remove (node);
+                m_windowWeight -= node.m_weight;
+                break;
+            }
+
+            case Probation:
+            {
+                m_probation.remove (node);
+                break;
+            }
+
+            case Protected:
+            {
+                m_protected.remove (node);
+                m_protectedWeight -= node.m_weight;
+                break;
+            }
+
+            default:
+            {
+                ThreadContext.assertFault (false, "Unsupported value [%s]", node.m_queue);
+                break;
+            }
+        }
+
+        node.m_queue = Queue.None;
+        m_weightedSize -= node.m_weight;
+        --m_entryCount;
+        m_dataMap.remove (node.m_key, node);
+        removed.add (node);
+    }
+
+    /**
+     * Builder of BoundedIndexedCache. At least one of maximumSize, maximumWeight,
+     * expireAfterWrite or expireAfterAccess must be specified.
+     */
+    public static class Builder<A, V>
+    {
+        Builder (final Function<A, V> fetcher)
+        {
+            m_fetcher = fetcher;
+        }
+
+        /**
+         * Fetches the values for all the keys missing from a getAll () in one call, eg one
+         * query with an 'in' clause. Keys absent from the returned map have no value.
+         */
+        public Builder<A, V> batchFetcher (final Function<Set<A>, Map<A, V>> batchFetcher)
+        {
+            m_batchFetcher = batchFetcher;
+            return this;
+        }
+
+        public BoundedIndexedCache<A, V> build ()
+        {
+            ThreadContext.assertFault (m_fetcher != null || m_batchFetcher != null, "Cache has no fetcher");
+            ThreadContext.assertFault (
+                m_maximumWeight != Long.MAX_VALUE || m_msecExpireAfterWrite > 0 || m_msecExpireAfterAccess > 0,
+                "Cache has no bound: specify a maximum or an expiry");
+
+            return new BoundedIndexedCache<> (this);
+        }
+
+        /** For unit testing */
+        public Builder<A, V> clock (final LongSupplier nsClock)
+        {
+            m_clock = nsClock;
+            return this;
+        }
+
+        /**
+         * Expires entries that have not been read or written for the specified time.
+         */
+        public Builder<A, V> expireAfterAccess (final long msecExpiry)
+        {
+            ThreadContext.assertFault (msecExpiry > 0, "Invalid expiry [%s]", msecExpiry);
+            m_msecExpireAfterAccess = msecExpiry;
+            return this;
+        }
+
+        /**
+         * Expires entries the specified time after they were fetched.
+         */
+        public Builder<A, V> expireAfterWrite (final long msecExpiry)
+        {
+            ThreadContext.assertFault (msecExpiry > 0, "Invalid expiry [%s]", msecExpiry);
+            m_msecExpireAfterWrite = msecExpiry;
+            return this;
+        }
+
+        public Builder<A, V> maximumSize (final long maximumSize)
+        {
+            ThreadContext.assertFault (maximumSize > 0, "Invalid maximum size [%s]", maximumSize);
+            m_maximumWeight = maximumSize;
+            m_weigher = null;
+            return this;
+        }
+
+        /**
+         * Bounds the total weight of the entries rather than their count. The weigher is
+         * applied once, when the value has been fetched.
+         */
+        public Builder<A, V> maximumWeight (final long maximumWeight, final ToIntBiFunction<A, V> weigher)
+        {
+            ThreadContext.assertFault (maximumWeight > 0, "Invalid maximum weight [%s]", maximumWeight);
+            m_maximumWeight = maximumWeight;
+            m_weigher = weigher;
+            return this;
+        }
+
+        /**
+         * Maintains hit, miss and eviction counters in the Counter repository.
+         */
+        public Builder<A, V> recordStats (final Class<?> usingClass, final String name)
+        {
+            m_usingClass = usingClass;
+            m_name = name;
+            return this;
+        }
+
+        public Builder<A, V> removalListener (final IRemovalListener<A, V> removalListener)
+        {
+            m_removalListener = removalListener;
+            return this;
+        }
+
+        private Function<Set<A>, Map<A, V>> m_batchFetcher;
+
+        private LongSupplier m_clock = System::nanoTime;
+
+        private final Function<A, V> m_fetcher;
+
+        private long m_maximumWeight = Long.MAX_VALUE;
+
+        private long m_msecExpireAfterAccess;
+
+        private long m_msecExpireAfterWrite;
+
+        private String m_name;
+
+        private IRemovalListener<A, V> m_removalListener;
+
+        private Class<?> m_usingClass;
+
+        private ToIntBiFunction<A, V> m_weigher;
+    }
+
+    /** Notified whenever an entry leaves the cache */
+    @FunctionalInterface
+    public interface IRemovalListener<A, V>
+    {
+        void onRemoval (A arg, V value, RemovalCause cause);
+    }
+
+    public enum RemovalCause
+    {
+        Evicted, // displaced by the size or weight bound
+        Expired,
+        Explicit// invalidated
+    }
+
+    /** Intrusive doubly linked list, least recently used first */
+    private static final class AccessOrderDeque<A, V>
+    {
+        public void addLast (final Node<A, V> node)
+        {
+            node.m_previous = m_last;
+            node.m_next = null;
+
+            if (m_last == null)
+            {
+                m_first = node;
+            }
+            else
+            {
+                m_last.m_next = node;
+            }
+            m_last = node;
+        }
+
+        public void moveToLast (final Node<A, V> node)
+        {
+            if (node != m_last)
+            {
+                remove (node);
+                addLast (node);
+            }
+        }
+
+        public void remove (final Node<A, V> node)
+        {
+            if (node.m_previous == null)
+            {
+                m_first = node.m_next;
+            }
+            else
+            {
+                node.m_previous.m_next = node.m_next;
+            }
+
+            if (node.m_next == null)
+            {
+                m_last = node.m_previous;
+            }
+            else
+            {
+                node.m_next.m_previous = node.m_previous;
+            }
+
+            node.m_previous = null;
+            node.m_next = null;
+        }
+
+        private Node<A, V> m_first;
+
+        private Node<A, V> m_last;
+    }
+
+    private static final class Node<A, V>
+    {
+        public Node (final A key, final SafeLazyValue<V> value, final long nsNow)
+        {
+            m_key = key;
+            m_value = value;
+            m_nsWritten = nsNow;
+            m_nsAccessed = nsNow;
+        }
+
+        /** Set once the value is fetched and the node is admitted to the policy */
+        private volatile boolean m_inPolicy;
+
+        private final A m_key;
+
+        // Policy state, guarded by the eviction lock.
+        private Node<A, V> m_next;
+
+        private Node<A, V> m_previous;
+
+        private Queue m_queue = Queue.None;
+
+        private RemovalCause m_removalCause;
+
+        private int m_weight;
+
+        private volatile long m_nsAccessed;
+
+        private final long m_nsWritten;
+
+        private final SafeLazyValue<V> m_value;
+    }
+
+    private enum Queue
+    {
+        None,
+        Probation,
+        Protected,
+        Window
+    }
+
+    /** Function that retrieves values for a set of indexes, or null */
+    private final Function<Set<A>, Map<A, V>> m_batchFetcher;
+
+    private final LongSupplier m_clock;
+
+    private final Counter m_countEviction;
+
+    private final Counter m_countHit;
+
+    private final Counter m_countMiss;
+
+    private final ConcurrentMap<A, Node<A, V>> m_dataMap = GenericFactory.newConcurrentHashMap ();
+
+    /** Entries in the policy, which sizes the sketch whatever their weight */
+    private long m_entryCount;
+
+    private final ReentrantLock m_evictionLock = new ReentrantLock ();
+
+    /** Function that retrieves values for the specified index */
+    private final Function<A, V> m_fetcher;
+
+    private final long m_maximumWeight;
+
+    private final long m_nsExpireAfterAccess;
+
+    private final long m_nsExpireAfterWrite;
+
+    private long m_nsNextSweep;
+
+    private final long m_nsSweepInterval;
+
+    private final Consumer<Node<A, V>> m_onRead = this::onRead;
+
+    /** Main region: entries seen once since admission */
+    private final AccessOrderDeque<A, V> m_probation = new AccessOrderDeque<> ();
+
+    /** Main region: entries accessed again while in probation */
+    private final AccessOrderDeque<A, V> m_protected = new AccessOrderDeque<> ();
+
+    private final long m_protectedMaximumWeight;
+
+    private long m_protectedWeight;
+
+    private final ReadBuffer<Node<A, V>> m_readBuffer = new ReadBuffer<> ();
+
+    private final IRemovalListener<A, V> m_removalListener;
+
+    /** Null if the cache has no size or weight bound, so does no admission */
+    private final FrequencySketch m_sketch;
+
+    private final ToIntBiFunction<A, V> m_weigher;
+
+    private volatile long m_weightedSize;
+
+    /** Admission window for new entries */
+    private final AccessOrderDeque<A, V> m_window = new AccessOrderDeque<> ();
+
+    private final long m_windowMaximumWeight;
+
+    private long m_windowWeight;
+
+    /** Sketch size for a cache that may grow beyond it, eg a weighted one */
+    private static final long INITIAL_SKETCH_ENTRIES = 256;
+
+    private static final long MIN_NS_SWEEP_INTERVAL = 1_000_000_000L;
+}
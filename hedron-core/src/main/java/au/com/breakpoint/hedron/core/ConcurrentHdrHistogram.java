@@ -0,0 +1,179 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+
+/**
+ * Mutable, thread-safe high dynamic range histogram. Recording is allocation-free. Use
+ * snapshot () for a cumulative immutable HdrHistogram, or snapshotAndReset () for interval
+ * (reset-on-read) reporting. Values above the highest trackable value are clamped to it.
+ */
+public class ConcurrentHdrHistogram implements Serializable
+{
+    /**
+     * Tracks nanosecond values up to one hour.
+     */
+    public ConcurrentHdrHistogram (final int significantDigits)
+    {
+        this (significantDigits, DEFAULT_HIGHEST_TRACKABLE_VALUE);
+    }
+
+    public ConcurrentHdrHistogram (final int significantDigits, final long highestTrackableValue)
+    {
+        m_layout = new HdrHistogramLayout (significantDigits, highestTrackableValue);
+        m_counts = new AtomicLongArray (m_layout.getCountsLength ());
+    }
+
+    public long getHighestTrackableValue ()
+    {
+        return m_layout.getHighestTrackableValue ();
+    }
+
+    public int getSignificantDigits ()
+    {
+        return m_layout.getSignificantDigits ();
+    }
+
+    /**
+     * Adds the counts of a snapshot into this histogram. The snapshot must have the same
+     * significant digits and highest trackable value.
+     */
+    public void mergeFrom (final HdrHistogram rhs)
+    {
+        ThreadContext.assertFault (
+            rhs.getSignificantDigits () == getSignificantDigits ()
+                && rhs.getHighestTrackableValue () == getHighestTrackableValue (),
+            "Incompatible HdrHistogram [%s/%s] vs [%s/%s]", rhs.getSignificantDigits (),
+            rhs.getHighestTrackableValue (), getSignificantDigits (), getHighestTrackableValue ());
+
+        if (!rhs.isUnused ())
+        {
+            final long[] counts = rhs.getCounts ();
+            for (int i = 0; i < counts.length; ++i)
+            {
+                if (counts[i] != 0)
+                {
+                    m_counts.addAndGet (i, counts[i]);
+                }
+            }
+
+            m_min.accumulate (rhs.getMin ());
+            m_max.accumulate (rhs.getMax ());
+        }
+    }
+
+    public void record (final long value)
+    {
+        final long v = m_layout.toTrackableValue (value);
+
+        m_counts.incrementAndGet (m_layout.getCountsIndex (v));
+        m_min.accumulate (v);
+        m_max.accumulate (v);
+    }
+
+    public void reset ()
+    {
+        snapshotAndReset ();
+    }
+
+    /**
+     * Takes a cumulative immutable snapshot. The snapshot is not atomic across buckets; a
+     * concurrently recorded value may be missed.
+     */
+    public HdrHistogram snapshot ()
+    {
+        final long[] counts = new long[m_counts.length ()];
+        for (int i = 0; i < counts.length; ++i)
+        {
+            counts[i] = m_counts.get (i);
+        }
+
+        return new HdrHistogram (m_layout, counts, m_min.get (), m_max.get ());
+    }
+
+    /**
+     * Takes an immutable snapshot of the values recorded since the last reset and resets
+     * the histogram. No concurrently recorded value is lost; it appears in either this
+     * interval or the next.
+     */
+    public HdrHistogram snapshotAndReset ()
+    {
+        final long min = m_min.getThenReset ();
+        final long max = m_max.getThenReset ();
+
+        final long[] counts = new long[m_counts.length ()];
+        for (int i = 0; i < counts.length; ++i)
+        {
+            counts[i] = m_counts.getAndSet (i, 0);
+        }
+
+        return new HdrHistogram (m_layout, counts, min, max);
+    }
+
+    @Override
+    public String toString ()
+    {
+        return snapshot ().toString ();
+    }
+
+    /** Serialise a snapshot in its compact form */
+    private Object writeReplace ()
+    {
+        return new CompactForm (snapshot ().toCompactBytes ());
+    }
+
+    /** Serialised form of ConcurrentHdrHistogram */
+    private static class CompactForm implements Serializable
+    {
+        public CompactForm (final byte[] bytes)
+        {
+            m_bytes = bytes;
+        }
+
+        private Object readResolve ()
+        {
+            final HdrHistogram h = HdrHistogram.fromCompactBytes (m_bytes);
+
+            final ConcurrentHdrHistogram ch =
+                new ConcurrentHdrHistogram (h.getSignificantDigits (), h.getHighestTrackableValue ());
+            ch.mergeFrom (h);
+
+            return ch;
+        }
+
+        private final byte[] m_bytes;
+
+        private static final long serialVersionUID = -8381734412951052040L;
+    }
+
+    private final AtomicLongArray m_counts;
+
+    private final transient HdrHistogramLayout m_layout;
+
+    private final LongAccumulator m_max = new LongAccumulator (Math::max, 0);
+
+    private final LongAccumulator m_min = new LongAccumulator (Math::min, Long.MAX_VALUE);
+
+    public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = TimeUnit.HOURS.toNanos (1);
+
+    private static final long serialVersionUID = 4380203698617327081L;
+}
@@ -0,0 +1,126 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mutable, thread-safe counterpart of LogarithmicHistogram64. Each bin is a LongAdder so
+ * recording a value neither allocates nor contends. Use snapshot () to obtain the immutable
+ * LogarithmicHistogram64 for reporting.
+ */
+public class ConcurrentLogarithmicHistogram64 implements Serializable
+{
+    public ConcurrentLogarithmicHistogram64 ()
+    {
+        for (int i = 0; i < m_bins.length; ++i)
+        {
+            m_bins[i] = new LongAdder ();
+        }
+    }
+
+    public boolean isUnused ()
+    {
+        boolean isUnused = true;
+
+        for (int i = 0; isUnused && i < m_bins.length; ++i)
+        {
+            isUnused = m_bins[i].sum () == 0;
+        }
+
+        return isUnused;
+    }
+
+    /**
+     * Adds the bin counts of an immutable histogram into this one.
+     */
+    public void mergeFrom (final LogarithmicHistogram64 rhs)
+    {
+        final int[] bins = rhs.getHistogramBins ();
+        for (int i = 0; i < bins.length; ++i)
+        {
+            if (bins[i] != 0)
+            {
+                m_bins[i].add (bins[i]);
+            }
+        }
+    }
+
+    /**
+     * Adds the bin counts of another concurrent histogram into this one.
+     */
+    public void mergeFrom (final ConcurrentLogarithmicHistogram64 rhs)
+    {
+        for (int i = 0; i < m_bins.length; ++i)
+        {
+            final long count = rhs.m_bins[i].sum ();
+            if (count != 0)
+            {
+                m_bins[i].add (count);
+            }
+        }
+    }
+
+    public void record (final long value)
+    {
+        record (value, 1);
+    }
+
+    /**
+     * Records a value multiple times, eg a run of identical values.
+     */
+    public void record (final long value, final long count)
+    {
+        final int log = HcUtil.log2 (value);
+        m_bins[log].add (count);
+    }
+
+    public void reset ()
+    {
+        for (final LongAdder bin : m_bins)
+        {
+            bin.reset ();
+        }
+    }
+
+    /**
+     * Takes an immutable snapshot. Bin counts over integer-max are clamped. The snapshot
+     * is not atomic across bins; a concurrently recorded value may be missed.
+     */
+    public LogarithmicHistogram64 snapshot ()
+    {
+        final int[] bins = new int[m_bins.length];
+        for (int i = 0; i < bins.length; ++i)
+        {
+            final long count = m_bins[i].sum ();
+            bins[i] = (int) (count <= Integer.MAX_VALUE ? count : Integer.MAX_VALUE);
+        }
+
+        return new LogarithmicHistogram64 (bins);
+    }
+
+    @Override
+    public String toString ()
+    {
+        return snapshot ().toString ();
+    }
+
+    private final LongAdder[] m_bins = new LongAdder[LogarithmicHistogram64.BIN_COUNT];
+
+    private static final long serialVersionUID = -1903349511864126518L;
+}
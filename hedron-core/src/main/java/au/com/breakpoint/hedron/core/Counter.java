@@ -20,7 +20,7 @@ import static java.util.Comparator.comparing;
 import java.io.Serializable;
 import java.util.List;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Class providing counter support.
@@ -40,7 +40,7 @@ public class Counter implements Serializable
     private Counter (final Counter rhs)
     {
         m_name = rhs.m_name;
-        m_counter.set (rhs.m_counter.get ());
+        m_counter.add (rhs.m_counter.sum ());
     }
 
     private Counter (final String name)
@@ -48,9 +48,14 @@ public class Counter implements Serializable
         m_name = name;
     }
 
+    public void add (final long delta)
+    {
+        m_counter.add (delta);
+    }
+
     public long get ()
     {
-        return m_counter.get ();
+        return m_counter.sum ();
     }
 
     public String getName ()
@@ -60,18 +65,18 @@ public class Counter implements Serializable
 
     public void increment ()
     {
-        m_counter.incrementAndGet ();
+        m_counter.increment ();
     }
 
     @Override
     public String toString ()
     {
-        return String.format ("\"%s\",%s", m_name, m_counter.get ());
+        return String.format ("\"%s\",%s", m_name, m_counter.sum ());
     }
 
     private void reset ()
     {
-        m_counter.set (0);
+        m_counter.reset ();
     }
 
     public static void clearResults ()
@@ -142,8 +147,8 @@ public class Counter implements Serializable
         return ts;
     }
 
-    /** Gather stats in lock-free / immutable manner for max concurrency */
-    private final AtomicLong m_counter = new AtomicLong ();
+    /** Gather stats in lock-free / immutable manner for max concurrency; striped, so hot counters don't contend */
+    private final LongAdder m_counter = new LongAdder ();
 
     private final String m_name;
 
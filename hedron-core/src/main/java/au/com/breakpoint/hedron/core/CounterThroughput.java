@@ -38,14 +38,49 @@ public class CounterThroughput implements Serializable
     {
         m_name = rhs.m_name;
         m_resolutionMsec = rhs.m_resolutionMsec;
-        m_counters = new AtomicReference<> (rhs.m_counters.get ());
+        m_epoch = new AtomicReference<> (rhs.m_epoch.get ());
+        m_throughputs.mergeFrom (rhs.m_throughputs);
     }
 
     private CounterThroughput (final String name, final long resolutionMsec)
     {
         m_name = name;
         m_resolutionMsec = resolutionMsec;
-        m_counters = new AtomicReference<> (Counters.InitialState);
+        m_epoch = new AtomicReference<> (Epoch.InitialState);
+    }
+
+    /** Counts delta events at once, eg the rows of a batch */
+    public void add (final int delta)
+    {
+        final long startEpochMsec = truncateEpoch (m_clock.getTimeInNanoseconds ());
+
+        // Lock-free implementation (optimistic 'locking' with retry). Only the current epoch
+        // is swapped; closed epochs go into the concurrent histogram, and only once the swap
+        // has succeeded so that a retry can't record them twice.
+        Epoch prevEpoch;
+        boolean done;
+        do
+        {
+            prevEpoch = m_epoch.get ();
+            final Epoch newEpoch = doIncrement (prevEpoch, startEpochMsec, delta);
+
+            done = m_epoch.compareAndSet (prevEpoch, newEpoch);
+        }
+        while (!done);
+
+        final long prevStartEpochMsec = prevEpoch.m_startEpochMsec;
+        if (prevStartEpochMsec != 0 && startEpochMsec > prevStartEpochMsec)
+        {
+            // Handle epoch change. First close of the current epoch.
+            m_throughputs.record (prevEpoch.m_countForEpoch);
+
+            // Then any skipped epochs (no events).
+            final long skippedEpochs = (startEpochMsec - prevStartEpochMsec) / m_resolutionMsec - 1;
+            if (skippedEpochs > 0)
+            {
+                m_throughputs.record (0, skippedEpochs);
+            }
+        }
     }
 
     public IClock getClock ()
@@ -55,7 +90,8 @@ public class CounterThroughput implements Serializable
 
     public Counters getCounters ()
     {
-        return m_counters.get ();
+        final Epoch epoch = m_epoch.get ();
+        return new Counters (epoch.m_startEpochMsec, epoch.m_countForEpoch, m_throughputs.snapshot ());
     }
 
     public String getName ()
@@ -70,19 +106,7 @@ public class CounterThroughput implements Serializable
 
     public void increment ()
     {
-        //// Lock-free implementation (optimistic 'locking' with retry).
-        //boolean done;
-        //do
-        //{
-        //    final Counters prevCounters = m_counters.get ();
-        //    final Counters newCounters = doIncrement (prevCounters);
-        //
-        //    done = m_counters.compareAndSet (prevCounters, newCounters);
-        //}
-        //while (!done);
-
-        // Java 8 encapsulates compareAndSet loop.
-        m_counters.updateAndGet (prevCounters -> doIncrement (prevCounters));
+        add (1);
     }
 
     /** For unit testing */
@@ -94,49 +118,30 @@ public class CounterThroughput implements Serializable
     @Override
     public String toString ()
     {
-        return String.format ("\"%s\",[%s]", m_name, m_counters.get ().getThroughputs ().toString ());
+        return String.format ("\"%s\",[%s]", m_name, m_throughputs.toString ());
     }
 
-    private Counters doIncrement (final Counters prevCounters)
+    private Epoch doIncrement (final Epoch prevEpoch, final long startEpochMsec, final int delta)
     {
-        final long nsNow = m_clock.getTimeInNanoseconds ();
-        final long startEpochMsec = truncateEpoch (nsNow);
+        int newCountForEpoch = prevEpoch.m_countForEpoch;
+        long newStartEpochMsec = prevEpoch.m_startEpochMsec;
 
-        int newCountForEpoch = prevCounters.getCountForEpoch ();
-        long newStartEpochMsec = prevCounters.getStartEpochMsec ();
-        LogarithmicHistogram32 newThroughputs = prevCounters.getThroughputs ();
-
-        if (newStartEpochMsec == 0)
+        if (newStartEpochMsec == 0 || startEpochMsec > newStartEpochMsec)
         {
-            // First time.
-            newStartEpochMsec = startEpochMsec;
-            newCountForEpoch = 0;
-        }
-        else if (startEpochMsec > newStartEpochMsec)
-        {
-            // Handle epoch change. First close of the current epoch.
-            newThroughputs = newThroughputs.accumulate (newCountForEpoch);
-
-            newStartEpochMsec += m_resolutionMsec;
-            while (newStartEpochMsec < startEpochMsec)
-            {
-                // A skipped epoch (no events).
-                newThroughputs = newThroughputs.accumulate (0);
-                newStartEpochMsec += m_resolutionMsec;
-            }
-
+            // First time, or epoch change.
             newStartEpochMsec = startEpochMsec;
             newCountForEpoch = 0;
         }
 
-        ++newCountForEpoch;
+        newCountForEpoch += delta;
 
-        return new Counters (newStartEpochMsec, newCountForEpoch, newThroughputs);
+        return new Epoch (newStartEpochMsec, newCountForEpoch);
     }
 
     private void reset ()
     {
-        m_counters.getAndSet (Counters.InitialState);
+        m_epoch.getAndSet (Epoch.InitialState);
+        m_throughputs.reset ();
     }
 
     private long truncateEpoch (final long nsNow)
@@ -175,11 +180,27 @@ public class CounterThroughput implements Serializable
 
         private final LogarithmicHistogram32 m_throughputs;
 
-        static final Counters InitialState = new Counters (0, 0, new LogarithmicHistogram32 ());
-
         private static final long serialVersionUID = -6098519547364572662L;
     }
 
+    /** The epoch currently being counted, immutable for concurrency reasons */
+    private static class Epoch implements Serializable
+    {
+        public Epoch (final long startEpochMsec, final int countForEpoch)
+        {
+            m_startEpochMsec = startEpochMsec;
+            m_countForEpoch = countForEpoch;
+        }
+
+        private final int m_countForEpoch;
+
+        private final long m_startEpochMsec;
+
+        static final Epoch InitialState = new Epoch (0, 0);
+
+        private static final long serialVersionUID = 3306398165781430813L;
+    }
+
     /** Abstracted for unit test purposes */
     public interface IClock
     {
@@ -220,7 +241,7 @@ public class CounterThroughput implements Serializable
         // Concurrent map: no need for synchronized block
         for (final CounterThroughput ts : m_instances.values ())
         {
-            if (!excludeUnused || !ts.m_counters.get ().getThroughputs ().isUnused ())
+            if (!excludeUnused || !ts.m_throughputs.isUnused ())
             {
                 results.add (new CounterThroughput (ts));// deep copy the data
             }
@@ -256,13 +277,16 @@ public class CounterThroughput implements Serializable
 
     private transient IClock m_clock = System::nanoTime;
 
-    /** Gather counters in lock-free / immutable manner for max concurrency */
-    private final AtomicReference<Counters> m_counters;
+    /** Gather the current epoch's count in lock-free / immutable manner for max concurrency */
+    private final AtomicReference<Epoch> m_epoch;
 
     private final String m_name;
 
     private final long m_resolutionMsec;
 
+    /** Counts of closed epochs, accumulated without allocation */
+    private final ConcurrentLogarithmicHistogram32 m_throughputs = new ConcurrentLogarithmicHistogram32 ();
+
     /** Repository of all timed scopes */
     private static final ConcurrentMap<String, CounterThroughput> m_instances = GenericFactory.newConcurrentHashMap ();
 
@@ -23,6 +23,9 @@ import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import au.com.breakpoint.hedron.core.codec.ICodec;
 import au.com.breakpoint.hedron.core.context.ThreadContext;
 
 public class DatagramClient implements AutoCloseable// AutoCloseable allows Java 7 try-with-resources
@@ -71,6 +74,38 @@ public class DatagramClient implements AutoCloseable// AutoCloseable allows Java
         }
     }
 
+    /**
+     * Encodes the message straight into a buffer reused for every send, avoiding the
+     * allocations of send (Serializable).
+     */
+    public synchronized <T> void send (final T o, final ICodec<? super T> codec)
+    {
+        final ByteBuffer buffer = m_sendBuffer;
+        buffer.clear ();
+        try
+        {
+            codec.encode (o, buffer);
+        }
+        catch (final BufferOverflowException e)
+        {
+            ThreadContext.assertFault (false, "Message too large for a datagram [%s]", o);
+        }
+
+        m_sendPacket.setData (buffer.array (), 0, buffer.position ());
+        m_sendPacket.setAddress (m_address);
+        m_sendPacket.setPort (m_port);
+
+        try
+        {
+            m_socket.send (m_sendPacket);
+        }
+        catch (final IOException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+    }
+
     public void send (final Serializable o)
     {
         // Can't use ObjectOutputStream since the is sent as a data packet.
@@ -86,5 +121,12 @@ public class DatagramClient implements AutoCloseable// AutoCloseable allows Java
 
     private final int m_port;
 
+    private final ByteBuffer m_sendBuffer = ByteBuffer.allocate (MAX_DATAGRAM_BYTES);
+
+    private final DatagramPacket m_sendPacket = new DatagramPacket (new byte[0], 0);
+
     private DatagramSocket m_socket;
+
+    /** Maximum UDP payload over IPv4 */
+    private static final int MAX_DATAGRAM_BYTES = 65_507;
 }
@@ -0,0 +1,161 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+/**
+ * Probabilistic estimate of how often each key has been seen, used for TinyLFU cache
+ * admission. A count-min sketch of 4-bit counters, four per 64-bit word, indexed by four
+ * hash functions. Counts are halved periodically so that the sketch ages out keys that
+ * were popular in the past. The table is sized from an entry count and can grow with the
+ * cache using ensureCapacity (). Not threadsafe; callers hold the cache's eviction lock.
+ */
+final class FrequencySketch
+{
+    /**
+     * @param expectedEntries
+     *            approximate maximum number of entries held by the cache
+     */
+    FrequencySketch (final long expectedEntries)
+    {
+        ensureCapacity (expectedEntries);
+    }
+
+    /**
+     * Grows the table if it is too small for the number of entries. Growing discards the
+     * counts, which the cache soon relearns.
+     *
+     * @param expectedEntries
+     *            approximate number of entries held by the cache
+     */
+    void ensureCapacity (final long expectedEntries)
+    {
+        final int maximum = (int) Math.min (Math.max (expectedEntries, 1), MAX_TABLE_LENGTH);
+        if (m_table == null || m_table.length < maximum)
+        {
+            final int tableLength = Integer.highestOneBit (maximum - 1) << 1;
+
+            m_table = new long[Math.max (tableLength, 1)];
+            m_tableMask = m_table.length - 1;
+            m_sampleSize = 10 * maximum;
+            m_size = 0;
+        }
+    }
+
+    /**
+     * @return the estimated number of occurrences of the key, at most 15.
+     */
+    int frequency (final Object key)
+    {
+        final int hash = spread (key.hashCode ());
+        final int start = (hash & 3) << 2;
+
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; ++i)
+        {
+            final int index = indexOf (hash, i);
+            final int count = (int) ((m_table[index] >>> ((start + i) << 2)) & 0xFL);
+            frequency = Math.min (frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Records an occurrence of the key, ageing all counts once the sample size is reached.
+     */
+    void increment (final Object key)
+    {
+        final int hash = spread (key.hashCode ());
+        final int start = (hash & 3) << 2;
+
+        boolean added = false;
+        for (int i = 0; i < 4; ++i)
+        {
+            added |= incrementAt (indexOf (hash, i), start + i);
+        }
+
+        if (added && ++m_size >= m_sampleSize)
+        {
+            reset ();
+        }
+    }
+
+    private boolean incrementAt (final int index, final int counter)
+    {
+        final int offset = counter << 2;
+        final long mask = 0xFL << offset;
+
+        final boolean canIncrement = (m_table[index] & mask) != mask;
+        if (canIncrement)
+        {
+            m_table[index] += 1L << offset;
+        }
+
+        return canIncrement;
+    }
+
+    private int indexOf (final int hash, final int i)
+    {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+
+        return (int) h & m_tableMask;
+    }
+
+    /** Halves every counter */
+    private void reset ()
+    {
+        int oddCounts = 0;
+        for (int i = 0; i < m_table.length; ++i)
+        {
+            oddCounts += Long.bitCount (m_table[i] & ONE_MASK);
+            m_table[i] = (m_table[i] >>> 1) & RESET_MASK;
+        }
+
+        m_size = (m_size >>> 1) - (oddCounts >>> 2);
+    }
+
+    private static int spread (final int hashCode)
+    {
+        int x = ((hashCode >>> 16) ^ hashCode) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+
+        return (x >>> 16) ^ x;
+    }
+
+    private int m_sampleSize;
+
+    private int m_size;
+
+    private long[] m_table;
+
+    private int m_tableMask;
+
+    private static final int MAX_TABLE_LENGTH = 1 << 26;
+
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long[] SEEDS =
+        {
+                0xc3a5c85c97cb3127L,
+                0xb492b66fbe98f273L,
+                0x9ae16a3b2f90404fL,
+                0xcbf29ce484222325L
+    };
+}
@@ -25,6 +25,7 @@ import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.TreeMap;
@@ -255,6 +256,23 @@ public class GenericFactory
         return new LinkedBlockingQueue<E> ();
     }
 
+    public static <K, V> LinkedHashMap<K, V> newLinkedHashMap ()
+    {
+        return new LinkedHashMap<K, V> ();
+    }
+
+    @SafeVarargs
+    public static <K, V> LinkedHashMap<K, V> newLinkedHashMap (final E2<K, V>... values)
+    {
+        final LinkedHashMap<K, V> c = newLinkedHashMap ();
+        for (final E2<K, V> e : values)
+        {
+            c.put (e.getE0 (), e.getE1 ());
+        }
+
+        return c;
+    }
+
     public static <E> LinkedHashSet<E> newLinkedHashSet ()
     {
         return new LinkedHashSet<E> ();
@@ -61,7 +61,6 @@ import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
@@ -79,6 +78,7 @@ import au.com.breakpoint.hedron.core.Tuple.E2;
 import au.com.breakpoint.hedron.core.Tuple.E3;
 import au.com.breakpoint.hedron.core.concurrent.Concurrency;
 import au.com.breakpoint.hedron.core.concurrent.ConcurrentTask;
+import au.com.breakpoint.hedron.core.concurrent.TimerWheel;
 import au.com.breakpoint.hedron.core.context.ExecutionScopes;
 import au.com.breakpoint.hedron.core.context.FaultException;
 import au.com.breakpoint.hedron.core.context.ThreadContext;
@@ -2428,6 +2428,21 @@ public class HcUtil
         return line.substring (count);
     }
 
+    /**
+     * Withdraws a task returned by addShutdownTask (), eg when the resource it shuts down
+     * is closed early.
+     */
+    public static void removeShutdownTask (final ResourceScope<?> a)
+    {
+        synchronized (_m_shutdownTasks)
+        {
+            for (final List<ResourceScope<?>> tasks : _m_shutdownTasks.getMap ().values ())
+            {
+                tasks.remove (a);
+            }
+        }
+    }
+
     public static String removeTrailingPathSeparator (final String fp)
     {
         return removeTrailing (fp, '/', '\\');
@@ -2735,8 +2750,9 @@ public class HcUtil
     }
 
     /**
-     * Schedule the one-shot execution of a task using the shared, general use thread
-     * scheduler. Because the scheduler is shared, there is no latency guarantee.
+     * Schedule the one-shot execution of a task using the shared, general use timer wheel,
+     * which has a resolution of MSEC_SHARED_TIMER_TICK. Because the task thread is shared,
+     * there is no latency guarantee.
      *
      * @param service
      *            The work to be executed
@@ -2746,12 +2762,13 @@ public class HcUtil
      */
     public static ScheduledFuture<?> scheduleOnce (final Runnable service, final int periodMsec)
     {
-        return ExecutionScopes.scheduleOnce (m_sharedScheduler.get (), service, periodMsec);
+        return m_sharedTimerWheel.get ().schedule (service, periodMsec);
     }
 
     /**
-     * Schedule the periodic execution of a task using the shared, general use thread
-     * scheduler. Because the scheduler is shared, there is no latency guarantee.
+     * Schedule the periodic execution of a task using the shared, general use timer wheel,
+     * which has a resolution of MSEC_SHARED_TIMER_TICK. Because the task thread is shared,
+     * there is no latency guarantee.
      *
      * @param service
      *            The work to be executed
@@ -2761,7 +2778,9 @@ public class HcUtil
      */
     public static ScheduledFuture<?> schedulePeriodically (final Runnable service, final long periodMsec)
     {
-        return ExecutionScopes.schedulePeriodically (m_sharedScheduler.get (), service, periodMsec, true);
+        // Guard with a fault barrier, as per ExecutionScopes.schedulePeriodically ().
+        return m_sharedTimerWheel.get ().scheduleAtFixedRate ( () -> ExecutionScopes.executeFaultBarrier (service),
+            periodMsec, periodMsec);
     }
 
     public static void setApplicationName (final String applicationName, final String applicationVersion)
@@ -3330,6 +3349,9 @@ public class HcUtil
 
     public static final int DEFAULT_THREAD_SHUTDOWN_SECONDS = 5;
 
+    /** Resolution of scheduleOnce () and schedulePeriodically () */
+    public static final long MSEC_SHARED_TIMER_TICK = 10;
+
     public static final String NewLine = System.getProperty ("line.separator");
 
     public static final BinaryOperator<String> StringCombiner = (l, r) ->
@@ -3387,11 +3409,18 @@ public class HcUtil
         SafeLazyValue.of ( () -> Concurrency.createFixedThreadPool (1, "HcUtil.m_serialAsyncExecutor", false));
 
     /**
-     * Scheduler used for scheduleOnce () and schedulePeriodically (). Note: the
-     * Concurrency.createSingleThreadScheduledExecutor method handles scheduler shutdown.
+     * Timer wheel used for scheduleOnce () and schedulePeriodically (), running tasks on a
+     * single thread. Note: the Concurrency.createSingleThreadExecutor method handles
+     * executor shutdown.
      */
-    private static final IValue<ScheduledExecutorService> m_sharedScheduler =
-        SafeLazyValue.of ( () -> Concurrency.createSingleThreadScheduledExecutor ("HcUtil.m_sharedScheduler", false));
+    private static final IValue<TimerWheel> m_sharedTimerWheel = SafeLazyValue.of ( () ->
+    {
+        final TimerWheel timerWheel = TimerWheel.of ("HcUtil.m_sharedTimerWheel", MSEC_SHARED_TIMER_TICK,
+            Concurrency.createSingleThreadExecutor ("HcUtil.m_sharedScheduler", false));
+        addShutdownTask (timerWheel::close, ShutdownPriority.ThreadExecution, "HcUtil.m_sharedTimerWheel");
+
+        return timerWheel;
+    });
 
     private static final IValue<List<E2<String, String>>> m_standardSubstitutions =
         new SafeLazyValue<List<E2<String, String>>> ( () ->
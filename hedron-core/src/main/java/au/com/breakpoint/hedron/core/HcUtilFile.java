@@ -798,6 +798,31 @@ public class HcUtilFile
         return fileContents;
     }
 
+    /**
+     * Reads the rest of the stream, without closing it.
+     */
+    public static byte[] readStreamBytes (final InputStream is)
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream ();
+
+        try
+        {
+            final byte[] buffer = new byte[8 * 1024];
+            int count;
+            while ((count = is.read (buffer)) >= 0)
+            {
+                bytes.write (buffer, 0, count);
+            }
+        }
+        catch (final IOException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+
+        return bytes.toByteArray ();
+    }
+
     public static String readTextFile (final String filename)
     {
         //        String fileContents = null;
@@ -1010,7 +1035,8 @@ public class HcUtilFile
 
     /**
      * Sends a request object message to a socket server and waits for an object message
-     * back.
+     * back. This is a one-shot exchange on the socket; for repeated requests, use
+     * ObjectSocketClient with NioObjectSocketProcessor, which reuses connections.
      *
      * @param socket
      * @param req
@@ -0,0 +1,321 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+
+/**
+ * Immutable high dynamic range histogram, typically of nanosecond latencies. Values are
+ * kept to a configurable number of significant digits across the whole trackable range,
+ * so percentiles such as p99.9 remain meaningful for sub-millisecond timings. Obtain
+ * instances from ConcurrentHdrHistogram.snapshot () or fromCompactBytes ().
+ */
+public class HdrHistogram implements Serializable
+{
+    HdrHistogram (final HdrHistogramLayout layout, final long[] counts, final long min, final long max)
+    {
+        m_layout = layout;
+        m_counts = counts;
+
+        long totalCount = 0;
+        for (final long count : counts)
+        {
+            totalCount += count;
+        }
+        m_totalCount = totalCount;
+
+        if (totalCount > 0 && min > max)
+        {
+            // Extremes were reset while the counts were being read; fall back to the buckets.
+            int lowest = 0;
+            while (counts[lowest] == 0)
+            {
+                ++lowest;
+            }
+            int highest = counts.length - 1;
+            while (counts[highest] == 0)
+            {
+                --highest;
+            }
+
+            m_min = layout.getValueFromIndex (lowest);
+            m_max = layout.getHighestEquivalentValue (layout.getValueFromIndex (highest));
+        }
+        else
+        {
+            m_min = totalCount == 0 ? 0 : min;
+            m_max = totalCount == 0 ? 0 : max;
+        }
+    }
+
+    public long getHighestTrackableValue ()
+    {
+        return m_layout.getHighestTrackableValue ();
+    }
+
+    public long getMax ()
+    {
+        return m_max;
+    }
+
+    public double getMean ()
+    {
+        double total = 0;
+        for (int i = 0; i < m_counts.length; ++i)
+        {
+            if (m_counts[i] != 0)
+            {
+                total += (double) m_counts[i] * m_layout.getValueFromIndex (i);
+            }
+        }
+
+        return m_totalCount == 0 ? 0 : total / m_totalCount;
+    }
+
+    public long getMin ()
+    {
+        return m_min;
+    }
+
+    /**
+     * Gets the value at or below which the given percentage of recorded values fall, to
+     * the histogram's precision.
+     *
+     * @param percentile
+     *            0.0 to 100.0, eg 99.9
+     * @return the value at the percentile, or 0 if nothing was recorded
+     */
+    public long getPercentile (final double percentile)
+    {
+        long value = 0;
+
+        if (m_totalCount > 0)
+        {
+            final double p = Math.min (Math.max (percentile, 0.0), 100.0);
+            final long countAtPercentile = Math.max (1, (long) Math.ceil (p / 100.0 * m_totalCount));
+
+            long runningCount = 0;
+            boolean found = false;
+            for (int i = 0; i < m_counts.length && !found; ++i)
+            {
+                runningCount += m_counts[i];
+                if (runningCount >= countAtPercentile)
+                {
+                    value = m_layout.getHighestEquivalentValue (m_layout.getValueFromIndex (i));
+                    found = true;
+                }
+            }
+
+            // The exact extremes are known, so don't report beyond them.
+            value = Math.min (Math.max (value, m_min), m_max);
+        }
+
+        return value;
+    }
+
+    public int getSignificantDigits ()
+    {
+        return m_layout.getSignificantDigits ();
+    }
+
+    public long getTotalCount ()
+    {
+        return m_totalCount;
+    }
+
+    public boolean isUnused ()
+    {
+        return m_totalCount == 0;
+    }
+
+    /**
+     * Encodes the histogram compactly: a small header then the counts as zig-zag varints,
+     * with runs of empty buckets collapsed to a single negative run length.
+     */
+    public byte[] toCompactBytes ()
+    {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream ();
+        out.write (COMPACT_FORM_VERSION);
+        writeVarLong (out, m_layout.getSignificantDigits ());
+        writeVarLong (out, m_layout.getHighestTrackableValue ());
+        writeVarLong (out, m_min);
+        writeVarLong (out, m_max);
+
+        int usedLength = m_counts.length;
+        while (usedLength > 0 && m_counts[usedLength - 1] == 0)
+        {
+            --usedLength;
+        }
+        writeVarLong (out, usedLength);
+
+        for (int i = 0; i < usedLength;)
+        {
+            if (m_counts[i] == 0)
+            {
+                int zeroes = 0;
+                while (i < usedLength && m_counts[i] == 0)
+                {
+                    ++zeroes;
+                    ++i;
+                }
+                writeVarLong (out, -zeroes);
+            }
+            else
+            {
+                writeVarLong (out, m_counts[i]);
+                ++i;
+            }
+        }
+
+        return out.toByteArray ();
+    }
+
+    /**
+     * Base64 of toCompactBytes (), suitable for text-based transports such as JSON.
+     */
+    public String toCompactString ()
+    {
+        return Base64.getEncoder ().encodeToString (toCompactBytes ());
+    }
+
+    @Override
+    public String toString ()
+    {
+        return String.format ("p50:%s; p90:%s; p99:%s; p99.9:%s; max:%s", getPercentile (50.0),
+            getPercentile (90.0), getPercentile (99.0), getPercentile (99.9), getMax ());
+    }
+
+    /**
+     * Decodes a histogram from the form produced by toCompactBytes ().
+     */
+    public static HdrHistogram fromCompactBytes (final byte[] bytes)
+    {
+        final ByteBuffer in = ByteBuffer.wrap (bytes);
+
+        final byte version = in.get ();
+        ThreadContext.assertFault (version == COMPACT_FORM_VERSION, "Unsupported HdrHistogram version [%s]", version);
+
+        final int significantDigits = (int) readVarLong (in);
+        final long highestTrackableValue = readVarLong (in);
+        final long min = readVarLong (in);
+        final long max = readVarLong (in);
+        final int usedLength = (int) readVarLong (in);
+
+        final HdrHistogramLayout layout = new HdrHistogramLayout (significantDigits, highestTrackableValue);
+        final long[] counts = new long[layout.getCountsLength ()];
+        ThreadContext.assertFault (usedLength <= counts.length, "Corrupt HdrHistogram length [%s]", usedLength);
+
+        for (int i = 0; i < usedLength;)
+        {
+            final long v = readVarLong (in);
+            if (v < 0)
+            {
+                i += (int) -v;
+            }
+            else
+            {
+                counts[i++] = v;
+            }
+        }
+
+        return new HdrHistogram (layout, counts, min, max);
+    }
+
+    public static HdrHistogram fromCompactString (final String s)
+    {
+        return fromCompactBytes (Base64.getDecoder ().decode (s));
+    }
+
+    long[] getCounts ()
+    {
+        return m_counts;
+    }
+
+    HdrHistogramLayout getLayout ()
+    {
+        return m_layout;
+    }
+
+    /** Serialise in the compact form rather than the full counts array */
+    private Object writeReplace ()
+    {
+        return new CompactForm (toCompactBytes ());
+    }
+
+    private static long readVarLong (final ByteBuffer in)
+    {
+        long zigZag = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = in.get ();
+            zigZag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    private static void writeVarLong (final ByteArrayOutputStream out, final long value)
+    {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0)
+        {
+            out.write ((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.write ((int) zigZag);
+    }
+
+    /** Serialised form of HdrHistogram */
+    private static class CompactForm implements Serializable
+    {
+        public CompactForm (final byte[] bytes)
+        {
+            m_bytes = bytes;
+        }
+
+        private Object readResolve ()
+        {
+            return fromCompactBytes (m_bytes);
+        }
+
+        private final byte[] m_bytes;
+
+        private static final long serialVersionUID = 2207245001389652412L;
+    }
+
+    private final long[] m_counts;
+
+    private final transient HdrHistogramLayout m_layout;
+
+    private final long m_max;
+
+    private final long m_min;
+
+    private final long m_totalCount;
+
+    private static final byte COMPACT_FORM_VERSION = 1;
+
+    private static final long serialVersionUID = -4410186826722740651L;
+}
@@ -0,0 +1,150 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+
+/**
+ * Bucket geometry shared by HdrHistogram and ConcurrentHdrHistogram. Values are held in
+ * exponentially sized buckets, each split into linear sub-buckets fine enough to keep the
+ * configured number of significant decimal digits. The layout follows Gil Tene's
+ * HdrHistogram with a unit magnitude of zero.
+ */
+final class HdrHistogramLayout
+{
+    HdrHistogramLayout (final int significantDigits, final long highestTrackableValue)
+    {
+        ThreadContext.assertFault (significantDigits >= 1 && significantDigits <= 5,
+            "Significant digits [%s] must be 1 to 5", significantDigits);
+        ThreadContext.assertFault (highestTrackableValue >= 2, "Highest trackable value [%s] must be at least 2",
+            highestTrackableValue);
+
+        m_significantDigits = significantDigits;
+        m_highestTrackableValue = highestTrackableValue;
+
+        // The number of linear sub-buckets needed for single unit resolution up to 2 * 10^digits.
+        final long largestValueWithSingleUnitResolution = 2 * (long) Math.pow (10, significantDigits);
+        m_subBucketCountMagnitude = (int) Math.ceil (Math.log (largestValueWithSingleUnitResolution) / Math.log (2));
+        m_subBucketHalfCountMagnitude = m_subBucketCountMagnitude - 1;
+        m_subBucketCount = 1 << m_subBucketCountMagnitude;
+        m_subBucketHalfCount = m_subBucketCount / 2;
+        m_subBucketMask = m_subBucketCount - 1;
+        m_leadingZeroCountBase = 64 - m_subBucketCountMagnitude;
+
+        // Each bucket doubles the covered range.
+        long smallestUntrackableValue = m_subBucketCount;
+        int bucketCount = 1;
+        while (smallestUntrackableValue <= highestTrackableValue)
+        {
+            if (smallestUntrackableValue > Long.MAX_VALUE / 2)
+            {
+                ++bucketCount;
+                break;
+            }
+            smallestUntrackableValue <<= 1;
+            ++bucketCount;
+        }
+
+        m_countsLength = (bucketCount + 1) * m_subBucketHalfCount;
+    }
+
+    int getCountsIndex (final long value)
+    {
+        final int bucketIndex = getBucketIndex (value);
+        final int subBucketIndex = getSubBucketIndex (value, bucketIndex);
+
+        return ((bucketIndex + 1) << m_subBucketHalfCountMagnitude) + (subBucketIndex - m_subBucketHalfCount);
+    }
+
+    int getCountsLength ()
+    {
+        return m_countsLength;
+    }
+
+    long getHighestEquivalentValue (final long value)
+    {
+        final int bucketIndex = getBucketIndex (value);
+        final int subBucketIndex = getSubBucketIndex (value, bucketIndex);
+
+        final long lowestEquivalentValue = (long) subBucketIndex << bucketIndex;
+        final int rangeBucketIndex = subBucketIndex >= m_subBucketCount ? bucketIndex + 1 : bucketIndex;
+
+        return lowestEquivalentValue + (1L << rangeBucketIndex) - 1;
+    }
+
+    long getHighestTrackableValue ()
+    {
+        return m_highestTrackableValue;
+    }
+
+    int getSignificantDigits ()
+    {
+        return m_significantDigits;
+    }
+
+    /**
+     * Lowest value that maps to the counts index.
+     */
+    long getValueFromIndex (final int index)
+    {
+        int bucketIndex = (index >> m_subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (m_subBucketHalfCount - 1)) + m_subBucketHalfCount;
+        if (bucketIndex < 0)
+        {
+            subBucketIndex -= m_subBucketHalfCount;
+            bucketIndex = 0;
+        }
+
+        return (long) subBucketIndex << bucketIndex;
+    }
+
+    /**
+     * Clamps a value into the trackable range [0, highestTrackableValue].
+     */
+    long toTrackableValue (final long value)
+    {
+        return value < 0 ? 0 : value > m_highestTrackableValue ? m_highestTrackableValue : value;
+    }
+
+    private int getBucketIndex (final long value)
+    {
+        return m_leadingZeroCountBase - Long.numberOfLeadingZeros (value | m_subBucketMask);
+    }
+
+    private int getSubBucketIndex (final long value, final int bucketIndex)
+    {
+        return (int) (value >>> bucketIndex);
+    }
+
+    private final int m_countsLength;
+
+    private final long m_highestTrackableValue;
+
+    private final int m_leadingZeroCountBase;
+
+    private final int m_significantDigits;
+
+    private final int m_subBucketCount;
+
+    private final int m_subBucketCountMagnitude;
+
+    private final int m_subBucketHalfCount;
+
+    private final int m_subBucketHalfCountMagnitude;
+
+    private final long m_subBucketMask;
+}
@@ -0,0 +1,33 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import java.util.List;
+
+/**
+ * Interface that performs the persistence phase of the 3 part process
+ * (poll:IDataTransformationQueue, transform:IDataTransformation,
+ * persist:IBatchDataPersistence) a batch at a time, eg with a single JDBC batch.
+ *
+ * @param <T>
+ *            type of the data to be transformed
+ */
+@FunctionalInterface
+public interface IBatchDataPersistence<T>
+{
+    void persistAll (final List<T> ds);
+}
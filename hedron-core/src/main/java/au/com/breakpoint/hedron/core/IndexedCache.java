@@ -16,7 +16,13 @@
 //
 package au.com.breakpoint.hedron.core;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.FutureTask;
 import java.util.function.Function;
 import au.com.breakpoint.hedron.core.value.SafeLazyValue;
 
@@ -24,6 +30,10 @@ import au.com.breakpoint.hedron.core.value.SafeLazyValue;
  * Based on JCIP Memoizer sample, except FutureTask encapsulated with LazyValue. No
  * locking on the map collection is required.
  *
+ * With a batch fetcher, getAll () loads all missing keys in a single call, eg one query
+ * with an 'in' clause. Keys already being loaded by another thread are waited for rather
+ * than fetched again.
+ *
  * @param <A>
  *            argument type for indexing the cache
  * @param <V>
@@ -33,7 +43,20 @@ public class IndexedCache<A, V>
 {
     public IndexedCache (final Function<A, V> fetcher)
     {
-        m_fetcher = fetcher;
+        this (fetcher, null);
+    }
+
+    /**
+     * @param fetcher
+     *            retrieves a single value; may be null if batchFetcher is specified
+     * @param batchFetcher
+     *            retrieves the values for a set of keys. Keys absent from the returned map
+     *            have no value and are not cached.
+     */
+    public IndexedCache (final Function<A, V> fetcher, final Function<Set<A>, Map<A, V>> batchFetcher)
+    {
+        m_fetcher = fetcher != null ? fetcher : a -> batchFetcher.apply (Collections.singleton (a)).get (a);
+        m_batchFetcher = batchFetcher;
     }
 
     public V get (final A arg)
@@ -47,6 +70,76 @@ public class IndexedCache<A, V>
         return f.get ();
     }
 
+    /**
+     * Gets the values for the specified keys, fetching all the missing ones together if
+     * there is a batch fetcher.
+     *
+     * @return the values in the order of the keys, omitting keys that have no value
+     */
+    public Map<A, V> getAll (final Collection<? extends A> args)
+    {
+        final Map<A, V> results = GenericFactory.newLinkedHashMap ();
+
+        if (m_batchFetcher == null)
+        {
+            for (final A arg : args)
+            {
+                putIfNotNull (results, arg, get (arg));
+            }
+        }
+        else
+        {
+            final Map<A, SafeLazyValue<V>> lazyValues = GenericFactory.newLinkedHashMap ();
+            final Set<A> missing = GenericFactory.newLinkedHashSet ();
+            final List<SafeLazyValue<V>> missingValues = GenericFactory.newArrayList ();
+
+            // All entries for the batch share one task, which only this thread runs and only
+            // once the set of missing keys is complete. Other threads wanting these keys in
+            // the meantime wait on it.
+            final FutureTask<Map<A, V>> batchTask = new FutureTask<> ( () -> m_batchFetcher.apply (missing));
+
+            try
+            {
+                for (final A arg : args)
+                {
+                    if (!lazyValues.containsKey (arg))
+                    {
+                        SafeLazyValue<V> f = m_dataMap.get (arg);
+                        if (f == null)
+                        {
+                            final SafeLazyValue<V> vNew =
+                                SafeLazyValue.of ( () -> HcUtil.waitForFuture (batchTask).get (arg));
+
+                            f = m_dataMap.putIfAbsent (arg, vNew);
+                            if (f == null)
+                            {
+                                f = vNew;
+                                missing.add (arg);
+                                missingValues.add (vNew);
+                            }
+                        }
+
+                        lazyValues.put (arg, f);
+                    }
+                }
+            }
+            finally
+            {
+                if (!missing.isEmpty ())
+                {
+                    loadBatch (batchTask, missing, missingValues);
+                }
+            }
+
+            for (final Map.Entry<A, SafeLazyValue<V>> e : lazyValues.entrySet ())
+            {
+                putIfNotNull (results, e.getKey (), e.getValue ().get ());
+            }
+        }
+
+        return results;
+    }
+
     private SafeLazyValue<V> fetchAndStore (final A arg)
     {
         // Prepare the lazy fetcher to store in the map.
@@ -63,11 +156,60 @@ public class IndexedCache<A, V>
         return v;
     }
 
+    private void loadBatch (final FutureTask<Map<A, V>> batchTask, final Set<A> missing,
+        final List<SafeLazyValue<V>> missingValues)
+    {
+        batchTask.run ();
+
+        // Don't cache failures or keys that have no value.
+        Map<A, V> batch = null;
+        try
+        {
+            batch = HcUtil.waitForFuture (batchTask);
+        }
+        finally
+        {
+            int i = 0;
+            for (final A arg : missing)
+            {
+                final SafeLazyValue<V> f = missingValues.get (i++);
+                if (batch == null || batch.get (arg) == null)
+                {
+                    m_dataMap.remove (arg, f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts building a cache that is bounded in size or weight and/or expires entries.
+     */
+    public static <A, V> BoundedIndexedCache.Builder<A, V> builder (final Function<A, V> f)
+    {
+        return new BoundedIndexedCache.Builder<A, V> (f);
+    }
+
     public static <A, V> IndexedCache<A, V> of (final Function<A, V> f)
     {
         return new IndexedCache<A, V> (f);
     }
 
+    public static <A, V> IndexedCache<A, V> of (final Function<A, V> f, final Function<Set<A>, Map<A, V>> batchF)
+    {
+        return new IndexedCache<A, V> (f, batchF);
+    }
+
+    static <A, V> void putIfNotNull (final Map<A, V> results, final A arg, final V value)
+    {
+        if (value != null)
+        {
+            results.put (arg, value);
+        }
+    }
+
+    /** Function that retrieves values for a set of indexes, or null */
+    private final Function<Set<A>, Map<A, V>> m_batchFetcher;
+
     private final ConcurrentMap<A, SafeLazyValue<V>> m_dataMap = GenericFactory.newConcurrentHashMap ();
 
     /** Function that retrieves values for the specified index */
@@ -30,7 +30,7 @@ public class LogarithmicHistogram32 implements Serializable
         m_bins = new int[BIN_COUNT];
     }
 
-    private LogarithmicHistogram32 (final int[] bins)
+    LogarithmicHistogram32 (final int[] bins)
     {
         m_bins = bins;
     }
@@ -157,7 +157,7 @@ public class LogarithmicHistogram32 implements Serializable
 
     private final int[] m_bins;
 
-    private static final int BIN_COUNT = HcUtil.log2 (Integer.MAX_VALUE) + 1;
+    static final int BIN_COUNT = HcUtil.log2 (Integer.MAX_VALUE) + 1;
 
     private static final long serialVersionUID = -3502296987700339661L;
 }
@@ -21,13 +21,12 @@ package au.com.breakpoint.hedron.core;
  */
 public class LogarithmicHistogram64
 {
-    // TODO _ look into HdrHistogram
     public LogarithmicHistogram64 ()
     {
         m_bins = new int[BIN_COUNT];
     }
 
-    private LogarithmicHistogram64 (final int[] bins)
+    LogarithmicHistogram64 (final int[] bins)
     {
         m_bins = bins;
     }
@@ -85,5 +84,5 @@ public class LogarithmicHistogram64
 
     private final int[] m_bins;
 
-    private static final int BIN_COUNT = HcUtil.log2 (Long.MAX_VALUE) + 1;
+    static final int BIN_COUNT = HcUtil.log2 (Long.MAX_VALUE) + 1;
 }
@@ -0,0 +1,185 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import java.util.Arrays;
+import java.util.Formattable;
+
+/**
+ * Fast replacement for String.format () for the %s, %n and %% conversions that logging
+ * format strings use. Text is appended to a reusable per-thread StringBuilder, so the only
+ * allocation is the resulting String. Format strings with any other conversion, flags or
+ * width, or arguments that are Formattable, are handed to String.format () so the result
+ * is always identical. The one to three argument overloads avoid the varargs array.
+ */
+public final class ParameterFormatter
+{
+    private ParameterFormatter ()
+    {
+    }
+
+    /**
+     * Equivalent to String.format (format, args).
+     */
+    public static String format (final String format, final Object... args)
+    {
+        return doFormat (format, args == null ? 0 : args.length, null, null, null, args);
+    }
+
+    /**
+     * Equivalent to String.format (format, p0).
+     */
+    public static String format (final String format, final Object p0)
+    {
+        return doFormat (format, 1, p0, null, null, null);
+    }
+
+    /**
+     * Equivalent to String.format (format, p0, p1).
+     */
+    public static String format (final String format, final Object p0, final Object p1)
+    {
+        return doFormat (format, 2, p0, p1, null, null);
+    }
+
+    /**
+     * Equivalent to String.format (format, p0, p1, p2).
+     */
+    public static String format (final String format, final Object p0, final Object p1, final Object p2)
+    {
+        return doFormat (format, 3, p0, p1, p2, null);
+    }
+
+    /**
+     * Appends the formatted text to sb, if the format only uses the supported
+     * conversions.
+     *
+     * @return false if the format can't be handled, in which case sb is in an
+     *         indeterminate state
+     */
+    public static boolean formatTo (final StringBuilder sb, final String format, final Object... args)
+    {
+        return formatTo (sb, format, args == null ? 0 : args.length, null, null, null, args);
+    }
+
+    /**
+     * @param args
+     *            the arguments, or null to take the first argCount of p0, p1 and p2
+     */
+    private static String doFormat (final String format, final int argCount, final Object p0, final Object p1,
+        final Object p2, final Object[] args)
+    {
+        final StringBuilder sb = m_builder.get ();
+        sb.setLength (0);
+
+        String s = null;
+        if (formatTo (sb, format, argCount, p0, p1, p2, args))
+        {
+            s = sb.toString ();
+        }
+        else
+        {
+            // Rare: only now is the array needed.
+            s = String.format (format, args != null ? args : Arrays.copyOf (new Object[]
+            {
+                    p0,
+                    p1,
+                    p2
+            }, argCount));
+        }
+
+        if (sb.capacity () > MAX_RETAINED_CAPACITY)
+        {
+            // Don't hang on to the occasional huge message.
+            m_builder.set (new StringBuilder (INITIAL_CAPACITY));
+        }
+
+        return s;
+    }
+
+    private static boolean formatTo (final StringBuilder sb, final String format, final int argCount,
+        final Object p0, final Object p1, final Object p2, final Object[] args)
+    {
+        final int length = format.length ();
+
+        int argIndex = 0;
+        int start = 0;
+        int i = format.indexOf ('%');
+        while (i >= 0)
+        {
+            sb.append (format, start, i);
+
+            final char conversion = i + 1 < length ? format.charAt (i + 1) : '\0';
+            switch (conversion)
+            {
+                case 's':
+                {
+                    if (argIndex >= argCount)
+                    {
+                        // String.format () throws MissingFormatArgumentException.
+                        return false;
+                    }
+
+                    final Object arg = args != null ? args[argIndex] : getArgument (argIndex, p0, p1, p2);
+                    ++argIndex;
+                    if (arg instanceof Formattable)
+                    {
+                        return false;
+                    }
+                    sb.append (arg);
+                    break;
+                }
+
+                case 'n':
+                {
+                    sb.append (HcUtil.NewLine);
+                    break;
+                }
+
+                case '%':
+                {
+                    sb.append ('%');
+                    break;
+                }
+
+                default:
+                {
+                    return false;
+                }
+            }
+
+            start = i + 2;
+            i = format.indexOf ('%', start);
+        }
+
+        sb.append (format, start, length);
+
+        return true;
+    }
+
+    private static Object getArgument (final int argIndex, final Object p0, final Object p1, final Object p2)
+    {
+        return argIndex == 0 ? p0 : argIndex == 1 ? p1 : p2;
+    }
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final int MAX_RETAINED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> m_builder =
+        ThreadLocal.withInitial ( () -> new StringBuilder (INITIAL_CAPACITY));
+}
@@ -0,0 +1,125 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Striped, lossy buffer of cache reads, replayed against the eviction policy in batches
+ * while the cache's eviction lock is held. Each thread offers to a stripe chosen by its id,
+ * so concurrent readers rarely touch the same cache line, and a read is dropped rather
+ * than waited for when its stripe is full or contended. offer () is threadsafe; drain ()
+ * must only be called by the holder of the eviction lock.
+ */
+final class ReadBuffer<E>
+{
+    ReadBuffer ()
+    {
+        final int processors = Runtime.getRuntime ().availableProcessors ();
+        final int stripeCount = Math.min (Integer.highestOneBit (Math.max (processors - 1, 1)) << 1, MAX_STRIPES);
+
+        m_stripes = GenericFactory.newArrayList ();
+        for (int i = 0; i < stripeCount; ++i)
+        {
+            m_stripes.add (new Stripe<> ());
+        }
+        m_stripeMask = stripeCount - 1;
+    }
+
+    /**
+     * Replays the buffered reads in the order they were offered to each stripe.
+     */
+    void drain (final Consumer<E> consumer)
+    {
+        for (final Stripe<E> stripe : m_stripes)
+        {
+            final long writeCount = stripe.m_writeCount.get ();
+            long readCount = stripe.m_readCount;
+
+            boolean published = true;
+            while (readCount < writeCount && published)
+            {
+                // A slot is claimed before it is written, so stop at one not yet written.
+                final int index = (int) readCount & STRIPE_MASK;
+                final E e = stripe.m_buffer.get (index);
+                published = e != null;
+                if (published)
+                {
+                    stripe.m_buffer.lazySet (index, null);
+                    consumer.accept (e);
+                    ++readCount;
+                }
+            }
+
+            stripe.m_readCount = readCount;
+        }
+    }
+
+    /**
+     * Records a read, unless the thread's stripe is full or another thread is writing to it.
+     *
+     * @return true if the stripe is now full, so that the caller should drain the buffer.
+     */
+    boolean offer (final E e)
+    {
+        final Stripe<E> stripe = m_stripes.get (spread (Thread.currentThread ().getId ()) & m_stripeMask);
+
+        final long writeCount = stripe.m_writeCount.get ();
+        final long pending = writeCount - stripe.m_readCount;
+
+        boolean full = pending >= STRIPE_LENGTH;
+        if (!full && stripe.m_writeCount.compareAndSet (writeCount, writeCount + 1))
+        {
+            stripe.m_buffer.lazySet ((int) writeCount & STRIPE_MASK, e);
+            full = pending + 1 >= STRIPE_LENGTH;
+        }
+
+        return full;
+    }
+
+    private static int spread (final long threadId)
+    {
+        int x = (int) (threadId ^ (threadId >>> 32)) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+
+        return (x >>> 16) ^ x;
+    }
+
+    /** Ring of reads offered by the threads that map onto it */
+    private static final class Stripe<E>
+    {
+        private final AtomicReferenceArray<E> m_buffer = new AtomicReferenceArray<> (STRIPE_LENGTH);
+
+        /** Written only by the drainer */
+        private volatile long m_readCount;
+
+        private final AtomicLong m_writeCount = new AtomicLong ();
+    }
+
+    private final int m_stripeMask;
+
+    private final List<Stripe<E>> m_stripes;
+
+    private static final int MAX_STRIPES = 64;
+
+    private static final int STRIPE_LENGTH = 16;
+
+    private static final int STRIPE_MASK = STRIPE_LENGTH - 1;
+}
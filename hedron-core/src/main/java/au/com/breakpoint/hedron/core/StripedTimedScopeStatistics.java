@@ -0,0 +1,96 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mutable, striped accumulator of TimedScope stats. Each value (including each histogram
+ * bin) is held in its own LongAdder-style set of cells so that concurrent recording
+ * neither contends on a single CAS nor allocates. Use getStatistics () to obtain an
+ * immutable TimedScopeStatistics snapshot.
+ */
+public class StripedTimedScopeStatistics
+{
+    /**
+     * Records the outcome of a single execution.
+     *
+     * @param succeeded
+     *            true if the execution succeeded
+     * @param expired
+     *            true if the execution exceeded its time limit
+     * @param nsDuration
+     *            duration of the execution
+     */
+    public void accumulate (final boolean succeeded, final boolean expired, final long nsDuration)
+    {
+        m_executionsCount.increment ();
+        if (succeeded)
+        {
+            m_successfulExecutionsCount.increment ();
+        }
+        if (expired)
+        {
+            m_slowExecutionsCount.increment ();
+        }
+
+        m_durationTotal.add (nsDuration);
+        m_durationMin.accumulate (nsDuration);
+        m_durationMax.accumulate (nsDuration);
+
+        // Gather duration stats in histogram form.
+        m_histogramMsec.record (HcUtil.nsToMsec (nsDuration));
+    }
+
+    /**
+     * Takes an immutable snapshot of the stats. The snapshot is not atomic across the
+     * individual values; a concurrently recorded execution may be partially reflected.
+     */
+    public TimedScopeStatistics getStatistics ()
+    {
+        return new TimedScopeStatistics (m_durationTotal.sum (), m_executionsCount.sum (),
+            m_successfulExecutionsCount.sum (), m_slowExecutionsCount.sum (), m_durationMin.get (),
+            m_durationMax.get (), m_histogramMsec.snapshot ());
+    }
+
+    public void reset ()
+    {
+        m_durationTotal.reset ();
+        m_executionsCount.reset ();
+        m_successfulExecutionsCount.reset ();
+        m_slowExecutionsCount.reset ();
+        m_durationMin.reset ();
+        m_durationMax.reset ();
+        m_histogramMsec.reset ();
+    }
+
+    private final LongAccumulator m_durationMax = new LongAccumulator (Math::max, 0);
+
+    private final LongAccumulator m_durationMin = new LongAccumulator (Math::min, Long.MAX_VALUE);
+
+    private final LongAdder m_durationTotal = new LongAdder ();
+
+    private final LongAdder m_executionsCount = new LongAdder ();
+
+    /** Histogram of msec duration... max value 2147483647 = 24.855 days */
+    private final ConcurrentLogarithmicHistogram32 m_histogramMsec = new ConcurrentLogarithmicHistogram32 ();
+
+    private final LongAdder m_slowExecutionsCount = new LongAdder ();
+
+    private final LongAdder m_successfulExecutionsCount = new LongAdder ();
+}
@@ -19,10 +19,13 @@ package au.com.breakpoint.hedron.core;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 import au.com.breakpoint.hedron.core.value.TimeLimitedLazyValue;
+import au.com.breakpoint.hedron.core.value.TimeLimitedLazyValue.RefreshPolicy;
 
 /**
  * Based on JCIP Memoizer sample, except FutureTask encapsulated with
- * TimeLimitedLazyValue. Threadsafe without locking on the map collection.
+ * TimeLimitedLazyValue. Threadsafe without locking on the map collection. Each entry
+ * expires independently; with a RefreshPolicy, entries are refreshed in the background
+ * and the previous value is served meanwhile.
  *
  * @param <A>
  *            argument type for indexing the cache
@@ -33,11 +36,18 @@ public class TimeLimitedIndexedCache<A, V>
 {
     public TimeLimitedIndexedCache (final Class<?> usingClass, final String name, final Function<A, V> fetcher,
         final long lifetimeMsec)
+    {
+        this (usingClass, name, fetcher, lifetimeMsec, null);
+    }
+
+    public TimeLimitedIndexedCache (final Class<?> usingClass, final String name, final Function<A, V> fetcher,
+        final long lifetimeMsec, final RefreshPolicy refreshPolicy)
     {
         m_usingClass = usingClass;
         m_name = name;
         m_fetcher = fetcher;
         m_lifetimeMsec = lifetimeMsec;
+        m_refreshPolicy = refreshPolicy;
     }
 
     public V getValue (final A arg)
@@ -54,7 +64,7 @@ public class TimeLimitedIndexedCache<A, V>
     private TimeLimitedLazyValue<V> fetchAndStore (final A arg)
     {
         final TimeLimitedLazyValue<V> vNew =
-            TimeLimitedLazyValue.of (m_usingClass, m_name, () -> m_fetcher.apply (arg), m_lifetimeMsec);
+            TimeLimitedLazyValue.of (m_usingClass, m_name, () -> m_fetcher.apply (arg), m_lifetimeMsec, m_refreshPolicy);
 
         TimeLimitedLazyValue<V> v = m_dataMap.putIfAbsent (arg, vNew);
 
@@ -73,6 +83,12 @@ public class TimeLimitedIndexedCache<A, V>
         return new TimeLimitedIndexedCache<A, V> (usingClass, name, f, lifetimeMsec);
     }
 
+    public static <A, V> TimeLimitedIndexedCache<A, V> of (final Class<?> usingClass, final String name,
+        final Function<A, V> f, final long lifetimeMsec, final RefreshPolicy refreshPolicy)
+    {
+        return new TimeLimitedIndexedCache<A, V> (usingClass, name, f, lifetimeMsec, refreshPolicy);
+    }
+
     private final ConcurrentMap<A, TimeLimitedLazyValue<V>> m_dataMap = GenericFactory.newConcurrentHashMap ();
 
     /** Function that retrieves values for the specified index */
@@ -82,6 +98,9 @@ public class TimeLimitedIndexedCache<A, V>
 
     private final String m_name;
 
+    /** Null for blocking refetch on expiry */
+    private final RefreshPolicy m_refreshPolicy;
+
     /** Used for instrumentation counters etc */
     private final Class<?> m_usingClass;
 }
@@ -20,14 +20,13 @@ import static java.util.Comparator.comparing;
 import java.io.Serializable;
 import java.util.List;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import au.com.breakpoint.hedron.core.Tuple.E2;
 import au.com.breakpoint.hedron.core.concurrent.Concurrency;
+import au.com.breakpoint.hedron.core.concurrent.TimerWheel;
 import au.com.breakpoint.hedron.core.context.ExecutionScope;
 import au.com.breakpoint.hedron.core.context.FaultException;
 import au.com.breakpoint.hedron.core.context.IScope;
@@ -52,15 +51,58 @@ public class TimedScope implements Serializable
     }
 
     private TimedScope (final String name)
+    {
+        this (name, StatisticsMode.Immutable);
+    }
+
+    private TimedScope (final String name, final StatisticsMode mode)
     {
         m_name = name;
-        m_statistics = new AtomicReference<> (TimedScopeStatistics.InitialState);
+        m_statisticsMode = mode;
+
+        if (mode == StatisticsMode.Striped)
+        {
+            m_statistics = null;
+            m_stripedStatistics = new StripedTimedScopeStatistics ();
+        }
+        else
+        {
+            m_statistics = new AtomicReference<> (TimedScopeStatistics.InitialState);
+            m_stripedStatistics = null;
+        }
     }
 
     private TimedScope (final TimedScope rhs)
     {
+        // The copy is a snapshot, so it is always immutable.
         m_name = rhs.m_name;
-        m_statistics = new AtomicReference<> (rhs.m_statistics.get ());
+        m_statisticsMode = StatisticsMode.Immutable;
+        m_statistics = new AtomicReference<> (rhs.getStatistics ());
+        m_stripedStatistics = null;
+
+        final ConcurrentHdrHistogram latencyHistogram = rhs.m_latencyHistogram;
+        if (latencyHistogram != null)
+        {
+            m_latencyHistogram = new ConcurrentHdrHistogram (latencyHistogram.getSignificantDigits (),
+                latencyHistogram.getHighestTrackableValue ());
+            m_latencyHistogram.mergeFrom (latencyHistogram.snapshot ());
+        }
+    }
+
+    /**
+     * Additionally records nanosecond durations in a high dynamic range histogram, giving
+     * accurate percentiles. Has no effect if already enabled.
+     *
+     * @param significantDigits
+     *            precision of the recorded durations, 1 to 5. Memory use grows tenfold
+     *            with each digit; 2 or 3 is usually ample.
+     */
+    public synchronized void enableLatencyHistogram (final int significantDigits)
+    {
+        if (m_latencyHistogram == null)
+        {
+            m_latencyHistogram = new ConcurrentHdrHistogram (significantDigits);
+        }
     }
 
     /**
@@ -159,7 +201,7 @@ public class TimedScope implements Serializable
                             alertHandler.accept (E2.of (ScopeResult.TimedOut, o));
                         }
                     };
-                    timerHandle = m_executor.get ().schedule (command, msecLimit, TimeUnit.MILLISECONDS);
+                    timerHandle = m_timerWheel.get ().schedule (command, msecLimit);
                 }
 
                 // Execute the operation.
@@ -231,6 +273,26 @@ public class TimedScope implements Serializable
         return output;
     }
 
+    /**
+     * @return cumulative snapshot of nanosecond durations, or null if the latency histogram
+     *         is not enabled.
+     */
+    public HdrHistogram getLatencyHistogram ()
+    {
+        final ConcurrentHdrHistogram latencyHistogram = m_latencyHistogram;
+        return latencyHistogram == null ? null : latencyHistogram.snapshot ();
+    }
+
+    /**
+     * @return snapshot of nanosecond durations since the previous call, or null if the
+     *         latency histogram is not enabled.
+     */
+    public HdrHistogram getLatencyHistogramInterval ()
+    {
+        final ConcurrentHdrHistogram latencyHistogram = m_latencyHistogram;
+        return latencyHistogram == null ? null : latencyHistogram.snapshotAndReset ();
+    }
+
     public String getName ()
     {
         return m_name;
@@ -238,13 +300,38 @@ public class TimedScope implements Serializable
 
     public TimedScopeStatistics getStatistics ()
     {
-        return m_statistics.get ();
+        return m_stripedStatistics != null ? m_stripedStatistics.getStatistics () : m_statistics.get ();
+    }
+
+    public StatisticsMode getStatisticsMode ()
+    {
+        return m_statisticsMode;
+    }
+
+    /**
+     * Records an execution that was timed by the caller, eg an asynchronous operation whose
+     * completion is observed on a different thread to the one that started it.
+     *
+     * @param nsDuration
+     *            elapsed time of the execution
+     * @param succeeded
+     *            whether the execution succeeded
+     */
+    public void record (final long nsDuration, final boolean succeeded)
+    {
+        final ScopeOutcome<Void> o = new ScopeOutcome<> (m_name);
+        o.setNsDuration (nsDuration < 0 ? 0 : nsDuration);
+        if (succeeded)
+        {
+            o.setReturnedValue (null);
+        }
+        updateStatistics (o);
     }
 
     @Override
     public String toString ()
     {
-        final TimedScopeStatistics stats = m_statistics.get ();
+        final TimedScopeStatistics stats = getStatistics ();
         final long durationTotal = stats.getDurationTotal ();
         final long executionsCount = stats.getExecutionsCount ();
         final long successfulExecutionsCount = stats.getSuccessfulExecutionsCount ();
@@ -311,13 +398,47 @@ public class TimedScope implements Serializable
             durationMin, durationMax, histogram);
     }
 
+    /**
+     * Live striped stats are not serialisable, so serialise a snapshot in their place.
+     */
+    private Object writeReplace ()
+    {
+        return m_stripedStatistics != null ? new TimedScope (this) : this;
+    }
+
     private void reset ()
     {
-        m_statistics.getAndSet (TimedScopeStatistics.InitialState);
+        final ConcurrentHdrHistogram latencyHistogram = m_latencyHistogram;
+        if (latencyHistogram != null)
+        {
+            latencyHistogram.reset ();
+        }
+
+        if (m_stripedStatistics != null)
+        {
+            m_stripedStatistics.reset ();
+        }
+        else
+        {
+            m_statistics.getAndSet (TimedScopeStatistics.InitialState);
+        }
     }
 
     private void updateStatistics (final ScopeOutcome<?> o)
     {
+        final ConcurrentHdrHistogram latencyHistogram = m_latencyHistogram;
+        if (latencyHistogram != null)
+        {
+            latencyHistogram.record (o.getNsDuration ());
+        }
+
+        if (m_stripedStatistics != null)
+        {
+            // Contention-free and allocation-free.
+            m_stripedStatistics.accumulate (o.didSucceed (), o.didExpire (), o.getNsDuration ());
+            return;
+        }
+
         // Lock-free implementation (optimistic 'locking' with retry).
         //boolean done;
         //do
@@ -340,6 +461,25 @@ public class TimedScope implements Serializable
         TimedOut// still running, may eventually succeed
     }
 
+    /**
+     * How a TimedScope accumulates its stats. Either mode yields the same immutable
+     * TimedScopeStatistics from getStatistics ().
+     */
+    public enum StatisticsMode
+    {
+        /**
+         * Replace an immutable stats instance via compare-and-set on each execution. Cheap
+         * for lightly used scopes but allocates per execution and spins under contention.
+         */
+        Immutable,
+
+        /**
+         * Accumulate into striped LongAdder-style cells. Recording neither allocates nor
+         * contends, at the cost of a larger footprint per scope. Use for hot scopes.
+         */
+        Striped
+    }
+
     public static void clearResults ()
     {
         // Concurrent map: no need for synchronized block
@@ -356,6 +496,27 @@ public class TimedScope implements Serializable
         return HcUtil.formatObjects (header, results);
     }
 
+    /**
+     * Formats the latency percentiles of those scopes that have the latency histogram
+     * enabled.
+     */
+    public static String formatLatencyResults (final List<TimedScope> results)
+    {
+        final List<String> lines = GenericFactory.newArrayList ();
+
+        for (final TimedScope ts : results)
+        {
+            final HdrHistogram h = ts.getLatencyHistogram ();
+            if (h != null)
+            {
+                lines.add (String.format ("\"%s\",%s,%s,%s,%s,%s", ts.m_name, h.getPercentile (50.0),
+                    h.getPercentile (90.0), h.getPercentile (99.0), h.getPercentile (99.9), h.getMax ()));
+            }
+        }
+
+        return HcUtil.formatObjects ("TimedScopeLatency,nsP50,nsP90,nsP99,nsP99.9,nsMax", lines);
+    }
+
     public static String getResults (final boolean excludeUnused)
     {
         // Take a copy of the data to avoid locking.
@@ -371,7 +532,7 @@ public class TimedScope implements Serializable
         // Concurrent map: no need for synchronized block
         for (final TimedScope ts : m_instances.values ())
         {
-            if (!excludeUnused || ts.m_statistics.get ().getExecutionsCount () > 0)
+            if (!excludeUnused || ts.getStatistics ().getExecutionsCount () > 0)
             {
                 results.add (new TimedScope (ts));// deep copy the data
             }
@@ -387,17 +548,44 @@ public class TimedScope implements Serializable
         return getTimedScope (HcUtil.qualifyName (usingClass, name));
     }
 
+    public static TimedScope getTimedScope (final Class<?> usingClass, final String name,
+        final StatisticsMode mode)
+    {
+        return getTimedScope (HcUtil.qualifyName (usingClass, name), mode);
+    }
+
     public static TimedScope getTimedScope (final String name)
     {
         return m_instances.computeIfAbsent (name, TimedScope::new);// key == name
     }
 
+    /**
+     * Gets or creates the named scope. The mode only applies if the scope is created by
+     * this call; an existing scope keeps the mode it was created with.
+     */
+    public static TimedScope getTimedScope (final String name, final StatisticsMode mode)
+    {
+        return m_instances.computeIfAbsent (name, key -> new TimedScope (key, mode));// key == name
+    }
+
     /** Factory method */
     public static TimedScope of (final Class<?> usingClass, final String name)
     {
         return of (HcUtil.qualifyName (usingClass, name));
     }
 
+    /**
+     * Removes the named scope from the repository so that it no longer appears in results.
+     * Used to bound the repository when scope names are generated dynamically.
+     *
+     * @return the removed scope, or null if there was none.
+     */
+    public static TimedScope removeTimedScope (final String name)
+    {
+        // Concurrent map: no need for synchronized block
+        return m_instances.remove (name);
+    }
+
     /**
      * Execute an Supplier and time it.
      *
@@ -419,10 +607,22 @@ public class TimedScope implements Serializable
         return E2.of (r, nsDuration);
     }
 
+    /** Factory method */
+    public static TimedScope of (final Class<?> usingClass, final String name, final StatisticsMode mode)
+    {
+        return of (HcUtil.qualifyName (usingClass, name), mode);
+    }
+
     /** Factory method */
     private static TimedScope of (final String name)
     {
-        final TimedScope ts = new TimedScope (name);
+        return of (name, StatisticsMode.Immutable);
+    }
+
+    /** Factory method */
+    private static TimedScope of (final String name, final StatisticsMode mode)
+    {
+        final TimedScope ts = new TimedScope (name, mode);
 
         // Concurrent map: no need for synchronized block
         m_instances.put (name, ts);
@@ -430,16 +630,35 @@ public class TimedScope implements Serializable
         return ts;
     }
 
+    /** Optional high resolution nanosecond durations */
+    private volatile ConcurrentHdrHistogram m_latencyHistogram;
+
     private final String m_name;
 
-    /** Gather stats in lock-free / immutable manner for max concurrency */
+    /** Gather stats in lock-free / immutable manner for max concurrency (Immutable mode) */
     private final AtomicReference<TimedScopeStatistics> m_statistics;
 
+    private final StatisticsMode m_statisticsMode;
+
+    /** Gather stats in striped cells for max concurrency (Striped mode) */
+    private final transient StripedTimedScopeStatistics m_stripedStatistics;
+
     private static final int COUNT_TIMER_THREADS = 4;
 
-    /** Timing supervision of execute () */
-    private static final IValue<ScheduledExecutorService> m_executor = SafeLazyValue
-        .of ( () -> Concurrency.createScheduledThreadPool (COUNT_TIMER_THREADS, "TimedScope.m_executor", false));
+    private static final long MSEC_TIMER_TICK = 10;
+
+    /**
+     * Timing supervision of execute (), which schedules and usually cancels a timeout per
+     * call, hence the timer wheel. Alerts are run on a thread pool.
+     */
+    private static final IValue<TimerWheel> m_timerWheel = SafeLazyValue.of ( () ->
+    {
+        final TimerWheel timerWheel = TimerWheel.of ("TimedScope.m_timerWheel", MSEC_TIMER_TICK,
+            Concurrency.createFixedThreadPool (COUNT_TIMER_THREADS, "TimedScope.m_executor", false));
+        HcUtil.addShutdownTask (timerWheel::close, ShutdownPriority.ThreadExecution, "TimedScope.m_timerWheel");
+
+        return timerWheel;
+    });
 
     /** Repository of all timed scopes */
     private static final ConcurrentMap<String, TimedScope> m_instances = GenericFactory.newConcurrentHashMap ();
@@ -28,8 +28,41 @@ public class TimestampLevelFormatter implements BiFunction<Level, IValue<String>
     public String apply (final Level level, final IValue<String> v)
     {
         final String levelString = Level.getString (level);
-        final String timestamp = new SimpleDateFormat ("yyyy-MM-dd HH:mm:ss").format (new Date ());
+        final String timestamp = getTimestamp (System.currentTimeMillis ());
+        final String s = v.get ();
 
-        return timestamp + " " + levelString + " " + v.get ();
+        return new StringBuilder (timestamp.length () + levelString.length () + s.length () + 2).append (timestamp)
+            .append (' ').append (levelString).append (' ').append (s).toString ();
     }
+
+    /** The timestamp only has second resolution, so reformat it only when the second changes */
+    private String getTimestamp (final long msecNow)
+    {
+        final long second = msecNow / 1000L;
+
+        Timestamp t = m_timestamp;
+        if (t == null || t.m_second != second)
+        {
+            t = new Timestamp (second, new SimpleDateFormat ("yyyy-MM-dd HH:mm:ss").format (new Date (msecNow)));
+            m_timestamp = t;
+        }
+
+        return t.m_text;
+    }
+
+    /** Immutable for concurrency reasons */
+    private static final class Timestamp
+    {
+        private Timestamp (final long second, final String text)
+        {
+            m_second = second;
+            m_text = text;
+        }
+
+        private final long m_second;
+
+        private final String m_text;
+    }
+
+    private volatile Timestamp m_timestamp;
 }
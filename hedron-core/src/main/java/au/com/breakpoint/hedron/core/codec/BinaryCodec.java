@@ -0,0 +1,305 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+
+/**
+ * Compact binary codec driven by an explicit schema of field accessors, so there is no
+ * reflection and no per-field type information on the wire. Both ends must use the same
+ * schema. Integers are zigzag varints, so small values of either sign take a byte or two;
+ * strings are a varint length followed by UTF-8. Eg:
+ *
+ * <pre>
+ * final ICodec&lt;Reading&gt; codec = BinaryCodec.builder (Reading::new)
+ *     .addLong (Reading::getTimestamp, Reading::setTimestamp)
+ *     .addString (Reading::getSensor, Reading::setSensor)
+ *     .addDouble (Reading::getValue, Reading::setValue)
+ *     .build ();
+ * </pre>
+ */
+public class BinaryCodec<T> implements ICodec<T>
+{
+    private BinaryCodec (final Builder<T> builder)
+    {
+        m_factory = builder.m_factory;
+        m_fields = GenericFactory.newArrayList (builder.m_fields);
+    }
+
+    @Override
+    public T decode (final ByteBuffer buffer)
+    {
+        final T value = m_factory.get ();
+        for (final IField<T> field : m_fields)
+        {
+            field.decode (value, buffer);
+        }
+
+        return value;
+    }
+
+    @Override
+    public void encode (final T value, final ByteBuffer buffer)
+    {
+        for (final IField<T> field : m_fields)
+        {
+            field.encode (value, buffer);
+        }
+    }
+
+    public static <T> Builder<T> builder (final Supplier<T> factory)
+    {
+        return new Builder<> (factory);
+    }
+
+    public static long getVarLong (final ByteBuffer buffer)
+    {
+        long raw = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            ThreadContext.assertFault (shift < 64, "Malformed varint");
+            b = buffer.get ();
+            raw |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+
+        // Undo the zigzag encoding.
+        return raw >>> 1 ^ -(raw & 1);
+    }
+
+    public static void putVarLong (final ByteBuffer buffer, final long value)
+    {
+        // Zigzag encoding maps small negative values to small positive ones.
+        long raw = value << 1 ^ value >> 63;
+        while ((raw & ~0x7fL) != 0)
+        {
+            buffer.put ((byte) (raw & 0x7f | 0x80));
+            raw >>>= 7;
+        }
+        buffer.put ((byte) raw);
+    }
+
+    public static class Builder<T>
+    {
+        private Builder (final Supplier<T> factory)
+        {
+            m_factory = factory;
+        }
+
+        public Builder<T> addBoolean (final Predicate<T> getter, final BiConsumer<T, Boolean> setter)
+        {
+            return add (new IField<T> ()
+            {
+                @Override
+                public void decode (final T value, final ByteBuffer buffer)
+                {
+                    setter.accept (value, buffer.get () != 0);
+                }
+
+                @Override
+                public void encode (final T value, final ByteBuffer buffer)
+                {
+                    buffer.put (getter.test (value) ? (byte) 1 : (byte) 0);
+                }
+            });
+        }
+
+        public Builder<T> addDouble (final ToDoubleFunction<T> getter, final ObjDoubleConsumer<T> setter)
+        {
+            return add (new IField<T> ()
+            {
+                @Override
+                public void decode (final T value, final ByteBuffer buffer)
+                {
+                    setter.accept (value, buffer.getDouble ());
+                }
+
+                @Override
+                public void encode (final T value, final ByteBuffer buffer)
+                {
+                    buffer.putDouble (getter.applyAsDouble (value));
+                }
+            });
+        }
+
+        public Builder<T> addInt (final ToIntFunction<T> getter, final ObjIntConsumer<T> setter)
+        {
+            return add (new IField<T> ()
+            {
+                @Override
+                public void decode (final T value, final ByteBuffer buffer)
+                {
+                    setter.accept (value, (int) getVarLong (buffer));
+                }
+
+                @Override
+                public void encode (final T value, final ByteBuffer buffer)
+                {
+                    putVarLong (buffer, getter.applyAsInt (value));
+                }
+            });
+        }
+
+        public Builder<T> addLong (final ToLongFunction<T> getter, final ObjLongConsumer<T> setter)
+        {
+            return add (new IField<T> ()
+            {
+                @Override
+                public void decode (final T value, final ByteBuffer buffer)
+                {
+                    setter.accept (value, getVarLong (buffer));
+                }
+
+                @Override
+                public void encode (final T value, final ByteBuffer buffer)
+                {
+                    putVarLong (buffer, getter.applyAsLong (value));
+                }
+            });
+        }
+
+        /**
+         * Adds a nested object, which may be null, using its own codec.
+         */
+        public <F> Builder<T> addObject (final Function<T, F> getter, final BiConsumer<T, F> setter,
+            final ICodec<F> codec)
+        {
+            return add (new IField<T> ()
+            {
+                @Override
+                public void decode (final T value, final ByteBuffer buffer)
+                {
+                    setter.accept (value, buffer.get () == 0 ? null : codec.decode (buffer));
+                }
+
+                @Override
+                public void encode (final T value, final ByteBuffer buffer)
+                {
+                    final F f = getter.apply (value);
+                    buffer.put (f == null ? (byte) 0 : (byte) 1);
+                    if (f != null)
+                    {
+                        codec.encode (f, buffer);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Adds a string field, which may be null.
+         */
+        public Builder<T> addString (final Function<T, String> getter, final BiConsumer<T, String> setter)
+        {
+            return add (new IField<T> ()
+            {
+                @Override
+                public void decode (final T value, final ByteBuffer buffer)
+                {
+                    // Length is offset by one so that zero represents null.
+                    final long encodedLength = getVarLong (buffer);
+                    if (encodedLength < 0 || encodedLength - 1 > buffer.remaining ())
+                    {
+                        // Truncated or corrupt: don't read beyond the limit. Checked first to
+                        // avoid boxing the arguments on every call.
+                        ThreadContext.assertFault (false, "Malformed string length [%s], [%s] bytes remaining",
+                            encodedLength - 1, buffer.remaining ());
+                    }
+                    final int length = (int) encodedLength - 1;
+
+                    String s = null;
+                    if (length >= 0)
+                    {
+                        if (buffer.hasArray ())
+                        {
+                            s = new String (buffer.array (), buffer.arrayOffset () + buffer.position (), length,
+                                StandardCharsets.UTF_8);
+                            buffer.position (buffer.position () + length);
+                        }
+                        else
+                        {
+                            final byte[] bytes = new byte[length];
+                            buffer.get (bytes);
+                            s = new String (bytes, StandardCharsets.UTF_8);
+                        }
+                    }
+                    setter.accept (value, s);
+                }
+
+                @Override
+                public void encode (final T value, final ByteBuffer buffer)
+                {
+                    final String s = getter.apply (value);
+                    if (s == null)
+                    {
+                        putVarLong (buffer, 0);
+                    }
+                    else
+                    {
+                        final byte[] bytes = s.getBytes (StandardCharsets.UTF_8);
+                        putVarLong (buffer, bytes.length + 1);
+                        buffer.put (bytes);
+                    }
+                }
+            });
+        }
+
+        public BinaryCodec<T> build ()
+        {
+            return new BinaryCodec<> (this);
+        }
+
+        private Builder<T> add (final IField<T> field)
+        {
+            m_fields.add (field);
+            return this;
+        }
+
+        private final Supplier<T> m_factory;
+
+        private final List<IField<T>> m_fields = GenericFactory.newArrayList ();
+    }
+
+    /** Encodes and decodes one field of the schema */
+    private interface IField<T>
+    {
+        void decode (T value, ByteBuffer buffer);
+
+        void encode (T value, ByteBuffer buffer);
+    }
+
+    private final Supplier<T> m_factory;
+
+    /** The schema, in wire order */
+    private final List<IField<T>> m_fields;
+}
@@ -0,0 +1,61 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.codec;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/** Reads from a ByteBuffer without copying it */
+class ByteBufferInputStream extends InputStream
+{
+    public ByteBufferInputStream (final ByteBuffer buffer)
+    {
+        m_buffer = buffer;
+    }
+
+    @Override
+    public int available ()
+    {
+        return m_buffer.remaining ();
+    }
+
+    @Override
+    public int read ()
+    {
+        return m_buffer.hasRemaining () ? m_buffer.get () & 0xff : -1;
+    }
+
+    @Override
+    public int read (final byte[] bytes, final int offset, final int length)
+    {
+        int count = -1;
+
+        if (length == 0)
+        {
+            count = 0;
+        }
+        else if (m_buffer.hasRemaining ())
+        {
+            count = Math.min (length, m_buffer.remaining ());
+            m_buffer.get (bytes, offset, count);
+        }
+
+        return count;
+    }
+
+    private final ByteBuffer m_buffer;
+}
@@ -0,0 +1,43 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.codec;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/** Writes into a ByteBuffer, throwing BufferOverflowException when it is full */
+class ByteBufferOutputStream extends OutputStream
+{
+    public ByteBufferOutputStream (final ByteBuffer buffer)
+    {
+        m_buffer = buffer;
+    }
+
+    @Override
+    public void write (final byte[] bytes, final int offset, final int length)
+    {
+        m_buffer.put (bytes, offset, length);
+    }
+
+    @Override
+    public void write (final int b)
+    {
+        m_buffer.put ((byte) b);
+    }
+
+    private final ByteBuffer m_buffer;
+}
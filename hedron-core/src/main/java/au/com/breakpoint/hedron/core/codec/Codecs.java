@@ -0,0 +1,80 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.codec;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+
+/**
+ * Helpers for encoding with an ICodec when the encoded size isn't known in advance.
+ */
+public final class Codecs
+{
+    private Codecs ()
+    {
+    }
+
+    /**
+     * Encodes the value into a per-thread scratch buffer, which grows as required.
+     *
+     * @return the scratch buffer in read mode, valid only until the next call on this
+     *         thread
+     */
+    public static <T> ByteBuffer encode (final ICodec<? super T> codec, final T value)
+    {
+        ByteBuffer buffer = m_scratchBuffer.get ();
+        ByteBuffer encoded = null;
+
+        while (encoded == null)
+        {
+            buffer.clear ();
+            try
+            {
+                codec.encode (value, buffer);
+                buffer.flip ();
+                encoded = buffer;
+            }
+            catch (final BufferOverflowException e)
+            {
+                ThreadContext.assertFault (buffer.capacity () < MAX_ENCODED_BYTES, "Message too large [%s bytes]",
+                    buffer.capacity ());
+
+                buffer = ByteBuffer.allocate (Math.min (buffer.capacity () * 2, MAX_ENCODED_BYTES));
+                m_scratchBuffer.set (buffer);
+            }
+        }
+
+        return encoded;
+    }
+
+    public static <T> byte[] encodeToBytes (final ICodec<? super T> codec, final T value)
+    {
+        final ByteBuffer encoded = encode (codec, value);
+        final byte[] bytes = new byte[encoded.remaining ()];
+        encoded.get (bytes);
+
+        return bytes;
+    }
+
+    public static final int MAX_ENCODED_BYTES = 16 * 1024 * 1024;
+
+    private static final int INITIAL_SCRATCH_BYTES = 8 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> m_scratchBuffer =
+        ThreadLocal.withInitial ( () -> ByteBuffer.allocate (INITIAL_SCRATCH_BYTES));
+}
@@ -0,0 +1,42 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts messages to and from bytes for the datagram and socket processors and their
+ * clients. Implementations must be thread-safe.
+ *
+ * @param <T>
+ *            message type
+ */
+public interface ICodec<T>
+{
+    /**
+     * Decodes a message from the buffer, between its position and limit.
+     */
+    T decode (ByteBuffer buffer);
+
+    /**
+     * Encodes the message into the buffer at its position.
+     *
+     * @throws java.nio.BufferOverflowException
+     *             if the buffer has insufficient room
+     */
+    void encode (T value, ByteBuffer buffer);
+}
@@ -0,0 +1,71 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.codec;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+
+/**
+ * Java serialisation, compatible with HcUtilFile.serialiseObjectAsBytes () and
+ * deserialiseBytesAsObject (). The slowest and bulkiest codec, but needs no schema.
+ */
+public class JavaSerialisationCodec<T> implements ICodec<T>
+{
+    @Override
+    public T decode (final ByteBuffer buffer)
+    {
+        T value = null;
+
+        try (final ObjectInputStream ois = new ObjectInputStream (new ByteBufferInputStream (buffer)))
+        {
+            value = HcUtil.uncheckedCast (ois.readObject ());
+        }
+        catch (final IOException | ClassNotFoundException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+
+        return value;
+    }
+
+    @Override
+    public void encode (final T value, final ByteBuffer buffer)
+    {
+        try (final ObjectOutputStream oos = new ObjectOutputStream (new ByteBufferOutputStream (buffer)))
+        {
+            oos.writeObject ((Serializable) value);
+        }
+        catch (final IOException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+    }
+
+    public static <T> JavaSerialisationCodec<T> of ()
+    {
+        return HcUtil.uncheckedCast (m_instance);
+    }
+
+    private static final JavaSerialisationCodec<?> m_instance = new JavaSerialisationCodec<> ();
+}
@@ -0,0 +1,76 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.codec;
+
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * UTF-8 JSON using Gson's streaming reader and writer directly over the buffer, without
+ * an intermediate String. Decoding reads a single JSON value, so trailing bytes such as
+ * the terminating null of DatagramClient.send (String) are ignored. It decodes and
+ * encodes the bytes with a per-thread Utf8Reader and Utf8Writer, so the only per-message
+ * allocation beyond the value is Gson's JsonReader or JsonWriter.
+ */
+public class JsonCodec<T> implements ICodec<T>
+{
+    private JsonCodec (final Type type)
+    {
+        m_type = type;
+    }
+
+    @Override
+    public T decode (final ByteBuffer buffer)
+    {
+        final JsonReader reader = new JsonReader (m_reader.get ().reset (buffer));
+
+        return m_gson.fromJson (reader, m_type);
+    }
+
+    @Override
+    public void encode (final T value, final ByteBuffer buffer)
+    {
+        final Utf8Writer out = m_writer.get ().reset (buffer);
+        m_gson.toJson (value, m_type, new JsonWriter (out));
+        out.finish ();
+    }
+
+    public static <T> JsonCodec<T> of (final Class<T> classOfT)
+    {
+        return new JsonCodec<> (classOfT);
+    }
+
+    /**
+     * @param genericType
+     *            eg <code>new TypeToken<TreeMap<String, BigInteger>> () {}.getType ()</code>
+     */
+    public static <T> JsonCodec<T> of (final Type genericType)
+    {
+        return new JsonCodec<> (genericType);
+    }
+
+    private final Gson m_gson = new Gson ();
+
+    private final Type m_type;
+
+    private static final ThreadLocal<Utf8Reader> m_reader = ThreadLocal.withInitial (Utf8Reader::new);
+
+    private static final ThreadLocal<Utf8Writer> m_writer = ThreadLocal.withInitial (Utf8Writer::new);
+}
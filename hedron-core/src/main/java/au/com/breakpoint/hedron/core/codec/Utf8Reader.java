@@ -0,0 +1,88 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.codec;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader of the UTF-8 bytes remaining in a ByteBuffer, decoded up front into a reusable
+ * char buffer. Unlike an InputStreamReader it allocates nothing per use, so one per
+ * thread can be reset for each message. Malformed input is replaced, as by
+ * InputStreamReader. Not threadsafe.
+ */
+class Utf8Reader extends Reader
+{
+    @Override
+    public void close ()
+    {
+    }
+
+    @Override
+    public int read (final char[] chars, final int offset, final int length)
+    {
+        int count = -1;
+
+        if (length == 0)
+        {
+            count = 0;
+        }
+        else if (m_chars.hasRemaining ())
+        {
+            count = Math.min (length, m_chars.remaining ());
+            m_chars.get (chars, offset, count);
+        }
+
+        return count;
+    }
+
+    /**
+     * Decodes the bytes remaining in the buffer, which are consumed, ready to be read.
+     */
+    public Utf8Reader reset (final ByteBuffer buffer)
+    {
+        // UTF-8 decodes to at most one char per byte.
+        final int maxChars = buffer.remaining ();
+        if (m_chars.capacity () < maxChars || m_chars.capacity () > MAX_RETAINED_CAPACITY)
+        {
+            // Don't hang on to the occasional huge message.
+            m_chars = CharBuffer.allocate (Math.max (maxChars, INITIAL_CAPACITY));
+        }
+
+        m_chars.clear ();
+        m_decoder.reset ();
+        m_decoder.decode (buffer, m_chars, true);
+        m_decoder.flush (m_chars);
+        m_chars.flip ();
+
+        return this;
+    }
+
+    private CharBuffer m_chars = CharBuffer.allocate (INITIAL_CAPACITY);
+
+    private final CharsetDecoder m_decoder = StandardCharsets.UTF_8.newDecoder ()
+        .onMalformedInput (CodingErrorAction.REPLACE)
+        .onUnmappableCharacter (CodingErrorAction.REPLACE);
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+}
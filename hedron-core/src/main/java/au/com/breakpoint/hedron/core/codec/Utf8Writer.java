@@ -0,0 +1,144 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.codec;
+
+import java.io.Writer;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer of UTF-8 into a ByteBuffer, through a fixed char buffer and a reusable encoder.
+ * Unlike an OutputStreamWriter it allocates nothing per use, so one per thread can be
+ * reset for each message. Unmappable chars are replaced, as by OutputStreamWriter. Throws
+ * BufferOverflowException when the ByteBuffer is full. Not threadsafe.
+ */
+class Utf8Writer extends Writer
+{
+    @Override
+    public void close ()
+    {
+    }
+
+    /**
+     * Encodes the chars written, and releases the ByteBuffer.
+     */
+    public void finish ()
+    {
+        encode (true);
+        check (m_encoder.flush (m_buffer));
+
+        m_buffer = null;
+    }
+
+    /**
+     * Encodes the chars written, except a trailing high surrogate which waits for its pair.
+     */
+    @Override
+    public void flush ()
+    {
+        encode (false);
+    }
+
+    /**
+     * Starts writing at the position of the buffer.
+     */
+    public Utf8Writer reset (final ByteBuffer buffer)
+    {
+        m_buffer = buffer;
+        m_chars.clear ();
+        m_encoder.reset ();
+
+        return this;
+    }
+
+    @Override
+    public void write (final char[] chars, final int offset, final int length)
+    {
+        int i = offset;
+        final int end = offset + length;
+        while (i < end)
+        {
+            final int count = Math.min (end - i, m_chars.remaining ());
+            m_chars.put (chars, i, count);
+            i += count;
+
+            if (!m_chars.hasRemaining ())
+            {
+                encode (false);
+            }
+        }
+    }
+
+    @Override
+    public void write (final int c)
+    {
+        m_chars.put ((char) c);
+
+        if (!m_chars.hasRemaining ())
+        {
+            encode (false);
+        }
+    }
+
+    @Override
+    public void write (final String s, final int offset, final int length)
+    {
+        int i = offset;
+        final int end = offset + length;
+        while (i < end)
+        {
+            final int count = Math.min (end - i, m_chars.remaining ());
+            m_chars.put (s, i, i + count);
+            i += count;
+
+            if (!m_chars.hasRemaining ())
+            {
+                encode (false);
+            }
+        }
+    }
+
+    private void check (final CoderResult result)
+    {
+        if (result.isOverflow ())
+        {
+            throw new BufferOverflowException ();
+        }
+    }
+
+    private void encode (final boolean endOfInput)
+    {
+        m_chars.flip ();
+        check (m_encoder.encode (m_chars, m_buffer, endOfInput));
+        m_chars.compact ();
+    }
+
+    private ByteBuffer m_buffer;
+
+    private final CharBuffer m_chars = CharBuffer.allocate (CAPACITY);
+
+    private final CharsetEncoder m_encoder = StandardCharsets.UTF_8.newEncoder ()
+        .onMalformedInput (CodingErrorAction.REPLACE)
+        .onUnmappableCharacter (CodingErrorAction.REPLACE);
+
+    private static final int CAPACITY = 1024;
+}
@@ -16,11 +16,14 @@
 //
 package au.com.breakpoint.hedron.core.concurrent;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import au.com.breakpoint.hedron.core.HcUtil;
@@ -31,6 +34,29 @@ import au.com.breakpoint.hedron.core.log.Logging;
 
 public class Concurrency
 {
+    /**
+     * A fixed thread pool with a bounded queue. When the queue is full the submitting
+     * thread runs the task itself, which throttles the submitter rather than queueing
+     * without limit.
+     *
+     * @param nrThreads
+     * @param queueCapacity
+     * @param name
+     * @param isDaemon
+     * @param addShutdownTask
+     * @return a ResourceScope<ExecutorService> that can be used in a try-with-resources
+     *         block.
+     */
+    public static ResourceScope<ExecutorService> createBoundedThreadPool (final int nrThreads,
+        final int queueCapacity, final String name, final boolean isDaemon, final boolean addShutdownTask)
+    {
+        final ExecutorService executorService = new ThreadPoolExecutor (nrThreads, nrThreads, 0L,
+            TimeUnit.MILLISECONDS, new ArrayBlockingQueue<> (queueCapacity),
+            new CustomisingThreadFactory (name, isDaemon), new ThreadPoolExecutor.CallerRunsPolicy ());
+
+        return packageExecutorService (executorService, name, addShutdownTask);
+    }
+
     /**
      * A wrapper around Executors.newCachedThreadPool () that handles auto-shutdown of the
      * associated background threads. Because the executor service is held for object
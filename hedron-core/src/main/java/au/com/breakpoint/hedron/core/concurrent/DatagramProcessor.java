@@ -20,12 +20,27 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import au.com.breakpoint.hedron.core.Counter;
+import au.com.breakpoint.hedron.core.CounterThroughput;
+import au.com.breakpoint.hedron.core.GenericFactory;
 import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.MaxCounter;
 import au.com.breakpoint.hedron.core.TimedScope;
+import au.com.breakpoint.hedron.core.TimedScope.StatisticsMode;
 import au.com.breakpoint.hedron.core.context.ExecutionScope;
 import au.com.breakpoint.hedron.core.context.IScope;
 import au.com.breakpoint.hedron.core.context.ThreadContext;
@@ -36,6 +51,12 @@ import au.com.breakpoint.hedron.core.log.Logging;
  * datagrams. Datagrams message are queued immediately to the
  * m_socketRequestHandlingExecutor thread pool, which then deserialises the incoming
  * message and despatches for handling.
+ *
+ * If ChannelOptions are set, datagrams are instead received on a DatagramChannel into a
+ * fixed pool of recycled direct buffers, and handed to the workers in batches through a
+ * bounded queue, so a burst neither generates garbage nor queues without limit. Several
+ * channels can receive on the port concurrently using SO_REUSEPORT, optionally preserving
+ * the order of datagrams from each source.
  */
 public abstract class DatagramProcessor implements IProcessor
 {
@@ -48,8 +69,12 @@ public abstract class DatagramProcessor implements IProcessor
     {
         m_name = name;
         m_port = port;
+        m_threads = threads;
 
-        m_timedScopeHandleRequest = TimedScope.getTimedScope (DatagramProcessor.class, name);
+        m_timedScopeHandleRequest = TimedScope.getTimedScope (DatagramProcessor.class, name, StatisticsMode.Striped);
+        m_countBufferPoolExhausted = Counter.of (DatagramProcessor.class, "bufferPoolExhausted." + name);
+        m_countDropped = Counter.of (DatagramProcessor.class, "dropped." + name);
+        m_countQueueDepthMax = MaxCounter.of (DatagramProcessor.class, "queueDepth." + name);
 
         // Creates a bounded queue to prevent overload.
         // NB: Don't use Concurrency.createFixedThreadPool, since it handles scheduler shutdown,
@@ -71,6 +96,283 @@ public abstract class DatagramProcessor implements IProcessor
     {
         Logging.logInfo ("%s starting execution on port %s", this, m_port);
 
+        if (m_channelOptions == null)
+        {
+            receiveFromSocket ();
+        }
+        else
+        {
+            receiveFromChannel ();
+        }
+    }
+
+    /**
+     * Selects channel mode. Must be called before processUntilShutdown ().
+     */
+    public void setChannelOptions (final ChannelOptions channelOptions)
+    {
+        m_channelOptions = channelOptions;
+    }
+
+    @Override
+    public void signalShutdown ()
+    {
+        // Initiates an orderly shutdown in which previously submitted tasks are
+        // executed, but no new tasks will be accepted. Invocation has no
+        // additional effect if already shut down.
+        m_shutdownRequested = true;
+
+        final String identifier = toString ();
+        HcUtil.startShutdownExecutorService (m_socketRequestHandlingExecutor, identifier);
+    }
+
+    @Override
+    public String toString ()
+    {
+        return String.format ("ObjectDatagramProcessor [%s]", m_name);
+    }
+
+    /**
+     * Handler for the raw bytes from the datagram.
+     *
+     * @param clientIpAddress
+     *            IP address of the datagram sender
+     * @param packet
+     *            raw bytes from the datagram
+     */
+    protected abstract void onRequest (final String clientIpAddress, final DatagramPacket packet);
+
+    /**
+     * Handler for the datagram bytes in channel mode. The buffer is recycled on return, so
+     * it mustn't be retained. Override to avoid the copy made by this default, which
+     * passes the bytes to onRequest (String, DatagramPacket).
+     *
+     * @param clientAddress
+     *            address of the datagram sender
+     * @param data
+     *            datagram bytes between position and limit
+     */
+    protected void onRequest (final InetSocketAddress clientAddress, final ByteBuffer data)
+    {
+        final byte[] bytes = new byte[data.remaining ()];
+        data.get (bytes);
+
+        final DatagramPacket packet = new DatagramPacket (bytes, bytes.length, clientAddress);
+        onRequest (clientAddress.getAddress ().getHostAddress (), packet);
+    }
+
+    /** Runs on the worker pool in channel mode, taking from one lane */
+    private void handleBatches (final BlockingQueue<Batch> lane)
+    {
+        while (!m_shutdownRequested || !lane.isEmpty ())
+        {
+            try
+            {
+                final Batch batch = lane.poll (POLL_TIMEOUT_MSEC, TimeUnit.MILLISECONDS);
+                if (batch != null)
+                {
+                    m_countQueueDepthMax.decrement ();
+                    for (int i = 0; i < batch.m_count; ++i)
+                    {
+                        handleRequest (batch.m_addresses[i], batch.m_buffers[i]);
+                    }
+                    recycle (batch);
+                }
+            }
+            catch (final InterruptedException e)
+            {
+                // Propagate exception as unchecked fault up to the fault barrier.
+                ThreadContext.throwFault (e);
+            }
+        }
+    }
+
+    /**
+     * Deferred handling of a datagram received in channel mode.
+     */
+    private void handleRequest (final InetSocketAddress clientAddress, final ByteBuffer data)
+    {
+        // Wrap in a nested scope for context id tracking.
+        try (final IScope scope = new ExecutionScope ("ObjectDatagramProcessor"))
+        {
+            m_timedScopeHandleRequest.execute ( () -> onRequest (clientAddress, data));
+        }
+        catch (final Throwable e)
+        {
+            // Fault barrier: one bad datagram mustn't stop the worker.
+            ThreadContext.logException (e);
+        }
+    }
+
+    /**
+     * Deferred handling of datagram packet.
+     *
+     * @param packet
+     *            The received datagram
+     */
+    private void handleRequest (final DatagramPacket packet)
+    {
+        m_timedScopeHandleRequest.execute ( () ->
+        {
+            final InetAddress address = packet.getAddress ();
+            final String clientIpAddress = address.getHostAddress ();
+
+            // Handle polymorphically.
+            onRequest (clientIpAddress, packet);
+            return null;
+        });
+    }
+
+    /**
+     * Hands the batch to the workers of its lane, applying the overflow policy if the lane
+     * is full.
+     */
+    private void queueBatch (final BlockingQueue<Batch> lane, final Batch batch) throws InterruptedException
+    {
+        boolean queued = lane.offer (batch);
+        if (!queued)
+        {
+            switch (m_channelOptions.m_overflowPolicy)
+            {
+                case Block:
+                {
+                    // Meanwhile the kernel buffers or drops incoming datagrams.
+                    while (!queued && !m_shutdownRequested)
+                    {
+                        queued = lane.offer (batch, POLL_TIMEOUT_MSEC, TimeUnit.MILLISECONDS);
+                    }
+                    break;
+                }
+
+                case DropOldest:
+                {
+                    final Batch oldest = lane.poll ();
+                    if (oldest != null)
+                    {
+                        m_countQueueDepthMax.decrement ();
+                        m_countDropped.add (oldest.m_count);
+                        recycle (oldest);
+                    }
+                    queued = lane.offer (batch);
+                    break;
+                }
+
+                case DropNewest:
+                default:
+                {
+                    break;
+                }
+            }
+        }
+
+        if (queued)
+        {
+            m_countQueueDepthMax.increment ();
+        }
+        else
+        {
+            m_countDropped.add (batch.m_count);
+            recycle (batch);
+        }
+    }
+
+    private void receiveFromChannel ()
+    {
+        final ChannelOptions options = m_channelOptions;
+
+        // Several receivers need SO_REUSEPORT to share the port.
+        final SocketOption<Boolean> reusePort = getReusePortOption ();
+        int receivers = options.m_receivers;
+        if (receivers > 1 && reusePort == null)
+        {
+            Logging.logWarn ("%s SO_REUSEPORT is not supported: using a single receiver", this);
+            receivers = 1;
+        }
+
+        // With per-source ordering, each worker has its own lane.
+        final int lanes = options.m_ordering == Ordering.PerSource ? m_threads : 1;
+
+        // Preallocate everything the receive loops need. A batch can be in a lane, with a
+        // worker, or being filled by a receiver.
+        final int batches = lanes * options.m_queueCapacity + m_threads + receivers * lanes;
+        m_batchPool = new ArrayBlockingQueue<> (batches);
+        for (int i = 0; i < batches; ++i)
+        {
+            m_batchPool.add (new Batch (options.m_batchSize));
+        }
+
+        m_bufferPool = new ArrayBlockingQueue<> (options.m_buffers);
+        for (int i = 0; i < options.m_buffers; ++i)
+        {
+            m_bufferPool.add (ByteBuffer.allocateDirect (options.m_maxDatagramBytes));
+        }
+
+        final List<BlockingQueue<Batch>> laneQueues = GenericFactory.newArrayList ();
+        for (int i = 0; i < lanes; ++i)
+        {
+            laneQueues.add (new ArrayBlockingQueue<> (options.m_queueCapacity));
+        }
+        m_lanes = laneQueues;
+
+        for (int i = 0; i < m_threads; ++i)
+        {
+            final BlockingQueue<Batch> lane = laneQueues.get (i % lanes);
+            m_socketRequestHandlingExecutor.execute ( () -> handleBatches (lane));
+        }
+
+        final List<ChannelReceiver> channelReceivers = GenericFactory.newArrayList ();
+        try
+        {
+            for (int i = 0; i < receivers; ++i)
+            {
+                final DatagramChannel channel = DatagramChannel.open ();
+                if (receivers > 1)
+                {
+                    channel.setOption (reusePort, true);
+                }
+                channelReceivers.add (new ChannelReceiver (i, channel));
+                channel.bind (new InetSocketAddress (m_port));
+            }
+
+            // This thread is the first receiver.
+            final List<Thread> threads = GenericFactory.newArrayList ();
+            for (int i = 1; i < receivers; ++i)
+            {
+                final ChannelReceiver receiver = channelReceivers.get (i);
+                final Thread thread =
+                    new CustomisingThreadFactory (toString () + " receiver " + i, false).newThread (receiver::receive);
+                thread.start ();
+                threads.add (thread);
+            }
+
+            channelReceivers.get (0).receive ();
+
+            for (final Thread thread : threads)
+            {
+                thread.join ();
+            }
+        }
+        catch (final IOException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+        catch (final InterruptedException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+        finally
+        {
+            for (final ChannelReceiver receiver : channelReceivers)
+            {
+                receiver.close ();
+            }
+        }
+    }
+
+    private void receiveFromSocket ()
+    {
         try (final DatagramSocket socket = new DatagramSocket (m_port))
         {
             // Make call to accept () for this ServerSocket will block for only this
@@ -124,57 +426,320 @@ public abstract class DatagramProcessor implements IProcessor
         }
     }
 
-    @Override
-    public void signalShutdown ()
+    private void recycle (final Batch batch)
     {
-        // Initiates an orderly shutdown in which previously submitted tasks are
-        // executed, but no new tasks will be accepted. Invocation has no
-        // additional effect if already shut down.
-        m_shutdownRequested = true;
+        for (int i = 0; i < batch.m_count; ++i)
+        {
+            final ByteBuffer buffer = batch.m_buffers[i];
+            buffer.clear ();
+            m_bufferPool.add (buffer);
 
-        final String identifier = toString ();
-        HcUtil.startShutdownExecutorService (m_socketRequestHandlingExecutor, identifier);
+            batch.m_addresses[i] = null;
+            batch.m_buffers[i] = null;
+        }
+        batch.m_count = 0;
+
+        m_batchPool.add (batch);
     }
 
-    @Override
-    public String toString ()
+
+    /**
+     * @return StandardSocketOptions.SO_REUSEPORT, or null before Java 9 which lacks it
+     */
+    private static SocketOption<Boolean> getReusePortOption ()
     {
-        return String.format ("ObjectDatagramProcessor [%s]", m_name);
+        SocketOption<Boolean> option = null;
+
+        try
+        {
+            option = HcUtil.uncheckedCast (StandardSocketOptions.class.getField ("SO_REUSEPORT").get (null));
+        }
+        catch (final ReflectiveOperationException e)
+        {
+            // Not supported.
+        }
+
+        return option;
     }
 
     /**
-     * Handler for the raw bytes from the datagram.
-     *
-     * @param clientIpAddress
-     *            IP address of the datagram sender
-     * @param packet
-     *            raw bytes from the datagram
+     * Channel mode settings.
      */
-    protected abstract void onRequest (final String clientIpAddress, final DatagramPacket packet);
+    public static class ChannelOptions
+    {
+        private ChannelOptions (final int maxDatagramBytes, final int buffers, final int batchSize,
+            final int queueCapacity, final OverflowPolicy overflowPolicy, final int receivers,
+            final Ordering ordering)
+        {
+            ThreadContext.assertFault (
+                maxDatagramBytes > 0 && buffers > 0 && batchSize > 0 && queueCapacity > 0 && receivers > 0,
+                "Invalid channel options [%s %s %s %s %s]", maxDatagramBytes, buffers, batchSize, queueCapacity,
+                receivers);
+
+            m_maxDatagramBytes = maxDatagramBytes;
+            m_buffers = buffers;
+            m_batchSize = batchSize;
+            m_queueCapacity = queueCapacity;
+            m_overflowPolicy = overflowPolicy;
+            m_receivers = receivers;
+            m_ordering = ordering;
+        }
+
+        /**
+         * @param maxDatagramBytes
+         *            size of each receive buffer; longer datagrams are truncated
+         * @param buffers
+         *            number of receive buffers, which bounds the datagrams received but not
+         *            yet handled
+         * @param batchSize
+         *            maximum datagrams per hand-off to a worker
+         * @param queueCapacity
+         *            maximum batches waiting for a worker
+         * @param overflowPolicy
+         *            what to do when the queue is full
+         */
+        public static ChannelOptions of (final int maxDatagramBytes, final int buffers, final int batchSize,
+            final int queueCapacity, final OverflowPolicy overflowPolicy)
+        {
+            return of (maxDatagramBytes, buffers, batchSize, queueCapacity, overflowPolicy, 1, Ordering.None);
+        }
+
+        /**
+         * As above, plus:
+         *
+         * @param receivers
+         *            number of channels receiving on the port, each with its own thread.
+         *            More than one requires SO_REUSEPORT (Java 9 or later, and OS support),
+         *            otherwise a single receiver is used.
+         * @param ordering
+         *            whether datagrams from the same source are handled in order. With
+         *            PerSource, queueCapacity applies per worker.
+         */
+        public static ChannelOptions of (final int maxDatagramBytes, final int buffers, final int batchSize,
+            final int queueCapacity, final OverflowPolicy overflowPolicy, final int receivers,
+            final Ordering ordering)
+        {
+            return new ChannelOptions (maxDatagramBytes, buffers, batchSize, queueCapacity, overflowPolicy,
+                receivers, ordering);
+        }
+
+        private final int m_batchSize;
+
+        private final int m_buffers;
+
+        private final int m_maxDatagramBytes;
+
+        private final Ordering m_ordering;
+
+        private final OverflowPolicy m_overflowPolicy;
+
+        private final int m_queueCapacity;
+
+        private final int m_receivers;
+    }
 
     /**
-     * Deferred handling of datagram packet.
-     *
-     * @param packet
-     *            The received datagram
+     * Handling order of datagrams in channel mode.
      */
-    private void handleRequest (final DatagramPacket packet)
+    public enum Ordering
     {
-        m_timedScopeHandleRequest.execute ( () ->
-        {
-            final InetAddress address = packet.getAddress ();
-            final String clientIpAddress = address.getHostAddress ();
+        /** Datagrams are handled concurrently by any worker */
+        None,
 
-            // Handle polymorphically.
-            onRequest (clientIpAddress, packet);
-            return null;
-        });
+        /**
+         * Datagrams from the same source address are handled in order of receipt, by hashing
+         * the source to a worker. With several receivers this relies on the OS sending each
+         * source to the same receiver, as Linux does for SO_REUSEPORT.
+         */
+        PerSource
     }
 
     /**
-     * Handler for incoming datagrams. Takes IP address + deserialised request object. It
-     * is called concurrently as soon as the socket receives the datagram.
+     * What the receiver does with a batch when the queue to the workers is full. Dropped
+     * datagrams are counted.
      */
+    public enum OverflowPolicy
+    {
+        /** Wait for room, leaving the kernel to buffer or drop further datagrams */
+        Block,
+
+        /** Drop the batch */
+        DropNewest,
+
+        /** Drop the oldest queued batch to make room */
+        DropOldest
+    }
+
+    /** Receive loop for one channel, filling a batch per lane */
+    private final class ChannelReceiver
+    {
+        public ChannelReceiver (final int index, final DatagramChannel channel)
+        {
+            m_channel = channel;
+            m_pending = new Batch[m_lanes.size ()];
+
+            final String name = m_name + "." + index;
+            m_countReceived = Counter.of (DatagramProcessor.class, "received." + name);
+            m_throughput = CounterThroughput.of (DatagramProcessor.class, "received." + name, 1_000);
+            m_timedScopeReceive = TimedScope.getTimedScope (DatagramProcessor.class, "receive." + name);
+        }
+
+        public void close ()
+        {
+            try
+            {
+                m_channel.close ();
+            }
+            catch (final IOException e)
+            {
+                // Fault barrier.
+                ThreadContext.logException (e);
+            }
+        }
+
+        public void receive ()
+        {
+            try (final Selector selector = Selector.open ())
+            {
+                m_channel.configureBlocking (false);
+                m_channel.register (selector, SelectionKey.OP_READ);
+
+                for (int i = 0; i < m_pending.length; ++i)
+                {
+                    m_pending[i] = m_batchPool.take ();
+                }
+
+                long nsCycleStart = 0;
+                while (!m_shutdownRequested)
+                {
+                    ByteBuffer buffer = m_bufferPool.poll ();
+                    if (buffer == null)
+                    {
+                        // Let the workers catch up, then wait for them to recycle buffers.
+                        m_countBufferPoolExhausted.increment ();
+                        queuePending ();
+                        while (buffer == null && !m_shutdownRequested)
+                        {
+                            buffer = m_bufferPool.poll (POLL_TIMEOUT_MSEC, TimeUnit.MILLISECONDS);
+                        }
+                    }
+
+                    if (buffer != null)
+                    {
+                        final InetSocketAddress address = (InetSocketAddress) m_channel.receive (buffer);
+                        if (address == null)
+                        {
+                            // Nothing waiting: hand over what has been received, then wait.
+                            m_bufferPool.add (buffer);
+                            queuePending ();
+                            if (nsCycleStart != 0)
+                            {
+                                m_timedScopeReceive.record (System.nanoTime () - nsCycleStart, true);
+                                nsCycleStart = 0;
+                            }
+
+                            selector.select (POLL_TIMEOUT_MSEC);
+                            selector.selectedKeys ().clear ();
+                        }
+                        else
+                        {
+                            if (nsCycleStart == 0)
+                            {
+                                nsCycleStart = System.nanoTime ();
+                            }
+                            m_countReceived.increment ();
+                            m_throughput.increment ();
+
+                            buffer.flip ();
+                            final int lane = m_pending.length == 1 ? 0
+                                : (address.hashCode () & Integer.MAX_VALUE) % m_pending.length;
+                            final Batch batch = m_pending[lane];
+                            batch.add (address, buffer);
+                            if (batch.m_count == batch.m_buffers.length)
+                            {
+                                queueBatch (m_lanes.get (lane), batch);
+                                m_pending[lane] = m_batchPool.take ();
+                            }
+                        }
+                    }
+                }
+
+                // Hand over the remainder for the workers to drain.
+                queuePending ();
+            }
+            catch (final IOException e)
+            {
+                // Propagate exception as unchecked fault up to the fault barrier.
+                ThreadContext.throwFault (e);
+            }
+            catch (final InterruptedException e)
+            {
+                // Propagate exception as unchecked fault up to the fault barrier.
+                ThreadContext.throwFault (e);
+            }
+        }
+
+        private void queuePending () throws InterruptedException
+        {
+            for (int i = 0; i < m_pending.length; ++i)
+            {
+                if (m_pending[i].m_count > 0)
+                {
+                    queueBatch (m_lanes.get (i), m_pending[i]);
+                    m_pending[i] = m_batchPool.take ();
+                }
+            }
+        }
+
+        private final DatagramChannel m_channel;
+
+        private final Counter m_countReceived;
+
+        /** Batch being filled for each lane */
+        private final Batch[] m_pending;
+
+        private final CounterThroughput m_throughput;
+
+        private final TimedScope m_timedScopeReceive;
+    }
+
+    /** Datagrams handed to a worker together. Recycled along with its buffers. */
+    private static class Batch
+    {
+        public Batch (final int size)
+        {
+            m_addresses = new InetSocketAddress[size];
+            m_buffers = new ByteBuffer[size];
+        }
+
+        public void add (final InetSocketAddress address, final ByteBuffer buffer)
+        {
+            m_addresses[m_count] = address;
+            m_buffers[m_count] = buffer;
+            ++m_count;
+        }
+
+        private final InetSocketAddress[] m_addresses;
+
+        private final ByteBuffer[] m_buffers;
+
+        private int m_count;
+    }
+
+    private BlockingQueue<Batch> m_batchPool;
+
+    private BlockingQueue<ByteBuffer> m_bufferPool;
+
+    private volatile ChannelOptions m_channelOptions;
+
+    private final Counter m_countBufferPoolExhausted;
+
+    private final Counter m_countDropped;
+
+    private final MaxCounter m_countQueueDepthMax;
+
+    /** Queues of batches for the workers: one shared, or one per worker for PerSource */
+    private List<BlockingQueue<Batch>> m_lanes;
 
     private final String m_name;
 
@@ -190,6 +755,8 @@ public abstract class DatagramProcessor implements IProcessor
      */
     private final ExecutorService m_socketRequestHandlingExecutor;
 
+    private final int m_threads;
+
     private final TimedScope m_timedScopeHandleRequest;
 
     private static final int DATAGRAM_BUFFER_BYTE = 65_536;
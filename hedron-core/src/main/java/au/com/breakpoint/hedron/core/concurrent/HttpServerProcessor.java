@@ -16,24 +16,46 @@
 //
 package au.com.breakpoint.hedron.core.concurrent;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
-import com.sun.net.httpserver.HttpHandler;
+import java.util.function.Function;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
+import au.com.breakpoint.hedron.core.GenericFactory;
 import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.HcUtilFile;
 import au.com.breakpoint.hedron.core.TimedScope;
 import au.com.breakpoint.hedron.core.Tuple.E2;
 import au.com.breakpoint.hedron.core.context.ExecutionScope;
 import au.com.breakpoint.hedron.core.context.ExecutionScopes;
 import au.com.breakpoint.hedron.core.context.IScope;
 import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.context.ThreadContextException;
 import au.com.breakpoint.hedron.core.log.Logging;
 
+/**
+ * Serves HTTP using the JDK HttpServer. The task handles the configured context path with
+ * string bodies; further routes can be added with byte-level Request and Response bodies,
+ * including streamed (chunked) responses. Each route has its own TimedScope.
+ *
+ * By default requests are handled on the server's dispatcher thread. HttpConfiguration
+ * can instead specify a bounded worker pool, or a virtual thread per request on Java 21
+ * and later.
+ */
 public class HttpServerProcessor implements IProcessor
 {
     public HttpServerProcessor (final Class<?> c, final BiFunction<String, String, E2<Integer, String>> task,
@@ -64,13 +86,44 @@ public class HttpServerProcessor implements IProcessor
         m_timedScopeExecute = TimedScope.getTimedScope (HttpServerProcessor.class, name);
     }
 
+    /**
+     * Adds a route, which takes precedence over the task if it has the same context path.
+     * Must be called before processUntilShutdown ().
+     *
+     * @param contextPath
+     *            eg "/orders"; matches requests whose path starts with it
+     * @param handler
+     *            yields the response; null yields 405
+     */
+    public void addRoute (final String contextPath, final Function<Request, Response> handler)
+    {
+        final TimedScope timedScope = TimedScope.getTimedScope (HttpServerProcessor.class, m_name + contextPath);
+        m_routes.put (contextPath, E2.of (handler, timedScope));
+    }
+
     @Override
     public void awaitShutdownComplete ()
     {
+        final ExecutorService executor = m_executor;
+        if (executor != null)
+        {
+            HcUtil.awaitShutdownExecutorService (executor, toString (), MSEC_SHUTDOWN, TimeUnit.MILLISECONDS);
+        }
+
         // Let m_loggingTask run time limited keep until all logged.
         Logging.logInfo ("%s shutdown complete %s", this, System.nanoTime ());
     }
 
+    /**
+     * @return the port being listened on, which is only known once processing has
+     *         started if the port was specified as 0; otherwise 0
+     */
+    public int getLocalPort ()
+    {
+        final HttpServer server = m_server;
+        return server == null ? 0 : server.getAddress ().getPort ();
+    }
+
     @Override
     public void processUntilShutdown ()
     {
@@ -102,6 +155,12 @@ public class HttpServerProcessor implements IProcessor
         m_server.stop (0);
         m_shutdownLatch.countDown ();
 
+        final ExecutorService executor = m_executor;
+        if (executor != null)
+        {
+            HcUtil.startShutdownExecutorService (executor, toString ());
+        }
+
         Logging.logInfo ("%s initiating shutdown", this);
     }
 
@@ -111,84 +170,156 @@ public class HttpServerProcessor implements IProcessor
         return String.format ("HttpServerProcessor [%s]", m_name);
     }
 
-    private HttpServer startHttpServer (final HttpConfiguration config)
+    private ExecutorService createExecutor (final HttpConfiguration config)
     {
-        HttpServer server = null;
-        try
+        ExecutorService executor = null;
+
+        if (config.m_virtualThreads)
         {
-            server = HttpServer.create (new InetSocketAddress (config.m_port), 0);
+            try
+            {
+                executor = HcUtil.uncheckedCast (
+                    Executors.class.getMethod ("newVirtualThreadPerTaskExecutor").invoke (null));
+            }
+            catch (final ReflectiveOperationException e)
+            {
+                Logging.logWarn ("%s virtual threads are not supported", this);
+            }
         }
-        catch (final IOException e)
+
+        if (executor == null && config.m_executorThreads > 0)
         {
-            // Propagate exception as unchecked fault up to the fault barrier.
-            ThreadContext.throwFault (e);
+            executor = Concurrency.createBoundedThreadPool (config.m_executorThreads, config.m_executorQueueCapacity,
+                toString (), false, false).get ();
+        }
+
+        return executor;
+    }
+
+    /** Adapts the task to a route */
+    private Response executeTask (final Request request)
+    {
+        final BiFunction<String, String, E2<Integer, String>> task = m_task;
+        final E2<Integer, String> resp = task != null ? task.apply (request.getMethod (), request.getBodyString ())
+            : null;
+
+        return resp != null ? Response.of (resp.getE0 (), resp.getE1 ()) : null;
+    }
+
+    private void handle (final HttpExchange he, final Function<Request, Response> handler,
+        final TimedScope timedScope)
+    {
+        // Wrap in a nested scope for context id tracking.
+        try (final IScope scope = new ExecutionScope ("HttpServerProcessor"))
+        {
+            timedScope.execute ( () ->
+            {
+                final Response response = handler.apply (new Request (he));
+                sendResponse (he, response != null ? response : UNIMPLEMENTED);
+            });
+        }
+        catch (final ThreadContextException e)
+        {
+            // Already logged. Tell the client if the response hasn't been started.
+            if (he.getResponseCode () == -1)
+            {
+                sendResponse (he, INTERNAL_ERROR);
+            }
         }
+        finally
+        {
+            he.close ();
+        }
+    }
 
-        final HttpHandler httpHandler = he ->
+    private void sendResponse (final HttpExchange he, final Response response)
+    {
+        try
         {
-            // Wrap in a nested scope for context id tracking.
-            try (final IScope scope = new ExecutionScope ("HttpServerProcessor"))
+            final Headers headers = he.getResponseHeaders ();
+            for (final E2<String, String> header : response.m_headers)
             {
-                final String method = he.getRequestMethod ();
+                headers.add (header.getE0 (), header.getE1 ());
+            }
 
-                String data = null;
-                try (final InputStreamReader isr = new InputStreamReader (he.getRequestBody (), "utf-8");
-                    final BufferedReader br = new BufferedReader (isr))
+            if (response.m_bodyWriter != null)
+            {
+                // Zero length means chunked.
+                he.sendResponseHeaders (response.m_status, 0);
+                try (final OutputStream os = he.getResponseBody ())
                 {
-                    final StringBuilder sb = new StringBuilder ();
+                    response.m_bodyWriter.write (os);
+                }
+            }
+            else
+            {
+                final ByteBuffer body = response.m_body.duplicate ();
+                final int length = body.remaining ();
 
-                    String line;
-                    boolean first = true;
-                    while ((line = br.readLine ()) != null)
+                // -1 means no body.
+                he.sendResponseHeaders (response.m_status, length == 0 ? -1 : length);
+                if (length > 0)
+                {
+                    try (final OutputStream os = he.getResponseBody ())
                     {
-                        if (first)
+                        if (body.hasArray ())
                         {
-                            first = false;
+                            os.write (body.array (), body.arrayOffset () + body.position (), length);
                         }
                         else
                         {
-                            sb.append ("\r\n");
+                            Channels.newChannel (os).write (body);
                         }
-
-                        sb.append (line);
                     }
-
-                    data = sb.toString ();
-
-                }
-                catch (final IOException e)
-                {
-                    ThreadContext.throwFault (e);
                 }
+            }
+        }
+        catch (final IOException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+    }
 
-                final String finalData = data;
-                final E2<Integer, String> respDetails = m_timedScopeExecute.execute ( () ->
-                {
-                    final E2<Integer, String> resp = m_task != null ? m_task.apply (method, finalData) : UNIMPLEMENTED;
+    private HttpServer startHttpServer (final HttpConfiguration config)
+    {
+        // The JDK reads these once, when the first server is created.
+        if (config.m_keepAliveIdleSeconds > 0)
+        {
+            System.setProperty ("sun.net.httpserver.idleInterval", String.valueOf (config.m_keepAliveIdleSeconds));
+        }
+        if (config.m_keepAliveMaxIdleConnections > 0)
+        {
+            System.setProperty ("sun.net.httpserver.maxIdleConnections",
+                String.valueOf (config.m_keepAliveMaxIdleConnections));
+        }
 
-                    return resp != null ? resp : UNIMPLEMENTED;
-                });
+        HttpServer server = null;
+        try
+        {
+            server = HttpServer.create (new InetSocketAddress (config.m_port), config.m_backlog);
+        }
+        catch (final IOException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
 
-                final int code = respDetails.getE0 ();
+        if (!m_routes.containsKey (config.m_contextPath))
+        {
+            server.createContext (config.m_contextPath, he -> handle (he, this::executeTask, m_timedScopeExecute));
+        }
 
-                final String response = respDetails.getE1 ();
-                try
-                {
-                    he.sendResponseHeaders (code, response.length ());
-                    try (final OutputStream os = he.getResponseBody ())
-                    {
-                        os.write (response.getBytes ());
-                    }
-                }
-                catch (final IOException e)
-                {
-                    ThreadContext.throwFault (e);
-                }
-            }
-        };
-        server.createContext (config.m_contextPath, httpHandler);
+        for (final Map.Entry<String, E2<Function<Request, Response>, TimedScope>> e : m_routes.entrySet ())
+        {
+            final Function<Request, Response> handler = e.getValue ().getE0 ();
+            final TimedScope timedScope = e.getValue ().getE1 ();
+            server.createContext (e.getKey (), he -> handle (he, handler, timedScope));
+        }
 
-        server.setExecutor (null);// creates a default executor
+        // Null uses the server's dispatcher thread.
+        m_executor = createExecutor (config);
+        server.setExecutor (m_executor);
         server.start ();
 
         return server;
@@ -212,9 +343,201 @@ public class HttpServerProcessor implements IProcessor
             return m_port;
         }
 
+        /**
+         * @param backlog
+         *            maximum queued incoming connections; 0 for the system default
+         */
+        public HttpConfiguration setBacklog (final int backlog)
+        {
+            m_backlog = backlog;
+            return this;
+        }
+
+        /**
+         * Handles requests on a pool of threads rather than the dispatcher thread. When the
+         * queue is full the dispatcher handles the request itself, which stops it accepting
+         * further requests until it is done.
+         */
+        public HttpConfiguration setExecutor (final int threads, final int queueCapacity)
+        {
+            ThreadContext.assertFault (threads > 0 && queueCapacity > 0, "Invalid executor [%s %s]", threads,
+                queueCapacity);
+
+            m_executorThreads = threads;
+            m_executorQueueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Tunes persistent connections. These are JVM-wide settings that the JDK reads when
+         * the first server is created.
+         *
+         * @param idleSeconds
+         *            time an idle connection is kept open
+         * @param maxIdleConnections
+         *            maximum idle connections kept open
+         */
+        public HttpConfiguration setKeepAlive (final long idleSeconds, final int maxIdleConnections)
+        {
+            m_keepAliveIdleSeconds = idleSeconds;
+            m_keepAliveMaxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        /**
+         * Handles each request on its own virtual thread on Java 21 and later, falling back
+         * to the executor (if any) otherwise.
+         */
+        public HttpConfiguration setVirtualThreads (final boolean virtualThreads)
+        {
+            m_virtualThreads = virtualThreads;
+            return this;
+        }
+
+        int m_backlog;
+
         final String m_contextPath;
 
+        int m_executorQueueCapacity;
+
+        int m_executorThreads;
+
+        long m_keepAliveIdleSeconds;
+
+        int m_keepAliveMaxIdleConnections;
+
         final int m_port;
+
+        boolean m_virtualThreads;
+    }
+
+    /** Writes a streamed response body */
+    @FunctionalInterface
+    public interface IBodyWriter
+    {
+        void write (OutputStream os) throws IOException;
+    }
+
+    /** An incoming request. The body can be read once, either as a stream or in full. */
+    public static class Request
+    {
+        private Request (final HttpExchange he)
+        {
+            m_exchange = he;
+        }
+
+        /**
+         * @return the whole body, read on first call
+         */
+        public ByteBuffer getBody ()
+        {
+            if (m_body == null)
+            {
+                m_body = HcUtilFile.readStreamBytes (m_exchange.getRequestBody ());
+            }
+
+            return ByteBuffer.wrap (m_body).asReadOnlyBuffer ();
+        }
+
+        public InputStream getBodyStream ()
+        {
+            return m_exchange.getRequestBody ();
+        }
+
+        public String getBodyString ()
+        {
+            final ByteBuffer body = getBody ();
+            return StandardCharsets.UTF_8.decode (body).toString ();
+        }
+
+        /**
+         * @return the first value of the header, or null
+         */
+        public String getHeader (final String name)
+        {
+            return m_exchange.getRequestHeaders ().getFirst (name);
+        }
+
+        public Map<String, List<String>> getHeaders ()
+        {
+            return m_exchange.getRequestHeaders ();
+        }
+
+        public String getMethod ()
+        {
+            return m_exchange.getRequestMethod ();
+        }
+
+        public InetSocketAddress getRemoteAddress ()
+        {
+            return m_exchange.getRemoteAddress ();
+        }
+
+        public URI getUri ()
+        {
+            return m_exchange.getRequestURI ();
+        }
+
+        private byte[] m_body;
+
+        private final HttpExchange m_exchange;
+    }
+
+    /** An outgoing response, either with a body in full or streamed */
+    public static class Response
+    {
+        private Response (final int status, final ByteBuffer body, final IBodyWriter bodyWriter)
+        {
+            m_status = status;
+            m_body = body;
+            m_bodyWriter = bodyWriter;
+        }
+
+        public Response header (final String name, final String value)
+        {
+            m_headers.add (E2.of (name, value));
+            return this;
+        }
+
+        public static Response of (final int status, final byte[] body)
+        {
+            return of (status, ByteBuffer.wrap (body));
+        }
+
+        /**
+         * @param body
+         *            between position and limit; not modified
+         */
+        public static Response of (final int status, final ByteBuffer body)
+        {
+            return new Response (status, body, null);
+        }
+
+        /**
+         * @param body
+         *            encoded as UTF-8
+         */
+        public static Response of (final int status, final String body)
+        {
+            return of (status, body.getBytes (StandardCharsets.UTF_8));
+        }
+
+        /**
+         * A response body written by the writer as it is generated, using chunked transfer
+         * encoding.
+         */
+        public static Response streaming (final int status, final IBodyWriter bodyWriter)
+        {
+            return new Response (status, null, bodyWriter);
+        }
+
+        private final ByteBuffer m_body;
+
+        private final IBodyWriter m_bodyWriter;
+
+        private final List<E2<String, String>> m_headers = GenericFactory.newArrayList ();
+
+        private final int m_status;
     }
 
     /** A standalone test program only */
@@ -251,8 +574,14 @@ public class HttpServerProcessor implements IProcessor
 
     private final HttpConfiguration m_config;
 
+    private volatile ExecutorService m_executor;
+
     private final String m_name;
 
+    /** Route context path to (handler, statistics) */
+    private final Map<String, E2<Function<Request, Response>, TimedScope>> m_routes =
+        GenericFactory.newLinkedHashMap ();
+
     private volatile HttpServer m_server;
 
     /** Used to coordinate shutdown */
@@ -262,5 +591,9 @@ public class HttpServerProcessor implements IProcessor
 
     private final TimedScope m_timedScopeExecute;
 
-    private static final E2<Integer, String> UNIMPLEMENTED = E2.of (405, "Service not implemented");
+    private static final Response INTERNAL_ERROR = Response.of (500, "Internal server error");
+
+    private static final long MSEC_SHUTDOWN = 5_000;
+
+    private static final Response UNIMPLEMENTED = Response.of (405, "Service not implemented");
 }
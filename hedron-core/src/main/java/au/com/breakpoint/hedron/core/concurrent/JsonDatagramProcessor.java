@@ -16,58 +16,60 @@
 //
 package au.com.breakpoint.hedron.core.concurrent;
 
-import java.io.UnsupportedEncodingException;
 import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.function.Consumer;
-import au.com.breakpoint.hedron.core.JsonUtil;
 import au.com.breakpoint.hedron.core.Tuple.E2;
-import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.codec.ICodec;
+import au.com.breakpoint.hedron.core.codec.JsonCodec;
 
 /**
- * DatagramProcessor which deserialises the incoming message as a TRequest object and
- * despatches for handling.
+ * DatagramProcessor which deserialises the incoming JSON message as a TRequest object and
+ * despatches for handling. The JSON is read straight from the datagram bytes by
+ * JsonCodec unless another codec is specified.
  */
 public class JsonDatagramProcessor<TRequest> extends DatagramProcessor
 {
     public JsonDatagramProcessor (final Class<?> c, final int port, final int threads,
         final Class<TRequest> classOfTRequest)
+    {
+        this (c, port, threads, JsonCodec.of (classOfTRequest));
+    }
+
+    public JsonDatagramProcessor (final Class<?> c, final int port, final int threads,
+        final ICodec<TRequest> codec)
     {
         super (c, port, threads);
 
-        m_classOfTRequest = classOfTRequest;
+        m_codec = codec;
     }
 
     public JsonDatagramProcessor (final String name, final int port, final int threads,
         final Class<TRequest> classOfTRequest)
+    {
+        this (name, port, threads, JsonCodec.of (classOfTRequest));
+    }
+
+    public JsonDatagramProcessor (final String name, final int port, final int threads,
+        final ICodec<TRequest> codec)
     {
         super (name, port, threads);
 
-        m_classOfTRequest = classOfTRequest;
+        m_codec = codec;
     }
 
     @Override
-    protected void onRequest (final String clientIpAddress, final DatagramPacket packet)
+    protected void onRequest (final InetSocketAddress clientAddress, final ByteBuffer data)
     {
-        final byte[] data = packet.getData ();
-        final int length = packet.getLength ();
-
-        // The datagram bytes are raw json string.
-        String jsonString = null;
-        try
-        {
-            jsonString = new String (data, 0, length, "UTF-8");
-        }
-        catch (final UnsupportedEncodingException e)
-        {
-            // Propagate exception as unchecked fault up to the fault barrier.
-            ThreadContext.throwFault (e);
-        }
-
-        // Unmarshall back to the expected object type.
-        final TRequest r = JsonUtil.fromJson (jsonString, m_classOfTRequest);
+        // Decode straight from the receive buffer.
+        handleRequest (clientAddress.getAddress ().getHostAddress (), data);
+    }
 
-        // Pass to the handler.
-        m_messageHandler.accept (E2.of (clientIpAddress, r));
+    @Override
+    protected void onRequest (final String clientIpAddress, final DatagramPacket packet)
+    {
+        handleRequest (clientIpAddress, ByteBuffer.wrap (packet.getData (), packet.getOffset (), packet.getLength ()));
     }
 
     protected void setMessageHandler (final Consumer<E2<String, TRequest>> messageHandler)
@@ -75,8 +77,17 @@ public class JsonDatagramProcessor<TRequest> extends DatagramProcessor
         m_messageHandler = messageHandler;
     }
 
-    /** Holds the class details of the request for Gson unmarshalling */
-    private final Class<TRequest> m_classOfTRequest;
+    private void handleRequest (final String clientIpAddress, final ByteBuffer data)
+    {
+        // The datagram bytes are raw json. Unmarshall back to the expected object type.
+        final TRequest r = m_codec.decode (data);
+
+        // Pass to the handler.
+        m_messageHandler.accept (E2.of (clientIpAddress, r));
+    }
+
+    /** Decodes the request, by default using Gson */
+    private final ICodec<TRequest> m_codec;
 
     /** Handler for incoming datagrams. Takes IP address + deserialised request object */
     private Consumer<E2<String, TRequest>> m_messageHandler;
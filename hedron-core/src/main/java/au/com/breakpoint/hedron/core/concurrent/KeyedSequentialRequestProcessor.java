@@ -0,0 +1,277 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import au.com.breakpoint.hedron.core.Counter;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.MaxCounter;
+import au.com.breakpoint.hedron.core.context.ExecutionScopes;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.log.Logging;
+
+/**
+ * Processor that handles requests sequentially per key: requests are hashed on their key
+ * onto a number of lanes, each a queue with its own thread. Requests with the same key
+ * are handled in the order submitted, while requests with different keys can be handled
+ * concurrently. As per SequentialRequestProcessor, on shutdown each lane keeps handling
+ * its queued requests for up to shutdownClearMsec.
+ *
+ * Each lane reports its queue depth (MaxCounter) and requests handled and failed (Counter).
+ * getLaneCounts () and getSkew () gather the lanes' counts on demand, which shows any skew
+ * in the distribution of keys. A request that fails is logged and counted, and its lane
+ * carries on with the next request.
+ *
+ * @param <T>
+ *            Type of request handed
+ */
+public class KeyedSequentialRequestProcessor<T> implements IProcessor
+{
+    public KeyedSequentialRequestProcessor (final String name, final int lanes, final int laneCapacity,
+        final Function<? super T, ?> keyFunction, final Consumer<? super T> task, final long shutdownClearMsec)
+    {
+        ThreadContext.assertFault (lanes > 0 && laneCapacity > 0, "Invalid lanes [%s %s]", lanes, laneCapacity);
+
+        m_name = name;
+        m_keyFunction = keyFunction;
+        m_task = task;
+        m_shutdownClearMsec = shutdownClearMsec;
+        m_shutdownLatch = new CountDownLatch (lanes);
+
+        m_lanes = GenericFactory.newArrayList ();
+        for (int i = 0; i < lanes; ++i)
+        {
+            m_lanes.add (new Lane (name, i, laneCapacity));
+        }
+    }
+
+    @Override
+    public void awaitShutdownComplete ()
+    {
+        try
+        {
+            m_shutdownLatch.await (15, TimeUnit.SECONDS);
+        }
+        catch (final InterruptedException e)
+        {
+            // Shutting down... don't care.
+        }
+
+        Logging.logInfo ("%s shutdown complete %s", this, System.nanoTime ());
+    }
+
+    /**
+     * @return number of requests handled by each lane
+     */
+    public long[] getLaneCounts ()
+    {
+        return m_lanes.stream ().mapToLong (l -> l.m_countHandled.get ()).toArray ();
+    }
+
+    /**
+     * @return number of requests waiting in each lane
+     */
+    public int[] getLaneDepths ()
+    {
+        return m_lanes.stream ().mapToInt (l -> l.m_queue.size ()).toArray ();
+    }
+
+    /**
+     * @return requests handled by the busiest lane relative to the average lane: 1.0 is an
+     *         even spread; 0.0 if none handled
+     */
+    public double getSkew ()
+    {
+        final long[] counts = getLaneCounts ();
+
+        long total = 0;
+        long max = 0;
+        for (final long count : counts)
+        {
+            total += count;
+            max = Math.max (max, count);
+        }
+
+        return total == 0 ? 0.0 : (double) max * counts.length / total;
+    }
+
+    /**
+     * Runs each lane on its own thread, and blocks until they have all shut down.
+     */
+    @Override
+    public void processUntilShutdown ()
+    {
+        ThreadContext.assertFaultNotNull (m_task);
+        Logging.logInfo ("%s starting execution with %s lanes", this, m_lanes.size ());
+
+        final CustomisingThreadFactory tf = new CustomisingThreadFactory (m_name, true);
+        for (final Lane lane : m_lanes)
+        {
+            tf.newThread ( () -> runLane (lane)).start ();
+        }
+
+        try
+        {
+            m_shutdownLatch.await ();
+        }
+        catch (final InterruptedException e)
+        {
+            // Shutting down... don't care.
+        }
+    }
+
+    @Override
+    public void signalShutdown ()
+    {
+        final long now = System.nanoTime ();
+        m_nsRunUntil = now + HcUtil.msecToNs (m_shutdownClearMsec);
+
+        Logging.logInfo ("%s initiating shutdown (%s->%s)", this, now, m_nsRunUntil);
+    }
+
+    /**
+     * Queues a request on the lane for its key, waiting if the lane is full.
+     */
+    public void submit (final T req)
+    {
+        final Lane lane = m_lanes.get (getLaneIndex (m_keyFunction.apply (req)));
+
+        try
+        {
+            lane.m_queue.put (req);
+            lane.m_queueDepth.increment ();
+        }
+        catch (final InterruptedException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+    }
+
+    @Override
+    public String toString ()
+    {
+        return String.format ("KeyedSequentialRequestProcessor [%s]", m_name);
+    }
+
+    private int getLaneIndex (final Object key)
+    {
+        // Spread the high bits, as weak hash codes often differ only in them.
+        final int h = key == null ? 0 : key.hashCode ();
+        return Math.floorMod (h ^ h >>> 16, m_lanes.size ());
+    }
+
+    private void runLane (final Lane lane)
+    {
+        final List<T> batch = GenericFactory.newArrayList ();
+
+        try
+        {
+            while (shouldContinue (lane))
+            {
+                try
+                {
+                    // Wait for a request, then take any others already waiting.
+                    final T first = lane.m_queue.poll (POLL_TIMEOUT_MSEC, TimeUnit.MILLISECONDS);
+                    if (first != null)
+                    {
+                        batch.add (first);
+                        lane.m_queue.drainTo (batch, MAX_BATCH_SIZE - 1);
+
+                        for (final T req : batch)
+                        {
+                            lane.m_queueDepth.decrement ();
+
+                            // A failing request is logged and counted, and the lane carries on.
+                            if (ExecutionScopes.executeFaultBarrier ( () -> m_task.accept (req)))
+                            {
+                                lane.m_countHandled.increment ();
+                            }
+                            else
+                            {
+                                lane.m_countFailed.increment ();
+                            }
+                        }
+                        batch.clear ();
+                    }
+                }
+                catch (final InterruptedException e)
+                {
+                    // shutting down... operation abandoned
+                }
+            }
+        }
+        finally
+        {
+            m_shutdownLatch.countDown ();
+        }
+    }
+
+    private boolean shouldContinue (final Lane lane)
+    {
+        // Keep running until the queue is empty or a time limit is reached.
+        return m_nsRunUntil == -1L || HcUtil.nsIsBefore (System.nanoTime (), m_nsRunUntil) && lane.m_queue.size () > 0;
+    }
+
+    private final class Lane
+    {
+        private Lane (final String name, final int index, final int capacity)
+        {
+            m_queue = new LinkedBlockingQueue<> (capacity);
+            m_queueDepth = MaxCounter.of (KeyedSequentialRequestProcessor.class, "queueDepth." + name + "." + index);
+            m_countHandled = Counter.of (KeyedSequentialRequestProcessor.class, "handled." + name + "." + index);
+            m_countFailed = Counter.of (KeyedSequentialRequestProcessor.class, "failed." + name + "." + index);
+        }
+
+        private final Counter m_countFailed;
+
+        private final Counter m_countHandled;
+
+        private final BlockingQueue<T> m_queue;
+
+        private final MaxCounter m_queueDepth;
+    }
+
+    private final Function<? super T, ?> m_keyFunction;
+
+    private final List<Lane> m_lanes;
+
+    private final String m_name;
+
+    /**
+     * Used to coordinate shutdown. Keep runnings until the queue is empty or a time limit
+     * is reached.
+     */
+    private volatile long m_nsRunUntil = -1L;
+
+    private final long m_shutdownClearMsec;
+
+    private final CountDownLatch m_shutdownLatch;
+
+    private final Consumer<? super T> m_task;
+
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private static final int POLL_TIMEOUT_MSEC = 1_000;
+}
@@ -0,0 +1,150 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import java.nio.ByteBuffer;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+
+/**
+ * Length-prefixed message framing used over persistent socket connections, allowing many
+ * requests to be in flight on one connection. Each frame is:
+ *
+ * <pre>
+ *      int  length of the rest of the frame
+ *      long correlation id, chosen by the client and echoed in the response
+ *      byte status, STATUS_xxx
+ *      payload bytes
+ * </pre>
+ */
+public final class MessageFrames
+{
+    private MessageFrames ()
+    {
+    }
+
+    /**
+     * Decodes a frame from the buffer, which is in read mode.
+     *
+     * @return the frame, with the buffer positioned after it, or null if the buffer doesn't
+     *         yet hold a complete frame, in which case the buffer position is unchanged
+     */
+    public static Frame decode (final ByteBuffer buffer)
+    {
+        Frame frame = null;
+
+        final int frameBytes = getFrameBytes (buffer);
+        if (frameBytes > 0 && buffer.remaining () >= frameBytes)
+        {
+            buffer.getInt ();
+            final long correlationId = buffer.getLong ();
+            final byte status = buffer.get ();
+            final byte[] payload = new byte[frameBytes - HEADER_BYTES];
+            buffer.get (payload);
+
+            frame = new Frame (correlationId, status, payload);
+        }
+
+        return frame;
+    }
+
+    /**
+     * Encodes a frame without payload.
+     */
+    public static ByteBuffer encode (final long correlationId, final byte status)
+    {
+        return encode (correlationId, status, (ByteBuffer) null);
+    }
+
+    public static ByteBuffer encode (final long correlationId, final byte status, final byte[] payload)
+    {
+        return encode (correlationId, status, payload == null ? null : ByteBuffer.wrap (payload));
+    }
+
+    /**
+     * @param payload
+     *            in read mode, eg from Codecs.encode (); may be null
+     */
+    public static ByteBuffer encode (final long correlationId, final byte status, final ByteBuffer payload)
+    {
+        final int payloadBytes = payload == null ? 0 : payload.remaining ();
+        ThreadContext.assertFault (HEADER_BYTES + payloadBytes <= MAX_FRAME_BYTES, "Message too large [%s bytes]",
+            payloadBytes);
+
+        final ByteBuffer buffer = ByteBuffer.allocate (HEADER_BYTES + payloadBytes);
+        buffer.putInt (HEADER_BYTES - LENGTH_BYTES + payloadBytes);
+        buffer.putLong (correlationId);
+        buffer.put (status);
+        if (payloadBytes > 0)
+        {
+            buffer.put (payload);
+        }
+        buffer.flip ();
+
+        return buffer;
+    }
+
+    /**
+     * @return the size of the frame at the buffer position including its length prefix, or
+     *         0 if the length prefix hasn't been received yet
+     */
+    public static int getFrameBytes (final ByteBuffer buffer)
+    {
+        int frameBytes = 0;
+
+        if (buffer.remaining () >= LENGTH_BYTES)
+        {
+            final int length = buffer.getInt (buffer.position ());
+            ThreadContext.assertFault (length >= HEADER_BYTES - LENGTH_BYTES && length <= MAX_FRAME_BYTES,
+                "Invalid message frame length [%s]", length);
+
+            frameBytes = LENGTH_BYTES + length;
+        }
+
+        return frameBytes;
+    }
+
+    /** Immutable decoded frame */
+    public static class Frame
+    {
+        public Frame (final long correlationId, final byte status, final byte[] payload)
+        {
+            m_correlationId = correlationId;
+            m_status = status;
+            m_payload = payload;
+        }
+
+        public final long m_correlationId;
+
+        public final byte[] m_payload;
+
+        public final byte m_status;
+    }
+
+    public static final int HEADER_BYTES = 4 + 8 + 1;
+
+    public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    /** The handler failed; the payload is the UTF-8 error description */
+    public static final byte STATUS_ERROR = 2;
+
+    /** The handler returned null; there is no payload */
+    public static final byte STATUS_NO_RESPONSE = 1;
+
+    public static final byte STATUS_OK = 0;
+
+    private static final int LENGTH_BYTES = 4;
+}
@@ -0,0 +1,479 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.MaxCounter;
+import au.com.breakpoint.hedron.core.TimedScope;
+import au.com.breakpoint.hedron.core.Tuple.E2;
+import au.com.breakpoint.hedron.core.codec.Codecs;
+import au.com.breakpoint.hedron.core.codec.ICodec;
+import au.com.breakpoint.hedron.core.codec.JavaSerialisationCodec;
+import au.com.breakpoint.hedron.core.concurrent.MessageFrames.Frame;
+import au.com.breakpoint.hedron.core.context.ExecutionScope;
+import au.com.breakpoint.hedron.core.context.IScope;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.log.Logging;
+
+/**
+ * NIO counterpart of ObjectSocketProcessor. Client connections are kept open and carry
+ * length-prefixed frames (see MessageFrames), so a client can have many requests in
+ * flight on one connection, matching responses by correlation id. A single selector
+ * thread performs all the socket I/O; each request is decoded and passed to the message
+ * handler on the worker pool, so responses can be returned out of order. Requests and
+ * responses use Java serialisation unless other codecs are specified.
+ */
+public class NioObjectSocketProcessor<TRequest, TResponse> implements IProcessor
+{
+    public NioObjectSocketProcessor (final Class<?> c, final int port, final int threads)
+    {
+        this (c.getSimpleName (), port, threads);
+    }
+
+    public NioObjectSocketProcessor (final Class<?> c, final int port, final int threads,
+        final ICodec<TRequest> requestCodec, final ICodec<TResponse> responseCodec)
+    {
+        this (c.getSimpleName (), port, threads, requestCodec, responseCodec);
+    }
+
+    public NioObjectSocketProcessor (final String name, final int port, final int threads)
+    {
+        this (name, port, threads, JavaSerialisationCodec.of (), JavaSerialisationCodec.of ());
+    }
+
+    public NioObjectSocketProcessor (final String name, final int port, final int threads,
+        final ICodec<TRequest> requestCodec, final ICodec<TResponse> responseCodec)
+    {
+        m_name = name;
+        m_port = port;
+        m_requestCodec = requestCodec;
+        m_responseCodec = responseCodec;
+
+        m_timedScopeHandleRequest = TimedScope.getTimedScope (NioObjectSocketProcessor.class, name);
+        m_countConcurrentConnectionsMax =
+            MaxCounter.of (NioObjectSocketProcessor.class, "concurrentConnections." + name);
+
+        // NB: Don't use Concurrency.createFixedThreadPool, since it handles scheduler shutdown,
+        // whereas we want to handle shutdown within this processor.
+        final String identifier = toString ();
+        m_requestHandlingExecutor = Concurrency.createFixedThreadPool (threads, identifier, false, false).get ();
+
+        Selector selector = null;
+        try
+        {
+            selector = Selector.open ();
+        }
+        catch (final IOException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+        m_selector = selector;
+    }
+
+    @Override
+    public void awaitShutdownComplete ()
+    {
+        final String identifier = toString ();
+        HcUtil.awaitShutdownExecutorService (m_requestHandlingExecutor, identifier, MSEC_SHUTDOWN,
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the port being listened on, which is only known once processing has
+     *         started if the port was specified as 0; otherwise 0
+     */
+    public int getLocalPort ()
+    {
+        return m_localPort;
+    }
+
+    @Override
+    public void processUntilShutdown ()
+    {
+        Logging.logInfo ("%s starting execution on port %s", this, m_port);
+
+        try (final Selector selector = m_selector;
+            final ServerSocketChannel serverChannel = ServerSocketChannel.open ())
+        {
+            serverChannel.bind (new InetSocketAddress (m_port));
+            serverChannel.configureBlocking (false);
+            serverChannel.register (selector, SelectionKey.OP_ACCEPT);
+            m_localPort = serverChannel.socket ().getLocalPort ();
+
+            while (!m_shutdownRequested)
+            {
+                selector.select (POLL_TIMEOUT_MSEC);
+
+                // Responses queued by workers since the last select.
+                Connection connection = m_connectionsToWrite.poll ();
+                while (connection != null)
+                {
+                    connection.enableWrite ();
+                    connection = m_connectionsToWrite.poll ();
+                }
+
+                final Iterator<SelectionKey> keys = selector.selectedKeys ().iterator ();
+                while (keys.hasNext ())
+                {
+                    final SelectionKey key = keys.next ();
+                    keys.remove ();
+
+                    if (key.isValid () && key.isAcceptable ())
+                    {
+                        accept (serverChannel);
+                    }
+                    else
+                    {
+                        final Connection c = getConnection (key);
+                        if (key.isValid () && key.isReadable ())
+                        {
+                            c.onReadable ();
+                        }
+                        if (key.isValid () && key.isWritable ())
+                        {
+                            c.onWritable ();
+                        }
+                    }
+                }
+            }
+
+            // Close client connections.
+            for (final SelectionKey key : selector.keys ())
+            {
+                final Connection c = getConnection (key);
+                if (c != null)
+                {
+                    c.close ();
+                }
+            }
+        }
+        catch (final IOException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+    }
+
+    public void setCommsEventCallback (final Consumer<E2<InetAddress, Boolean>> commsEventCallback)
+    {
+        m_commsEventCallback = commsEventCallback;
+    }
+
+    public void setMessageHandler (final Function<E2<InetAddress, TRequest>, TResponse> messageHandler)
+    {
+        m_messageHandler = messageHandler;
+    }
+
+    @Override
+    public void signalShutdown ()
+    {
+        // Initiates an orderly shutdown in which previously submitted tasks are
+        // executed, but no new tasks will be accepted. Invocation has no
+        // additional effect if already shut down.
+        m_shutdownRequested = true;
+        m_selector.wakeup ();
+
+        final String identifier = toString ();
+        HcUtil.startShutdownExecutorService (m_requestHandlingExecutor, identifier);
+    }
+
+    @Override
+    public String toString ()
+    {
+        return String.format ("NioObjectSocketProcessor [%s]", m_name);
+    }
+
+    private void accept (final ServerSocketChannel serverChannel) throws IOException
+    {
+        final SocketChannel channel = serverChannel.accept ();
+        if (channel != null)
+        {
+            channel.configureBlocking (false);
+            channel.setOption (StandardSocketOptions.TCP_NODELAY, true);
+
+            final Connection connection = new Connection (channel);
+            connection.m_key = channel.register (m_selector, SelectionKey.OP_READ, connection);
+
+            m_countConcurrentConnectionsMax.increment ();
+        }
+    }
+
+    private void adviseComms (final InetAddress inetAddress, final boolean isGood)
+    {
+        final Consumer<E2<InetAddress, Boolean>> commsEventCallback = m_commsEventCallback;
+        if (commsEventCallback != null)
+        {
+            commsEventCallback.accept (E2.of (inetAddress, isGood));
+        }
+    }
+
+    /**
+     * @return the key's connection, or null for the server channel's key
+     */
+    private Connection getConnection (final SelectionKey key)
+    {
+        // Connection is an inner class of a generic type, so the cast can't be checked.
+        return HcUtil.uncheckedCast (key.attachment ());
+    }
+
+    /** Runs on the worker pool */
+    private void handleRequest (final Connection connection, final Frame frame)
+    {
+        final Runnable task = () ->
+        {
+            ByteBuffer reply;
+            try
+            {
+                final TRequest request = m_requestCodec.decode (ByteBuffer.wrap (frame.m_payload));
+
+                // Pass to the configured function for handling.
+                final TResponse response = m_messageHandler.apply (E2.of (connection.m_inetAddress, request));
+
+                reply = response == null
+                    ? MessageFrames.encode (frame.m_correlationId, MessageFrames.STATUS_NO_RESPONSE)
+                    : MessageFrames.encode (frame.m_correlationId, MessageFrames.STATUS_OK,
+                        Codecs.encode (m_responseCodec, response));
+            }
+            catch (final RuntimeException e)
+            {
+                // Tell the client rather than leaving its request outstanding.
+                final String description = e.toString ();
+                reply = MessageFrames.encode (frame.m_correlationId, MessageFrames.STATUS_ERROR,
+                    description.getBytes (StandardCharsets.UTF_8));
+                connection.queueReply (reply);
+                throw e;
+            }
+
+            connection.queueReply (reply);
+        };
+
+        // Wrap in a nested scope for context id tracking.
+        try (final IScope scope = new ExecutionScope ("NioObjectSocketProcessor"))
+        {
+            m_timedScopeHandleRequest.execute (task);
+        }
+    }
+
+    /** Per-connection state. I/O happens on the selector thread only. */
+    private final class Connection
+    {
+        public Connection (final SocketChannel channel)
+        {
+            m_channel = channel;
+            m_inetAddress = channel.socket ().getInetAddress ();
+        }
+
+        public void close ()
+        {
+            if (m_isOpen)
+            {
+                m_isOpen = false;
+                m_key.cancel ();
+                try
+                {
+                    m_channel.close ();
+                }
+                catch (final IOException e)
+                {
+                    // Fault barrier.
+                    ThreadContext.logException (e);
+                }
+
+                m_countConcurrentConnectionsMax.decrement ();
+            }
+        }
+
+        public void enableWrite ()
+        {
+            if (m_isOpen && !m_replies.isEmpty ())
+            {
+                m_key.interestOps (m_key.interestOps () | SelectionKey.OP_WRITE);
+            }
+        }
+
+        public void onReadable ()
+        {
+            try
+            {
+                final int count = m_channel.read (m_readBuffer);
+                if (count < 0)
+                {
+                    // Client closed the connection.
+                    close ();
+                }
+                else
+                {
+                    readFrames ();
+                }
+            }
+            catch (final IOException | RuntimeException e)
+            {
+                onCommsFailure (e);
+            }
+        }
+
+        public void onWritable ()
+        {
+            try
+            {
+                ByteBuffer reply = m_replies.peek ();
+                while (reply != null)
+                {
+                    m_channel.write (reply);
+                    if (reply.hasRemaining ())
+                    {
+                        // Socket buffer full: wait to be writable again.
+                        reply = null;
+                    }
+                    else
+                    {
+                        m_replies.poll ();
+                        adviseComms (m_inetAddress, true);
+                        reply = m_replies.peek ();
+                    }
+                }
+
+                if (m_replies.isEmpty ())
+                {
+                    m_key.interestOps (SelectionKey.OP_READ);
+
+                    // Recheck, since a worker may have queued a reply meanwhile.
+                    enableWrite ();
+                }
+            }
+            catch (final IOException e)
+            {
+                onCommsFailure (e);
+            }
+        }
+
+        /** Called by workers */
+        public void queueReply (final ByteBuffer reply)
+        {
+            if (m_isOpen)
+            {
+                m_replies.add (reply);
+                m_connectionsToWrite.add (this);
+                m_selector.wakeup ();
+            }
+        }
+
+        private void onCommsFailure (final Exception e)
+        {
+            Logging.logError ("%s client comms failure %s %s", NioObjectSocketProcessor.this, m_inetAddress,
+                e.toString ());
+            adviseComms (m_inetAddress, false);
+            close ();
+        }
+
+        private void readFrames ()
+        {
+            m_readBuffer.flip ();
+
+            Frame frame = MessageFrames.decode (m_readBuffer);
+            while (frame != null)
+            {
+                final Frame f = frame;
+                m_requestHandlingExecutor.execute ( () -> handleRequest (this, f));
+
+                frame = MessageFrames.decode (m_readBuffer);
+            }
+
+            // Make room for a frame larger than the buffer.
+            final int frameBytes = MessageFrames.getFrameBytes (m_readBuffer);
+            if (frameBytes > m_readBuffer.capacity ())
+            {
+                final ByteBuffer larger = ByteBuffer.allocate (frameBytes);
+                larger.put (m_readBuffer);
+                m_readBuffer = larger;
+            }
+            else
+            {
+                m_readBuffer.compact ();
+            }
+        }
+
+        private final SocketChannel m_channel;
+
+        private final InetAddress m_inetAddress;
+
+        private volatile boolean m_isOpen = true;
+
+        private SelectionKey m_key;
+
+        private ByteBuffer m_readBuffer = ByteBuffer.allocate (READ_BUFFER_BYTES);
+
+        private final Queue<ByteBuffer> m_replies = GenericFactory.newConcurrentLinkedQueue ();
+    }
+
+    /** The handler for notifications */
+    private volatile Consumer<E2<InetAddress, Boolean>> m_commsEventCallback;
+
+    /** Connections with replies queued by workers, for the selector thread to write */
+    private final Queue<Connection> m_connectionsToWrite = GenericFactory.newConcurrentLinkedQueue ();
+
+    private final MaxCounter m_countConcurrentConnectionsMax;
+
+    private volatile int m_localPort;
+
+    /**
+     * The handler for incoming objects, yields outgoing object. E2<InetAddress, TRequest>
+     * is (IP address, request).
+     */
+    private volatile Function<E2<InetAddress, TRequest>, TResponse> m_messageHandler;
+
+    private final String m_name;
+
+    private final int m_port;
+
+    private final ICodec<TRequest> m_requestCodec;
+
+    private final ExecutorService m_requestHandlingExecutor;
+
+    private final ICodec<TResponse> m_responseCodec;
+
+    private final Selector m_selector;
+
+    /** Used to coordinate shutdown */
+    private volatile boolean m_shutdownRequested;
+
+    private final TimedScope m_timedScopeHandleRequest;
+
+    private static final long MSEC_SHUTDOWN = 5_000;
+
+    private static final int POLL_TIMEOUT_MSEC = 1_000;
+
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+}
@@ -17,43 +17,71 @@
 package au.com.breakpoint.hedron.core.concurrent;
 
 import java.net.DatagramPacket;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.function.Consumer;
-import au.com.breakpoint.hedron.core.HcUtilFile;
 import au.com.breakpoint.hedron.core.Tuple.E2;
+import au.com.breakpoint.hedron.core.codec.ICodec;
+import au.com.breakpoint.hedron.core.codec.JavaSerialisationCodec;
 
 /**
- * DatagramProcessor which deserialises the incoming message as a TRequest object and
- * despatches for handling.
+ * DatagramProcessor which decodes the incoming message as a TRequest object and
+ * despatches for handling. Java serialisation is used unless another codec is specified.
  */
 public class ObjectDatagramProcessor<TRequest> extends DatagramProcessor
 {
     public ObjectDatagramProcessor (final Class<?> c, final int port, final int threads,
         final Consumer<E2<String, TRequest>> messageHandler)
+    {
+        this (c, port, threads, messageHandler, JavaSerialisationCodec.of ());
+    }
+
+    public ObjectDatagramProcessor (final Class<?> c, final int port, final int threads,
+        final Consumer<E2<String, TRequest>> messageHandler, final ICodec<TRequest> codec)
     {
         super (c, port, threads);
         m_messageHandler = messageHandler;
+        m_codec = codec;
     }
 
     public ObjectDatagramProcessor (final String name, final int port, final int threads,
         final Consumer<E2<String, TRequest>> messageHandler)
+    {
+        this (name, port, threads, messageHandler, JavaSerialisationCodec.of ());
+    }
+
+    public ObjectDatagramProcessor (final String name, final int port, final int threads,
+        final Consumer<E2<String, TRequest>> messageHandler, final ICodec<TRequest> codec)
     {
         super (name, port, threads);
         m_messageHandler = messageHandler;
+        m_codec = codec;
+    }
+
+    @Override
+    protected void onRequest (final InetSocketAddress clientAddress, final ByteBuffer data)
+    {
+        // Decode straight from the receive buffer.
+        handleRequest (clientAddress.getAddress ().getHostAddress (), data);
     }
 
     @Override
     protected void onRequest (final String clientIpAddress, final DatagramPacket packet)
     {
-        final byte[] data = packet.getData ();
+        handleRequest (clientIpAddress, ByteBuffer.wrap (packet.getData (), packet.getOffset (), packet.getLength ()));
+    }
 
-        // The datagram bytes are raw bytes of a serialised object. Unmarshall back to the
-        // expected object type.
-        final TRequest r = HcUtilFile.deserialiseBytesAsObject (data);
+    private void handleRequest (final String clientIpAddress, final ByteBuffer data)
+    {
+        // Decode straight from the datagram bytes back to the expected object type.
+        final TRequest r = m_codec.decode (data);
 
         // Pass to the handler.
         m_messageHandler.accept (E2.of (clientIpAddress, r));
     }
 
+    private final ICodec<TRequest> m_codec;
+
     /**
      * Handler for incoming datagrams. Takes IP address + deserialised request object. It
      * is called concurrently as soon as the socket receives the datagram.
@@ -0,0 +1,567 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import au.com.breakpoint.hedron.core.Counter;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.MaxCounter;
+import au.com.breakpoint.hedron.core.TimedScope;
+import au.com.breakpoint.hedron.core.TimedScope.StatisticsMode;
+import au.com.breakpoint.hedron.core.codec.Codecs;
+import au.com.breakpoint.hedron.core.codec.ICodec;
+import au.com.breakpoint.hedron.core.codec.JavaSerialisationCodec;
+import au.com.breakpoint.hedron.core.concurrent.MessageFrames.Frame;
+import au.com.breakpoint.hedron.core.context.FaultException;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.log.Logging;
+
+/**
+ * Client for NioObjectSocketProcessor. Holds a bounded pool of persistent connections to
+ * one endpoint, and pipelines requests over them: each request is written as a frame
+ * (see MessageFrames) without waiting for earlier responses, and its future is completed
+ * when the response with the matching correlation id arrives.
+ *
+ * Requests and responses use Java serialisation unless other codecs are specified, which
+ * must match those of the processor.
+ *
+ * Sending blocks while maxConnections * maxInFlightPerConnection requests are
+ * outstanding, up to the request's timeout. It doesn't otherwise block on the network:
+ * a new connection is made by the request that needed it, outside the pool's lock and
+ * within the request's timeout, and frames are queued and written by a connection's own
+ * writer task. Futures are completed on the connection's reader thread, so dependent
+ * actions should be quick or use the xxxAsync variants.
+ */
+public class ObjectSocketClient<TRequest, TResponse> implements AutoCloseable
+{
+    public ObjectSocketClient (final Class<?> c, final String host, final int port, final int maxConnections,
+        final int maxInFlightPerConnection)
+    {
+        this (c.getSimpleName (), host, port, maxConnections, maxInFlightPerConnection);
+    }
+
+    public ObjectSocketClient (final Class<?> c, final String host, final int port, final int maxConnections,
+        final int maxInFlightPerConnection, final ICodec<TRequest> requestCodec,
+        final ICodec<TResponse> responseCodec)
+    {
+        this (c.getSimpleName (), host, port, maxConnections, maxInFlightPerConnection, requestCodec,
+            responseCodec);
+    }
+
+    public ObjectSocketClient (final String name, final String host, final int port, final int maxConnections,
+        final int maxInFlightPerConnection)
+    {
+        this (name, host, port, maxConnections, maxInFlightPerConnection, JavaSerialisationCodec.of (),
+            JavaSerialisationCodec.of ());
+    }
+
+    public ObjectSocketClient (final String name, final String host, final int port, final int maxConnections,
+        final int maxInFlightPerConnection, final ICodec<TRequest> requestCodec,
+        final ICodec<TResponse> responseCodec)
+    {
+        ThreadContext.assertFault (maxConnections > 0 && maxInFlightPerConnection > 0,
+            "Invalid limits [%s %s]", maxConnections, maxInFlightPerConnection);
+
+        m_name = name;
+        m_address = new InetSocketAddress (host, port);
+        m_maxConnections = maxConnections;
+        m_maxInFlightPerConnection = maxInFlightPerConnection;
+        m_requestCodec = requestCodec;
+        m_responseCodec = responseCodec;
+        m_inFlightPermits = new Semaphore (maxConnections * maxInFlightPerConnection);
+
+        m_timedScopeRequest = TimedScope.getTimedScope (ObjectSocketClient.class, name, StatisticsMode.Striped);
+        m_countConnectionsMax = MaxCounter.of (ObjectSocketClient.class, "connections." + name);
+        m_countInFlightMax = MaxCounter.of (ObjectSocketClient.class, "inFlight." + name);
+        m_countConnectionsOpened = Counter.of (ObjectSocketClient.class, "connectionsOpened." + name);
+        m_countRequests = Counter.of (ObjectSocketClient.class, "requests." + name);
+
+        // Shutdown is handled by close ().
+        final String identifier = toString ();
+        m_ioExecutor = Concurrency.createCachedThreadPool (identifier, true, false).get ();
+        m_timeoutExecutor = Concurrency.createSingleThreadScheduledExecutor (identifier, true, false).get ();
+    }
+
+    /**
+     * Closes all connections, failing any outstanding requests.
+     */
+    @Override
+    public void close ()
+    {
+        List<Connection> connections;
+        synchronized (m_connections)
+        {
+            m_closed = true;
+            connections = GenericFactory.newArrayList (m_connections);
+        }
+
+        for (final Connection connection : connections)
+        {
+            connection.close (new IllegalStateException (toString () + " closed"));
+        }
+
+        final String identifier = toString ();
+        HcUtil.startShutdownExecutorService (m_timeoutExecutor, identifier);
+        HcUtil.startShutdownExecutorService (m_ioExecutor, identifier);
+    }
+
+    public int getConnectionCount ()
+    {
+        synchronized (m_connections)
+        {
+            return m_connections.size ();
+        }
+    }
+
+    public TimedScope getTimedScope ()
+    {
+        return m_timedScopeRequest;
+    }
+
+    /**
+     * Sends the request with the default timeout.
+     */
+    public CompletableFuture<TResponse> send (final TRequest request)
+    {
+        return send (request, DEFAULT_TIMEOUT_MSEC);
+    }
+
+    /**
+     * Sends the request without waiting for the response.
+     *
+     * @param request
+     *            the request, which must be Serializable if using the default codec
+     * @param msecTimeout
+     *            time allowed for the whole exchange, including any wait for the in-flight
+     *            limit
+     * @return future completed with the response, with null if the handler returned no
+     *         response, or exceptionally with TimeoutException, FaultException if the
+     *         handler failed, or the comms exception if the connection failed
+     */
+    public CompletableFuture<TResponse> send (final TRequest request, final long msecTimeout)
+    {
+        ThreadContext.assertFault (!m_closed, "%s is closed", this);
+
+        final long nsStart = System.nanoTime ();
+        final CompletableFuture<TResponse> future = new CompletableFuture<> ();
+
+        if (acquirePermit (msecTimeout))
+        {
+            m_countRequests.increment ();
+            m_countInFlightMax.increment ();
+            future.whenComplete ( (response, e) ->
+            {
+                m_countInFlightMax.decrement ();
+                m_inFlightPermits.release ();
+                m_timedScopeRequest.record (System.nanoTime () - nsStart, e == null);
+            });
+
+            try
+            {
+                final long correlationId = m_nextCorrelationId.incrementAndGet ();
+                final Connection connection = assignConnection (correlationId, future);
+
+                final long msecRemaining = Math.max (1, msecTimeout - HcUtil.nsToMsec (System.nanoTime () - nsStart));
+                final ScheduledFuture<?> timeoutHandle = m_timeoutExecutor.schedule (
+                    () -> future.completeExceptionally (
+                        new TimeoutException (String.format ("%s request timed out [%s msec]", this, msecTimeout))),
+                    msecRemaining, TimeUnit.MILLISECONDS);
+
+                future.whenComplete ( (response, e) ->
+                {
+                    timeoutHandle.cancel (false);
+                    connection.m_pending.remove (correlationId);
+                });
+
+                // Only the request that added the connection to the pool connects it.
+                connection.connect (msecRemaining);
+                connection.write (MessageFrames.encode (correlationId, MessageFrames.STATUS_OK,
+                    Codecs.encode (m_requestCodec, request)));
+            }
+            catch (final RuntimeException e)
+            {
+                future.completeExceptionally (e);
+            }
+        }
+        else
+        {
+            m_timedScopeRequest.record (System.nanoTime () - nsStart, false);
+            future.completeExceptionally (
+                new TimeoutException (String.format ("%s in-flight limit reached [%s msec]", this, msecTimeout)));
+        }
+
+        return future;
+    }
+
+    /**
+     * Sends the request with the default timeout and waits for the response. Failures are
+     * propagated as FaultException.
+     */
+    public TResponse sendReceive (final TRequest request)
+    {
+        return HcUtil.waitForFuture (send (request));
+    }
+
+    @Override
+    public String toString ()
+    {
+        return String.format ("ObjectSocketClient [%s %s]", m_name, m_address);
+    }
+
+    private boolean acquirePermit (final long msecTimeout)
+    {
+        boolean acquired = false;
+
+        try
+        {
+            acquired = m_inFlightPermits.tryAcquire (msecTimeout, TimeUnit.MILLISECONDS);
+        }
+        catch (final InterruptedException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+
+        return acquired;
+    }
+
+    /**
+     * Registers the request on the least loaded connection, adding another (unconnected)
+     * connection to the pool if they are all at their in-flight limit and the pool isn't
+     * full.
+     */
+    private Connection assignConnection (final long correlationId, final CompletableFuture<TResponse> future)
+    {
+        synchronized (m_connections)
+        {
+            ThreadContext.assertFault (!m_closed, "%s is closed", this);
+
+            Connection connection = null;
+            for (final Connection c : m_connections)
+            {
+                if (connection == null || c.m_pending.size () < connection.m_pending.size ())
+                {
+                    connection = c;
+                }
+            }
+
+            if ((connection == null || connection.m_pending.size () >= m_maxInFlightPerConnection) &&
+                m_connections.size () < m_maxConnections)
+            {
+                connection = new Connection ();
+                m_connections.add (connection);
+                m_countConnectionsMax.increment ();
+            }
+
+            connection.m_pending.put (correlationId, future);
+            return connection;
+        }
+    }
+
+    /**
+     * A persistent connection, with a dedicated reader thread and a writer task that runs
+     * while frames are queued. It is added to the pool unconnected, so that the slow
+     * connect happens outside the pool's lock; frames queued meanwhile are written once
+     * it connects.
+     */
+    private final class Connection
+    {
+        public void close (final Throwable cause)
+        {
+            m_closing = true;
+
+            boolean wasOpen;
+            synchronized (m_connections)
+            {
+                wasOpen = m_connections.remove (this);
+            }
+
+            if (wasOpen)
+            {
+                m_countConnectionsMax.decrement ();
+
+                // Null if the connect hasn't started.
+                final SocketChannel channel = m_channel;
+                if (channel != null)
+                {
+                    try
+                    {
+                        channel.close ();
+                    }
+                    catch (final IOException e)
+                    {
+                        // Fault barrier.
+                        ThreadContext.logException (e);
+                    }
+                }
+            }
+            m_writeQueue.clear ();
+
+            // Fail outstanding requests, including any registered during closing.
+            for (final CompletableFuture<TResponse> future : m_pending.values ())
+            {
+                future.completeExceptionally (cause);
+            }
+        }
+
+        /**
+         * Connects, if this is the first call, then starts the reader. Failure closes the
+         * connection, failing the requests registered on it.
+         *
+         * @param msecTimeout
+         *            connect timeout, the remaining time of the request that connects
+         */
+        public void connect (final long msecTimeout)
+        {
+            if (m_connectStarted.compareAndSet (false, true))
+            {
+                try
+                {
+                    final SocketChannel channel = SocketChannel.open ();
+                    m_channel = channel;
+                    if (m_closing)
+                    {
+                        // close () ran before the channel was published.
+                        channel.close ();
+                    }
+
+                    channel.setOption (StandardSocketOptions.TCP_NODELAY, true);
+                    channel.socket ().connect (m_address, (int) Math.min (msecTimeout, Integer.MAX_VALUE));
+                    m_countConnectionsOpened.increment ();
+
+                    m_connected = true;
+                    m_ioExecutor.execute (this::readUntilClosed);
+                    scheduleWrite ();
+                }
+                catch (final IOException | RuntimeException e)
+                {
+                    if (!m_closed)
+                    {
+                        Logging.logError ("%s connect failure %s", ObjectSocketClient.this, e.toString ());
+                    }
+                    close (e);
+                }
+            }
+        }
+
+        public void readUntilClosed ()
+        {
+            ByteBuffer buffer = ByteBuffer.allocate (READ_BUFFER_BYTES);
+
+            try
+            {
+                while (m_channel.read (buffer) >= 0)
+                {
+                    buffer.flip ();
+
+                    Frame frame = MessageFrames.decode (buffer);
+                    while (frame != null)
+                    {
+                        onResponse (frame);
+                        frame = MessageFrames.decode (buffer);
+                    }
+
+                    // Make room for a frame larger than the buffer.
+                    final int frameBytes = MessageFrames.getFrameBytes (buffer);
+                    if (frameBytes > buffer.capacity ())
+                    {
+                        final ByteBuffer larger = ByteBuffer.allocate (frameBytes);
+                        larger.put (buffer);
+                        buffer = larger;
+                    }
+                    else
+                    {
+                        buffer.compact ();
+                    }
+                }
+
+                close (new IOException (ObjectSocketClient.this + " connection closed by server"));
+            }
+            catch (final IOException | RuntimeException e)
+            {
+                if (!m_closed)
+                {
+                    Logging.logError ("%s comms failure %s", ObjectSocketClient.this, e.toString ());
+                }
+                close (e);
+            }
+        }
+
+        /**
+         * Queues the frame for the writer task, so the sender never blocks on the socket.
+         * A frame stuck behind a stalled write is covered by its request's timeout.
+         */
+        public void write (final ByteBuffer frame)
+        {
+            m_writeQueue.add (frame);
+            scheduleWrite ();
+        }
+
+        private void drainWriteQueue ()
+        {
+            try
+            {
+                ByteBuffer frame = m_writeQueue.poll ();
+                while (frame != null)
+                {
+                    while (frame.hasRemaining ())
+                    {
+                        m_channel.write (frame);
+                    }
+                    frame = m_writeQueue.poll ();
+                }
+            }
+            catch (final IOException | RuntimeException e)
+            {
+                close (e);
+            }
+            finally
+            {
+                m_writing.set (false);
+            }
+
+            // Frames queued after the last poll but before the flag was cleared.
+            scheduleWrite ();
+        }
+
+        private void scheduleWrite ()
+        {
+            if (m_closing)
+            {
+                m_writeQueue.clear ();
+            }
+            else if (m_connected && !m_writeQueue.isEmpty () && m_writing.compareAndSet (false, true))
+            {
+                m_ioExecutor.execute (this::drainWriteQueue);
+            }
+        }
+
+        private void onResponse (final Frame frame)
+        {
+            final CompletableFuture<TResponse> future = m_pending.remove (frame.m_correlationId);
+
+            // Absent if the request has already timed out.
+            if (future != null)
+            {
+                switch (frame.m_status)
+                {
+                    case MessageFrames.STATUS_OK:
+                    {
+                        try
+                        {
+                            final TResponse response = m_responseCodec.decode (ByteBuffer.wrap (frame.m_payload));
+                            future.complete (response);
+                        }
+                        catch (final RuntimeException e)
+                        {
+                            future.completeExceptionally (e);
+                        }
+                        break;
+                    }
+
+                    case MessageFrames.STATUS_NO_RESPONSE:
+                    {
+                        future.complete (null);
+                        break;
+                    }
+
+                    default:
+                    {
+                        final String description = new String (frame.m_payload, StandardCharsets.UTF_8);
+                        future.completeExceptionally (new FaultException (description, false));
+                        break;
+                    }
+                }
+            }
+        }
+
+        /** Null until the connect starts */
+        private volatile SocketChannel m_channel;
+
+        private volatile boolean m_closing;
+
+        private volatile boolean m_connected;
+
+        private final AtomicBoolean m_connectStarted = new AtomicBoolean ();
+
+        /** Outstanding requests by correlation id */
+        private final Map<Long, CompletableFuture<TResponse>> m_pending = GenericFactory.newConcurrentHashMap ();
+
+        private final Queue<ByteBuffer> m_writeQueue = GenericFactory.newConcurrentLinkedQueue ();
+
+        /** Set while a writer task is draining the write queue */
+        private final AtomicBoolean m_writing = new AtomicBoolean ();
+    }
+
+    private final InetSocketAddress m_address;
+
+    private volatile boolean m_closed;
+
+    private final List<Connection> m_connections = GenericFactory.newArrayList ();
+
+    private final MaxCounter m_countConnectionsMax;
+
+    private final Counter m_countConnectionsOpened;
+
+    private final MaxCounter m_countInFlightMax;
+
+    private final Counter m_countRequests;
+
+    /** Backpressure: one permit per request in flight */
+    private final Semaphore m_inFlightPermits;
+
+    /** Runs each connection's reader, and its writer task while frames are queued */
+    private final ExecutorService m_ioExecutor;
+
+    private final int m_maxConnections;
+
+    private final int m_maxInFlightPerConnection;
+
+    private final String m_name;
+
+    private final AtomicLong m_nextCorrelationId = new AtomicLong ();
+
+    private final ICodec<TRequest> m_requestCodec;
+
+    private final ICodec<TResponse> m_responseCodec;
+
+    private final TimedScope m_timedScopeRequest;
+
+    private final ScheduledExecutorService m_timeoutExecutor;
+
+    public static final long DEFAULT_TIMEOUT_MSEC = 30_000;
+
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+}
@@ -16,6 +16,8 @@
 //
 package au.com.breakpoint.hedron.core.concurrent;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -24,6 +26,7 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
@@ -32,6 +35,8 @@ import au.com.breakpoint.hedron.core.HcUtil;
 import au.com.breakpoint.hedron.core.MaxCounter;
 import au.com.breakpoint.hedron.core.TimedScope;
 import au.com.breakpoint.hedron.core.Tuple.E2;
+import au.com.breakpoint.hedron.core.codec.Codecs;
+import au.com.breakpoint.hedron.core.codec.ICodec;
 import au.com.breakpoint.hedron.core.context.ExecutionScope;
 import au.com.breakpoint.hedron.core.context.IScope;
 import au.com.breakpoint.hedron.core.context.ThreadContext;
@@ -42,6 +47,13 @@ import au.com.breakpoint.hedron.core.log.Logging;
  * Datagrams message are queued immediately to the m_socketRequestHandlingExecutor thread
  * pool, which then deserialises the incoming message back into the protocol object and
  * despatches it for handling.
+ *
+ * Each request uses its own connection. For persistent connections with many requests in
+ * flight, see NioObjectSocketProcessor.
+ *
+ * By default the request and response are sent as Java object streams, as by
+ * HcUtilFile.sendReceiveObjects (). If codecs are specified, each is instead sent as an int
+ * length followed by the encoded bytes.
  */
 public class ObjectSocketProcessor<TRequest, TResponse> implements IProcessor
 {
@@ -50,10 +62,27 @@ public class ObjectSocketProcessor<TRequest, TResponse> implements IProcessor
         this (c.getSimpleName (), port, threads);
     }
 
+    public ObjectSocketProcessor (final Class<?> c, final int port, final int threads,
+        final ICodec<TRequest> requestCodec, final ICodec<TResponse> responseCodec)
+    {
+        this (c.getSimpleName (), port, threads, requestCodec, responseCodec);
+    }
+
     public ObjectSocketProcessor (final String name, final int port, final int threads)
     {
+        this (name, port, threads, null, null);
+    }
+
+    public ObjectSocketProcessor (final String name, final int port, final int threads,
+        final ICodec<TRequest> requestCodec, final ICodec<TResponse> responseCodec)
+    {
+        ThreadContext.assertFault ((requestCodec == null) == (responseCodec == null),
+            "Specify both or neither of the request and response codecs [%s]", name);
+
         m_name = name;
         m_port = port;
+        m_requestCodec = requestCodec;
+        m_responseCodec = responseCodec;
 
         m_timedScopeHandleRequest = TimedScope.getTimedScope (ObjectSocketProcessor.class, name);
         m_countConcurrentSocketsMax = MaxCounter.of (ObjectSocketProcessor.class, "concurrentSockets." + name);
@@ -170,6 +199,56 @@ public class ObjectSocketProcessor<TRequest, TResponse> implements IProcessor
         }
     }
 
+    private void exchangeEncoded (final Socket socketConnection) throws IOException
+    {
+        final DataInputStream dis = new DataInputStream (socketConnection.getInputStream ());
+        final int length = dis.readInt ();
+        ThreadContext.assertFault (length >= 0 && length <= Codecs.MAX_ENCODED_BYTES, "Invalid message length [%s]",
+            length);
+
+        final byte[] bytes = new byte[length];
+        dis.readFully (bytes);
+        final TRequest r = m_requestCodec.decode (ByteBuffer.wrap (bytes));
+
+        final InetAddress inetAddress = socketConnection.getInetAddress ();
+
+        // Pass to the configured function for handling.
+        final TResponse response = m_messageHandler.apply (E2.of (inetAddress, r));
+
+        if (response != null)
+        {
+            final ByteBuffer encoded = Codecs.encode (m_responseCodec, response);
+
+            final DataOutputStream dos = new DataOutputStream (socketConnection.getOutputStream ());
+            dos.writeInt (encoded.remaining ());
+            dos.write (encoded.array (), encoded.arrayOffset () + encoded.position (), encoded.remaining ());
+            dos.flush ();
+        }
+    }
+
+    private void exchangeObjects (final Socket socketConnection) throws IOException, ClassNotFoundException
+    {
+        try (final ObjectInputStream ois = new ObjectInputStream (socketConnection.getInputStream ()))
+        {
+            @SuppressWarnings ("unchecked")
+            final TRequest r = (TRequest) ois.readObject ();
+
+            final InetAddress inetAddress = socketConnection.getInetAddress ();
+
+            // Pass to the configured function for handling.
+            final TResponse response = m_messageHandler.apply (E2.of (inetAddress, r));
+
+            if (response != null)
+            {
+                try (final ObjectOutputStream oos = new ObjectOutputStream (socketConnection.getOutputStream ()))
+                {
+                    oos.writeObject (response);
+                    oos.flush ();
+                }
+            }
+        }
+    }
+
     private void handleRequest (final Socket socketConnection)
     {
         final Runnable task = () ->
@@ -188,23 +267,15 @@ public class ObjectSocketProcessor<TRequest, TResponse> implements IProcessor
             //final String clientIpAddress = address.getHostAddress ();
             //final String clientHost = address.getHostName ();
 
-            try (final ObjectInputStream ois = new ObjectInputStream (socketConnection.getInputStream ()))
+            try
             {
-                @SuppressWarnings ("unchecked")
-                final TRequest r = (TRequest) ois.readObject ();
-
-                final InetAddress inetAddress = socketConnection.getInetAddress ();
-
-                // Pass to the configured function for handling.
-                final TResponse response = m_messageHandler.apply (E2.of (inetAddress, r));
-
-                if (response != null)
+                if (m_requestCodec == null)
                 {
-                    try (final ObjectOutputStream oos = new ObjectOutputStream (socketConnection.getOutputStream ()))
-                    {
-                        oos.writeObject (response);
-                        oos.flush ();
-                    }
+                    exchangeObjects (socketConnection);
+                }
+                else
+                {
+                    exchangeEncoded (socketConnection);
                 }
 
                 // Comms is good including outgoing reply.
@@ -253,6 +324,11 @@ public class ObjectSocketProcessor<TRequest, TResponse> implements IProcessor
 
     private final int m_port;
 
+    /** Null for Java object streams */
+    private final ICodec<TRequest> m_requestCodec;
+
+    private final ICodec<TResponse> m_responseCodec;
+
     /** Used to coordinate shutdown */
     private volatile boolean m_shutdownRequested;
 
@@ -16,12 +16,19 @@
 //
 package au.com.breakpoint.hedron.core.concurrent;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import au.com.breakpoint.hedron.core.GenericFactory;
 import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.IBatchDataPersistence;
 import au.com.breakpoint.hedron.core.IDataPersistence;
 import au.com.breakpoint.hedron.core.IDataTransformation;
 import au.com.breakpoint.hedron.core.ITransformationQueue;
 import au.com.breakpoint.hedron.core.NullDataTransformation;
+import au.com.breakpoint.hedron.core.TimedScope;
 import au.com.breakpoint.hedron.core.context.ThreadContext;
 import au.com.breakpoint.hedron.core.log.Logging;
 import au.com.breakpoint.hedron.core.value.LazyValue;
@@ -32,6 +39,12 @@ import au.com.breakpoint.hedron.core.value.LazyValue;
  * composition of PeriodicTransformationProcessor rather than inheritance, as per
  * Effective Java 2nd Edition, Item 16: Favour composition over inheritance.
  *
+ * Polled data is transformed and persisted in batches as set by BatchOptions. By default
+ * each poll is one batch, transformed on the processor thread. An IDataPersistence
+ * persists each record as soon as it is transformed unless the transform is parallel;
+ * batches are persisted together by an IBatchDataPersistence given to ofBatch. Each stage
+ * has its own TimedScope.
+ *
  * @param <C>
  *            type of the data to be transformed
  * @param <T>
@@ -41,16 +54,57 @@ public class PeriodicTransformationProcessor<C, T> extends ForwardingProcessor
 {
     public PeriodicTransformationProcessor (final String name, final ITransformationQueue<C> pendingPoller,
         final IDataTransformation<C, T> dataTransformation, final IDataPersistence<T> persister, final int periodMsec)
+    {
+        this (name, pendingPoller, dataTransformation, null, persister, periodMsec);
+    }
+
+    /**
+     * @param batchPersister
+     *            null to persist each record through persister as soon as it is
+     *            transformed
+     */
+    private PeriodicTransformationProcessor (final String name, final ITransformationQueue<C> pendingPoller,
+        final IDataTransformation<C, T> dataTransformation, final IBatchDataPersistence<T> batchPersister,
+        final IDataPersistence<T> persister, final int periodMsec)
     {
         super (new PeriodicProcessor (name, periodMsec));
 
+        m_name = name;
         m_pendingQueue = pendingPoller;
         m_dataTransformation = dataTransformation;
+        m_batchPersister = batchPersister != null ? batchPersister : ds -> ds.forEach (persister::persist);
         m_persister = persister;
+        m_perRecord = batchPersister == null;
+
+        m_timedScopePoll = TimedScope.getTimedScope (PeriodicTransformationProcessor.class, "poll." + name);
+        m_timedScopeTransform = TimedScope.getTimedScope (PeriodicTransformationProcessor.class, "transform." + name);
+        m_timedScopePersist = TimedScope.getTimedScope (PeriodicTransformationProcessor.class, "persist." + name);
 
         ((PeriodicProcessor) getProcessor ()).setTask (this::handleProcessing);
     }
 
+    @Override
+    public void awaitShutdownComplete ()
+    {
+        super.awaitShutdownComplete ();
+
+        final ExecutorService executor = m_executor;
+        if (executor != null)
+        {
+            HcUtil.awaitShutdownExecutorService (executor, toString (), MSEC_SHUTDOWN, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public BatchOptions getBatchOptions ()
+    {
+        return m_batchOptions;
+    }
+
+    public IBatchDataPersistence<T> getBatchPersister ()
+    {
+        return m_batchPersister;
+    }
+
     public IDataTransformation<C, T> getDataTransformation ()
     {
         return m_dataTransformation;
@@ -68,31 +122,193 @@ public class PeriodicTransformationProcessor<C, T> extends ForwardingProcessor
 
     public void handleProcessing ()
     {
-        // Get input data to be handled.
-        final List<C> listPending = m_pendingQueue.getDataToTransform ();
-        ThreadContext.assertFaultNotNull (listPending);
+        final BatchOptions options = m_batchOptions;
+        final PeriodicProcessor processor = (PeriodicProcessor) getProcessor ();
 
-        final int size = listPending.size ();
-        if (size > 0)
+        boolean isFullPoll = false;
+        do
         {
-            Logging.logDebug ("PeriodicTransformationProcessor poll returned %s records to handle", size);
+            // Get input data to be handled.
+            final List<C> listPending = m_timedScopePoll.execute (m_pendingQueue::getDataToTransform);
+            ThreadContext.assertFaultNotNull (listPending);
 
-            for (final C c : listPending)
+            final int size = listPending.size ();
+            if (size > 0)
             {
-                Logging.logDebug ("Handling transformation for data [%s]",
-                    LazyValue.of ( () -> HcUtil.abbreviate (c.toString (), 500)));
+                Logging.logDebug ("PeriodicTransformationProcessor poll returned %s records to handle", size);
 
-                final T d = m_dataTransformation.getValue (c);
-                if (d == null)
+                if (m_lingering.isEmpty ())
                 {
-                    Logging.logInfo ("No related data transformation for input data [%s]", c);
+                    m_msecLingerStart = System.currentTimeMillis ();
                 }
-                else
+                m_lingering.addAll (listPending);
+            }
+
+            // Handle full batches now, and any remainder once it has lingered long enough.
+            while (m_lingering.size () >= options.m_maxBatchSize)
+            {
+                handleBatch (options.m_maxBatchSize);
+            }
+
+            if (!m_lingering.isEmpty ()
+                && System.currentTimeMillis () - m_msecLingerStart >= options.m_lingerMsec)
+            {
+                handleBatch (m_lingering.size ());
+            }
+
+            isFullPoll = size >= options.m_maxBatchSize;
+        }
+        while (options.m_continuous && isFullPoll && processor.isActive ());
+    }
+
+    /**
+     * Also persists any data still lingering when processing is shut down.
+     */
+    @Override
+    public void processUntilShutdown ()
+    {
+        try
+        {
+            super.processUntilShutdown ();
+
+            if (!m_lingering.isEmpty ())
+            {
+                handleBatch (m_lingering.size ());
+            }
+        }
+        finally
+        {
+            final ExecutorService executor = m_executor;
+            if (executor != null)
+            {
+                HcUtil.startShutdownExecutorService (executor, toString ());
+            }
+        }
+    }
+
+    /**
+     * Must be called before processUntilShutdown ().
+     */
+    public void setBatchOptions (final BatchOptions batchOptions)
+    {
+        m_batchOptions = batchOptions;
+    }
+
+    private ExecutorService getExecutor ()
+    {
+        // Only accessed on the processor thread.
+        if (m_executor == null)
+        {
+            m_executor = Concurrency
+                .createFixedThreadPool (m_batchOptions.m_transformParallelism, m_name, true, false).get ();
+        }
+
+        return m_executor;
+    }
+
+    /**
+     * Transforms and persists the first size records lingering. Records are removed once
+     * handled, and a record (or batch) that fails is dropped along with them rather than
+     * retried, as the failure propagates.
+     */
+    private void handleBatch (final int size)
+    {
+        final List<C> batch = m_lingering.subList (0, size);
+        int handled = size;
+
+        try
+        {
+            if (m_perRecord && m_batchOptions.m_transformParallelism <= 1)
+            {
+                // IDataPersistence: persist each record as soon as it is transformed.
+                handled = 0;
+                for (final C c : batch)
+                {
+                    ++handled;
+
+                    final T d = m_timedScopeTransform.execute ( () -> transformOne (c));
+                    if (d != null)
+                    {
+                        m_timedScopePersist.execute ( () -> m_persister.persist (d));
+                    }
+                }
+            }
+            else
+            {
+                final List<T> ds = m_timedScopeTransform.execute ( () -> transform (batch));
+                if (!ds.isEmpty ())
                 {
-                    m_persister.persist (d);
+                    m_timedScopePersist.execute ( () -> m_batchPersister.persistAll (ds));
                 }
             }
         }
+        finally
+        {
+            m_lingering.subList (0, handled).clear ();
+        }
+    }
+
+    private List<T> transform (final List<C> cs)
+    {
+        final int parallelism = m_batchOptions.m_transformParallelism;
+        final int size = cs.size ();
+
+        List<T> ds = null;
+        if (parallelism <= 1 || size < 2)
+        {
+            ds = transformEach (cs);
+        }
+        else
+        {
+            // Split into contiguous parts so the results stay in order.
+            final int partSize = (size + parallelism - 1) / parallelism;
+            final ExecutorService executor = getExecutor ();
+
+            final List<Future<List<T>>> futures = GenericFactory.newArrayList ();
+            for (int i = 0; i < size; i += partSize)
+            {
+                final List<C> part = cs.subList (i, Math.min (i + partSize, size));
+                futures.add (executor.submit ( () -> transformEach (part)));
+            }
+
+            ds = GenericFactory.newArrayList ();
+            for (final List<T> partDs : HcUtil.waitForFutures (futures))
+            {
+                ds.addAll (partDs);
+            }
+        }
+
+        return ds;
+    }
+
+    private List<T> transformEach (final List<C> cs)
+    {
+        final List<T> ds = GenericFactory.newArrayList ();
+
+        for (final C c : cs)
+        {
+            final T d = transformOne (c);
+            if (d != null)
+            {
+                ds.add (d);
+            }
+        }
+
+        return ds;
+    }
+
+    private T transformOne (final C c)
+    {
+        Logging.logDebug ("Handling transformation for data [%s]",
+            LazyValue.of ( () -> HcUtil.abbreviate (c.toString (), 500)));
+
+        final T d = m_dataTransformation.getValue (c);
+        if (d == null)
+        {
+            Logging.logInfo ("No related data transformation for input data [%s]", c);
+        }
+
+        return d;
     }
 
     public static <C, T> PeriodicTransformationProcessor<C, T> of (final String name,
@@ -110,9 +326,107 @@ public class PeriodicTransformationProcessor<C, T> extends ForwardingProcessor
         return new PeriodicTransformationProcessor<T, T> (name, pendingPoller, dt, persister, periodMsec);
     }
 
+    public static <C, T> PeriodicTransformationProcessor<C, T> ofBatch (final String name,
+        final ITransformationQueue<C> pendingPoller, final IDataTransformation<C, T> dataTransformation,
+        final IBatchDataPersistence<T> batchPersister, final int periodMsec)
+    {
+        return new PeriodicTransformationProcessor<C, T> (name, pendingPoller, dataTransformation, batchPersister,
+            d -> batchPersister.persistAll (Collections.singletonList (d)), periodMsec);
+    }
+
+    public static class BatchOptions
+    {
+        private BatchOptions (final int maxBatchSize, final long lingerMsec, final int transformParallelism,
+            final boolean continuous)
+        {
+            ThreadContext.assertFault (maxBatchSize > 0 && lingerMsec >= 0 && transformParallelism > 0,
+                "Invalid batch options [%s %s %s]", maxBatchSize, lingerMsec, transformParallelism);
+
+            m_maxBatchSize = maxBatchSize;
+            m_lingerMsec = lingerMsec;
+            m_transformParallelism = transformParallelism;
+            m_continuous = continuous;
+        }
+
+        public long getLingerMsec ()
+        {
+            return m_lingerMsec;
+        }
+
+        public int getMaxBatchSize ()
+        {
+            return m_maxBatchSize;
+        }
+
+        public int getTransformParallelism ()
+        {
+            return m_transformParallelism;
+        }
+
+        public boolean isContinuous ()
+        {
+            return m_continuous;
+        }
+
+        /**
+         * @param maxBatchSize
+         *            maximum records transformed and persisted together
+         * @param lingerMsec
+         *            how long polled records may wait for a batch to fill before they are
+         *            handled anyway. This is checked each period, so it is rounded up to
+         *            the period.
+         * @param transformParallelism
+         *            number of threads transforming each batch; 1 transforms on the
+         *            processor thread
+         * @param continuous
+         *            if true, polls again immediately while polls return a full batch,
+         *            rather than waiting for the next period
+         */
+        public static BatchOptions of (final int maxBatchSize, final long lingerMsec,
+            final int transformParallelism, final boolean continuous)
+        {
+            return new BatchOptions (maxBatchSize, lingerMsec, transformParallelism, continuous);
+        }
+
+        /** Each poll is a single batch, as before batching was introduced */
+        public static final BatchOptions Default = of (Integer.MAX_VALUE, 0, 1, false);
+
+        private final boolean m_continuous;
+
+        private final long m_lingerMsec;
+
+        private final int m_maxBatchSize;
+
+        private final int m_transformParallelism;
+    }
+
+    private volatile BatchOptions m_batchOptions = BatchOptions.Default;
+
+    private final IBatchDataPersistence<T> m_batchPersister;
+
     private final IDataTransformation<C, T> m_dataTransformation;
 
+    private volatile ExecutorService m_executor;
+
+    /** Polled records waiting to be handled; only accessed on the processor thread */
+    private final List<C> m_lingering = GenericFactory.newArrayList ();
+
+    private long m_msecLingerStart;
+
+    private final String m_name;
+
     private final ITransformationQueue<C> m_pendingQueue;
 
+    /** True if the processor was given an IDataPersistence rather than an IBatchDataPersistence */
+    private final boolean m_perRecord;
+
     private final IDataPersistence<T> m_persister;
+
+    private final TimedScope m_timedScopePersist;
+
+    private final TimedScope m_timedScopePoll;
+
+    private final TimedScope m_timedScopeTransform;
+
+    private static final long MSEC_SHUTDOWN = 5_000;
 }
@@ -28,7 +28,8 @@ import au.com.breakpoint.hedron.core.log.Logging;
 
 /**
  * Processor that handles requests sequentially, taking them from a specified request
- * queue passed via IProcessorInit.initialise ().
+ * queue passed via IProcessorInit.initialise (). KeyedSequentialRequestProcessor handles
+ * requests concurrently where only the order of requests with the same key matters.
  *
  * @param <T>
  *            Type of request handed
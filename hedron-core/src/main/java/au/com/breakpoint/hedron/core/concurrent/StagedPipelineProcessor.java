@@ -0,0 +1,617 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import au.com.breakpoint.hedron.core.Counter;
+import au.com.breakpoint.hedron.core.CounterThroughput;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.MaxCounter;
+import au.com.breakpoint.hedron.core.TimedScope;
+import au.com.breakpoint.hedron.core.context.ExecutionScope;
+import au.com.breakpoint.hedron.core.context.IScope;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.log.Logging;
+
+/**
+ * Processor that passes submitted items through a chain of stages, each with its own
+ * worker threads taking items from a bounded queue. Build with builder ().
+ *
+ * Flow control is by credits: submit () takes a credit, which is returned when the item
+ * leaves the pipeline, so there are never more than maxInFlight items in the pipeline and
+ * submitters wait when it is full. A stage function returning null (or failing) drops the
+ * item. With ordered output the last stage receives items in the order they were
+ * submitted, whatever the worker counts of the earlier stages.
+ *
+ * Each stage reports its queue depth (MaxCounter), throughput (CounterThroughput) and
+ * latency (TimedScope), all of which are included in
+ * Instrumentation.publishExecutionSummary ().
+ *
+ * @param <TIn>
+ *            Type of item submitted
+ */
+public class StagedPipelineProcessor<TIn> implements IProcessor
+{
+    private StagedPipelineProcessor (final Builder<TIn, ?> builder)
+    {
+        ThreadContext.assertFault (!builder.m_stages.isEmpty (), "Pipeline [%s] has no stages", builder.m_name);
+
+        m_name = builder.m_name;
+        m_ordered = builder.m_ordered;
+        m_maxInFlight = builder.m_maxInFlight > 0 ? builder.m_maxInFlight : builder.m_queueCapacity;
+        m_credits = new Semaphore (m_maxInFlight);
+
+        m_stages = GenericFactory.newArrayList ();
+        for (final StageSpec spec : builder.m_stages)
+        {
+            m_stages.add (new Stage (spec, builder.m_queueCapacity));
+        }
+
+        final Stage last = m_stages.get (m_stages.size () - 1);
+        ThreadContext.assertFault (!m_ordered || last.m_spec.m_workers == 1,
+            "Pipeline [%s] is ordered, so its last stage [%s] must have a single worker", m_name,
+            last.m_spec.m_name);
+    }
+
+    @Override
+    public void awaitShutdownComplete ()
+    {
+        try
+        {
+            m_shutdownLatch.await (15, TimeUnit.SECONDS);
+        }
+        catch (final InterruptedException e)
+        {
+            // Shutting down... don't care.
+        }
+
+        Logging.logInfo ("%s shutdown complete %s", this, System.nanoTime ());
+    }
+
+    /**
+     * @return number of items submitted but not yet out of the pipeline
+     */
+    public int getInFlight ()
+    {
+        return m_maxInFlight - m_credits.availablePermits ();
+    }
+
+    /**
+     * Submits an item, waiting up to the timeout for a credit.
+     *
+     * @return false if the pipeline stayed full for the timeout
+     */
+    public boolean offer (final TIn item, final long msecTimeout)
+    {
+        assertAccepting ();
+
+        boolean acquired = false;
+        try
+        {
+            acquired = m_credits.tryAcquire (msecTimeout, TimeUnit.MILLISECONDS);
+        }
+        catch (final InterruptedException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+
+        if (acquired)
+        {
+            enqueue (item);
+        }
+
+        return acquired;
+    }
+
+    /**
+     * Starts the stage workers, then blocks until shutdown is signalled and every item
+     * already submitted has left the pipeline.
+     */
+    @Override
+    public void processUntilShutdown ()
+    {
+        Logging.logInfo ("%s starting execution with %s stages", this, m_stages.size ());
+
+        for (int i = 0; i < m_stages.size (); ++i)
+        {
+            final Stage stage = m_stages.get (i);
+            final Stage next = i + 1 < m_stages.size () ? m_stages.get (i + 1) : null;
+
+            final CustomisingThreadFactory tf =
+                new CustomisingThreadFactory (m_name + "." + stage.m_spec.m_name, true);
+            stage.m_workersRunning.set (stage.m_spec.m_workers);
+            for (int w = 0; w < stage.m_spec.m_workers; ++w)
+            {
+                tf.newThread ( () -> runWorker (stage, next)).start ();
+            }
+        }
+
+        try
+        {
+            m_stages.get (m_stages.size () - 1).m_terminated.await ();
+        }
+        catch (final InterruptedException e)
+        {
+            // Shutting down... don't care.
+        }
+
+        m_shutdownLatch.countDown ();
+    }
+
+    /**
+     * Items already submitted are handled before the pipeline stops; items must not be
+     * submitted afterwards.
+     */
+    @Override
+    public void signalShutdown ()
+    {
+        m_accepting = false;
+        m_stages.get (0).m_upstreamDone = true;
+
+        Logging.logInfo ("%s initiating shutdown", this);
+    }
+
+    /**
+     * Submits an item, waiting for a credit if the pipeline is full.
+     */
+    public void submit (final TIn item)
+    {
+        assertAccepting ();
+
+        try
+        {
+            m_credits.acquire ();
+        }
+        catch (final InterruptedException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+
+        enqueue (item);
+    }
+
+    @Override
+    public String toString ()
+    {
+        return String.format ("StagedPipelineProcessor [%s]", m_name);
+    }
+
+    private void assertAccepting ()
+    {
+        ThreadContext.assertFault (m_accepting, "%s is shutting down", this);
+    }
+
+    /** Passes an item handled by one stage on to the next */
+    private void deliver (final Stage next, final Envelope e)
+    {
+        if (next == null)
+        {
+            // Out of the pipeline.
+            m_credits.release ();
+        }
+        else if (m_ordered && (e.m_value == null || next == m_stages.get (m_stages.size () - 1)))
+        {
+            // Dropped items are sequenced too, so that the sequence has no gaps.
+            m_stages.get (m_stages.size () - 1).sequence (e, m_credits);
+        }
+        else if (e.m_value == null)
+        {
+            m_credits.release ();
+        }
+        else
+        {
+            next.put (e);
+        }
+    }
+
+    private void enqueue (final TIn item)
+    {
+        deliver (m_stages.get (0), new Envelope (m_sequence.getAndIncrement (), item));
+    }
+
+    private void runWorker (final Stage stage, final Stage next)
+    {
+        final int maxBatchSize = stage.m_spec.m_maxBatchSize;
+        final List<Envelope> batch = GenericFactory.newArrayList ();
+
+        try
+        {
+            boolean done = false;
+            while (!done)
+            {
+                final Envelope first = stage.m_queue.poll (POLL_TIMEOUT_MSEC, TimeUnit.MILLISECONDS);
+                if (first == null)
+                {
+                    // The upstream stage can't add to the queue once it is done.
+                    done = stage.m_upstreamDone && stage.m_queue.isEmpty ();
+                }
+                else
+                {
+                    batch.add (first);
+                    stage.m_queue.drainTo (batch, maxBatchSize - 1);
+                    for (int i = 0; i < batch.size (); ++i)
+                    {
+                        stage.m_queueDepth.decrement ();
+                    }
+
+                    // Wrap in a nested scope for context id tracking.
+                    try (final IScope scope = new ExecutionScope ("StagedPipelineProcessor"))
+                    {
+                        final List<Object> outputs = stage.handle (batch);
+                        for (int i = 0; i < batch.size (); ++i)
+                        {
+                            deliver (next, new Envelope (batch.get (i).m_sequence, outputs.get (i)));
+                        }
+                    }
+
+                    batch.clear ();
+                }
+            }
+        }
+        catch (final InterruptedException e)
+        {
+            // Shutting down... operation abandoned
+        }
+        finally
+        {
+            if (stage.m_workersRunning.decrementAndGet () == 0)
+            {
+                if (next != null)
+                {
+                    next.m_upstreamDone = true;
+                }
+                stage.m_terminated.countDown ();
+            }
+        }
+    }
+
+    public static <T> Builder<T, T> builder (final String name)
+    {
+        return new Builder<> (name);
+    }
+
+    /**
+     * Builder of StagedPipelineProcessor. TOut is the type of item output by the last
+     * stage added.
+     */
+    public static class Builder<TIn, TOut>
+    {
+        private Builder (final String name)
+        {
+            m_name = name;
+        }
+
+        /**
+         * Adds a stage whose function handles up to maxBatchSize items at a time. The
+         * function must return a list of the same size, with null for items to drop.
+         */
+        public <TNext> Builder<TIn, TNext> batchStage (final String stageName, final int workers,
+            final int maxBatchSize, final Function<List<TOut>, List<TNext>> f)
+        {
+            final Function<List<Object>, List<Object>> batchFunction = HcUtil.uncheckedCast (f);
+            return addStage (new StageSpec (m_name, stageName, workers, maxBatchSize, null, batchFunction));
+        }
+
+        /**
+         * Adds a final stage whose consumer handles up to maxBatchSize items at a time.
+         */
+        public Builder<TIn, Void> batchSink (final String stageName, final int workers, final int maxBatchSize,
+            final Consumer<List<TOut>> c)
+        {
+            final Consumer<List<Object>> consumer = HcUtil.uncheckedCast (c);
+            return addStage (new StageSpec (m_name, stageName, workers, maxBatchSize, null, ts ->
+            {
+                consumer.accept (ts);
+                return ts;
+            }));
+        }
+
+        public StagedPipelineProcessor<TIn> build ()
+        {
+            return new StagedPipelineProcessor<> (this);
+        }
+
+        /**
+         * @param maxInFlight
+         *            maximum items in the pipeline; defaults to the queue capacity
+         */
+        public Builder<TIn, TOut> maxInFlight (final int maxInFlight)
+        {
+            ThreadContext.assertFault (maxInFlight > 0, "Invalid max in flight [%s]", maxInFlight);
+            m_maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Delivers items to the last stage in the order they were submitted, which must
+         * then have a single worker.
+         */
+        public Builder<TIn, TOut> ordered (final boolean ordered)
+        {
+            m_ordered = ordered;
+            return this;
+        }
+
+        /**
+         * @param queueCapacity
+         *            capacity of each stage's input queue
+         */
+        public Builder<TIn, TOut> queueCapacity (final int queueCapacity)
+        {
+            ThreadContext.assertFault (queueCapacity > 0, "Invalid queue capacity [%s]", queueCapacity);
+            m_queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Adds a final stage.
+         */
+        public Builder<TIn, Void> sink (final String stageName, final int workers, final Consumer<? super TOut> c)
+        {
+            final Consumer<Object> consumer = HcUtil.uncheckedCast (c);
+            return addStage (new StageSpec (m_name, stageName, workers, DEFAULT_MAX_BATCH_SIZE, t ->
+            {
+                consumer.accept (t);
+                return t;
+            }, null));
+        }
+
+        /**
+         * Adds a stage whose function handles one item at a time, returning null to drop
+         * it.
+         */
+        public <TNext> Builder<TIn, TNext> stage (final String stageName, final int workers,
+            final Function<? super TOut, ? extends TNext> f)
+        {
+            final Function<Object, Object> function = HcUtil.uncheckedCast (f);
+            return addStage (new StageSpec (m_name, stageName, workers, DEFAULT_MAX_BATCH_SIZE, function, null));
+        }
+
+        private <TNext> Builder<TIn, TNext> addStage (final StageSpec spec)
+        {
+            m_stages.add (spec);
+            return HcUtil.uncheckedCast (this);
+        }
+
+        private int m_maxInFlight;
+
+        private final String m_name;
+
+        private boolean m_ordered;
+
+        private int m_queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+        private final List<StageSpec> m_stages = GenericFactory.newArrayList ();
+    }
+
+    /** An item in the pipeline; a null value is a dropped item, which is only sequenced */
+    private static final class Envelope
+    {
+        private Envelope (final long sequence, final Object value)
+        {
+            m_sequence = sequence;
+            m_value = value;
+        }
+
+        private final long m_sequence;
+
+        private final Object m_value;
+    }
+
+    /** A stage as running, with its queue and statistics */
+    private static final class Stage
+    {
+        private Stage (final StageSpec spec, final int queueCapacity)
+        {
+            m_spec = spec;
+            m_queue = new ArrayBlockingQueue<> (queueCapacity);
+
+            final String name = spec.m_pipelineName + "." + spec.m_name;
+            m_queueDepth = MaxCounter.of (StagedPipelineProcessor.class, "queueDepth." + name);
+            m_countFailed = Counter.of (StagedPipelineProcessor.class, "failed." + name);
+            m_throughput = CounterThroughput.of (StagedPipelineProcessor.class, name, 1_000);
+            m_timedScope = TimedScope.getTimedScope (StagedPipelineProcessor.class, name);
+        }
+
+        /**
+         * @return the outputs of the batch, in the same order, with null for items dropped
+         */
+        private List<Object> handle (final List<Envelope> batch)
+        {
+            final List<Object> outputs = GenericFactory.newArrayList ();
+
+            if (m_spec.m_function != null)
+            {
+                for (final Envelope e : batch)
+                {
+                    outputs.add (e.m_value == null ? null
+                        : handleSafely ( () -> m_timedScope.execute ( () -> m_spec.m_function.apply (e.m_value))));
+                }
+            }
+            else
+            {
+                final List<Object> values = GenericFactory.newArrayList ();
+                batch.forEach (e -> values.add (e.m_value));
+
+                final List<Object> results = handleSafely ( () -> m_timedScope.execute ( () ->
+                {
+                    final List<Object> r = m_spec.m_batchFunction.apply (values);
+                    ThreadContext.assertFault (r != null && r.size () == values.size (),
+                        "Stage [%s] returned a different number of items", m_spec.m_name);
+                    return r;
+                }));
+
+                for (int i = 0; i < batch.size (); ++i)
+                {
+                    outputs.add (results != null ? results.get (i) : null);
+                }
+            }
+
+            for (final Object output : outputs)
+            {
+                if (output != null)
+                {
+                    m_throughput.increment ();
+                }
+            }
+
+            return outputs;
+        }
+
+        private <T> T handleSafely (final Supplier<T> f)
+        {
+            T result = null;
+            try
+            {
+                result = f.get ();
+            }
+            catch (final RuntimeException e)
+            {
+                // Drop the item(s) and keep going.
+                ThreadContext.logException (e);
+                m_countFailed.increment ();
+            }
+
+            return result;
+        }
+
+        private void put (final Envelope e)
+        {
+            try
+            {
+                m_queue.put (e);
+                m_queueDepth.increment ();
+            }
+            catch (final InterruptedException ex)
+            {
+                // Propagate exception as unchecked fault up to the fault barrier.
+                ThreadContext.throwFault (ex);
+            }
+        }
+
+        /** Queues items in sequence order, holding back any that arrive early */
+        private synchronized void sequence (final Envelope e, final Semaphore credits)
+        {
+            m_early.put (e.m_sequence, e);
+
+            Envelope next;
+            while ((next = m_early.remove (m_nextSequence)) != null)
+            {
+                ++m_nextSequence;
+                if (next.m_value == null)
+                {
+                    credits.release ();
+                }
+                else
+                {
+                    put (next);
+                }
+            }
+        }
+
+        private final Counter m_countFailed;
+
+        /** Items that arrived ahead of their turn, keyed by sequence; bounded by the credits */
+        private final Map<Long, Envelope> m_early = GenericFactory.newHashMap ();
+
+        private long m_nextSequence;
+
+        private final BlockingQueue<Envelope> m_queue;
+
+        private final MaxCounter m_queueDepth;
+
+        private final StageSpec m_spec;
+
+        private final CountDownLatch m_terminated = new CountDownLatch (1);
+
+        private final CounterThroughput m_throughput;
+
+        private final TimedScope m_timedScope;
+
+        private volatile boolean m_upstreamDone;
+
+        private final AtomicInteger m_workersRunning = new AtomicInteger ();
+    }
+
+    /** A stage as built */
+    private static final class StageSpec
+    {
+        private StageSpec (final String pipelineName, final String name, final int workers, final int maxBatchSize,
+            final Function<Object, Object> function, final Function<List<Object>, List<Object>> batchFunction)
+        {
+            ThreadContext.assertFault (workers > 0 && maxBatchSize > 0, "Invalid stage [%s %s %s]", name, workers,
+                maxBatchSize);
+
+            m_pipelineName = pipelineName;
+            m_name = name;
+            m_workers = workers;
+            m_maxBatchSize = maxBatchSize;
+            m_function = function;
+            m_batchFunction = batchFunction;
+        }
+
+        private final Function<List<Object>, List<Object>> m_batchFunction;
+
+        private final Function<Object, Object> m_function;
+
+        private final int m_maxBatchSize;
+
+        private final String m_name;
+
+        private final String m_pipelineName;
+
+        private final int m_workers;
+    }
+
+    private volatile boolean m_accepting = true;
+
+    private final Semaphore m_credits;
+
+    private final int m_maxInFlight;
+
+    private final String m_name;
+
+    private final boolean m_ordered;
+
+    private final AtomicLong m_sequence = new AtomicLong ();
+
+    /** Used to coordinate shutdown */
+    private final CountDownLatch m_shutdownLatch = new CountDownLatch (1);
+
+    private final List<Stage> m_stages;
+
+    /** Items taken from a stage queue at a time by a single item stage */
+    private static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    private static final int DEFAULT_QUEUE_CAPACITY = 1_024;
+
+    private static final int POLL_TIMEOUT_MSEC = 100;
+}
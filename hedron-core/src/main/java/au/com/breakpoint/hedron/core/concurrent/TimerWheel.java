@@ -0,0 +1,474 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.log.Logging;
+
+/**
+ * Hashed hierarchical timer wheel (after Varghese and Lauck). Scheduling and cancelling
+ * are O(1) and don't lock, unlike the delay queue of a ScheduledExecutorService, which is
+ * a shared heap. The price is resolution: tasks run on the first tick at or after their
+ * delay.
+ *
+ * Each level is a wheel of 2^WHEEL_BITS slots, each slot covering 2^WHEEL_BITS times the
+ * span of a slot in the level below. A timeout goes into the level of the highest digit
+ * in which its deadline differs from the current tick, and cascades to lower levels as
+ * the current tick catches up with it. Scheduled timeouts are passed to the wheel thread
+ * through a lock-free stack and cancelled ones are discarded when their slot is reached,
+ * so the wheel thread alone owns the slots and nothing is allocated other than the
+ * timeout itself.
+ *
+ * Expired tasks run on the executor, or on the wheel thread if there is none, in which
+ * case they must be brief.
+ */
+public class TimerWheel implements AutoCloseable
+{
+    private TimerWheel (final String name, final long tickMsec, final Executor executor)
+    {
+        ThreadContext.assertFault (tickMsec > 0, "Invalid tick [%s]", tickMsec);
+
+        m_name = name;
+        m_tickNs = TimeUnit.MILLISECONDS.toNanos (tickMsec);
+        m_executor = executor;
+        m_slots = new Timeout[LEVELS][1 << WHEEL_BITS];
+        m_nsStart = System.nanoTime ();
+
+        m_thread = new CustomisingThreadFactory (name, true).newThread (this::run);
+        m_thread.start ();
+    }
+
+    /**
+     * Stops the wheel thread. Tasks not yet run are abandoned.
+     */
+    @Override
+    public void close ()
+    {
+        m_running = false;
+        LockSupport.unpark (m_thread);
+
+        Logging.logDebug ("%s closed", this);
+    }
+
+    public long getTickMsec ()
+    {
+        return TimeUnit.NANOSECONDS.toMillis (m_tickNs);
+    }
+
+    /**
+     * Runs the task once after the delay.
+     */
+    public Timeout schedule (final Runnable task, final long delayMsec)
+    {
+        return schedule (task, delayMsec, 0);
+    }
+
+    /**
+     * Runs the task every period after the initial delay, at a fixed rate, until it is
+     * cancelled or throws.
+     */
+    public Timeout scheduleAtFixedRate (final Runnable task, final long initialDelayMsec, final long periodMsec)
+    {
+        ThreadContext.assertFault (periodMsec > 0, "Invalid period [%s]", periodMsec);
+        return schedule (task, initialDelayMsec, periodMsec);
+    }
+
+    @Override
+    public String toString ()
+    {
+        return String.format ("TimerWheel [%s]", m_name);
+    }
+
+    /** Wheel thread: expires a timeout, or cascades it to a lower level */
+    private void add (final Timeout t)
+    {
+        if (t.m_state.get () == Timeout.SCHEDULED)
+        {
+            if (t.m_deadlineTick <= m_tick)
+            {
+                expire (t);
+            }
+            else
+            {
+                // The level is that of the highest digit that differs from the current tick.
+                final long difference = t.m_deadlineTick ^ m_tick;
+                final int level = Math.min ((63 - Long.numberOfLeadingZeros (difference)) / WHEEL_BITS, LEVELS - 1);
+                final int slot = (int) (t.m_deadlineTick >>> level * WHEEL_BITS) & WHEEL_MASK;
+
+                t.m_nextInSlot = m_slots[level][slot];
+                m_slots[level][slot] = t;
+                ++m_count;
+            }
+        }
+    }
+
+    /** Wheel thread: moves the timeouts in a higher level slot into lower levels */
+    private void cascade ()
+    {
+        for (int level = 1; level < LEVELS; ++level)
+        {
+            final int shift = level * WHEEL_BITS;
+            if ((m_tick & (1L << shift) - 1) != 0)
+            {
+                break;
+            }
+
+            drainSlot (level, (int) (m_tick >>> shift) & WHEEL_MASK);
+        }
+    }
+
+    private long ceilTicks (final long ns)
+    {
+        return (ns + m_tickNs - 1) / m_tickNs;
+    }
+
+    /** Wheel thread: re-adds every timeout in the slot, which expires those that are due */
+    private void drainSlot (final int level, final int slot)
+    {
+        Timeout t = m_slots[level][slot];
+        m_slots[level][slot] = null;
+
+        while (t != null)
+        {
+            final Timeout next = t.m_nextInSlot;
+            t.m_nextInSlot = null;
+            --m_count;
+
+            add (t);
+            t = next;
+        }
+    }
+
+    private void expire (final Timeout t)
+    {
+        if (t.m_state.compareAndSet (Timeout.SCHEDULED, Timeout.RUNNING))
+        {
+            if (m_executor == null)
+            {
+                t.run ();
+            }
+            else
+            {
+                try
+                {
+                    m_executor.execute (t::run);
+                }
+                catch (final RejectedExecutionException e)
+                {
+                    // Executor shut down.
+                    t.m_state.set (Timeout.CANCELLED);
+                    t.complete ();
+                }
+            }
+        }
+    }
+
+    /** Hands a timeout to the wheel thread */
+    private void push (final Timeout t)
+    {
+        Timeout head;
+        do
+        {
+            head = m_pending.get ();
+            t.m_nextPending = head;
+        }
+        while (!m_pending.compareAndSet (head, t));
+
+        if (m_idle)
+        {
+            LockSupport.unpark (m_thread);
+        }
+    }
+
+    private void run ()
+    {
+        while (m_running)
+        {
+            final long targetTick = (System.nanoTime () - m_nsStart) / m_tickNs;
+            if (m_count == 0)
+            {
+                // Nothing to cascade or expire in the ticks missed.
+                m_tick = Math.max (m_tick, targetTick);
+            }
+
+            // Take newly scheduled timeouts.
+            Timeout t = m_pending.getAndSet (null);
+            while (t != null)
+            {
+                final Timeout next = t.m_nextPending;
+                t.m_nextPending = null;
+
+                add (t);
+                t = next;
+            }
+
+            while (m_tick < targetTick)
+            {
+                ++m_tick;
+                cascade ();
+                drainSlot (0, (int) m_tick & WHEEL_MASK);
+            }
+
+            if (m_count == 0)
+            {
+                // Park until something is scheduled.
+                m_idle = true;
+                if (m_pending.get () == null && m_running)
+                {
+                    LockSupport.parkNanos (this, NS_IDLE_PARK);
+                }
+                m_idle = false;
+            }
+            else
+            {
+                final long nsNextTick = m_nsStart + (m_tick + 1) * m_tickNs;
+                LockSupport.parkNanos (this, nsNextTick - System.nanoTime ());
+            }
+        }
+    }
+
+    private Timeout schedule (final Runnable task, final long delayMsec, final long periodMsec)
+    {
+        ThreadContext.assertFault (m_running, "%s is closed", this);
+
+        // Round up so that the task never runs early.
+        final long nsDelay = TimeUnit.MILLISECONDS.toNanos (Math.max (delayMsec, 0));
+        final long deadlineTick = ceilTicks (System.nanoTime () - m_nsStart + nsDelay);
+        final long periodTicks =
+            periodMsec > 0 ? Math.max (ceilTicks (TimeUnit.MILLISECONDS.toNanos (periodMsec)), 1) : 0;
+
+        final Timeout t = new Timeout (this, task, deadlineTick, periodTicks);
+        push (t);
+
+        return t;
+    }
+
+    public static TimerWheel of (final String name, final long tickMsec, final Executor executor)
+    {
+        return new TimerWheel (name, tickMsec, executor);
+    }
+
+    /**
+     * A scheduled task. Cancelling it is O(1): it is left in its slot and discarded when
+     * the slot is reached.
+     */
+    public static final class Timeout implements ScheduledFuture<Object>
+    {
+        private Timeout (final TimerWheel wheel, final Runnable task, final long deadlineTick, final long periodTicks)
+        {
+            m_wheel = wheel;
+            m_task = task;
+            m_deadlineTick = deadlineTick;
+            m_periodTicks = periodTicks;
+        }
+
+        /**
+         * A periodic task can be cancelled while running, which stops it being run again.
+         */
+        @Override
+        public boolean cancel (final boolean mayInterruptIfRunning)
+        {
+            final boolean cancelled = m_state.compareAndSet (SCHEDULED, CANCELLED)
+                || m_periodTicks > 0 && m_state.compareAndSet (RUNNING, CANCELLED);
+            if (cancelled)
+            {
+                complete ();
+            }
+
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo (final Delayed o)
+        {
+            return Long.compare (getDelay (TimeUnit.NANOSECONDS), o.getDelay (TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public Object get () throws InterruptedException, ExecutionException
+        {
+            synchronized (this)
+            {
+                while (!isDone ())
+                {
+                    wait ();
+                }
+            }
+
+            return getResult ();
+        }
+
+        @Override
+        public Object get (final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException
+        {
+            final long nsUntil = System.nanoTime () + unit.toNanos (timeout);
+            synchronized (this)
+            {
+                long nsRemaining;
+                while (!isDone () && (nsRemaining = nsUntil - System.nanoTime ()) > 0)
+                {
+                    TimeUnit.NANOSECONDS.timedWait (this, nsRemaining);
+                }
+            }
+
+            if (!isDone ())
+            {
+                throw new TimeoutException ();
+            }
+
+            return getResult ();
+        }
+
+        @Override
+        public long getDelay (final TimeUnit unit)
+        {
+            final long nsDeadline = m_wheel.m_nsStart + m_deadlineTick * m_wheel.m_tickNs;
+            return unit.convert (nsDeadline - System.nanoTime (), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public boolean isCancelled ()
+        {
+            return m_state.get () == CANCELLED;
+        }
+
+        @Override
+        public boolean isDone ()
+        {
+            final int state = m_state.get ();
+            return state == DONE || state == CANCELLED;
+        }
+
+        private synchronized void complete ()
+        {
+            notifyAll ();
+        }
+
+        private Object getResult () throws ExecutionException
+        {
+            if (isCancelled ())
+            {
+                throw new CancellationException ();
+            }
+            if (m_failure != null)
+            {
+                throw new ExecutionException (m_failure);
+            }
+
+            return null;
+        }
+
+        private void run ()
+        {
+            try
+            {
+                m_task.run ();
+            }
+            catch (final Throwable e)
+            {
+                // Not logged, as per ScheduledExecutorService: available from get ().
+                m_failure = e;
+            }
+
+            if (m_periodTicks > 0 && m_failure == null)
+            {
+                m_deadlineTick += m_periodTicks;
+                if (m_state.compareAndSet (RUNNING, SCHEDULED))
+                {
+                    m_wheel.push (this);
+                }
+            }
+            else if (m_state.compareAndSet (RUNNING, DONE))
+            {
+                complete ();
+            }
+        }
+
+        private volatile long m_deadlineTick;
+
+        private volatile Throwable m_failure;
+
+        /** Link in the wheel thread's slot list */
+        private Timeout m_nextInSlot;
+
+        /** Link in the pending stack */
+        private Timeout m_nextPending;
+
+        private final long m_periodTicks;
+
+        private final AtomicInteger m_state = new AtomicInteger (SCHEDULED);
+
+        private final Runnable m_task;
+
+        private final TimerWheel m_wheel;
+
+        private static final int CANCELLED = 3;
+
+        private static final int DONE = 2;
+
+        private static final int RUNNING = 1;
+
+        private static final int SCHEDULED = 0;
+    }
+
+    /** Number of timeouts in the slots, including cancelled ones not yet discarded */
+    private int m_count;
+
+    private final Executor m_executor;
+
+    private volatile boolean m_idle;
+
+    private final String m_name;
+
+    private final long m_nsStart;
+
+    /** Timeouts scheduled but not yet taken by the wheel thread */
+    private final AtomicReference<Timeout> m_pending = new AtomicReference<> ();
+
+    private volatile boolean m_running = true;
+
+    /** Slot lists by level; owned by the wheel thread */
+    private final Timeout[][] m_slots;
+
+    private final Thread m_thread;
+
+    /** Last tick handled; owned by the wheel thread */
+    private long m_tick;
+
+    private final long m_tickNs;
+
+    /** 6 levels of 64 slots span 2^36 ticks: over 2 years at 1 msec */
+    private static final int LEVELS = 6;
+
+    private static final long NS_IDLE_PARK = TimeUnit.SECONDS.toNanos (1);
+
+    private static final int WHEEL_BITS = 6;
+
+    private static final int WHEEL_MASK = (1 << WHEEL_BITS) - 1;
+}
@@ -23,6 +23,7 @@ import java.sql.SQLFeatureNotSupportedException;
 import java.util.logging.Logger;
 import javax.sql.DataSource;
 import org.apache.commons.dbcp2.BasicDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.datasource.SmartDataSource;
 
@@ -74,6 +75,20 @@ public class JdbcConnectionCachingDataSource implements SmartDataSource
         return m_connection;
     }
 
+    /**
+     * The JdbcTemplate for DaoUtil statements on this data source, created on first use.
+     * Like the connection, it is only used by the scope's thread.
+     */
+    public JdbcTemplate getJdbcTemplate ()
+    {
+        if (m_jdbcTemplate == null)
+        {
+            m_jdbcTemplate = new JdbcTemplate (this);
+        }
+
+        return m_jdbcTemplate;
+    }
+
     @Override
     public int getLoginTimeout () throws SQLException
     {
@@ -92,6 +107,12 @@ public class JdbcConnectionCachingDataSource implements SmartDataSource
         return m_realDataSource.getParentLogger ();
     }
 
+    /** The decorated data source, which outlives this one */
+    public DataSource getRealDataSource ()
+    {
+        return m_realDataSource;
+    }
+
     @Override
     public boolean isWrapperFor (final Class<?> iface) throws SQLException
     {
@@ -148,6 +169,8 @@ public class JdbcConnectionCachingDataSource implements SmartDataSource
 
     private Connection m_connection;
 
+    private JdbcTemplate m_jdbcTemplate;
+
     private final DataSource m_realDataSource;
 
     private boolean m_shouldClose;// connection is held until this is set
@@ -33,15 +33,26 @@ public class SimpleJdbcTransactionScope extends ExecutionScope implements ITrans
 
         m_connectionCachingDataSource = new JdbcConnectionCachingDataSource (realDataSource);
 
-        final Connection connection = HcUtilJdbc.getConnection (m_connectionCachingDataSource);
-        //System.out.printf ("Create connection [%s]%n", connection);
+        try
+        {
+            final Connection connection = HcUtilJdbc.getConnection (m_connectionCachingDataSource);
+            //System.out.printf ("Create connection [%s]%n", connection);
 
-        // Set the isolation level before starting the transaction.
-        //HcUtilJdbc.setTransactionIsolationLevel (connection, Connection.TRANSACTION_SERIALIZABLE);
+            // Set the isolation level before starting the transaction.
+            //HcUtilJdbc.setTransactionIsolationLevel (connection, Connection.TRANSACTION_SERIALIZABLE);
 
-        // Turn off auto-commit. This connection will be held for the remainder of the transaction
-        // by JdbcConnectionCachingDataSource. This starts a transaction.
-        HcUtilJdbc.setAutoCommit (connection, false);
+            // Turn off auto-commit. This connection will be held for the remainder of the transaction
+            // by JdbcConnectionCachingDataSource. This starts a transaction.
+            HcUtilJdbc.setAutoCommit (connection, false);
+        }
+        catch (final RuntimeException e)
+        {
+            // A try-with-resources block doesn't close a scope whose constructor throws, so
+            // unwind it here rather than leave it on the thread's scope stack.
+            m_connectionCachingDataSource.closeConnection ();
+            super.close ();
+            throw e;
+        }
     }
 
     @Override
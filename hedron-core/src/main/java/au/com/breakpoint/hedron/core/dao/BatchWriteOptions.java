@@ -0,0 +1,95 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.dao;
+
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+
+/**
+ * How DaoUtil writes a batch of inserts, updates or deletes. The rows are split into chunks
+ * of rowsPerChunk, each of which is one JDBC batch (one round trip). When chunksPerCommit is
+ * positive, each run of that many chunks is written in its own transaction; when zero, the
+ * chunks are written with the connection's own commit mode as before. When parallelism is
+ * greater than one, these units of work are written concurrently, each on its own pooled
+ * connection, so this is only suitable for rows that don't depend on one another.
+ *
+ * Commit grouping and parallelism are ignored when the data source is already
+ * transactional, since all the chunks must then share the caller's connection and the
+ * caller owns the commit.
+ *
+ * Example:
+ *
+ * DaoUtil.setBatchWriteOptions (BatchWriteOptions.of (500, 10, 4));
+ */
+public final class BatchWriteOptions
+{
+    private BatchWriteOptions (final int rowsPerChunk, final int chunksPerCommit, final int parallelism)
+    {
+        ThreadContext.assertFault (rowsPerChunk > 0, "Invalid rowsPerChunk [%s]", rowsPerChunk);
+        ThreadContext.assertFault (chunksPerCommit >= 0, "Invalid chunksPerCommit [%s]", chunksPerCommit);
+        ThreadContext.assertFault (parallelism > 0, "Invalid parallelism [%s]", parallelism);
+
+        m_rowsPerChunk = rowsPerChunk;
+        m_chunksPerCommit = chunksPerCommit;
+        m_parallelism = parallelism;
+    }
+
+    public int getChunksPerCommit ()
+    {
+        return m_chunksPerCommit;
+    }
+
+    public int getParallelism ()
+    {
+        return m_parallelism;
+    }
+
+    public int getRowsPerChunk ()
+    {
+        return m_rowsPerChunk;
+    }
+
+    @Override
+    public String toString ()
+    {
+        return String.format ("BatchWriteOptions [rowsPerChunk=%s, chunksPerCommit=%s, parallelism=%s]",
+            m_rowsPerChunk, m_chunksPerCommit, m_parallelism);
+    }
+
+    /**
+     * Factory method
+     *
+     * @param rowsPerChunk
+     *            rows sent per JDBC batch
+     * @param chunksPerCommit
+     *            chunks per transaction, or 0 to leave commits to the connection
+     * @param parallelism
+     *            maximum number of chunks (or commit groups) written concurrently
+     */
+    public static BatchWriteOptions of (final int rowsPerChunk, final int chunksPerCommit, final int parallelism)
+    {
+        return new BatchWriteOptions (rowsPerChunk, chunksPerCommit, parallelism);
+    }
+
+    private final int m_chunksPerCommit;
+
+    private final int m_parallelism;
+
+    private final int m_rowsPerChunk;
+
+    /** Sequential chunks of 1000 rows, committed as the connection's commit mode dictates */
+    public static final BatchWriteOptions Default = of (1_000, 0, 1);
+}
@@ -0,0 +1,141 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.dao;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import au.com.breakpoint.hedron.core.HcUtil;
+
+/**
+ * Outcome of a chunked batch write, see DaoUtil.performBatch (). The per-row counts are as
+ * returned by the JDBC driver, with Statement.EXECUTE_FAILED for every row of a failed or
+ * skipped chunk. When a chunk fails inside a commit group, the group is rolled back and
+ * each of its chunks is reported as failed with the same cause. Chunks are skipped when
+ * the write stops at the first failure.
+ */
+public final class BatchWriteResult
+{
+    BatchWriteResult (final int[] rowCounts, final int chunkCount, final List<ChunkFailure> failures,
+        final int skippedChunkCount)
+    {
+        m_rowCounts = rowCounts;
+        m_chunkCount = chunkCount;
+        m_failures = Collections.unmodifiableList (failures);
+        m_skippedChunkCount = skippedChunkCount;
+    }
+
+    public int getChunkCount ()
+    {
+        return m_chunkCount;
+    }
+
+    public List<ChunkFailure> getFailures ()
+    {
+        return m_failures;
+    }
+
+    public int[] getRowCounts ()
+    {
+        return m_rowCounts;
+    }
+
+    /**
+     * @return the sum of the known row counts, ie excluding failed rows and rows the driver
+     *         reported as Statement.SUCCESS_NO_INFO
+     */
+    public int getRowCountTotal ()
+    {
+        return Arrays.stream (m_rowCounts).filter (c -> c > 0).sum ();
+    }
+
+    /**
+     * @return number of chunks not attempted because an earlier chunk failed
+     */
+    public int getSkippedChunkCount ()
+    {
+        return m_skippedChunkCount;
+    }
+
+    public boolean hasFailures ()
+    {
+        return !m_failures.isEmpty ();
+    }
+
+    @Override
+    public String toString ()
+    {
+        return String.format ("BatchWriteResult [rows=%s, chunks=%s, skipped=%s, failures=%s]", m_rowCounts.length,
+            m_chunkCount, m_skippedChunkCount, m_failures);
+    }
+
+    /** A chunk that wasn't written, immutable for concurrency reasons */
+    public static final class ChunkFailure
+    {
+        ChunkFailure (final int chunkIndex, final int firstRow, final int rowCount, final Throwable cause)
+        {
+            m_chunkIndex = chunkIndex;
+            m_firstRow = firstRow;
+            m_rowCount = rowCount;
+            m_cause = cause;
+        }
+
+        public Throwable getCause ()
+        {
+            return m_cause;
+        }
+
+        public int getChunkIndex ()
+        {
+            return m_chunkIndex;
+        }
+
+        /** Index of the chunk's first row in the batch */
+        public int getFirstRow ()
+        {
+            return m_firstRow;
+        }
+
+        public int getRowCount ()
+        {
+            return m_rowCount;
+        }
+
+        @Override
+        public String toString ()
+        {
+            return String.format ("chunk %s rows %s-%s: %s", m_chunkIndex, m_firstRow, m_firstRow + m_rowCount - 1,
+                HcUtil.getRootCause (m_cause).getMessage ());
+        }
+
+        private final Throwable m_cause;
+
+        private final int m_chunkIndex;
+
+        private final int m_firstRow;
+
+        private final int m_rowCount;
+    }
+
+    private final int m_chunkCount;
+
+    private final List<ChunkFailure> m_failures;
+
+    private final int[] m_rowCounts;
+
+    private final int m_skippedChunkCount;
+}
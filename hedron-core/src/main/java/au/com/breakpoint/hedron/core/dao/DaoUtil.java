@@ -16,24 +16,50 @@
 //
 package au.com.breakpoint.hedron.core.dao;
 
+import static java.util.Comparator.comparingInt;
 import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Supplier;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import javax.sql.DataSource;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.SmartDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
 import org.springframework.jdbc.object.StoredProcedure;
 import org.springframework.jdbc.support.lob.DefaultLobHandler;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import au.com.breakpoint.hedron.core.Counter;
+import au.com.breakpoint.hedron.core.CounterThroughput;
 import au.com.breakpoint.hedron.core.GenericFactory;
 import au.com.breakpoint.hedron.core.HcUtil;
 import au.com.breakpoint.hedron.core.TimedScope;
+import au.com.breakpoint.hedron.core.concurrent.Concurrency;
+import au.com.breakpoint.hedron.core.context.JdbcConnectionCachingDataSource;
+import au.com.breakpoint.hedron.core.context.SimpleJdbcTransactionScope;
 import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.dao.BatchWriteResult.ChunkFailure;
 import au.com.breakpoint.hedron.core.dao.IEntity.ColumnType;
+import au.com.breakpoint.hedron.core.dao.SqlTemplateCache.SqlTemplate;
 import au.com.breakpoint.hedron.core.log.Logging;
 
 public class DaoUtil
@@ -80,6 +106,351 @@ public class DaoUtil
         private String m_sql;
     }
 
+    /** Lazily creates the threads shared by parallel batch writes */
+    private static final class BatchExecutorHolder
+    {
+        static final ExecutorService Instance = Concurrency.createCachedThreadPool ("DaoUtil.batch", true);
+    }
+
+    /**
+     * Writes a batch as a sequence of units of work, each either one chunk or one commit
+     * group of chunks. run () claims units until none are left, so any number of threads can
+     * share a writer; the results go into disjoint ranges of the row counts. Unless
+     * continueOnFailure is set, no further units are started once one has failed.
+     */
+    private static final class ChunkedBatchWriter implements Runnable
+    {
+        public ChunkedBatchWriter (final DataSource dataSource, final String sql,
+            final List<Object[]> batchColumnValues, final int rowsPerChunk, final int chunksPerCommit,
+            final boolean continueOnFailure)
+        {
+            m_continueOnFailure = continueOnFailure;
+            m_dataSource = dataSource;
+            m_sql = sql;
+            m_batchColumnValues = batchColumnValues;
+            m_rowsPerChunk = rowsPerChunk;
+            m_chunksPerUnit = Math.max (chunksPerCommit, 1);
+            m_isCommitGroup = chunksPerCommit > 0;
+            m_chunkCount = (batchColumnValues.size () + rowsPerChunk - 1) / rowsPerChunk;
+            m_unitCount = (m_chunkCount + m_chunksPerUnit - 1) / m_chunksPerUnit;
+            m_rowCounts = new int[batchColumnValues.size ()];
+            m_timedScope = getTimedScope ("BATCH [" + sql + "]");
+        }
+
+        public BatchWriteResult getResult ()
+        {
+            final List<ChunkFailure> failures = new ArrayList<> (m_failures);
+            failures.sort (comparingInt (ChunkFailure::getChunkIndex));
+
+            return new BatchWriteResult (m_rowCounts, m_chunkCount, failures, m_skippedChunkCount.get ());
+        }
+
+        public int getUnitCount ()
+        {
+            return m_unitCount;
+        }
+
+        @Override
+        public void run ()
+        {
+            for (int unit = m_nextUnit.getAndIncrement (); unit < m_unitCount; unit = m_nextUnit.getAndIncrement ())
+            {
+                final int firstChunk = unit * m_chunksPerUnit;
+                final int endChunk = Math.min (firstChunk + m_chunksPerUnit, m_chunkCount);
+
+                if (m_failed && !m_continueOnFailure)
+                {
+                    skip (firstChunk, endChunk);
+                }
+                else if (m_isCommitGroup)
+                {
+                    writeCommitGroup (firstChunk, endChunk);
+                }
+                else
+                {
+                    writeChunk (m_dataSource, firstChunk);
+                }
+            }
+        }
+
+        private void onFailure (final int chunk, final RuntimeException e)
+        {
+            final int firstRow = getFirstRow (chunk);
+            final int endRow = getEndRow (chunk);
+            Arrays.fill (m_rowCounts, firstRow, endRow, Statement.EXECUTE_FAILED);
+
+            m_failures.add (new ChunkFailure (chunk, firstRow, endRow - firstRow, e));
+            m_batchChunkFailures.increment ();
+            m_failed = true;
+        }
+
+        private void skip (final int firstChunk, final int endChunk)
+        {
+            Arrays.fill (m_rowCounts, getFirstRow (firstChunk), getEndRow (endChunk - 1), Statement.EXECUTE_FAILED);
+            m_skippedChunkCount.addAndGet (endChunk - firstChunk);
+        }
+
+        private int getEndRow (final int chunk)
+        {
+            return Math.min (getFirstRow (chunk) + m_rowsPerChunk, m_rowCounts.length);
+        }
+
+        private int getFirstRow (final int chunk)
+        {
+            return chunk * m_rowsPerChunk;
+        }
+
+        /** Writes one chunk, reporting rather than throwing any failure */
+        private void writeChunk (final DataSource dataSource, final int chunk)
+        {
+            try
+            {
+                writeChunkRows (dataSource, chunk);
+                m_batchRows.add (getEndRow (chunk) - getFirstRow (chunk));
+            }
+            catch (final RuntimeException e)
+            {
+                onFailure (chunk, e);
+            }
+        }
+
+        private void writeChunkRows (final DataSource dataSource, final int chunk)
+        {
+            final int firstRow = getFirstRow (chunk);
+            final List<Object[]> rows = m_batchColumnValues.subList (firstRow, getEndRow (chunk));
+
+            final int[] rowCounts =
+                m_timedScope.execute ( () -> getJdbcTemplate (dataSource).batchUpdate (m_sql, rows));
+            System.arraycopy (rowCounts, 0, m_rowCounts, firstRow, rowCounts.length);
+        }
+
+        /** Writes the chunks in one transaction, all or nothing */
+        private void writeCommitGroup (final int firstChunk, final int endChunk)
+        {
+            try
+            {
+                // The scope commits on close, so the rows are only counted once it has closed.
+                try (final SimpleJdbcTransactionScope scope = new SimpleJdbcTransactionScope (m_dataSource))
+                {
+                    for (int chunk = firstChunk; chunk < endChunk; ++chunk)
+                    {
+                        writeChunkRows (scope.getDataSource (), chunk);
+                    }
+                    scope.voteToCommit ();
+                }
+                m_batchRows.add (getEndRow (endChunk - 1) - getFirstRow (firstChunk));
+            }
+            catch (final RuntimeException e)
+            {
+                for (int chunk = firstChunk; chunk < endChunk; ++chunk)
+                {
+                    onFailure (chunk, e);
+                }
+            }
+        }
+
+        private final List<Object[]> m_batchColumnValues;
+
+        private final int m_chunkCount;
+
+        private final int m_chunksPerUnit;
+
+        private final boolean m_continueOnFailure;
+
+        private final DataSource m_dataSource;
+
+        private volatile boolean m_failed;
+
+        private final List<ChunkFailure> m_failures = new CopyOnWriteArrayList<> ();
+
+        private final boolean m_isCommitGroup;
+
+        private final AtomicInteger m_nextUnit = new AtomicInteger ();
+
+        private final int[] m_rowCounts;
+
+        private final int m_rowsPerChunk;
+
+        private final AtomicInteger m_skippedChunkCount = new AtomicInteger ();
+
+        private final String m_sql;
+
+        private final TimedScope m_timedScope;
+
+        private final int m_unitCount;
+    }
+
+    /**
+     * Forward-only cursor over a query's result set, mapping one row per advance. The
+     * connection is held from construction until close (), which also records the
+     * elapsed time of the whole iteration against the statement's TimedScope.
+     */
+    private static final class StreamingCursor<T> extends Spliterators.AbstractSpliterator<T>
+    {
+        public StreamingCursor (final DataSource dataSource, final RowMapper<T> mapper, final int fetchSize,
+            final String sql, final Object[] parameterValues)
+        {
+            super (Long.MAX_VALUE, Spliterator.ORDERED);
+
+            m_dataSource = dataSource;
+            m_mapper = mapper;
+            m_sql = sql;
+            m_timedScope = getTimedScope ("STREAM [" + sql + "]");
+            m_nsStart = System.nanoTime ();
+            m_connection = DataSourceUtils.getConnection (dataSource);
+
+            try
+            {
+                m_statement =
+                    m_connection.prepareStatement (sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                m_statement.setFetchSize (fetchSize);
+                new ArgumentPreparedStatementSetter (parameterValues).setValues (m_statement);
+                m_resultSet = m_statement.executeQuery ();
+            }
+            catch (final SQLException | RuntimeException ex)
+            {
+                // Release the statement and connection whatever failed, eg the parameter setter.
+                m_failed = true;
+                close ();
+
+                // Propagate exception as unchecked fault up to the fault barrier.
+                ThreadContext.throwFault (ex);
+            }
+        }
+
+        public void close ()
+        {
+            if (!m_closed)
+            {
+                m_closed = true;
+
+                JdbcUtils.closeResultSet (m_resultSet);
+                JdbcUtils.closeStatement (m_statement);
+                DataSourceUtils.releaseConnection (m_connection, m_dataSource);
+
+                m_timedScope.record (System.nanoTime () - m_nsStart, !m_failed);
+                Logging.logDebug ("STREAM [%s] %s rows", m_sql, m_rowCount);
+            }
+        }
+
+        @Override
+        public boolean tryAdvance (final Consumer<? super T> action)
+        {
+            boolean advanced = false;
+
+            if (!m_closed)
+            {
+                boolean succeeded = false;
+                try
+                {
+                    if (m_resultSet.next ())
+                    {
+                        action.accept (m_mapper.mapRow (m_resultSet, m_rowCount++));
+                        advanced = true;
+                    }
+                    succeeded = true;
+                }
+                catch (final SQLException ex)
+                {
+                    // Propagate exception as unchecked fault up to the fault barrier.
+                    ThreadContext.throwFault (ex);
+                }
+                finally
+                {
+                    m_failed |= !succeeded;
+                }
+
+                if (!advanced)
+                {
+                    // Exhausted: give the connection back now rather than when the stream is closed.
+                    close ();
+                }
+            }
+
+            return advanced;
+        }
+
+        private boolean m_closed;
+
+        private final Connection m_connection;
+
+        private final DataSource m_dataSource;
+
+        private boolean m_failed;
+
+        private final RowMapper<T> m_mapper;
+
+        private final long m_nsStart;
+
+        private ResultSet m_resultSet;
+
+        private int m_rowCount;
+
+        private final String m_sql;
+
+        private PreparedStatement m_statement;
+
+        private final TimedScope m_timedScope;
+    }
+
+    /**
+     * Appends the keyset ("seek") predicate that selects the rows after a given row in the
+     * order of orderByColumns. For order by c0, c1 desc this is
+     *
+     * (c0 > ? or (c0 = ? and c1 < ?))
+     *
+     * whose parameters are the given row's values of c0; c0, c1. Unlike offset paging, the
+     * database can seek straight to the first row of the page using an index on the order
+     * by columns.
+     *
+     * @param hasWhere
+     *            whether sqlFragment already has a where clause, to be and-ed with
+     */
+    public static String appendKeysetSqlClause (final String sqlFragment, final String[] columnPhysicalNames,
+        final boolean hasWhere, final OrderByElement... orderByColumns)
+    {
+        final StringBuilder sb = new StringBuilder ();
+        sb.append (sqlFragment);
+        sb.append (hasWhere ? " and (" : " where (");
+
+        for (int i = 0; i < orderByColumns.length; ++i)
+        {
+            if (i > 0)
+            {
+                sb.append (" or (");
+            }
+
+            for (int j = 0; j < i; ++j)
+            {
+                sb.append (columnPhysicalNames[orderByColumns[j].getColumnId ()]);
+                sb.append (" = ? and ");
+            }
+
+            final OrderByElement obe = orderByColumns[i];
+            sb.append (columnPhysicalNames[obe.getColumnId ()]);
+            sb.append (obe.isAscending () ? " > ?" : " < ?");
+
+            if (i > 0)
+            {
+                sb.append (')');
+            }
+        }
+        sb.append (')');
+
+        final String sqlString = sb.toString ();
+
+        return sqlString;
+    }
+
+    /**
+     * @return sqlFragment, which must be a select with any order by already applied,
+     *         limited to limit rows in the way the dialect requires
+     */
+    public static String appendLimitSqlClause (final String sqlFragment, final int limit, final SqlDialect dialect)
+    {
+        return dialect.applyLimit (sqlFragment, limit);
+    }
+
     public static String appendOrderBySqlClause (final String sqlFragment, final String[] columnPhysicalNames,
         OrderByElement... orderByColumns)
     {
@@ -232,12 +603,57 @@ public class DaoUtil
         return dumpCreateEntityCode (Arrays.asList (entities));
     }
 
+    public static BatchWriteOptions getBatchWriteOptions ()
+    {
+        return m_batchWriteOptions;
+    }
+
+    public static String getClobAsString (final ResultSet rs, final int columnIndex) throws SQLException
+    {
+        return new DefaultLobHandler ().getClobAsString (rs, columnIndex);
+    }
+
     public static String getClobAsString (final ResultSet rs, final String columnName) throws SQLException
     {
         final String clobAsString = new DefaultLobHandler ().getClobAsString (rs, columnName);
         return clobAsString;
     }
 
+    /**
+     * Gets the JdbcTemplate shared by all DaoUtil operations on the data source. A
+     * JdbcTemplate is thread-safe once configured, and sharing one avoids re-initialising
+     * its exception translator per statement.
+     *
+     * The JdbcConnectionCachingDataSource of a transaction scope is short-lived, so it
+     * holds its own JdbcTemplate for the statements of the scope rather than churning the
+     * shared ones. Other SmartDataSources get a new JdbcTemplate each time.
+     */
+    public static JdbcTemplate getJdbcTemplate (final DataSource dataSource)
+    {
+        JdbcTemplate sjt = null;
+        if (dataSource instanceof JdbcConnectionCachingDataSource)
+        {
+            sjt = ((JdbcConnectionCachingDataSource) dataSource).getJdbcTemplate ();
+        }
+        else
+        {
+            sjt = dataSource instanceof SmartDataSource ? new JdbcTemplate (dataSource)
+                : m_jdbcTemplates.get (dataSource);
+        }
+
+        if (sjt == null)
+        {
+            if (m_jdbcTemplates.size () >= MAX_JDBC_TEMPLATES)
+            {
+                // Data sources are normally long-lived, so this only guards against churn.
+                m_jdbcTemplates.clear ();
+            }
+            sjt = m_jdbcTemplates.computeIfAbsent (dataSource, JdbcTemplate::new);
+        }
+
+        return sjt;
+    }
+
     public static <T> T getOutParameter (final Map<?, ?> outParams, final String parameterName,
         final String storedProcedureName)
     {
@@ -248,6 +664,34 @@ public class DaoUtil
         return HcUtil.uncheckedCast (op);// doesn't compile under javac 5
     }
 
+    /**
+     * The dialect is detected from the database product name the first time, unless it has
+     * been set by setSqlDialect (). If the database can't be asked, the SQL standard
+     * SqlDialect.FetchFirst is assumed.
+     */
+    public static SqlDialect getSqlDialect (final DataSource dataSource)
+    {
+        // A transaction scope's data source is short-lived, so the dialect is remembered
+        // against the real data source it decorates.
+        final DataSource key = dataSource instanceof JdbcConnectionCachingDataSource
+            ? ((JdbcConnectionCachingDataSource) dataSource).getRealDataSource () : dataSource;
+        SqlDialect dialect = m_sqlDialects.get (key);
+
+        if (dialect == null)
+        {
+            // Detected on the scope's connection, if any, rather than taking another.
+            dialect = detectSqlDialect (dataSource);
+
+            // Other scoped data sources aren't remembered.
+            if (!(key instanceof SmartDataSource))
+            {
+                setSqlDialect (key, dialect);
+            }
+        }
+
+        return dialect;
+    }
+
     public static SqlData getWhereExpressionSqlData (final String sqlFragment, final String[] columnPhysicalNames,
         WhereElement[] clauses)
     {
@@ -279,6 +723,48 @@ public class DaoUtil
         return new SqlData (sqlString, argValues);
     }
 
+    /**
+     * Writes the rows in chunks as the options dictate. Failures are reported in the
+     * result, not thrown.
+     *
+     * @param batchColumnValues
+     *            the parameter values of each row, in order
+     * @param continueOnFailure
+     *            if true, the remaining chunks are still written after a chunk fails;
+     *            otherwise no further chunks are started and those not written are
+     *            reported as skipped
+     */
+    public static BatchWriteResult performBatch (final DataSource dataSource, final String sql,
+        final List<Object[]> batchColumnValues, final BatchWriteOptions options, final boolean continueOnFailure)
+    {
+        // A transactional data source pins every chunk to the caller's connection, and the
+        // caller owns the commit.
+        final boolean isTransactional = isTransactional (dataSource);
+        final int chunksPerCommit = isTransactional ? 0 : options.getChunksPerCommit ();
+
+        final ChunkedBatchWriter writer = new ChunkedBatchWriter (dataSource, sql, batchColumnValues,
+            options.getRowsPerChunk (), chunksPerCommit, continueOnFailure);
+        final int parallelism = isTransactional ? 1 : Math.min (options.getParallelism (), writer.getUnitCount ());
+
+        if (parallelism > 1)
+        {
+            // The calling thread is one of the writers.
+            final List<Future<Void>> futures = GenericFactory.newArrayList ();
+            for (int i = 1; i < parallelism; ++i)
+            {
+                futures.add (BatchExecutorHolder.Instance.submit (writer, null));
+            }
+            writer.run ();
+            HcUtil.waitForFutures (futures);
+        }
+        else
+        {
+            writer.run ();
+        }
+
+        return writer.getResult ();
+    }
+
     public static <TPrimaryKey> int performDelete (final DataSource dataSource, final IEntity<TPrimaryKey> e,
         final String sql)
     {
@@ -289,16 +775,16 @@ public class DaoUtil
     public static int performDelete (final DataSource dataSource, final String sqlFragment, final String[] columnNames,
         final WhereElement[] whereElements)
     {
-        final SqlData sfd = getWhereExpressionSqlData (sqlFragment, columnNames, whereElements);
-        final String sql = sfd.getSql ();
-        Logging.logTrace ("SQL created [%s]", sql);
+        final SqlTemplate template = SqlTemplateCache.getDeleteTemplate (sqlFragment, columnNames, whereElements);
+        final String sql = template.getSql ();
+        final Object[] parameterValues = template.bind (null, whereElements);
 
-        final TimedScope ts = getTimedScope (sql);
+        final TimedScope ts = template.getTimedScope ();
 
         final Integer rowCount = ts.execute ( () ->
         {
-            final JdbcTemplate sjt = new JdbcTemplate (dataSource);
-            return sjt.update (sql, sfd.getParameterValues ());
+            final JdbcTemplate sjt = getJdbcTemplate (dataSource);
+            return sjt.update (sql, parameterValues);
         });
         Logging.logDebug ("[%s] %s affected", sql, rowCount);
 
@@ -337,7 +823,7 @@ public class DaoUtil
 
         final Integer rowCount = ts.execute ( () ->
         {
-            final JdbcTemplate sjt = new JdbcTemplate (dataSource);
+            final JdbcTemplate sjt = getJdbcTemplate (dataSource);
             return sjt.update (sql, parameterValues);
         });
 
@@ -348,37 +834,83 @@ public class DaoUtil
     public static <T extends IEntity<?>> List<T> performFetch (final DataSource dataSource, final RowMapper<T> mapper,
         final String sql, final Object... parameterValues)
     {
-        final TimedScope ts = getTimedScope (sql);
-
-        final List<T> entities = ts.execute ( () ->
-        {
-            final JdbcTemplate sjt = new JdbcTemplate (dataSource);
-            return sjt.query (sql, mapper, parameterValues);
-        });
-        //System.out.println (dumpCreateEntityCode (entities));
-
-        Logging.logDebug ("[%s] %s rows", sql, entities.size ());
-        return entities;
+        return executeFetch (dataSource, mapper, getTimedScope (sql), sql, parameterValues);
     }
 
     public static <T extends IEntity<?>> List<T> performFetch (final DataSource dataSource, final RowMapper<T> mapper,
         final String sqlFragment, final String[] columnNames, final OrderByElement[] orderByElements)
     {
-        final String sql = appendOrderBySqlClause (sqlFragment, columnNames, orderByElements);
-        Logging.logTrace ("SQL created [%s]", sql);
+        final SqlTemplate template =
+            SqlTemplateCache.getFetchTemplate (sqlFragment, columnNames, null, orderByElements);
 
-        return performFetch (dataSource, mapper, sql);
+        return executeFetch (dataSource, mapper, template.getTimedScope (), template.getSql ());
     }
 
     public static <T extends IEntity<?>> List<T> performFetch (final DataSource dataSource, final RowMapper<T> mapper,
         final String sqlFragment, final String[] columnNames, final WhereElement[] whereElements,
         final OrderByElement[] orderByElements)
     {
-        final SqlData sfd = getWhereExpressionSqlData (sqlFragment, columnNames, whereElements);
-        final String sql = appendOrderBySqlClause (sfd.getSql (), columnNames, orderByElements);
-        Logging.logTrace ("SQL created [%s]", sql);
+        final SqlTemplate template =
+            SqlTemplateCache.getFetchTemplate (sqlFragment, columnNames, whereElements, orderByElements);
+
+        return executeFetch (dataSource, mapper, template.getTimedScope (), template.getSql (),
+            template.bind (null, whereElements));
+    }
+
+    /**
+     * Fetches the rows selected by fetchSql, including any limit () and keyset after (),
+     * which are rendered for the data source's SqlDialect.
+     */
+    public static <T extends IEntity<?>> List<T> performFetch (final DataSource dataSource, final RowMapper<T> mapper,
+        final String sqlFragment, final String[] columnNames, final FetchSql<T> fetchSql)
+    {
+        final SqlTemplate template = getPageTemplate (dataSource, sqlFragment, columnNames, fetchSql);
 
-        return performFetch (dataSource, mapper, sql, sfd.getParameterValues ());
+        return executeFetch (dataSource, mapper, template.getTimedScope (), template.getSql (),
+            template.bind (fetchSql));
+    }
+
+    /**
+     * Streams the rows of a query through a forward-only, read-only cursor rather than
+     * materialising them. The connection is held until the returned stream is closed (or
+     * exhausted), so it must be used in a try-with-resources block. The TimedScope covers
+     * the whole iteration, including the time spent by the consumer of the stream.
+     *
+     * @param fetchSize
+     *            JDBC fetch size, or 0 for DEFAULT_STREAM_FETCH_SIZE. Some drivers need
+     *            more than this to stream, eg PostgreSQL only uses a cursor inside a
+     *            transaction, and MySQL needs Integer.MIN_VALUE.
+     */
+    public static <T extends IEntity<?>> Stream<T> performFetchStream (final DataSource dataSource,
+        final RowMapper<T> mapper, final int fetchSize, final String sql, final Object... parameterValues)
+    {
+        final StreamingCursor<T> cursor = new StreamingCursor<> (dataSource, mapper,
+            fetchSize != 0 ? fetchSize : DEFAULT_STREAM_FETCH_SIZE, sql, parameterValues);
+
+        return StreamSupport.stream (cursor, false).onClose (cursor::close);
+    }
+
+    public static <T extends IEntity<?>> Stream<T> performFetchStream (final DataSource dataSource,
+        final RowMapper<T> mapper, final String sqlFragment, final String[] columnNames, final FetchSql<T> fetchSql)
+    {
+        final SqlTemplate template = getPageTemplate (dataSource, sqlFragment, columnNames, fetchSql);
+
+        return performFetchStream (dataSource, mapper, fetchSql.getFetchSize (), template.getSql (),
+            template.bind (fetchSql));
+    }
+
+    /**
+     * Passes each row of a query to the consumer as it is read from a forward-only cursor,
+     * releasing the connection on return.
+     */
+    public static <T extends IEntity<?>> void performForEach (final DataSource dataSource, final RowMapper<T> mapper,
+        final String sqlFragment, final String[] columnNames, final FetchSql<T> fetchSql,
+        final Consumer<? super T> consumer)
+    {
+        try (final Stream<T> s = performFetchStream (dataSource, mapper, sqlFragment, columnNames, fetchSql))
+        {
+            s.forEach (consumer);
+        }
     }
 
     public static <TPrimaryKey> int performInsert (final DataSource dataSource, final IEntity<TPrimaryKey> e,
@@ -411,43 +943,18 @@ public class DaoUtil
     public static int performUpdate (final DataSource dataSource, final String tableName,
         final String[] columnPhysicalNames, final SetElement[] newValues, final WhereElement[] clauses)
     {
-        final Object[] columnValues = new Object[newValues.length + clauses.length];
-
-        // Build the update SQL string and gather the column values.
-        final StringBuilder sb = new StringBuilder ();
-        sb.append ("update ");
-        sb.append (tableName);
-        sb.append (" set ");
-
-        int index = 0;
-        for (final SetElement c : newValues)
-        {
-            if (index > 0)
-            {
-                sb.append (", ");
-            }
-            sb.append (columnPhysicalNames[c.getColumnId ()]);
-            sb.append (" = ?");
-
-            columnValues[index++] = c.getValue ();
-        }
-
-        for (final WhereElement c : clauses)
-        {
-            columnValues[index++] = c.getValue ();
-        }
+        final SqlTemplate template =
+            SqlTemplateCache.getUpdateTemplate (tableName, columnPhysicalNames, newValues, clauses);
+        final String sql = template.getSql ();
+        final Object[] columnValues = template.bind (newValues, clauses);
 
         // Time the execution of the sql.
-        final SqlData sfd = getWhereExpressionSqlData (sb.toString (), columnPhysicalNames, clauses);
-        final String sql = sfd.getSql ();
-        Logging.logTrace ("SQL created [%s]", sql);
-
-        final TimedScope ts = getTimedScope (sql);
+        final TimedScope ts = template.getTimedScope ();
 
         // Perform the update.
         final Integer rowCount = ts.execute ( () ->
         {
-            final JdbcTemplate sjt = new JdbcTemplate (dataSource);
+            final JdbcTemplate sjt = getJdbcTemplate (dataSource);
             return sjt.update (sql, columnValues);
         });
         Logging.logDebug ("[%s] %s affected", sql, rowCount);
@@ -469,35 +976,101 @@ public class DaoUtil
         executeSqlBatch (dataSource, batchColumnValues, sql);
     }
 
-    private static int[] executeSqlBatch (final DataSource dataSource, final List<Object[]> batchColumnValues,
+    /**
+     * Sets the options used by performInsertBatch (), performUpdateBatch () and
+     * performDeleteBatch (), and so by the generated DAOs' insert, update and delete of
+     * lists.
+     */
+    public static void setBatchWriteOptions (final BatchWriteOptions options)
+    {
+        ThreadContext.assertFaultNotNull (options);
+        m_batchWriteOptions = options;
+    }
+
+    /**
+     * Sets the dialect used to render FetchSql.limit () for the data source, overriding
+     * detection. Data sources are assumed to be long-lived, as for getJdbcTemplate ().
+     */
+    public static void setSqlDialect (final DataSource dataSource, final SqlDialect dialect)
+    {
+        if (m_sqlDialects.size () >= MAX_SQL_DIALECTS)
+        {
+            m_sqlDialects.clear ();
+        }
+        m_sqlDialects.put (dataSource, dialect);
+    }
+
+    private static SqlDialect detectSqlDialect (final DataSource dataSource)
+    {
+        SqlDialect dialect = SqlDialect.FetchFirst;
+
+        try
+        {
+            final String productName =
+                (String) JdbcUtils.extractDatabaseMetaData (dataSource, "getDatabaseProductName");
+            dialect = SqlDialect.of (productName);
+            Logging.logDebug ("SQL dialect [%s] detected for database [%s]", dialect, productName);
+        }
+        catch (final MetaDataAccessException e)
+        {
+            Logging.logWarn ("SQL dialect can't be detected, assuming [%s]: %s", dialect, e.getMessage ());
+        }
+
+        return dialect;
+    }
+
+    private static <T extends IEntity<?>> List<T> executeFetch (final DataSource dataSource, final RowMapper<T> mapper,
+        final TimedScope ts, final String sql, final Object... parameterValues)
+    {
+        final List<T> entities = ts.execute ( () ->
+        {
+            final JdbcTemplate sjt = getJdbcTemplate (dataSource);
+            return sjt.query (sql, mapper, parameterValues);
+        });
+        //System.out.println (dumpCreateEntityCode (entities));
+
+        Logging.logDebug ("[%s] %s rows", sql, entities.size ());
+        return entities;
+    }
+
+    private static void executeSqlBatch (final DataSource dataSource, final List<Object[]> batchColumnValues,
         final String sql)
     {
-        final TimedScope ts = getTimedScope ("BATCH [" + sql + "]");
+        // Profiling code is in ChunkedBatchWriter. Stop at the first failure, as a single
+        // unchunked batch would have.
+        final BatchWriteResult result = performBatch (dataSource, sql, batchColumnValues, m_batchWriteOptions, false);
+        Logging.logDebug ("BATCH [%s] %s affected in %s chunks", sql, result.getRowCountTotal (),
+            result.getChunkCount ());
 
-        final Supplier<int[]> timedService = () ->
+        if (result.hasFailures ())
         {
-            final JdbcTemplate sjt = new JdbcTemplate (dataSource);
-            final int[] result = sjt.batchUpdate (sql, batchColumnValues);
+            final List<ChunkFailure> failures = result.getFailures ();
+            Logging.logError ("BATCH [%s] %s of %s chunks failed, %s skipped %s", sql, failures.size (),
+                result.getChunkCount (), result.getSkippedChunkCount (), failures);
 
-            //        final int[] updateCounts = sjt.batchUpdate (sql, batchColumnValues);
-            //        int updateCountTotal = 0;
-            //        for (final int i : updateCounts)
-            //        {
-            //            updateCountTotal += i;
-            //        }
-            //        return updateCountTotal;
+            // Propagate the first failure, as a single unchunked batch would have.
+            final Throwable cause = failures.get (0).getCause ();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            ThreadContext.throwFault (cause);
+        }
+    }
 
-            return result;
-        };
-        final int[] rowCounts = ts.execute (timedService);
-        Logging.logDebug ("BATCH [%s] %s affected", sql, Arrays.toString (rowCounts));
+    private static SqlTemplate getPageTemplate (final DataSource dataSource, final String sqlFragment,
+        final String[] columnNames, final FetchSql<?> fetchSql)
+    {
+        // Only a limit () depends on the dialect.
+        final SqlDialect dialect = fetchSql.getLimit () > 0 ? getSqlDialect (dataSource) : null;
 
-        return rowCounts;
+        return SqlTemplateCache.getPageTemplate (sqlFragment, columnNames, fetchSql, dialect);
     }
 
     private static TimedScope getTimedScope (final String sql)
     {
-        final TimedScope ts = TimedScope.getTimedScope ("[" + sql + "]");
+        // Keyed on the SQL template, with the number of distinct templates bounded.
+        final TimedScope ts = SqlTimedScopes.getTimedScope (sql);
         return ts;
     }
 
@@ -522,4 +1095,29 @@ public class DaoUtil
         final Object[] columnValues = l.toArray (new Object[l.size ()]);
         return columnValues;
     }
+
+    private static boolean isTransactional (final DataSource dataSource)
+    {
+        return dataSource instanceof JdbcConnectionCachingDataSource
+            || TransactionSynchronizationManager.isActualTransactionActive ();
+    }
+
+    /** Rows per round trip for streamed fetches that don't specify a fetch size */
+    public static final int DEFAULT_STREAM_FETCH_SIZE = 500;
+
+    private static final int MAX_JDBC_TEMPLATES = 64;
+
+    private static final int MAX_SQL_DIALECTS = 64;
+
+    private static final Counter m_batchChunkFailures = Counter.of (DaoUtil.class, "batchChunkFailures");
+
+    /** Rows written per second by batch writes */
+    private static final CounterThroughput m_batchRows = CounterThroughput.of (DaoUtil.class, "batchRows", 1_000);
+
+    private static volatile BatchWriteOptions m_batchWriteOptions = BatchWriteOptions.Default;
+
+    private static final ConcurrentMap<DataSource, JdbcTemplate> m_jdbcTemplates =
+        GenericFactory.newConcurrentHashMap ();
+
+    private static final ConcurrentMap<DataSource, SqlDialect> m_sqlDialects = GenericFactory.newConcurrentHashMap ();
 }
@@ -18,6 +18,7 @@ package au.com.breakpoint.hedron.core.dao;
 
 import java.io.Serializable;
 import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.dao.IEntity.ColumnType;
 
 /**
  * Example:
@@ -27,6 +28,15 @@ import au.com.breakpoint.hedron.core.HcUtil;
  * () .then (SomeTable.Columns.Id).descending ();
  *
  * List<SomeTable> l = new SomeTableDao (dataSource).fetch (sql);
+ *
+ * Large results can be streamed instead of materialised:
+ *
+ * try (Stream<SomeTable> s = new SomeTableDao (dataSource).fetchStream (sql.fetchSize (1000))) { ... }
+ *
+ * Or read a page at a time by keyset ("seek") pagination, where each page starts after the
+ * last row of the previous one, so a late page costs the same as the first:
+ *
+ * new SomeTableDao (dataSource).fetchPages (sql.limit (50)).forEach (page -> ...);
  */
 public class FetchSql<TEntity extends IEntity<?>> implements Serializable
 {
@@ -39,6 +49,20 @@ public class FetchSql<TEntity extends IEntity<?>> implements Serializable
         and (columnId);
     }
 
+    /**
+     * Restricts the fetch to the rows that follow lastEntity in the order by, ie keyset
+     * pagination. The order by must be a total order, eg end with the primary key, and its
+     * columns should not be nullable.
+     *
+     * @param lastEntity
+     *            the last row of the previous page, or null for the first page
+     */
+    public FetchSql<TEntity> after (final TEntity lastEntity)
+    {
+        m_afterValues = lastEntity != null ? lastEntity.getColumnValues (ColumnType.All) : null;
+        return this;
+    }
+
     public FetchSql<TEntity> and (final IColumnIndex<TEntity> columnId)
     {
         m_whereSql.and (columnId);
@@ -63,6 +87,38 @@ public class FetchSql<TEntity extends IEntity<?>> implements Serializable
         return this;
     }
 
+    /**
+     * Sets the JDBC fetch size used when the results are streamed, ie the number of rows
+     * the driver transfers per round trip. Has no effect on fetch (), which materialises
+     * the whole result.
+     *
+     * @param fetchSize
+     *            rows per round trip, or 0 for DaoUtil.DEFAULT_STREAM_FETCH_SIZE
+     */
+    public FetchSql<TEntity> fetchSize (final int fetchSize)
+    {
+        m_fetchSize = fetchSize;
+        return this;
+    }
+
+    /**
+     * @return all the column values of the entity passed to after (), or null if none
+     */
+    public Object[] getAfterValues ()
+    {
+        return m_afterValues;
+    }
+
+    public int getFetchSize ()
+    {
+        return m_fetchSize;
+    }
+
+    public int getLimit ()
+    {
+        return m_limit;
+    }
+
     public OrderByElement[] getOrderByElements ()
     {
         return m_orderBySql.getOrderByElements ();
@@ -104,6 +160,19 @@ public class FetchSql<TEntity extends IEntity<?>> implements Serializable
         return this;
     }
 
+    /**
+     * Sets the maximum number of rows fetched, rendered for the database by
+     * DaoUtil.getSqlDialect ().
+     *
+     * @param limit
+     *            maximum rows, or 0 for no limit
+     */
+    public FetchSql<TEntity> limit (final int limit)
+    {
+        m_limit = limit;
+        return this;
+    }
+
     public FetchSql<TEntity> notEqual (final Object value)
     {
         m_whereSql.notEqual (value);
@@ -126,9 +195,15 @@ public class FetchSql<TEntity extends IEntity<?>> implements Serializable
     @Override
     public String toString ()
     {
-        return HcUtil.toString (m_whereSql, m_orderBySql);
+        return HcUtil.toString (m_whereSql, m_orderBySql, m_limit);
     }
 
+    private Object[] m_afterValues;
+
+    private int m_fetchSize;
+
+    private int m_limit;
+
     private final OrderBySql<TEntity> m_orderBySql = new OrderBySql<> ();
 
     private final WhereSql<TEntity> m_whereSql = new WhereSql<> ();
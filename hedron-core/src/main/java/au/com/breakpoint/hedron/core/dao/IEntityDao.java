@@ -17,6 +17,8 @@
 package au.com.breakpoint.hedron.core.dao;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 import au.com.breakpoint.hedron.core.context.ThreadContext;
 
@@ -109,13 +111,16 @@ public interface IEntityDao<TEntity extends IEntity<TPrimaryKey>, TPrimaryKey>
      * <i>whereElements</i> parameter.
      *
      * @param sql
-     *            A convenient readable encapsulation of sql where clauses and order by
-     *            statements.
+     *            A convenient readable encapsulation of sql where clauses, order by
+     *            statements and paging.
      *
      * @return Collection of TEntity entities
      */
     default List<TEntity> fetch (final FetchSql<TEntity> sql)
     {
+        ThreadContext.assertError (sql.getLimit () <= 0 && sql.getAfterValues () == null,
+            "fetch (FetchSql) with limit () or after () is not implemented for class [%s]",
+            getClass ().getCanonicalName ());
         return fetch (sql.getWhereElements (), sql.getOrderByElements ());
     }
 
@@ -164,6 +169,59 @@ public interface IEntityDao<TEntity extends IEntity<TPrimaryKey>, TPrimaryKey>
         return null;
     }
 
+    /**
+     * Streams successive pages of the rows that satisfy the criteria in the <i>sql</i>
+     * parameter, using keyset pagination: each page is fetched when it is reached, starting
+     * after the last row of the previous page. See KeysetPageIterator.
+     *
+     * @param sql
+     *            The fetch, with limit () as the page size and an order by that is a total
+     *            order, eg ending with the primary key. It is advanced by after () as the
+     *            pages are read.
+     *
+     * @return Stream of pages of TEntity entities
+     */
+    default Stream<List<TEntity>> fetchPages (final FetchSql<TEntity> sql)
+    {
+        return KeysetPageIterator.stream (this::fetch, sql);
+    }
+
+    /**
+     * Streams the rows of the entity table that satisfy the criteria in the <i>sql</i>
+     * parameter through a forward-only cursor, without materialising the whole result.
+     * The connection is held until the stream is closed, so use try-with-resources.
+     *
+     * @param sql
+     *            A convenient readable encapsulation of sql where clauses, order by
+     *            statements and the fetch size.
+     *
+     * @return Stream of TEntity entities which must be closed
+     */
+    default Stream<TEntity> fetchStream (@SuppressWarnings ("unused") final FetchSql<TEntity> sql)
+    {
+        ThreadContext.assertError (false, "fetchStream () is not implemented for class [%s]",
+            getClass ().getCanonicalName ());
+        return null;
+    }
+
+    /**
+     * Passes each row of the entity table that satisfies the criteria in the <i>sql</i>
+     * parameter to the consumer as it is read, without materialising the whole result.
+     *
+     * @param sql
+     *            A convenient readable encapsulation of sql where clauses, order by
+     *            statements and the fetch size.
+     * @param consumer
+     *            Receives each TEntity entity in turn
+     */
+    default void forEach (final FetchSql<TEntity> sql, final Consumer<? super TEntity> consumer)
+    {
+        try (final Stream<TEntity> s = fetchStream (sql))
+        {
+            s.forEach (consumer);
+        }
+    }
+
     /**
      * Accessor for the associated data source
      *
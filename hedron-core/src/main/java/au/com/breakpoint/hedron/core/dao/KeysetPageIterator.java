@@ -0,0 +1,107 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.dao;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+
+/**
+ * Iterates the pages of a keyset paginated fetch, see IEntityDao.fetchPages (). Each page
+ * is fetched only when asked for, starting after the last row of the previous page, so no
+ * connection is held between pages and the last page costs the same as the first. The
+ * FetchSql is advanced with after () as the pages are read, so it can also be used to
+ * resume later.
+ */
+public class KeysetPageIterator<TEntity extends IEntity<?>> implements Iterator<List<TEntity>>
+{
+    /**
+     * @param fetcher
+     *            fetches one page, eg IEntityDao.fetch (FetchSql)
+     * @param fetchSql
+     *            the fetch, with a limit () as the page size, and an order by that is a
+     *            total order
+     */
+    public KeysetPageIterator (final Function<FetchSql<TEntity>, List<TEntity>> fetcher,
+        final FetchSql<TEntity> fetchSql)
+    {
+        ThreadContext.assertFault (fetchSql.getLimit () > 0, "Paging needs a limit [%s]", fetchSql);
+        ThreadContext.assertFault (fetchSql.getOrderByElements ().length > 0, "Paging needs an order by [%s]",
+            fetchSql);
+
+        m_fetcher = fetcher;
+        m_fetchSql = fetchSql;
+    }
+
+    @Override
+    public boolean hasNext ()
+    {
+        if (m_nextPage == null && !m_isExhausted)
+        {
+            final List<TEntity> page = m_fetcher.apply (m_fetchSql);
+
+            // A short page is the last, which saves fetching an empty one.
+            m_isExhausted = page.size () < m_fetchSql.getLimit ();
+            if (!page.isEmpty ())
+            {
+                m_nextPage = page;
+                m_fetchSql.after (page.get (page.size () - 1));
+            }
+        }
+
+        return m_nextPage != null;
+    }
+
+    @Override
+    public List<TEntity> next ()
+    {
+        if (!hasNext ())
+        {
+            throw new NoSuchElementException ();
+        }
+
+        final List<TEntity> page = m_nextPage;
+        m_nextPage = null;
+
+        return page;
+    }
+
+    /**
+     * @return the pages as a lazy stream, see KeysetPageIterator ()
+     */
+    public static <TEntity extends IEntity<?>> Stream<List<TEntity>> stream (
+        final Function<FetchSql<TEntity>, List<TEntity>> fetcher, final FetchSql<TEntity> fetchSql)
+    {
+        final Iterator<List<TEntity>> it = new KeysetPageIterator<> (fetcher, fetchSql);
+        return StreamSupport.stream (
+            Spliterators.spliteratorUnknownSize (it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private final Function<FetchSql<TEntity>, List<TEntity>> m_fetcher;
+
+    private final FetchSql<TEntity> m_fetchSql;
+
+    private boolean m_isExhausted;
+
+    private List<TEntity> m_nextPage;
+}
@@ -0,0 +1,127 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.dao;
+
+import java.util.Locale;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+
+/**
+ * How a database limits the number of rows a query returns, see DaoUtil.getSqlDialect ().
+ * The limit is rendered as a literal so that a given page size always produces the same
+ * SQL, which keeps it cacheable by SqlTemplateCache and the driver.
+ */
+public enum SqlDialect
+{
+    /** SQL:2008 "fetch first n rows only": DB2, Derby, HSQLDB, Oracle 12c and later */
+    FetchFirst,
+
+    /** "limit n": H2, MariaDB, MySQL, PostgreSQL, SQLite */
+    Limit,
+
+    /** Oracle before 12c, which needs the ordered query wrapped and ROWNUM tested */
+    RowNum,
+
+    /** "select top n": SQL Server, Sybase */
+    Top;
+
+    /**
+     * @return sql amended to return at most limit rows. The sql must be a select, and any
+     *         order by must already be applied.
+     */
+    public String applyLimit (final String sql, final int limit)
+    {
+        ThreadContext.assertFault (limit > 0, "Invalid limit [%s]", limit);
+
+        String limitedSql = null;
+        switch (this)
+        {
+            case FetchFirst:
+            {
+                limitedSql = sql + " fetch first " + limit + " rows only";
+                break;
+            }
+
+            case Limit:
+            {
+                limitedSql = sql + " limit " + limit;
+                break;
+            }
+
+            case RowNum:
+            {
+                limitedSql = "select * from (" + sql + ") where ROWNUM <= " + limit;
+                break;
+            }
+
+            case Top:
+            {
+                // After "select" or "select distinct".
+                final int selectLength = getSelectLength (sql);
+                limitedSql = sql.substring (0, selectLength) + " top " + limit + sql.substring (selectLength);
+                break;
+            }
+        }
+
+        return limitedSql;
+    }
+
+    /**
+     * @param databaseProductName
+     *            as reported by DatabaseMetaData.getDatabaseProductName ()
+     * @return the dialect for the database, defaulting to the SQL standard FetchFirst
+     */
+    public static SqlDialect of (final String databaseProductName)
+    {
+        final String name = databaseProductName.toLowerCase (Locale.ROOT);
+
+        SqlDialect dialect = FetchFirst;
+        if (name.contains ("oracle"))
+        {
+            dialect = RowNum;
+        }
+        else if (name.contains ("sql server") || name.contains ("sybase") || name.contains ("adaptive server"))
+        {
+            dialect = Top;
+        }
+        else if (name.contains ("mysql") || name.contains ("mariadb") || name.contains ("postgresql")
+            || name.contains ("sqlite") || name.equals ("h2"))
+        {
+            dialect = Limit;
+        }
+
+        return dialect;
+    }
+
+    private static int getSelectLength (final String sql)
+    {
+        final String select = "select";
+        final String selectDistinct = "select distinct";
+
+        int selectLength = -1;
+        if (sql.regionMatches (true, 0, selectDistinct, 0, selectDistinct.length ()))
+        {
+            selectLength = selectDistinct.length ();
+        }
+        else if (sql.regionMatches (true, 0, select, 0, select.length ()))
+        {
+            selectLength = select.length ();
+        }
+        ThreadContext.assertFault (selectLength > 0, "Can't apply top to SQL [%s]", sql);
+
+        return selectLength;
+    }
+}
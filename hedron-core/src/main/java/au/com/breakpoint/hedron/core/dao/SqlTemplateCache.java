@@ -0,0 +1,381 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.dao;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import au.com.breakpoint.hedron.core.Counter;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.TimedScope;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.log.Logging;
+
+/**
+ * Cache of the SQL built by DaoUtil for the dynamic where/order by/set forms of fetch,
+ * delete and update. Templates are keyed on the shape of the statement: the SQL fragment
+ * or table, the where column ids and operators, the order by column ids and directions,
+ * the set column ids, and for a page of a fetch the limit, keyset and dialect. Values are
+ * not part of the shape, so repeated calls with different values share one template, skip
+ * the string building and SQL fingerprinting, and present identical SQL to the driver's
+ * statement cache. Once the maximum number of templates is reached, further shapes are
+ * built per call and counted in the "SqlTemplateCache.uncached" Counter.
+ */
+public class SqlTemplateCache
+{
+    /** Pre-built SQL for one statement shape, with its parameter binding plan */
+    public static final class SqlTemplate
+    {
+        private SqlTemplate (final String sql, final int setCount, final int whereCount)
+        {
+            this (sql, setCount, whereCount, null);
+        }
+
+        private SqlTemplate (final String sql, final int setCount, final int whereCount,
+            final int[] keysetColumnIds)
+        {
+            m_sql = sql;
+            m_fingerprint = SqlTimedScopes.fingerprint (sql);
+            m_setCount = setCount;
+            m_whereCount = whereCount;
+            m_keysetColumnIds = keysetColumnIds != null ? keysetColumnIds : new int[0];
+        }
+
+        /**
+         * Binds the where values followed by the keyset values taken from the after ()
+         * entity. The fetch must have the shape the template was built for.
+         */
+        public Object[] bind (final FetchSql<?> fetchSql)
+        {
+            final WhereElement[] whereElements = fetchSql.getWhereElements ();
+            final Object[] afterValues = fetchSql.getAfterValues ();
+            final Object[] parameterValues = new Object[m_whereCount + m_keysetColumnIds.length];
+
+            for (int i = 0; i < m_whereCount; ++i)
+            {
+                parameterValues[i] = whereElements[i].getValue ();
+            }
+            for (int i = 0; i < m_keysetColumnIds.length; ++i)
+            {
+                parameterValues[m_whereCount + i] = afterValues[m_keysetColumnIds[i]];
+            }
+
+            return parameterValues;
+        }
+
+        /**
+         * Binds values in the order of the template's parameters: the set values followed
+         * by the where values. The elements must have the shape the template was built for.
+         */
+        public Object[] bind (final SetElement[] setElements, final WhereElement[] whereElements)
+        {
+            final Object[] parameterValues = new Object[m_setCount + m_whereCount];
+
+            for (int i = 0; i < m_setCount; ++i)
+            {
+                parameterValues[i] = setElements[i].getValue ();
+            }
+            for (int i = 0; i < m_whereCount; ++i)
+            {
+                parameterValues[m_setCount + i] = whereElements[i].getValue ();
+            }
+
+            return parameterValues;
+        }
+
+        public String getSql ()
+        {
+            return m_sql;
+        }
+
+        public TimedScope getTimedScope ()
+        {
+            return SqlTimedScopes.getTimedScopeForFingerprint (m_fingerprint);
+        }
+
+        @Override
+        public String toString ()
+        {
+            return m_sql;
+        }
+
+        private final String m_fingerprint;
+
+        /** Column of each keyset parameter, see DaoUtil.appendKeysetSqlClause () */
+        private final int[] m_keysetColumnIds;
+
+        private final int m_setCount;
+
+        private final String m_sql;
+
+        private final int m_whereCount;
+    }
+
+    public static void clear ()
+    {
+        m_templates.clear ();
+    }
+
+    public static SqlTemplate getDeleteTemplate (final String sqlFragment, final String[] columnNames,
+        final WhereElement[] whereElements)
+    {
+        return getWhereTemplate (KIND_DELETE, sqlFragment, columnNames, whereElements, null);
+    }
+
+    public static SqlTemplate getFetchTemplate (final String sqlFragment, final String[] columnNames,
+        final WhereElement[] whereElements, final OrderByElement[] orderByElements)
+    {
+        return getWhereTemplate (KIND_FETCH, sqlFragment, columnNames, whereElements, orderByElements);
+    }
+
+    public static int getMaxTemplates ()
+    {
+        return m_maxTemplates;
+    }
+
+    public static int getTemplateCount ()
+    {
+        return m_templates.size ();
+    }
+
+    /**
+     * @param dialect
+     *            renders any limit (); may be null if there is none
+     * @return the template for a page of a fetch, ie including any limit () and after ()
+     *         keyset, with the limit rendered in the dialect. Without either, this is the
+     *         plain fetch template.
+     */
+    public static SqlTemplate getPageTemplate (final String sqlFragment, final String[] columnNames,
+        final FetchSql<?> fetchSql, final SqlDialect dialect)
+    {
+        final WhereElement[] wheres = fetchSql.getWhereElements ();
+        final OrderByElement[] orderBys = fetchSql.getOrderByElements ();
+        final boolean isAfter = fetchSql.getAfterValues () != null;
+        final int limit = fetchSql.getLimit ();
+
+        SqlTemplate template = null;
+        if (!isAfter && limit <= 0)
+        {
+            template = getFetchTemplate (sqlFragment, columnNames, wheres, orderBys);
+        }
+        else
+        {
+            ThreadContext.assertFault (!isAfter || orderBys.length > 0, "Keyset pagination needs an order by [%s]",
+                fetchSql);
+
+            final int[] shape = newShape (KIND_FETCH_PAGE, 0, wheres, orderBys);
+            final int[] pageShape = Arrays.copyOf (shape, shape.length + 3);
+            pageShape[shape.length] = isAfter ? 1 : 0;
+            pageShape[shape.length + 1] = limit;
+            pageShape[shape.length + 2] = limit > 0 ? dialect.ordinal () : -1;
+
+            template = getTemplate (new ShapeKey (sqlFragment, pageShape), () ->
+            {
+                String sql = DaoUtil.getWhereExpressionSqlData (sqlFragment, columnNames, wheres).getSql ();
+                if (isAfter)
+                {
+                    sql = DaoUtil.appendKeysetSqlClause (sql, columnNames, wheres.length > 0, orderBys);
+                }
+                sql = DaoUtil.appendOrderBySqlClause (sql, columnNames, orderBys);
+                if (limit > 0)
+                {
+                    sql = DaoUtil.appendLimitSqlClause (sql, limit, dialect);
+                }
+
+                return new SqlTemplate (sql, 0, wheres.length, isAfter ? getKeysetColumnIds (orderBys) : null);
+            });
+        }
+
+        return template;
+    }
+
+    public static SqlTemplate getUpdateTemplate (final String tableName, final String[] columnNames,
+        final SetElement[] setElements, final WhereElement[] whereElements)
+    {
+        final SetElement[] sets = setElements != null ? setElements : new SetElement[0];
+        final WhereElement[] wheres = whereElements != null ? whereElements : new WhereElement[0];
+
+        final int[] shape = newShape (KIND_UPDATE, sets.length, wheres, null);
+        int index = SHAPE_HEADER_LENGTH + wheres.length;
+        for (final SetElement e : sets)
+        {
+            shape[index++] = e.getColumnId ();
+        }
+
+        return getTemplate (new ShapeKey (tableName, shape), () ->
+        {
+            final StringBuilder sb = new StringBuilder ();
+            sb.append ("update ");
+            sb.append (tableName);
+            sb.append (" set ");
+
+            for (int i = 0; i < sets.length; ++i)
+            {
+                if (i > 0)
+                {
+                    sb.append (", ");
+                }
+                sb.append (columnNames[sets[i].getColumnId ()]);
+                sb.append (" = ?");
+            }
+
+            final String sql = DaoUtil.getWhereExpressionSqlData (sb.toString (), columnNames, wheres).getSql ();
+            return new SqlTemplate (sql, sets.length, wheres.length);
+        });
+    }
+
+    public static void setMaxTemplates (final int maxTemplates)
+    {
+        ThreadContext.assertFault (maxTemplates > 0, "Invalid max templates [%s]", maxTemplates);
+        m_maxTemplates = maxTemplates;
+    }
+
+    /** The column of each parameter of the keyset clause, in order */
+    private static int[] getKeysetColumnIds (final OrderByElement[] orderBys)
+    {
+        final int n = orderBys.length;
+        final int[] columnIds = new int[n * (n + 1) / 2];
+
+        // Term i is (c0 = ? and ... and c[i-1] = ? and ci > ?).
+        int index = 0;
+        for (int i = 0; i < n; ++i)
+        {
+            for (int j = 0; j <= i; ++j)
+            {
+                columnIds[index++] = orderBys[j].getColumnId ();
+            }
+        }
+
+        return columnIds;
+    }
+
+    private static SqlTemplate getTemplate (final ShapeKey key, final Supplier<SqlTemplate> f)
+    {
+        SqlTemplate template = m_templates.get (key);
+
+        if (template == null)
+        {
+            if (m_templates.size () < m_maxTemplates)
+            {
+                template = m_templates.computeIfAbsent (key, k -> f.get ());
+                Logging.logTrace ("SQL template created [%s]", template);
+            }
+            else
+            {
+                template = f.get ();
+                m_uncached.increment ();
+            }
+        }
+
+        return template;
+    }
+
+    private static SqlTemplate getWhereTemplate (final int kind, final String sqlFragment, final String[] columnNames,
+        final WhereElement[] whereElements, final OrderByElement[] orderByElements)
+    {
+        final WhereElement[] wheres = whereElements != null ? whereElements : new WhereElement[0];
+        final OrderByElement[] orderBys = orderByElements != null ? orderByElements : new OrderByElement[0];
+
+        return getTemplate (new ShapeKey (sqlFragment, newShape (kind, 0, wheres, orderBys)), () ->
+        {
+            final String whereSql = DaoUtil.getWhereExpressionSqlData (sqlFragment, columnNames, wheres).getSql ();
+            final String sql = DaoUtil.appendOrderBySqlClause (whereSql, columnNames, orderBys);
+            return new SqlTemplate (sql, 0, wheres.length);
+        });
+    }
+
+    /**
+     * Encodes a statement shape as [kind, set count, where count, order by count, where
+     * codes..., set codes... | order by codes...]. The counts make the encoding unambiguous.
+     */
+    private static int[] newShape (final int kind, final int setCount, final WhereElement[] wheres,
+        final OrderByElement[] orderBys)
+    {
+        final int orderByCount = orderBys != null ? orderBys.length : 0;
+        final int[] shape = new int[SHAPE_HEADER_LENGTH + wheres.length + setCount + orderByCount];
+        shape[0] = kind;
+        shape[1] = setCount;
+        shape[2] = wheres.length;
+        shape[3] = orderByCount;
+
+        int index = SHAPE_HEADER_LENGTH;
+        for (final WhereElement e : wheres)
+        {
+            shape[index++] = e.getColumnId () << 4 | e.getOperator ().ordinal ();
+        }
+        for (int i = 0; i < orderByCount; ++i)
+        {
+            shape[index++] = orderBys[i].getColumnId () << 1 | (orderBys[i].isAscending () ? 1 : 0);
+        }
+
+        return shape;
+    }
+
+    /** The SQL fragment or table name, which identifies the DAO, and the statement shape */
+    private static final class ShapeKey
+    {
+        public ShapeKey (final String prefix, final int[] shape)
+        {
+            m_prefix = prefix;
+            m_shape = shape;
+            m_hashCode = 31 * prefix.hashCode () + Arrays.hashCode (shape);
+        }
+
+        @Override
+        public boolean equals (final Object obj)
+        {
+            boolean isEqual = this == obj;
+
+            if (!isEqual && obj instanceof ShapeKey)
+            {
+                final ShapeKey rhs = (ShapeKey) obj;
+                isEqual = m_hashCode == rhs.m_hashCode && m_prefix.equals (rhs.m_prefix) &&
+                    Arrays.equals (m_shape, rhs.m_shape);
+            }
+
+            return isEqual;
+        }
+
+        @Override
+        public int hashCode ()
+        {
+            return m_hashCode;
+        }
+
+        private final int m_hashCode;
+
+        private final String m_prefix;
+
+        private final int[] m_shape;
+    }
+
+    private static final int KIND_DELETE = 0;
+
+    private static final int KIND_FETCH = 1;
+
+    private static final int KIND_FETCH_PAGE = 3;
+
+    private static final int KIND_UPDATE = 2;
+
+    private static final int SHAPE_HEADER_LENGTH = 4;
+
+    private static volatile int m_maxTemplates = 1000;
+
+    private static final ConcurrentMap<ShapeKey, SqlTemplate> m_templates = GenericFactory.newConcurrentHashMap ();
+
+    private static final Counter m_uncached = Counter.of (SqlTemplateCache.class, "uncached");
+}
@@ -0,0 +1,277 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import au.com.breakpoint.hedron.core.Counter;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.TimedScope;
+import au.com.breakpoint.hedron.core.TimedScope.StatisticsMode;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+
+/**
+ * Bounded repository of the TimedScopes used to time SQL statements. Statements are keyed
+ * on a fingerprint of the SQL in which literals and IN-list arity are collapsed, so that
+ * dynamically built SQL maps onto a stable set of templates. If the number of templates
+ * still exceeds the configured maximum, the least recently used are evicted (and removed
+ * from TimedScope's results) and counted in the "SqlTimedScopes.evictions" Counter.
+ * <p>
+ * Fingerprinting scans the SQL, so each SQL string's fingerprint is computed on first
+ * sight and cached in a bounded map, and recency is only recorded to a granularity of
+ * RECENCY_GRANULARITY_NSEC, so that repeated executions of hot statements neither
+ * allocate nor keep writing to the shared entry.
+ */
+public class SqlTimedScopes
+{
+    /**
+     * Reduces SQL to a template: whitespace runs become a single space, string and numeric
+     * literals become ?, and IN lists of any arity become "in (?...)". Quoted identifiers
+     * are left untouched.
+     */
+    public static String fingerprint (final String sql)
+    {
+        final int length = sql.length ();
+        final StringBuilder sb = new StringBuilder (length);
+
+        int i = 0;
+        while (i < length)
+        {
+            final char c = sql.charAt (i);
+
+            if (Character.isWhitespace (c))
+            {
+                // Collapse whitespace.
+                while (i < length && Character.isWhitespace (sql.charAt (i)))
+                {
+                    ++i;
+                }
+                if (sb.length () > 0 && i < length)
+                {
+                    sb.append (' ');
+                }
+            }
+            else if (c == '\'')
+            {
+                // String literal, with '' as an escaped quote.
+                ++i;
+                while (i < length)
+                {
+                    if (sql.charAt (i) == '\'')
+                    {
+                        ++i;
+                        if (i >= length || sql.charAt (i) != '\'')
+                        {
+                            break;
+                        }
+                    }
+                    ++i;
+                }
+                sb.append ('?');
+            }
+            else if (c == '"')
+            {
+                // Quoted identifier.
+                final int end = sql.indexOf ('"', i + 1);
+                final int next = end < 0 ? length : end + 1;
+                sb.append (sql, i, next);
+                i = next;
+            }
+            else if (Character.isDigit (c) && !isIdentifierPart (sb))
+            {
+                // Numeric literal, including any decimal part or exponent.
+                while (i < length && (Character.isLetterOrDigit (sql.charAt (i)) || sql.charAt (i) == '.'))
+                {
+                    ++i;
+                }
+                sb.append ('?');
+            }
+            else
+            {
+                sb.append (c);
+                ++i;
+            }
+        }
+
+        final Matcher m = IN_LIST.matcher (sb);
+        return m.replaceAll ("$1 (?...)");
+    }
+
+    public static int getMaxScopes ()
+    {
+        return m_maxScopes;
+    }
+
+    /**
+     * Gets the TimedScope for the SQL statement's fingerprint, creating it if necessary
+     * and evicting the least recently used scopes if the maximum is exceeded.
+     */
+    public static TimedScope getTimedScope (final String sql)
+    {
+        String name = m_names.get (sql);
+        if (name == null)
+        {
+            name = getName (fingerprint (sql));
+
+            // Clear rather than evict: hot statements are soon cached again.
+            if (m_names.size () >= m_maxScopes * NAMES_PER_SCOPE)
+            {
+                m_names.clear ();
+            }
+            m_names.put (sql, name);
+        }
+
+        return getTimedScopeForName (name);
+    }
+
+    /**
+     * As getTimedScope (), for a caller that has already fingerprinted the SQL, eg
+     * SqlTemplateCache, which does so once per template rather than once per execution.
+     */
+    public static TimedScope getTimedScopeForFingerprint (final String fingerprint)
+    {
+        return getTimedScopeForName (getName (fingerprint));
+    }
+
+    public static int getScopeCount ()
+    {
+        return m_entries.size ();
+    }
+
+    public static void setMaxScopes (final int maxScopes)
+    {
+        ThreadContext.assertFault (maxScopes > 0, "Invalid max scopes [%s]", maxScopes);
+        m_maxScopes = maxScopes;
+    }
+
+    /**
+     * Evicts the least recently used scopes, down to the eviction target. Eviction is
+     * infrequent, so a scan is preferred to ordering every access.
+     */
+    private static synchronized void evict ()
+    {
+        final int target = m_maxScopes - Math.max (1, m_maxScopes / EVICTION_FRACTION);
+
+        while (m_entries.size () > target)
+        {
+            String lruName = null;
+            long lruLastUsed = Long.MAX_VALUE;
+
+            for (final Map.Entry<String, Entry> e : m_entries.entrySet ())
+            {
+                final long lastUsed = e.getValue ().m_lastUsed;
+                if (lastUsed < lruLastUsed)
+                {
+                    lruLastUsed = lastUsed;
+                    lruName = e.getKey ();
+                }
+            }
+
+            if (lruName == null)
+            {
+                break;
+            }
+
+            // Remove the scope while the entry is locked, so that a concurrent lookup can't
+            // re-register the entry in between and be left holding the removed scope.
+            m_entries.computeIfPresent (lruName, (name, entry) ->
+            {
+                TimedScope.removeTimedScope (name);
+                m_evictions.increment ();
+                return null;
+            });
+        }
+    }
+
+    private static String getName (final String fingerprint)
+    {
+        return "[" + fingerprint + "]";
+    }
+
+    private static TimedScope getTimedScopeForName (final String name)
+    {
+        Entry entry = m_entries.get (name);
+        if (entry == null)
+        {
+            entry = m_entries.computeIfAbsent (name,
+                key -> new Entry (TimedScope.getTimedScope (key, StatisticsMode.Striped)));
+
+            if (m_entries.size () > m_maxScopes)
+            {
+                evict ();
+            }
+        }
+
+        // Approximate recency: only write to the shared entry when it has gone stale.
+        final long now = System.nanoTime ();
+        if (now - entry.m_lastUsed > RECENCY_GRANULARITY_NSEC)
+        {
+            entry.m_lastUsed = now;
+        }
+
+        return entry.m_timedScope;
+    }
+
+    private static boolean isIdentifierPart (final CharSequence sb)
+    {
+        final int length = sb.length ();
+        if (length == 0)
+        {
+            return false;
+        }
+
+        final char previous = sb.charAt (length - 1);
+        return Character.isLetterOrDigit (previous) || previous == '_' || previous == '$' || previous == '#';
+    }
+
+    /** A scope and when it was last used */
+    private static final class Entry
+    {
+        public Entry (final TimedScope timedScope)
+        {
+            m_timedScope = timedScope;
+            m_lastUsed = System.nanoTime ();
+        }
+
+        private volatile long m_lastUsed;
+
+        private final TimedScope m_timedScope;
+    }
+
+    /** Each eviction pass frees this fraction (1/n) of the maximum, to amortise the scan */
+    private static final int EVICTION_FRACTION = 10;
+
+    /** Number of distinct SQL strings cached per scope before the cache is cleared */
+    private static final int NAMES_PER_SCOPE = 4;
+
+    /** Recency is recorded to this granularity, which is far finer than eviction needs */
+    private static final long RECENCY_GRANULARITY_NSEC = TimeUnit.MILLISECONDS.toNanos (1);
+
+    private static final Pattern IN_LIST = Pattern.compile ("(?i)\\b(in) ?\\( ?\\?(?: ?, ?\\?)* ?\\)");
+
+    private static final ConcurrentMap<String, Entry> m_entries = GenericFactory.newConcurrentHashMap ();
+
+    private static final Counter m_evictions = Counter.of (SqlTimedScopes.class, "evictions");
+
+    private static volatile int m_maxScopes = 1000;
+
+    /** Scope names by SQL string, so that each string is only fingerprinted once */
+    private static final ConcurrentMap<String, String> m_names = GenericFactory.newConcurrentHashMap ();
+}
@@ -22,6 +22,16 @@ import au.com.breakpoint.hedron.core.log.Logging;
 
 public class MockConnection implements Connection
 {
+    public MockConnection ()
+    {
+        this (null);
+    }
+
+    public MockConnection (final MockDataSource dataSource)
+    {
+        m_dataSource = dataSource;
+    }
+
     @Override
     public void abort (final Executor executor) throws SQLException
     {
@@ -38,12 +48,21 @@ public class MockConnection implements Connection
     public void close () throws SQLException
     {
         Logging.logDebug ("MockConnection.close ()");
+        if (!m_closed && m_dataSource != null)
+        {
+            m_dataSource.onConnectionClosed ();
+        }
+        m_closed = true;
     }
 
     @Override
     public void commit () throws SQLException
     {
         Logging.logDebug ("MockConnection.commit ()");
+        if (m_dataSource != null)
+        {
+            m_dataSource.onCommit ();
+        }
     }
 
     @Override
@@ -85,14 +104,14 @@ public class MockConnection implements Connection
     public Statement createStatement () throws SQLException
     {
         Logging.logDebug ("MockConnection.createStatement ()");
-        return new MockPreparedStatement ();
+        return newPreparedStatement ();
     }
 
     @Override
     public Statement createStatement (final int resultSetType, final int resultSetConcurrency) throws SQLException
     {
         Logging.logDebug ("MockConnection.createStatement ()");
-        return new MockPreparedStatement ();
+        return newPreparedStatement ();
     }
 
     @Override
@@ -100,7 +119,7 @@ public class MockConnection implements Connection
         final int resultSetHoldability) throws SQLException
     {
         Logging.logDebug ("MockConnection.createStatement ()");
-        return new MockPreparedStatement ();
+        return newPreparedStatement ();
     }
 
     @Override
@@ -191,7 +210,7 @@ public class MockConnection implements Connection
     public boolean isClosed () throws SQLException
     {
         Logging.logDebug ("MockConnection.isClosed ()");
-        return false;
+        return m_closed;
     }
 
     @Override
@@ -249,14 +268,14 @@ public class MockConnection implements Connection
     public PreparedStatement prepareStatement (final String sql) throws SQLException
     {
         Logging.logDebug ("MockConnection.prepareStatement ()");
-        return new MockPreparedStatement ();
+        return newPreparedStatement ();
     }
 
     @Override
     public PreparedStatement prepareStatement (final String sql, final int autoGeneratedKeys) throws SQLException
     {
         Logging.logDebug ("MockConnection.prepareStatement ()");
-        return new MockPreparedStatement ();
+        return newPreparedStatement ();
     }
 
     @Override
@@ -264,7 +283,7 @@ public class MockConnection implements Connection
         final int resultSetConcurrency) throws SQLException
     {
         Logging.logDebug ("MockConnection.prepareStatement ()");
-        return new MockPreparedStatement ();
+        return newPreparedStatement ();
     }
 
     @Override
@@ -272,21 +291,21 @@ public class MockConnection implements Connection
         final int resultSetConcurrency, final int resultSetHoldability) throws SQLException
     {
         Logging.logDebug ("MockConnection.prepareStatement ()");
-        return new MockPreparedStatement ();
+        return newPreparedStatement ();
     }
 
     @Override
     public PreparedStatement prepareStatement (final String sql, final int[] columnIndexes) throws SQLException
     {
         Logging.logDebug ("MockConnection.prepareStatement ()");
-        return new MockPreparedStatement ();
+        return newPreparedStatement ();
     }
 
     @Override
     public PreparedStatement prepareStatement (final String sql, final String[] columnNames) throws SQLException
     {
         Logging.logDebug ("MockConnection.prepareStatement ()");
-        return new MockPreparedStatement ();
+        return newPreparedStatement ();
     }
 
     @Override
@@ -299,6 +318,10 @@ public class MockConnection implements Connection
     public void rollback () throws SQLException
     {
         Logging.logDebug ("MockConnection.rollback ()");
+        if (m_dataSource != null)
+        {
+            m_dataSource.onRollback ();
+        }
     }
 
     @Override
@@ -387,4 +410,13 @@ public class MockConnection implements Connection
         Logging.logDebug ("MockConnection.unwrap ()");
         return null;
     }
+
+    private PreparedStatement newPreparedStatement ()
+    {
+        return new MockPreparedStatement (this, m_dataSource != null ? m_dataSource.getResultSets () : null);
+    }
+
+    private boolean m_closed;
+
+    private final MockDataSource m_dataSource;
 }
@@ -2,8 +2,11 @@ package au.com.breakpoint.hedron.core.dao.mock;
 
 import java.io.PrintWriter;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import javax.sql.DataSource;
 import au.com.breakpoint.hedron.core.log.Logging;
@@ -15,7 +18,8 @@ public class MockDataSource implements DataSource
     {
         Logging.logDebug ("MockDataSource.getConnection ()");
         ++m_countAction;
-        return new MockConnection ();
+        m_openConnectionCount.incrementAndGet ();
+        return new MockConnection (this);
     }
 
     @Override
@@ -23,7 +27,16 @@ public class MockDataSource implements DataSource
     {
         Logging.logDebug ("MockDataSource.getConnection ()");
         ++m_countAction;
-        return new MockConnection ();
+        m_openConnectionCount.incrementAndGet ();
+        return new MockConnection (this);
+    }
+
+    /**
+     * @return number of commits on this data source's connections
+     */
+    public int getCommitCount ()
+    {
+        return m_commitCount.get ();
     }
 
     @Override
@@ -47,6 +60,27 @@ public class MockDataSource implements DataSource
         return null;
     }
 
+    /**
+     * @return number of connections handed out that have not yet been closed
+     */
+    public int getOpenConnectionCount ()
+    {
+        return m_openConnectionCount.get ();
+    }
+
+    public Supplier<ResultSet> getResultSets ()
+    {
+        return m_resultSets;
+    }
+
+    /**
+     * @return number of rollbacks on this data source's connections
+     */
+    public int getRollbackCount ()
+    {
+        return m_rollbackCount.get ();
+    }
+
     public boolean hasBeenActive ()
     {
         return m_countAction > 0;
@@ -76,6 +110,17 @@ public class MockDataSource implements DataSource
         Logging.logDebug ("MockDataSource.setLogWriter ()");
     }
 
+    /**
+     * @param resultSets
+     *            source of the result sets returned by executeQuery () on statements
+     *            prepared from this data source's connections
+     */
+    public MockDataSource setResultSets (final Supplier<ResultSet> resultSets)
+    {
+        m_resultSets = resultSets;
+        return this;
+    }
+
     @Override
     public <T> T unwrap (final Class<T> iface) throws SQLException
     {
@@ -83,5 +128,28 @@ public class MockDataSource implements DataSource
         return null;
     }
 
+    void onCommit ()
+    {
+        m_commitCount.incrementAndGet ();
+    }
+
+    void onConnectionClosed ()
+    {
+        m_openConnectionCount.decrementAndGet ();
+    }
+
+    void onRollback ()
+    {
+        m_rollbackCount.incrementAndGet ();
+    }
+
+    private final AtomicInteger m_commitCount = new AtomicInteger ();
+
     private volatile int m_countAction;
+
+    private final AtomicInteger m_openConnectionCount = new AtomicInteger ();
+
+    private volatile Supplier<ResultSet> m_resultSets;
+
+    private final AtomicInteger m_rollbackCount = new AtomicInteger ();
 }
@@ -23,10 +23,39 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.function.Supplier;
 import au.com.breakpoint.hedron.core.log.Logging;
 
 public class MockPreparedStatement implements PreparedStatement
 {
+    public MockPreparedStatement ()
+    {
+        this (null);
+    }
+
+    /**
+     * @param resultSets
+     *            source of the result sets returned by executeQuery (), eg
+     *            MockResultSet.of (...)
+     */
+    public MockPreparedStatement (final Supplier<ResultSet> resultSets)
+    {
+        this (null, resultSets);
+    }
+
+    /**
+     * @param connection
+     *            the connection returned by getConnection (), as used by Spring's batch
+     *            updates
+     * @param resultSets
+     *            source of the result sets returned by executeQuery ()
+     */
+    public MockPreparedStatement (final Connection connection, final Supplier<ResultSet> resultSets)
+    {
+        m_connection = connection;
+        m_resultSets = resultSets;
+    }
+
     @Override
     public void addBatch () throws SQLException
     {
@@ -121,7 +150,7 @@ public class MockPreparedStatement implements PreparedStatement
     public ResultSet executeQuery () throws SQLException
     {
         Logging.logDebug ("MockPreparedStatement.executeQuery");
-        return null;
+        return m_resultSets != null ? m_resultSets.get () : null;
     }
 
     @Override
@@ -170,7 +199,7 @@ public class MockPreparedStatement implements PreparedStatement
     public Connection getConnection () throws SQLException
     {
         Logging.logDebug ("MockPreparedStatement.getConnection");
-        return null;
+        return m_connection;
     }
 
     @Override
@@ -184,7 +213,7 @@ public class MockPreparedStatement implements PreparedStatement
     public int getFetchSize () throws SQLException
     {
         Logging.logDebug ("MockPreparedStatement.getFetchSize");
-        return 0;
+        return m_fetchSize;
     }
 
     @Override
@@ -474,6 +503,7 @@ public class MockPreparedStatement implements PreparedStatement
     public void setFetchSize (final int rows) throws SQLException
     {
         Logging.logDebug ("MockPreparedStatement.setFetchSize");
+        m_fetchSize = rows;
     }
 
     @Override
@@ -658,4 +688,10 @@ public class MockPreparedStatement implements PreparedStatement
         Logging.logDebug ("MockPreparedStatement.unwrap");
         return null;
     }
+
+    private final Connection m_connection;
+
+    private int m_fetchSize;
+
+    private final Supplier<ResultSet> m_resultSets;
 }
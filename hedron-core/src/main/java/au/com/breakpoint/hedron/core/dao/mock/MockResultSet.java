@@ -0,0 +1,211 @@
+package au.com.breakpoint.hedron.core.dao.mock;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+
+/**
+ * Forward-only, read-only result set over in-memory rows. Supports cursor movement and
+ * the getXxx (int) and getXxx (String) accessors, with JDBC null semantics for the
+ * primitive accessors and wasNull (). Anything else throws
+ * SQLFeatureNotSupportedException.
+ */
+public class MockResultSet implements InvocationHandler
+{
+    private MockResultSet (final String[] columnNames, final List<Object[]> rows)
+    {
+        m_columnNames = columnNames;
+        m_rows = rows;
+    }
+
+    @Override
+    public Object invoke (final Object proxy, final Method method, final Object[] args) throws Throwable
+    {
+        final String name = method.getName ();
+        final Class<?> type = method.getReturnType ();
+
+        Object result = null;
+        if (name.startsWith ("get") && args != null && args.length == 1)
+        {
+            result = getValue (getColumnIndex (args[0]), type);
+        }
+        else
+        {
+            switch (name)
+            {
+                case "next":
+                    assertOpen ();
+                    result = ++m_rowIndex < m_rows.size ();
+                    break;
+
+                case "close":
+                    m_closed = true;
+                    break;
+
+                case "isClosed":
+                    result = m_closed;
+                    break;
+
+                case "wasNull":
+                    result = m_wasNull;
+                    break;
+
+                case "findColumn":
+                    result = getColumnIndex (args[0]);
+                    break;
+
+                case "getRow":
+                    result = m_rowIndex < m_rows.size () ? m_rowIndex + 1 : 0;
+                    break;
+
+                case "getType":
+                    result = ResultSet.TYPE_FORWARD_ONLY;
+                    break;
+
+                case "getConcurrency":
+                    result = ResultSet.CONCUR_READ_ONLY;
+                    break;
+
+                case "getFetchSize":
+                    result = m_fetchSize;
+                    break;
+
+                case "setFetchSize":
+                    m_fetchSize = (Integer) args[0];
+                    break;
+
+                case "getWarnings":
+                case "clearWarnings":
+                    break;
+
+                case "isWrapperFor":
+                    result = false;
+                    break;
+
+                case "hashCode":
+                    result = System.identityHashCode (proxy);
+                    break;
+
+                case "equals":
+                    result = proxy == args[0];
+                    break;
+
+                case "toString":
+                    result = String.format ("MockResultSet [%s rows]", m_rows.size ());
+                    break;
+
+                default:
+                    throw new SQLFeatureNotSupportedException ("MockResultSet." + name);
+            }
+        }
+
+        return result;
+    }
+
+    private void assertOpen () throws SQLException
+    {
+        if (m_closed)
+        {
+            throw new SQLException ("MockResultSet is closed");
+        }
+    }
+
+    private int getColumnIndex (final Object column) throws SQLException
+    {
+        int columnIndex = -1;
+
+        if (column instanceof Integer)
+        {
+            columnIndex = (Integer) column;
+        }
+        else
+        {
+            for (int i = 0; i < m_columnNames.length && columnIndex < 0; ++i)
+            {
+                if (m_columnNames[i].equalsIgnoreCase ((String) column))
+                {
+                    columnIndex = i + 1;
+                }
+            }
+        }
+
+        if (columnIndex < 1 || columnIndex > m_columnNames.length)
+        {
+            throw new SQLException ("MockResultSet has no column " + column);
+        }
+
+        return columnIndex;
+    }
+
+    private Object getValue (final int columnIndex, final Class<?> type) throws SQLException
+    {
+        assertOpen ();
+        if (m_rowIndex < 0 || m_rowIndex >= m_rows.size ())
+        {
+            throw new SQLException ("MockResultSet is not positioned on a row");
+        }
+
+        final Object value = m_rows.get (m_rowIndex)[columnIndex - 1];
+        m_wasNull = value == null;
+
+        return convert (value, type);
+    }
+
+    public static ResultSet of (final String[] columnNames, final List<Object[]> rows)
+    {
+        return (ResultSet) Proxy.newProxyInstance (ResultSet.class.getClassLoader (), new Class<?>[]
+            {
+                    ResultSet.class
+        }, new MockResultSet (columnNames, rows));
+    }
+
+    private static Object convert (final Object value, final Class<?> type)
+    {
+        Object result = value;
+
+        if (type == boolean.class)
+        {
+            result = value instanceof Boolean ? value : value != null && ((Number) value).intValue () != 0;
+        }
+        else if (type.isPrimitive ())
+        {
+            final Number n = value != null ? (Number) value : 0;
+
+            result = type == int.class ? n.intValue ()
+                : type == long.class ? n.longValue ()
+                    : type == double.class ? n.doubleValue ()
+                        : type == float.class ? n.floatValue ()
+                            : type == short.class ? n.shortValue () : (Object) n.byteValue ();
+        }
+        else if (value != null)
+        {
+            if (type == String.class)
+            {
+                result = value.toString ();
+            }
+            else if (type == BigDecimal.class && !(value instanceof BigDecimal))
+            {
+                result = new BigDecimal (value.toString ());
+            }
+        }
+
+        return result;
+    }
+
+    private boolean m_closed;
+
+    private final String[] m_columnNames;
+
+    private int m_fetchSize;
+
+    private int m_rowIndex = -1;
+
+    private final List<Object[]> m_rows;
+
+    private boolean m_wasNull;
+}
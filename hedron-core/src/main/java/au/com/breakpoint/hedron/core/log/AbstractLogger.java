@@ -138,6 +138,9 @@ public abstract class AbstractLogger implements ILogger, IStringLogger
         }
 
         m_enabledLevels.set (levelEnableFlags);
+
+        // Update the global gate in case this logger is registered.
+        Logging.refreshEnabledLevels ();
     }
 
     private void formatAndLogString (final String contextId, final Level level, final IValue<String> s)
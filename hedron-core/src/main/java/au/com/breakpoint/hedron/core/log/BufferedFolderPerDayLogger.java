@@ -0,0 +1,276 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.log;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.BiFunction;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.ResourceScope;
+import au.com.breakpoint.hedron.core.ShutdownPriority;
+import au.com.breakpoint.hedron.core.TimedScope;
+import au.com.breakpoint.hedron.core.TimestampLevelFormatter;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.value.IValue;
+
+/**
+ * FolderPerDayLogger that keeps the current hour's file open and encodes messages into a
+ * direct buffer, writing the buffer to the FileChannel when it fills or when the flush
+ * interval elapses. Many messages are therefore written per system call, and the file is
+ * opened once per hour rather than once per message. Files roll hourly and daily exactly
+ * as for FolderPerDayLogger.
+ *
+ * Messages can be lost if the process dies between flushes. With fsync, each flush also
+ * forces the data to the storage device. After shutdown starts, every message is flushed
+ * as it is logged. A logger that is discarded before shutdown should be closed, to stop its
+ * flushing and release it.
+ */
+public class BufferedFolderPerDayLogger extends FolderPerDayLogger implements AutoCloseable
+{
+    /**
+     * @param logFolder
+     *            Base folder for the daily folders
+     * @param formatter
+     * @param levelsConfig
+     *            fewi for Fatal..Info, etc
+     * @param extension
+     * @param slaves
+     * @param bufferBytes
+     *            size of the buffer; a full buffer is written immediately
+     * @param msecFlushInterval
+     *            maximum time that a message waits in the buffer
+     * @param fsync
+     *            whether to force each flush to the storage device
+     */
+    public BufferedFolderPerDayLogger (final String logFolder,
+        final BiFunction<Level, IValue<String>, String> formatter, final String levelsConfig,
+        final int logDaysToKeep, final String extension, final Collection<? extends IStringLogger> slaves,
+        final int bufferBytes, final long msecFlushInterval, final boolean fsync)
+    {
+        super (logFolder, formatter, levelsConfig, logDaysToKeep, extension, slaves);
+
+        ThreadContext.assertFault (bufferBytes >= MIN_BUFFER_BYTES, "Invalid buffer size [%s]", bufferBytes);
+        ThreadContext.assertFault (msecFlushInterval > 0, "Invalid flush interval [%s]", msecFlushInterval);
+
+        m_buffer = ByteBuffer.allocateDirect (bufferBytes);
+        m_fsync = fsync;
+        m_nsFlushInterval = HcUtil.msecToNs (msecFlushInterval);
+
+        m_flushTimer = HcUtil.schedulePeriodically (this::flushIfDue, msecFlushInterval);
+
+        // Leave the file usable for logging during the rest of the shutdown.
+        m_shutdownTask =
+            HcUtil.addShutdownTask (this::flushAlways, ShutdownPriority.ConnectionManagement, "log file flushing");
+    }
+
+    /**
+     * Default to formatting messages with timestamp and context id, a 64 KB buffer flushed
+     * at least every 200 msec, and no fsync.
+     *
+     * @param logFolder
+     *            Base folder for the daily folders
+     * @param levelsConfig
+     *            fewi for Fatal..Info, etc
+     * @param slaves
+     */
+    public BufferedFolderPerDayLogger (final String logFolder, final String levelsConfig, final int logDaysToKeep,
+        final Collection<? extends IStringLogger> slaves)
+    {
+        this (logFolder, new TimestampLevelFormatter (), levelsConfig, logDaysToKeep, "log", slaves, 64 * 1024, 200,
+            false);
+    }
+
+    /**
+     * Stops the periodic flushing, then writes any buffered messages and closes the file.
+     * Messages logged afterwards are written immediately.
+     */
+    @Override
+    public synchronized void close ()
+    {
+        m_flushTimer.cancel (false);
+        HcUtil.removeShutdownTask (m_shutdownTask);
+
+        m_flushAlways = true;
+        flush ();
+        closeChannel ();
+    }
+
+    /**
+     * Writes any buffered messages to the file.
+     */
+    public synchronized void flush ()
+    {
+        if (m_buffer.position () > 0)
+        {
+            m_scopeFlush.execute ( () -> writeBuffer ());
+        }
+    }
+
+    @Override
+    public synchronized void logString (final String contextId, final Level level, final String s)
+    {
+        final String logfilePath = getLogfilePath ();
+        if (!logfilePath.equals (m_channelPath))
+        {
+            // New hour: finish with the old file.
+            flush ();
+            closeChannel ();
+            m_channelPath = logfilePath;
+        }
+
+        if (m_buffer.position () == 0)
+        {
+            m_nsFirstBuffered = System.nanoTime ();
+        }
+
+        encode (s);
+        encode (HcUtil.NewLine);
+
+        if (m_flushAlways)
+        {
+            flush ();
+        }
+    }
+
+    private void closeChannel ()
+    {
+        if (m_channel != null)
+        {
+            try
+            {
+                m_channel.close ();
+            }
+            catch (final IOException e)
+            {
+                // Propagate exception as unchecked fault up to the fault barrier.
+                ThreadContext.throwFault (e);
+            }
+            finally
+            {
+                m_channel = null;
+            }
+        }
+    }
+
+    private void encode (final String s)
+    {
+        final CharBuffer cb = CharBuffer.wrap (s);
+
+        boolean done = false;
+        while (!done)
+        {
+            final CoderResult result = m_encoder.encode (cb, m_buffer, true);
+            if (result.isOverflow ())
+            {
+                // Buffer full: write it out (group commit) and carry on encoding.
+                flush ();
+                m_nsFirstBuffered = System.nanoTime ();
+            }
+            else
+            {
+                done = true;
+            }
+        }
+        m_encoder.reset ();
+    }
+
+    private synchronized void flushAlways ()
+    {
+        m_flushAlways = true;
+        flush ();
+    }
+
+    private synchronized void flushIfDue ()
+    {
+        if (m_buffer.position () > 0 && !HcUtil.nsIsBefore (System.nanoTime (), m_nsFirstBuffered + m_nsFlushInterval))
+        {
+            flush ();
+        }
+    }
+
+    private void writeBuffer ()
+    {
+        m_buffer.flip ();
+        try
+        {
+            if (m_channel == null)
+            {
+                m_channel = FileChannel.open (Paths.get (m_channelPath), CREATE, APPEND, WRITE);
+            }
+
+            while (m_buffer.hasRemaining ())
+            {
+                m_channel.write (m_buffer);
+            }
+
+            if (m_fsync)
+            {
+                m_channel.force (false);
+            }
+        }
+        catch (final IOException e)
+        {
+            // The file may have been deleted, eg by log cleanup; reopen next time.
+            closeChannel ();
+
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+        finally
+        {
+            m_buffer.clear ();
+        }
+    }
+
+    private final ByteBuffer m_buffer;
+
+    private FileChannel m_channel;
+
+    /** Path of the file that m_channel is open on, or will be opened on */
+    private String m_channelPath;
+
+    private final CharsetEncoder m_encoder = Charset.defaultCharset ().newEncoder ()
+        .onMalformedInput (CodingErrorAction.REPLACE).onUnmappableCharacter (CodingErrorAction.REPLACE);
+
+    private boolean m_flushAlways;
+
+    private final ScheduledFuture<?> m_flushTimer;
+
+    private final boolean m_fsync;
+
+    private long m_nsFirstBuffered;
+
+    private final long m_nsFlushInterval;
+
+    private final ResourceScope<?> m_shutdownTask;
+
+    private static final int MIN_BUFFER_BYTES = 64;
+
+    private static final TimedScope m_scopeFlush = TimedScope.of (BufferedFolderPerDayLogger.class, "flush");
+}
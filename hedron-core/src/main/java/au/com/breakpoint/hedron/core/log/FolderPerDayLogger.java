@@ -19,6 +19,7 @@ package au.com.breakpoint.hedron.core.log;
 import java.io.File;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.function.BiFunction;
@@ -43,6 +44,9 @@ import au.com.breakpoint.hedron.core.value.IValue;
  * Formatting of the text as as per the configured strategy object, eg NullLogFormatter
  * for text written as is, without any additional timestamping or formatting, or
  * ContextLogFormatter for timestamp and ThreadContext id.
+ *
+ * Each message is appended by opening and closing the file. For high volumes, use
+ * BufferedFolderPerDayLogger instead.
  */
 public class FolderPerDayLogger extends AbstractLogger
 {
@@ -98,21 +102,40 @@ public class FolderPerDayLogger extends AbstractLogger
         HcUtil.schedulePeriodically ( () -> cleanUpLogFiles (m_logFolder, logDaysToKeep), periodMinutes * 60 * 1000);
     }
 
-    private String getLogfilePath ()
+    /**
+     * The path is recalculated only when the hour changes.
+     *
+     * @return the path of the current hour's file, whose folder has been created
+     */
+    protected String getLogfilePath ()
     {
-        final Date date = new Date ();
-
-        // eg c:/temp/logFolder/2012-03-09/10.log for 10am to 11am
-        final String folder = m_logFolder + getLogSubfolder (date);
-        if (!folder.equals (m_lastFolder))
+        final long msecNow = System.currentTimeMillis ();
+        if (msecNow >= m_msecNextHour || msecNow < m_msecThisHour)
         {
-            HcUtilFile.ensureDirectoryExists (folder);
-            m_lastFolder = folder;
-        }
+            final Date date = new Date (msecNow);
 
-        final String filename = new SimpleDateFormat ("HH'." + m_extension + "'").format (date);
+            // eg c:/temp/logFolder/2012-03-09/10.log for 10am to 11am
+            final String folder = m_logFolder + getLogSubfolder (date);
+            if (!folder.equals (m_lastFolder))
+            {
+                HcUtilFile.ensureDirectoryExists (folder);
+                m_lastFolder = folder;
+            }
+
+            final String filename = new SimpleDateFormat ("HH'." + m_extension + "'").format (date);
+            m_logfilePath = HcUtil.formFilepath (folder, filename);
+
+            final Calendar calendar = Calendar.getInstance ();
+            calendar.setTime (date);
+            calendar.set (Calendar.MINUTE, 0);
+            calendar.set (Calendar.SECOND, 0);
+            calendar.set (Calendar.MILLISECOND, 0);
+            m_msecThisHour = calendar.getTimeInMillis ();
+            calendar.add (Calendar.HOUR_OF_DAY, 1);
+            m_msecNextHour = calendar.getTimeInMillis ();
+        }
 
-        return HcUtil.formFilepath (folder, filename);
+        return m_logfilePath;
     }
 
     public static String getLogSubfolder (final Date date)
@@ -185,7 +208,14 @@ public class FolderPerDayLogger extends AbstractLogger
 
     private String m_lastFolder;
 
+    private String m_logfilePath;
+
     private final String m_logFolder;
 
+    /** Bounds of the hour that m_logfilePath is for */
+    private long m_msecNextHour;
+
+    private long m_msecThisHour;
+
     private static final TimedScope m_scopeLogMessage = TimedScope.of (FolderPerDayLogger.class, "logMessage");
 }
@@ -25,6 +25,11 @@ import au.com.breakpoint.hedron.core.TimedScope;
 
 public interface IInstrumentionListener
 {
+    /**
+     * Periodic summary of the instrumentation data. Each TimedScope is a snapshot; those
+     * with the latency histogram enabled also carry p50/p90/p99/p99.9/max percentiles via
+     * TimedScope.getLatencyHistogram ().
+     */
     void onExecutionSummary (String contextId, List<TimedScope> listTimedScope,
         List<CounterThroughput> listCounterThroughput, List<Counter> listCounter, List<CounterRange> listCounterRange,
         List<MaxCounter> listMaxCounter);
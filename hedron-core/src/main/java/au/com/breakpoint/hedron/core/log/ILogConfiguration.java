@@ -26,5 +26,14 @@ public interface ILogConfiguration
 
     String getLogFolder ();
 
+    /**
+     * @return whether to use the high throughput BufferedFolderPerDayLogger for the local
+     *         log files
+     */
+    default boolean shouldBufferLogFile ()
+    {
+        return false;
+    }
+
     boolean shouldLogConsole ();
 }
@@ -24,6 +24,14 @@ import au.com.breakpoint.hedron.core.value.IValue;
  */
 public interface ILogger
 {
+    /**
+     * Called by RingBufferLogDispatcher after each batch of messages, eg so that a logger
+     * can write out what it has buffered.
+     */
+    public default void endOfBatch ()
+    {
+    }
+
     public boolean isEnabled (final Level level);
 
     public void logDebug (final String contextId, final IValue<String> s);
@@ -56,6 +56,13 @@ public class Instrumentation
 
     public static void configure (final String logFolder, final String levelsConfigLocal, final int logDaysToKeep,
         final boolean shouldLogConsole, final IInstrumentionListenerLogger remoteInstrumentationLogger)
+    {
+        configure (logFolder, levelsConfigLocal, logDaysToKeep, shouldLogConsole, false, remoteInstrumentationLogger);
+    }
+
+    public static void configure (final String logFolder, final String levelsConfigLocal, final int logDaysToKeep,
+        final boolean shouldLogConsole, final boolean shouldBufferLogFile,
+        final IInstrumentionListenerLogger remoteInstrumentationLogger)
     {
         // Add local logging based on levelsConfigLocal levels.
         if (HcUtil.safeGetLength (levelsConfigLocal) > 0)
@@ -63,7 +70,9 @@ public class Instrumentation
             // Slave the formatted output to the console.
             final List<IStringLogger> slaves =
                 shouldLogConsole ? GenericFactory.newArrayList (new ConsoleStringLogger ()) : null;
-            final AbstractLogger logger = new FolderPerDayLogger (logFolder, levelsConfigLocal, logDaysToKeep, slaves);
+            final AbstractLogger logger =
+                shouldBufferLogFile ? new BufferedFolderPerDayLogger (logFolder, levelsConfigLocal, logDaysToKeep, slaves)
+                    : new FolderPerDayLogger (logFolder, levelsConfigLocal, logDaysToKeep, slaves);
 
             // Link into logging.
             Logging.addLogger (logger);
@@ -180,7 +189,7 @@ public class Instrumentation
 
                 configure (localLogFolder, logConfiguration.getLevelsConfigLocal (),
                     logConfiguration.getLogDaysToKeep (), logConfiguration.shouldLogConsole (),
-                    remoteInstrumentatorLogger);
+                    logConfiguration.shouldBufferLogFile (), remoteInstrumentatorLogger);
 
                 Logging.logInfo (
                     "Configured Instrumentation for %s; local logging folder [%s] [%s]; remote logging [%s]", appname,
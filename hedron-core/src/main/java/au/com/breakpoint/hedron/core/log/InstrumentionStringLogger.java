@@ -50,8 +50,16 @@ public class InstrumentionStringLogger implements IInstrumentionListener
             final String resultsCounterRange = CounterRange.formatResults (listCounterRange);
             final String resultsMaxCounter = MaxCounter.formatResults (listMaxCounter);
 
-            return String.format ("%s%n%s%n%s%n%s%n%s", resultsTimedScope, resultsCounterThroughput, resultsCounter,
-                resultsCounterRange, resultsMaxCounter);
+            final String summaryText = String.format ("%s%n%s%n%s%n%s%n%s", resultsTimedScope,
+                resultsCounterThroughput, resultsCounter, resultsCounterRange, resultsMaxCounter);
+
+            // Latency percentiles only for scopes that have the latency histogram enabled.
+            final boolean hasLatencyHistograms =
+                listTimedScope.stream ().anyMatch (ts -> ts.getLatencyHistogram () != null);
+
+            return hasLatencyHistograms
+                ? String.format ("%s%n%s", summaryText, TimedScope.formatLatencyResults (listTimedScope))
+                : summaryText;
         });
         final IValue<String> v = new FormattedStringValue ("Execution summary%n%s", summary);
 
@@ -27,6 +27,7 @@ public enum Level
     private Level (final int intValue)
     {
         m_intValue = intValue;
+        m_upperCaseName = name ().toUpperCase ();
     }
 
     public int getIntValue ()
@@ -41,11 +42,13 @@ public enum Level
 
     public static String getString (final Level level)
     {
-        return level.toString ().toUpperCase ();
+        return level.m_upperCaseName;
     }
 
     private final int m_intValue;
 
+    private final String m_upperCaseName;
+
     public static final int VALUE_DEBUG = 4;
 
     /** A validation-type failure prevented an operation from completing */
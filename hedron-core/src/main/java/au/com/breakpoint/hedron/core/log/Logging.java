@@ -50,12 +50,14 @@ public class Logging
     public static void addLogger (final ILogger logger)
     {
         m_loggers.add (logger);
+        refreshEnabledLevels ();
     }
 
     // Threadsafe.
     public static void clearLoggers ()
     {
         m_loggers.clear ();
+        refreshEnabledLevels ();
     }
 
     public static void conditionalLogAccumulateString (final String s)
@@ -111,6 +113,10 @@ public class Logging
         }
     }
 
+    /**
+     * Makes logging asynchronous using a single thread executor. Each message is queued as
+     * a task.
+     */
     public static synchronized ResourceScope<?> enableAsyncLogging ()
     {
         // Check that async not currently enabled.
@@ -136,6 +142,35 @@ public class Logging
         return m_closeActionDisableAsyncLogging;
     }
 
+    /**
+     * Makes logging asynchronous using the specified ring buffer dispatcher, which avoids
+     * allocation and locking in the logging thread.
+     */
+    public static synchronized ResourceScope<?> enableAsyncLogging (final RingBufferLogDispatcher dispatcher)
+    {
+        // Check that async not currently enabled.
+        if (m_closeActionDisableAsyncLogging == null)
+        {
+            dispatcher.start ();
+            m_ringBufferDispatcher = dispatcher;
+
+            // On shutdown, restore logging to synchronous so that logging can still be used
+            // right through the shutdown process.
+            final Runnable task = () ->
+            {
+                m_ringBufferDispatcher = null;
+                dispatcher.stop ();
+                logDebugString ("Logging now returned to synchronous");
+            };
+            m_closeActionDisableAsyncLogging =
+                HcUtil.addShutdownTask (task, ShutdownPriority.AsyncLogging, "async logging");
+
+            logDebugString ("Logging now set to asynchonous using a ring buffer");
+        }
+
+        return m_closeActionDisableAsyncLogging;
+    }
+
     public static void executeLogging (final Runnable task)
     {
         // Protect against exceptions and keep going so other async tasks are not killed.
@@ -164,32 +199,87 @@ public class Logging
         return new ArrayList<> (m_loggers);
     }
 
+    /**
+     * A cheap check of whether any logger has the level enabled. The log methods check
+     * this first, so disabled levels cost almost nothing.
+     */
+    public static boolean isEnabled (final Level level)
+    {
+        return (m_enabledLevelMask & 1 << level.getIntValue ()) != 0;
+    }
+
+    public static void logDebug (final String format, final Object p0)
+    {
+        if (isEnabled (Level.Debug) && !publishToRingBuffer (Level.Debug, format, 1, p0, null, null, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logDebugString (new FormattedStringValue (format, p0));
+            }
+        }
+    }
+
+    public static void logDebug (final String format, final Object p0, final Object p1)
+    {
+        if (isEnabled (Level.Debug) && !publishToRingBuffer (Level.Debug, format, 2, p0, p1, null, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logDebugString (new FormattedStringValue (format, p0, p1));
+            }
+        }
+    }
+
+    public static void logDebug (final String format, final Object p0, final Object p1, final Object p2)
+    {
+        if (isEnabled (Level.Debug) && !publishToRingBuffer (Level.Debug, format, 3, p0, p1, p2, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logDebugString (new FormattedStringValue (format, p0, p1, p2));
+            }
+        }
+    }
+
     public static void logDebug (final String format, final Object... parameters)
     {
-        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        if (isEnabled (Level.Debug) && !publishToRingBuffer (Level.Debug, format, 0, null, null, null, parameters))
         {
-            // lazy formatting
-            logDebugString (new FormattedStringValue (format, parameters));
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logDebugString (new FormattedStringValue (format, parameters));
+            }
         }
     }
 
     public static void logDebugString (final IValue<String> v)
     {
-        logDebugString (ThreadContext.getContextId (), v);
+        if (isEnabled (Level.Debug))
+        {
+            logDebugString (ThreadContext.getContextId (), v);
+        }
     }
 
     public static void logDebugString (final String s)
     {
-        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        if (isEnabled (Level.Debug) && !publishToRingBuffer (Level.Debug, s, 0, null, null, null, null))
         {
-            logDebugString (new HeldValue<String> (s));
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                logDebugString (new HeldValue<String> (s));
+            }
         }
     }
 
     public static void logDebugString (final String contextId, final IValue<String> v)
     {
         // Do nothing if in logging silence.
-        if (!ThreadContext.isWithinLoggingSilence ())
+        if (isEnabled (Level.Debug) && !ThreadContext.isWithinLoggingSilence ()
+            && !publishToRingBuffer (contextId, Level.Debug, v))
         {
             try (final LoggingOperationScope ls = new LoggingOperationScope ())
             {
@@ -205,32 +295,78 @@ public class Logging
         }
     }
 
+    public static void logError (final String format, final Object p0)
+    {
+        if (isEnabled (Level.Error) && !publishToRingBuffer (Level.Error, format, 1, p0, null, null, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logErrorString (new FormattedStringValue (format, p0));
+            }
+        }
+    }
+
+    public static void logError (final String format, final Object p0, final Object p1)
+    {
+        if (isEnabled (Level.Error) && !publishToRingBuffer (Level.Error, format, 2, p0, p1, null, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logErrorString (new FormattedStringValue (format, p0, p1));
+            }
+        }
+    }
+
+    public static void logError (final String format, final Object p0, final Object p1, final Object p2)
+    {
+        if (isEnabled (Level.Error) && !publishToRingBuffer (Level.Error, format, 3, p0, p1, p2, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logErrorString (new FormattedStringValue (format, p0, p1, p2));
+            }
+        }
+    }
+
     public static void logError (final String format, final Object... parameters)
     {
-        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        if (isEnabled (Level.Error) && !publishToRingBuffer (Level.Error, format, 0, null, null, null, parameters))
         {
-            // lazy formatting
-            logErrorString (new FormattedStringValue (format, parameters));
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logErrorString (new FormattedStringValue (format, parameters));
+            }
         }
     }
 
     public static void logErrorString (final IValue<String> v)
     {
-        logErrorString (ThreadContext.getContextId (), v);
+        if (isEnabled (Level.Error))
+        {
+            logErrorString (ThreadContext.getContextId (), v);
+        }
     }
 
     public static void logErrorString (final String s)
     {
-        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        if (isEnabled (Level.Error) && !publishToRingBuffer (Level.Error, s, 0, null, null, null, null))
         {
-            logErrorString (new HeldValue<String> (s));
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                logErrorString (new HeldValue<String> (s));
+            }
         }
     }
 
     public static void logErrorString (final String contextId, final IValue<String> v)
     {
         // Do nothing if in logging silence.
-        if (!ThreadContext.isWithinLoggingSilence ())
+        if (isEnabled (Level.Error) && !ThreadContext.isWithinLoggingSilence ()
+            && !publishToRingBuffer (contextId, Level.Error, v))
         {
             try (final LoggingOperationScope ls = new LoggingOperationScope ())
             {
@@ -246,32 +382,78 @@ public class Logging
         }
     }
 
+    public static void logFatal (final String format, final Object p0)
+    {
+        if (isEnabled (Level.Fatal) && !publishToRingBuffer (Level.Fatal, format, 1, p0, null, null, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logFatalString (new FormattedStringValue (format, p0));
+            }
+        }
+    }
+
+    public static void logFatal (final String format, final Object p0, final Object p1)
+    {
+        if (isEnabled (Level.Fatal) && !publishToRingBuffer (Level.Fatal, format, 2, p0, p1, null, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logFatalString (new FormattedStringValue (format, p0, p1));
+            }
+        }
+    }
+
+    public static void logFatal (final String format, final Object p0, final Object p1, final Object p2)
+    {
+        if (isEnabled (Level.Fatal) && !publishToRingBuffer (Level.Fatal, format, 3, p0, p1, p2, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logFatalString (new FormattedStringValue (format, p0, p1, p2));
+            }
+        }
+    }
+
     public static void logFatal (final String format, final Object... parameters)
     {
-        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        if (isEnabled (Level.Fatal) && !publishToRingBuffer (Level.Fatal, format, 0, null, null, null, parameters))
         {
-            // lazy formatting
-            logFatalString (new FormattedStringValue (format, parameters));
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logFatalString (new FormattedStringValue (format, parameters));
+            }
         }
     }
 
     public static void logFatalString (final IValue<String> v)
     {
-        logFatalString (ThreadContext.getContextId (), v);
+        if (isEnabled (Level.Fatal))
+        {
+            logFatalString (ThreadContext.getContextId (), v);
+        }
     }
 
     public static void logFatalString (final String s)
     {
-        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        if (isEnabled (Level.Fatal) && !publishToRingBuffer (Level.Fatal, s, 0, null, null, null, null))
         {
-            logFatalString (new HeldValue<String> (s));
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                logFatalString (new HeldValue<String> (s));
+            }
         }
     }
 
     public static void logFatalString (final String contextId, final IValue<String> v)
     {
         // Do nothing if in logging silence.
-        if (!ThreadContext.isWithinLoggingSilence ())
+        if (isEnabled (Level.Fatal) && !ThreadContext.isWithinLoggingSilence ()
+            && !publishToRingBuffer (contextId, Level.Fatal, v))
         {
             try (final LoggingOperationScope ls = new LoggingOperationScope ())
             {
@@ -287,32 +469,78 @@ public class Logging
         }
     }
 
+    public static void logInfo (final String format, final Object p0)
+    {
+        if (isEnabled (Level.Info) && !publishToRingBuffer (Level.Info, format, 1, p0, null, null, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logInfoString (new FormattedStringValue (format, p0));
+            }
+        }
+    }
+
+    public static void logInfo (final String format, final Object p0, final Object p1)
+    {
+        if (isEnabled (Level.Info) && !publishToRingBuffer (Level.Info, format, 2, p0, p1, null, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logInfoString (new FormattedStringValue (format, p0, p1));
+            }
+        }
+    }
+
+    public static void logInfo (final String format, final Object p0, final Object p1, final Object p2)
+    {
+        if (isEnabled (Level.Info) && !publishToRingBuffer (Level.Info, format, 3, p0, p1, p2, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logInfoString (new FormattedStringValue (format, p0, p1, p2));
+            }
+        }
+    }
+
     public static void logInfo (final String format, final Object... parameters)
     {
-        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        if (isEnabled (Level.Info) && !publishToRingBuffer (Level.Info, format, 0, null, null, null, parameters))
         {
-            // lazy formatting
-            logInfoString (new FormattedStringValue (format, parameters));
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logInfoString (new FormattedStringValue (format, parameters));
+            }
         }
     }
 
     public static void logInfoString (final IValue<String> v)
     {
-        logInfoString (ThreadContext.getContextId (), v);
+        if (isEnabled (Level.Info))
+        {
+            logInfoString (ThreadContext.getContextId (), v);
+        }
     }
 
     public static void logInfoString (final String s)
     {
-        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        if (isEnabled (Level.Info) && !publishToRingBuffer (Level.Info, s, 0, null, null, null, null))
         {
-            logInfoString (new HeldValue<String> (s));
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                logInfoString (new HeldValue<String> (s));
+            }
         }
     }
 
     public static void logInfoString (final String contextId, final IValue<String> v)
     {
         // Do nothing if in logging silence.
-        if (!ThreadContext.isWithinLoggingSilence ())
+        if (isEnabled (Level.Info) && !ThreadContext.isWithinLoggingSilence ()
+            && !publishToRingBuffer (contextId, Level.Info, v))
         {
             try (final LoggingOperationScope ls = new LoggingOperationScope ())
             {
@@ -350,32 +578,78 @@ public class Logging
         }
     }
 
+    public static void logTrace (final String format, final Object p0)
+    {
+        if (isEnabled (Level.Trace) && !publishToRingBuffer (Level.Trace, format, 1, p0, null, null, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logTraceString (new FormattedStringValue (format, p0));
+            }
+        }
+    }
+
+    public static void logTrace (final String format, final Object p0, final Object p1)
+    {
+        if (isEnabled (Level.Trace) && !publishToRingBuffer (Level.Trace, format, 2, p0, p1, null, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logTraceString (new FormattedStringValue (format, p0, p1));
+            }
+        }
+    }
+
+    public static void logTrace (final String format, final Object p0, final Object p1, final Object p2)
+    {
+        if (isEnabled (Level.Trace) && !publishToRingBuffer (Level.Trace, format, 3, p0, p1, p2, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logTraceString (new FormattedStringValue (format, p0, p1, p2));
+            }
+        }
+    }
+
     public static void logTrace (final String format, final Object... parameters)
     {
-        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        if (isEnabled (Level.Trace) && !publishToRingBuffer (Level.Trace, format, 0, null, null, null, parameters))
         {
-            // lazy formatting
-            logTraceString (new FormattedStringValue (format, parameters));
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logTraceString (new FormattedStringValue (format, parameters));
+            }
         }
     }
 
     public static void logTraceString (final IValue<String> v)
     {
-        logTraceString (ThreadContext.getContextId (), v);
+        if (isEnabled (Level.Trace))
+        {
+            logTraceString (ThreadContext.getContextId (), v);
+        }
     }
 
     public static void logTraceString (final String s)
     {
-        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        if (isEnabled (Level.Trace) && !publishToRingBuffer (Level.Trace, s, 0, null, null, null, null))
         {
-            logTraceString (new HeldValue<String> (s));
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                logTraceString (new HeldValue<String> (s));
+            }
         }
     }
 
     public static void logTraceString (final String contextId, final IValue<String> v)
     {
         // Do nothing if in logging silence.
-        if (!ThreadContext.isWithinLoggingSilence ())
+        if (isEnabled (Level.Trace) && !ThreadContext.isWithinLoggingSilence ()
+            && !publishToRingBuffer (contextId, Level.Trace, v))
         {
             try (final LoggingOperationScope ls = new LoggingOperationScope ())
             {
@@ -391,32 +665,78 @@ public class Logging
         }
     }
 
+    public static void logWarn (final String format, final Object p0)
+    {
+        if (isEnabled (Level.Warn) && !publishToRingBuffer (Level.Warn, format, 1, p0, null, null, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logWarnString (new FormattedStringValue (format, p0));
+            }
+        }
+    }
+
+    public static void logWarn (final String format, final Object p0, final Object p1)
+    {
+        if (isEnabled (Level.Warn) && !publishToRingBuffer (Level.Warn, format, 2, p0, p1, null, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logWarnString (new FormattedStringValue (format, p0, p1));
+            }
+        }
+    }
+
+    public static void logWarn (final String format, final Object p0, final Object p1, final Object p2)
+    {
+        if (isEnabled (Level.Warn) && !publishToRingBuffer (Level.Warn, format, 3, p0, p1, p2, null))
+        {
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logWarnString (new FormattedStringValue (format, p0, p1, p2));
+            }
+        }
+    }
+
     public static void logWarn (final String format, final Object... parameters)
     {
-        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        if (isEnabled (Level.Warn) && !publishToRingBuffer (Level.Warn, format, 0, null, null, null, parameters))
         {
-            // lazy formatting
-            logWarnString (new FormattedStringValue (format, parameters));
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                // lazy formatting
+                logWarnString (new FormattedStringValue (format, parameters));
+            }
         }
     }
 
     public static void logWarnString (final IValue<String> v)
     {
-        logWarnString (ThreadContext.getContextId (), v);
+        if (isEnabled (Level.Warn))
+        {
+            logWarnString (ThreadContext.getContextId (), v);
+        }
     }
 
     public static void logWarnString (final String s)
     {
-        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        if (isEnabled (Level.Warn) && !publishToRingBuffer (Level.Warn, s, 0, null, null, null, null))
         {
-            logWarnString (new HeldValue<String> (s));
+            try (final LoggingOperationScope ls = new LoggingOperationScope ())
+            {
+                logWarnString (new HeldValue<String> (s));
+            }
         }
     }
 
     public static void logWarnString (final String contextId, final IValue<String> v)
     {
         // Do nothing if in logging silence.
-        if (!ThreadContext.isWithinLoggingSilence ())
+        if (isEnabled (Level.Warn) && !ThreadContext.isWithinLoggingSilence ()
+            && !publishToRingBuffer (contextId, Level.Warn, v))
         {
             try (final LoggingOperationScope ls = new LoggingOperationScope ())
             {
@@ -505,6 +825,82 @@ public class Logging
     public static void removeLogger (final ILogger logger)
     {
         m_loggers.remove (logger);
+        refreshEnabledLevels ();
+    }
+
+    /**
+     * Recalculates the levels enabled by any logger. Called automatically when loggers are
+     * added or removed, and by AbstractLogger.setLevels (). Other ILogger implementations
+     * must call this if their levels change after they are added.
+     */
+    public static void refreshEnabledLevels ()
+    {
+        // Null during class initialisation, when the initial logger is constructed.
+        if (m_loggers != null)
+        {
+            int mask = 0;
+            for (final ILogger l : m_loggers)
+            {
+                for (final Level level : Level.values ())
+                {
+                    if (l.isEnabled (level))
+                    {
+                        mask |= 1 << level.getIntValue ();
+                    }
+                }
+            }
+
+            m_enabledLevelMask = mask;
+        }
+    }
+
+    /** Logs to the logger at the specified level */
+    static void logToLogger (final ILogger l, final Level level, final String contextId, final IValue<String> v)
+    {
+        switch (level)
+        {
+            case Debug:
+            {
+                l.logDebug (contextId, v);
+                break;
+            }
+
+            case Error:
+            {
+                l.logError (contextId, v);
+                break;
+            }
+
+            case Fatal:
+            {
+                l.logFatal (contextId, v);
+                break;
+            }
+
+            case Info:
+            {
+                l.logInfo (contextId, v);
+                break;
+            }
+
+            case Trace:
+            {
+                l.logTrace (contextId, v);
+                break;
+            }
+
+            case Warn:
+            {
+                l.logWarn (contextId, v);
+                break;
+            }
+
+            default:
+            {
+                ThreadContext.assertFault (false, "Unsupported value [%s]", level);
+                break;
+            }
+        }
     }
 
     private static List<ILogger> copyLoggers ()
@@ -512,6 +908,57 @@ public class Logging
         return GenericFactory.newArrayList (m_loggers);
     }
 
+    /**
+     * @return the live loggers collection, which can be iterated safely without copying
+     */
+    static List<ILogger> getLoggersDirect ()
+    {
+        return m_loggers;
+    }
+
+    /**
+     * Hands the format and its arguments to the ring buffer dispatcher, if enabled, which
+     * creates the IValue and formats it on its consumer thread, so the caller allocates
+     * nothing.
+     *
+     * @param parameters
+     *            the format arguments, or null to take the first argCount of p0, p1 and p2
+     * @return whether the message was handed to the ring buffer dispatcher
+     */
+    private static boolean publishToRingBuffer (final Level level, final String format, final int argCount,
+        final Object p0, final Object p1, final Object p2, final Object[] parameters)
+    {
+        boolean isPublished = false;
+
+        final RingBufferLogDispatcher dispatcher = m_ringBufferDispatcher;
+        if (dispatcher != null && !ThreadContext.isWithinLoggingSilence ())
+        {
+            // Messages discarded by the overflow policy are counted by the dispatcher.
+            dispatcher.publish (ThreadContext.getContextId (), level, format, argCount, p0, p1, p2, parameters);
+            isPublished = true;
+        }
+
+        return isPublished;
+    }
+
+    /**
+     * @return whether the message was handed to the ring buffer dispatcher
+     */
+    private static boolean publishToRingBuffer (final String contextId, final Level level, final IValue<String> v)
+    {
+        boolean isPublished = false;
+
+        final RingBufferLogDispatcher dispatcher = m_ringBufferDispatcher;
+        if (dispatcher != null && !ThreadContext.isWithinLoggingSilence ())
+        {
+            // Messages discarded by the overflow policy are counted by the dispatcher.
+            dispatcher.publish (contextId, level, v);
+            isPublished = true;
+        }
+
+        return isPublished;
+    }
+
     /** Default to fatal, error, warning, info */
     public static final String DEFAULT_LOG_LEVEL_CONFIG = "fewi";
 
@@ -522,6 +969,9 @@ public class Logging
 
     private static final Deque<String> m_conditionalLogStrings = GenericFactory.newConcurrentLinkedDeque ();
 
+    /** Bit per Level.getIntValue () that is enabled by some logger; all until calculated */
+    private static volatile int m_enabledLevelMask = -1;
+
     /**
      * Default to output on the system console with only important messages.
      * CopyOnWriteArrayList is a thread-safe list that is efficient for mostly-iteration
@@ -536,5 +986,13 @@ public class Logging
      */
     private static volatile Executor m_loggingExecutor = _SyncExecutor;
 
+    /** Null unless ring buffer async logging is enabled */
+    private static volatile RingBufferLogDispatcher m_ringBufferDispatcher;
+
     private static final int MAX_CONDITIONAL_LOG_STRINGS = 25;
+
+    static
+    {
+        refreshEnabledLevels ();
+    }
 }
@@ -0,0 +1,557 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.log;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import au.com.breakpoint.hedron.core.Counter;
+import au.com.breakpoint.hedron.core.concurrent.CustomisingThreadFactory;
+import au.com.breakpoint.hedron.core.context.ExecutionScopes;
+import au.com.breakpoint.hedron.core.context.LoggingOperationScope;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.value.FormattedStringValue;
+import au.com.breakpoint.hedron.core.value.HeldValue;
+import au.com.breakpoint.hedron.core.value.IValue;
+
+/**
+ * Asynchronous log dispatcher using a pre-allocated, bounded, multi-producer single-
+ * consumer ring buffer. A producer claims a slot with one CAS and fills in the event in
+ * place, so publishing allocates nothing and doesn't lock. A single consumer thread
+ * delivers events to the loggers in batches, calling ILogger.endOfBatch () after each.
+ * Messages logged with a format are stored in the slot as the format and its arguments,
+ * and only turned into an IValue, and formatted, on the consumer thread.
+ *
+ * Each slot carries a sequence number that says whether it is free for the producer of a
+ * given position or ready for the consumer (after Dmitry Vyukov's bounded queue).
+ *
+ * Enable with Logging.enableAsyncLogging (RingBufferLogDispatcher).
+ */
+public class RingBufferLogDispatcher
+{
+    private RingBufferLogDispatcher (final int capacity, final WaitStrategy waitStrategy,
+        final OverflowPolicy overflowPolicy, final Level overflowLevel, final int sampleRate)
+    {
+        ThreadContext.assertFault (capacity > 0 && capacity <= MAX_CAPACITY, "Invalid capacity [%s]", capacity);
+        ThreadContext.assertFault (sampleRate > 0, "Invalid sample rate [%s]", sampleRate);
+
+        final int length = capacity == 1 ? 1 : Integer.highestOneBit (capacity - 1) << 1;
+        m_events = new LogEvent[length];
+        m_sequences = new AtomicLongArray (length);
+        for (int i = 0; i < length; ++i)
+        {
+            m_events[i] = new LogEvent ();
+            m_sequences.set (i, i);
+        }
+        m_mask = length - 1;
+
+        m_waitStrategy = waitStrategy;
+        m_overflowPolicy = overflowPolicy;
+        m_overflowLevel = overflowLevel;
+        m_sampleRate = sampleRate;
+    }
+
+    public int getCapacity ()
+    {
+        return m_events.length;
+    }
+
+    /**
+     * @return number of events discarded by the overflow policy
+     */
+    public long getDroppedCount ()
+    {
+        return m_countDropped.get ();
+    }
+
+    /**
+     * Queues an event for the consumer thread.
+     *
+     * @return false if the event was discarded because the buffer was full
+     */
+    public boolean publish (final String contextId, final Level level, final IValue<String> value)
+    {
+        final long position = claim (level);
+        if (position >= 0)
+        {
+            final LogEvent event = m_events[(int) position & m_mask];
+            event.m_contextId = contextId;
+            event.m_level = level;
+            event.m_value = value;
+
+            release (position);
+            drainIfStopped ();
+        }
+
+        return position >= 0;
+    }
+
+    /**
+     * Queues a message for the consumer thread to format, without allocating.
+     *
+     * @param args
+     *            the format arguments, or null to take the first argCount of p0, p1 and p2
+     * @return false if the event was discarded because the buffer was full
+     */
+    boolean publish (final String contextId, final Level level, final String format, final int argCount,
+        final Object p0, final Object p1, final Object p2, final Object[] args)
+    {
+        final long position = claim (level);
+        if (position >= 0)
+        {
+            final LogEvent event = m_events[(int) position & m_mask];
+            event.m_contextId = contextId;
+            event.m_level = level;
+            event.m_format = format;
+            event.m_argCount = argCount;
+            event.m_p0 = p0;
+            event.m_p1 = p1;
+            event.m_p2 = p2;
+            event.m_args = args;
+
+            release (position);
+            drainIfStopped ();
+        }
+
+        return position >= 0;
+    }
+
+    /**
+     * Starts the consumer thread. A dispatcher can only be started once.
+     */
+    public synchronized void start ()
+    {
+        ThreadContext.assertFault (m_consumerThread == null && !m_stopped, "Dispatcher already started");
+
+        m_running = true;
+        m_consumerThread =
+            new CustomisingThreadFactory (RingBufferLogDispatcher.class.getSimpleName (), true).newThread (this::consume);
+        m_consumerThread.start ();
+    }
+
+    /**
+     * Stops the consumer thread once it has delivered the events already queued. Events
+     * published after that are delivered synchronously by their producer.
+     */
+    public synchronized void stop ()
+    {
+        if (m_consumerThread != null)
+        {
+            m_running = false;
+            try
+            {
+                m_consumerThread.join ();
+            }
+            catch (final InterruptedException e)
+            {
+                // Propagate exception as unchecked fault up to the fault barrier.
+                ThreadContext.throwFault (e);
+            }
+            m_consumerThread = null;
+
+            // A producer that claims a position from here on sees m_stopped after its claim's
+            // CAS, and delivers its own event. Deliver those claimed before, waiting for any
+            // still being filled in.
+            m_stopped = true;
+            final long tail = m_tail.get ();
+
+            int idleCount = 0;
+            while (true)
+            {
+                synchronized (m_drainLock)
+                {
+                    while (deliverBatch () > 0)
+                    {
+                    }
+                    if (m_head >= tail)
+                    {
+                        break;
+                    }
+                }
+                m_waitStrategy.idle (++idleCount);
+            }
+        }
+    }
+
+    /**
+     * Claims the next slot, waiting for space if the overflow policy says to.
+     *
+     * @return the slot's position, or -1 if the event is to be discarded
+     */
+    private long claim (final Level level)
+    {
+        int idleCount = 0;
+        Boolean shouldWait = null;// decided on the first encounter with a full buffer
+
+        long position = m_tail.get ();
+        while (true)
+        {
+            final int index = (int) position & m_mask;
+            final long difference = m_sequences.get (index) - position;
+
+            if (difference == 0)
+            {
+                // Slot is free for this position: try to claim it.
+                if (m_tail.compareAndSet (position, position + 1))
+                {
+                    return position;
+                }
+            }
+            else if (difference < 0)
+            {
+                // Full.
+                if (shouldWait == null)
+                {
+                    shouldWait = shouldWaitWhenFull (level);
+                }
+
+                if (!shouldWait)
+                {
+                    m_countDropped.increment ();
+                    return -1;
+                }
+
+                m_waitStrategy.idle (++idleCount);
+            }
+
+            position = m_tail.get ();
+        }
+    }
+
+    /** Once stopped, the producer delivers its event (and any before it) itself */
+    private void drainIfStopped ()
+    {
+        if (m_stopped)
+        {
+            synchronized (m_drainLock)
+            {
+                while (deliverBatch () > 0)
+                {
+                }
+            }
+        }
+    }
+
+    private void consume ()
+    {
+        int idleCount = 0;
+
+        boolean done = false;
+        while (!done)
+        {
+            if (deliverBatch () > 0)
+            {
+                idleCount = 0;
+            }
+            else if (!m_running)
+            {
+                done = true;
+            }
+            else
+            {
+                m_waitStrategy.idle (++idleCount);
+            }
+        }
+    }
+
+    /** Called by the single consumer, or under m_drainLock once stopped */
+    private int deliverBatch ()
+    {
+        int count = 0;
+
+        // No copy needed: iterating a CopyOnWriteArrayList uses a snapshot.
+        final List<ILogger> loggers = Logging.getLoggersDirect ();
+
+        try (final LoggingOperationScope ls = new LoggingOperationScope ())
+        {
+            boolean done = false;
+            while (!done && count < MAX_BATCH_SIZE)
+            {
+                final int index = (int) m_head & m_mask;
+                if (m_sequences.get (index) != m_head + 1)
+                {
+                    done = true;
+                }
+                else
+                {
+                    final LogEvent event = m_events[index];
+                    final String contextId = event.m_contextId;
+                    final Level level = event.m_level;
+                    final IValue<String> value = event.takeValue ();
+
+                    // Release the slot before delivery so producers aren't held up by slow loggers.
+                    event.m_contextId = null;
+                    m_sequences.lazySet (index, m_head + m_events.length);
+                    ++m_head;
+                    ++count;
+
+                    for (final ILogger l : loggers)
+                    {
+                        // Protect against exceptions and keep going so other events are not lost.
+                        ExecutionScopes.executeFaultBarrier ( () -> Logging.logToLogger (l, level, contextId, value));
+                    }
+                }
+            }
+
+            if (count > 0)
+            {
+                for (final ILogger l : loggers)
+                {
+                    ExecutionScopes.executeFaultBarrier (l::endOfBatch);
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /** Publishes the filled slot to the consumer */
+    private void release (final long position)
+    {
+        m_sequences.lazySet ((int) position & m_mask, position + 1);
+    }
+
+    private boolean shouldWaitWhenFull (final Level level)
+    {
+        boolean shouldWait = true;
+
+        // Lower int values are more severe.
+        final boolean isBelowLevel = level.getIntValue () > m_overflowLevel.getIntValue ();
+
+        switch (m_overflowPolicy)
+        {
+            case Block:
+            {
+                break;
+            }
+
+            case DropBelowLevel:
+            {
+                shouldWait = !isBelowLevel;
+                break;
+            }
+
+            case Sample:
+            {
+                shouldWait = !isBelowLevel || m_sampleCount.incrementAndGet () % m_sampleRate == 0;
+                break;
+            }
+
+            default:
+            {
+                ThreadContext.assertFault (false, "Unsupported value [%s]", m_overflowPolicy);
+                break;
+            }
+        }
+
+        return shouldWait;
+    }
+
+    /**
+     * A dispatcher that blocks producers when the buffer is full, and parks the consumer
+     * when idle.
+     */
+    public static RingBufferLogDispatcher of (final int capacity)
+    {
+        return of (capacity, WaitStrategy.Park, OverflowPolicy.Block, Level.Fatal, 1);
+    }
+
+    /**
+     * @param capacity
+     *            number of events, rounded up to a power of two
+     * @param waitStrategy
+     *            how the consumer waits for events, and producers wait for space
+     * @param overflowPolicy
+     *            what producers do when the buffer is full
+     * @param overflowLevel
+     *            the overflow policy applies to events less severe than this level;
+     *            events at this level or more severe always wait for space
+     * @param sampleRate
+     *            for OverflowPolicy.Sample, 1 in this many of the less severe events wait
+     *            for space; the rest are dropped
+     */
+    public static RingBufferLogDispatcher of (final int capacity, final WaitStrategy waitStrategy,
+        final OverflowPolicy overflowPolicy, final Level overflowLevel, final int sampleRate)
+    {
+        return new RingBufferLogDispatcher (capacity, waitStrategy, overflowPolicy, overflowLevel, sampleRate);
+    }
+
+    /** What a producer does when the ring buffer is full */
+    public enum OverflowPolicy
+    {
+        /** Wait for space, so nothing is lost */
+        Block,
+
+        /** Discard events less severe than the overflow level */
+        DropBelowLevel,
+
+        /** Discard most events less severe than the overflow level, keeping 1 in sampleRate */
+        Sample
+    }
+
+    /** How threads wait, trading cpu for latency */
+    public enum WaitStrategy
+    {
+        /** Busy spin: lowest latency, burns a core */
+        Spin
+        {
+            @Override
+            public void idle (final int idleCount)
+            {
+            }
+        },
+
+        /** Yield the processor */
+        Yield
+        {
+            @Override
+            public void idle (final int idleCount)
+            {
+                Thread.yield ();
+            }
+        },
+
+        /** Spin, then yield, then park briefly: low cpu when idle */
+        Park
+        {
+            @Override
+            public void idle (final int idleCount)
+            {
+                if (idleCount > SPIN_COUNT + YIELD_COUNT)
+                {
+                    LockSupport.parkNanos (PARK_NS);
+                }
+                else if (idleCount > SPIN_COUNT)
+                {
+                    Thread.yield ();
+                }
+            }
+        };
+
+        /**
+         * @param idleCount
+         *            number of consecutive times the thread has found nothing to do
+         */
+        public abstract void idle (int idleCount);
+
+        private static final long PARK_NS = 100_000L;
+
+        private static final int SPIN_COUNT = 100;
+
+        private static final int YIELD_COUNT = 100;
+    }
+
+    /** Pre-allocated ring buffer slot, reused for each lap */
+    private static final class LogEvent
+    {
+        /**
+         * @return the message as an IValue, clearing the slot's references to it
+         */
+        private IValue<String> takeValue ()
+        {
+            IValue<String> value = m_value;
+            if (value == null)
+            {
+                if (m_args != null)
+                {
+                    value = new FormattedStringValue (m_format, m_args);
+                }
+                else if (m_argCount == 1)
+                {
+                    value = new FormattedStringValue (m_format, m_p0);
+                }
+                else if (m_argCount == 2)
+                {
+                    value = new FormattedStringValue (m_format, m_p0, m_p1);
+                }
+                else if (m_argCount == 3)
+                {
+                    value = new FormattedStringValue (m_format, m_p0, m_p1, m_p2);
+                }
+                else
+                {
+                    value = new HeldValue<> (m_format);
+                }
+            }
+
+            m_value = null;
+            m_format = null;
+            m_p0 = null;
+            m_p1 = null;
+            m_p2 = null;
+            m_args = null;
+
+            return value;
+        }
+
+        private int m_argCount;
+
+        private Object[] m_args;
+
+        private String m_contextId;
+
+        private String m_format;
+
+        private Level m_level;
+
+        private Object m_p0;
+
+        private Object m_p1;
+
+        private Object m_p2;
+
+        private IValue<String> m_value;
+    }
+
+    private volatile Thread m_consumerThread;
+
+    private final Counter m_countDropped = Counter.of (RingBufferLogDispatcher.class, "dropped");
+
+    /** Guards delivery once the consumer thread has stopped */
+    private final Object m_drainLock = new Object ();
+
+    private final LogEvent[] m_events;
+
+    /** Next position to consume; accessed by the consumer, or under m_drainLock once stopped */
+    private long m_head;
+
+    private final int m_mask;
+
+    private final Level m_overflowLevel;
+
+    private final OverflowPolicy m_overflowPolicy;
+
+    private volatile boolean m_running;
+
+    private final AtomicLong m_sampleCount = new AtomicLong ();
+
+    private final int m_sampleRate;
+
+    private final AtomicLongArray m_sequences;
+
+    private volatile boolean m_stopped;
+
+    /** Next position to claim by a producer */
+    private final AtomicLong m_tail = new AtomicLong ();
+
+    private final WaitStrategy m_waitStrategy;
+
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private static final int MAX_CAPACITY = 1 << 24;
+}
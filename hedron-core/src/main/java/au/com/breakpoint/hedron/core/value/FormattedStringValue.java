@@ -17,15 +17,42 @@
 package au.com.breakpoint.hedron.core.value;
 
 import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.ParameterFormatter;
 
 /**
- * Not threadsafe. Provides lazy String.format () execution.
+ * Not threadsafe. Provides lazy String.format () execution, using ParameterFormatter. The
+ * one to three argument constructors hold the arguments without a varargs array.
  */
 public class FormattedStringValue extends AbstractValue<String>
 {
     public FormattedStringValue (final String format, final Object... args)
+    {
+        this (format, HcUtil.safeGetLength (args), null, null, null, args);
+    }
+
+    public FormattedStringValue (final String format, final Object p0)
+    {
+        this (format, 1, p0, null, null, null);
+    }
+
+    public FormattedStringValue (final String format, final Object p0, final Object p1)
+    {
+        this (format, 2, p0, p1, null, null);
+    }
+
+    public FormattedStringValue (final String format, final Object p0, final Object p1, final Object p2)
+    {
+        this (format, 3, p0, p1, p2, null);
+    }
+
+    private FormattedStringValue (final String format, final int argCount, final Object p0, final Object p1,
+        final Object p2, final Object[] args)
     {
         m_format = format;
+        m_argCount = argCount;
+        m_p0 = p0;
+        m_p1 = p1;
+        m_p2 = p2;
         m_args = args;
     }
 
@@ -35,15 +62,50 @@ public class FormattedStringValue extends AbstractValue<String>
         // Calculate the value if not already done. Does nothing if already calculated.
         if (m_value == null)
         {
-            m_value = HcUtil.safeGetLength (m_args) == 0 ? m_format : String.format (m_format, m_args);
+            m_value = format ();
         }
 
         return m_value;
     }
 
+    private String format ()
+    {
+        String s = m_format;
+
+        if (m_args != null)
+        {
+            if (m_args.length > 0)
+            {
+                s = ParameterFormatter.format (m_format, m_args);
+            }
+        }
+        else if (m_argCount == 1)
+        {
+            s = ParameterFormatter.format (m_format, m_p0);
+        }
+        else if (m_argCount == 2)
+        {
+            s = ParameterFormatter.format (m_format, m_p0, m_p1);
+        }
+        else if (m_argCount == 3)
+        {
+            s = ParameterFormatter.format (m_format, m_p0, m_p1, m_p2);
+        }
+
+        return s;
+    }
+
+    private final int m_argCount;
+
     private final Object[] m_args;
 
     private final String m_format;
 
+    private final Object m_p0;
+
+    private final Object m_p1;
+
+    private final Object m_p2;
+
     private String m_value;
 }
@@ -16,10 +16,15 @@
 //
 package au.com.breakpoint.hedron.core.value;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
-import au.com.breakpoint.hedron.core.HcUtil;
 import au.com.breakpoint.hedron.core.Counter;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.concurrent.Concurrency;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.log.Logging;
 
 /**
  * Effectively immutable, although internal state recalculates when cached data expires.
@@ -27,23 +32,36 @@ import au.com.breakpoint.hedron.core.Counter;
  * subsequent requests retrieve the first value again. Threadsafe lock-free through
  * FutureTask.
  *
+ * By default, the first get () after expiry blocks while the value is refetched. With a
+ * RefreshPolicy the value is instead refetched in the background ahead of expiry, and
+ * callers keep getting the previous value until the new one lands (stale-while-revalidate).
+ *
  * @param <T>
  */
 public class TimeLimitedLazyValue<T> extends AbstractValue<T>
 {
     public TimeLimitedLazyValue (final Class<?> usingClass, final String name, final Supplier<T> fetcher,
         final long lifetimeMsec)
+    {
+        this (usingClass, name, fetcher, lifetimeMsec, null);
+    }
+
+    public TimeLimitedLazyValue (final Class<?> usingClass, final String name, final Supplier<T> fetcher,
+        final long lifetimeMsec, final RefreshPolicy refreshPolicy)
     {
         m_lifetimeNs = HcUtil.msecToNs (lifetimeMsec);
         m_fetcher = fetcher;
+        m_refreshPolicy = refreshPolicy;
+        m_name = HcUtil.qualifyName (usingClass, name);
 
-        final Context context = new Context (new SafeLazyValue<> (fetcher), System.nanoTime () + m_lifetimeNs);
-        m_context = new AtomicReference<> (context);
+        m_context = new AtomicReference<> (newContext (new SafeLazyValue<> (fetcher), System.nanoTime (), 0));
 
         // eg TimeLimitedLazyValue.cacheFetch.DataManager.mapData
         m_countSnapshotFetch =
             Counter.of (TimeLimitedLazyValue.class, HcUtil.qualifyName ("cacheFetch", usingClass, name));
         m_countSnapshotGet = Counter.of (TimeLimitedLazyValue.class, HcUtil.qualifyName ("cacheGet", usingClass, name));
+        m_countRefreshFailure = refreshPolicy == null ? null
+            : Counter.of (TimeLimitedLazyValue.class, HcUtil.qualifyName ("cacheRefreshFailure", usingClass, name));
     }
 
     @Override
@@ -59,50 +77,238 @@ public class TimeLimitedLazyValue<T> extends AbstractValue<T>
         return value;
     }
 
+    private Context newContext (final SafeLazyValue<T> lazyValue, final long nsLoaded, final int failureCount)
+    {
+        final long nsExpiry;
+        final long nsRefresh;
+        if (m_refreshPolicy == null)
+        {
+            nsExpiry = nsLoaded + m_lifetimeNs;
+            nsRefresh = nsExpiry;
+        }
+        else
+        {
+            nsExpiry = nsLoaded + m_lifetimeNs + HcUtil.msecToNs (m_refreshPolicy.getMaxStalenessMsec ());
+            nsRefresh = nsLoaded + (long) (m_lifetimeNs * m_refreshPolicy.getRefreshFraction ());
+        }
+
+        return new Context (lazyValue, nsExpiry, nsRefresh, false, failureCount);
+    }
+
+    /**
+     * Runs on the refresh executor. The result is discarded if the context has been
+     * replaced in the meantime, ie by a blocking refetch after the staleness limit.
+     */
+    private void refresh (final Context refreshingContext)
+    {
+        T value = null;
+        RuntimeException failure = null;
+        try
+        {
+            value = m_fetcher.get ();
+        }
+        catch (final RuntimeException e)
+        {
+            failure = e;
+        }
+
+        if (failure == null)
+        {
+            final T v = value;
+            final SafeLazyValue<T> lazyValue = SafeLazyValue.of ( () -> v);
+            lazyValue.get ();// evaluate now, so readers never run the trivial supplier
+
+            m_context.compareAndSet (refreshingContext, newContext (lazyValue, System.nanoTime (), 0));
+        }
+        else
+        {
+            onRefreshFailure (refreshingContext, failure);
+        }
+    }
+
+    private void onRefreshFailure (final Context refreshingContext, final Throwable e)
+    {
+        m_countRefreshFailure.increment ();
+
+        final int failureCount = refreshingContext.m_failureCount + 1;
+        Logging.logError ("Background refresh #%s of [%s] failed; serving the previous value%n%s", failureCount,
+            m_name, HcUtil.getExceptionDetails (e));
+
+        // Back off exponentially, leaving the value as it was until the next attempt.
+        final long nsBackoff = Math.min (
+            HcUtil.msecToNs (m_refreshPolicy.getFailureBackoffMsec ()) << Math.min (failureCount - 1, 20),
+            Math.max (m_lifetimeNs, 1));
+        final Context newContext = new Context (refreshingContext.m_lazyValue,
+            refreshingContext.m_systemTimeNsExpiry, System.nanoTime () + nsBackoff, false, failureCount);
+
+        m_context.compareAndSet (refreshingContext, newContext);
+    }
+
     private void reviewContext ()
     {
         // Lock-free implementation (optimistic 'locking' with retry).
         boolean done;
-        boolean isStale;
         do
         {
             final Context prevContext = m_context.get ();
+            final long nsNow = System.nanoTime ();
 
-            final long nsExpiry = prevContext.m_systemTimeNsExpiry;
-            isStale = !HcUtil.nsIsBefore (System.nanoTime (), nsExpiry);
-            if (!isStale)
-            {
-                done = true;
-            }
-            else
+            if (!HcUtil.nsIsBefore (nsNow, prevContext.m_systemTimeNsExpiry))
             {
                 // Chuck the previous LazyValue (FutureTask) so that it gets reevaluated.
-                final Context newContext =
-                    new Context (SafeLazyValue.of (m_fetcher), System.nanoTime () + m_lifetimeNs);
+                final Context newContext = newContext (SafeLazyValue.of (m_fetcher), nsNow, 0);
 
                 done = m_context.compareAndSet (prevContext, newContext);
+                if (done)
+                {
+                    m_countSnapshotFetch.increment ();
+                }
+            }
+            else if (!prevContext.m_refreshing && !HcUtil.nsIsBefore (nsNow, prevContext.m_systemTimeNsRefresh))
+            {
+                // Claim the refresh; only the thread whose CAS succeeds submits it.
+                final Context refreshingContext = new Context (prevContext.m_lazyValue,
+                    prevContext.m_systemTimeNsExpiry, prevContext.m_systemTimeNsRefresh, true,
+                    prevContext.m_failureCount);
+
+                done = m_context.compareAndSet (prevContext, refreshingContext);
+                if (done)
+                {
+                    m_countSnapshotFetch.increment ();
+                    submitRefresh (refreshingContext);
+                }
+            }
+            else
+            {
+                done = true;
             }
         }
         while (!done);
+    }
 
-        if (isStale)
+    private void submitRefresh (final Context refreshingContext)
+    {
+        try
+        {
+            m_refreshPolicy.getExecutor ().execute ( () -> refresh (refreshingContext));
+        }
+        catch (final RejectedExecutionException e)
         {
-            m_countSnapshotFetch.increment ();
+            onRefreshFailure (refreshingContext, e);
         }
     }
 
     /** Context data, immutable for concurrency reasons */
     public class Context
     {
-        private Context (final SafeLazyValue<T> lazyValue, final long systemTimeNsExpiry)
+        private Context (final SafeLazyValue<T> lazyValue, final long systemTimeNsExpiry,
+            final long systemTimeNsRefresh, final boolean refreshing, final int failureCount)
         {
             m_lazyValue = lazyValue;
             m_systemTimeNsExpiry = systemTimeNsExpiry;
+            m_systemTimeNsRefresh = systemTimeNsRefresh;
+            m_refreshing = refreshing;
+            m_failureCount = failureCount;
         }
 
+        /** Consecutive background refresh failures */
+        public final int m_failureCount;
+
         public final SafeLazyValue<T> m_lazyValue;
 
+        /** A background refresh is in progress */
+        public final boolean m_refreshing;
+
+        /** Beyond this time, get () blocks while the value is refetched */
         public final long m_systemTimeNsExpiry;
+
+        /** Beyond this time, a background refresh is started (refresh mode only) */
+        public final long m_systemTimeNsRefresh;
+    }
+
+    /**
+     * Immutable settings for background refresh.
+     */
+    public static class RefreshPolicy
+    {
+        private RefreshPolicy (final Executor executor, final double refreshFraction, final long maxStalenessMsec,
+            final long failureBackoffMsec)
+        {
+            ThreadContext.assertFault (refreshFraction > 0.0 && refreshFraction <= 1.0,
+                "Invalid refresh fraction [%s]", refreshFraction);
+            ThreadContext.assertFault (maxStalenessMsec >= 0, "Invalid max staleness [%s]", maxStalenessMsec);
+            ThreadContext.assertFault (failureBackoffMsec > 0, "Invalid failure backoff [%s]", failureBackoffMsec);
+
+            m_executor = executor;
+            m_refreshFraction = refreshFraction;
+            m_maxStalenessMsec = maxStalenessMsec;
+            m_failureBackoffMsec = failureBackoffMsec;
+        }
+
+        public Executor getExecutor ()
+        {
+            return m_executor != null ? m_executor : DefaultExecutorHolder.EXECUTOR;
+        }
+
+        public long getFailureBackoffMsec ()
+        {
+            return m_failureBackoffMsec;
+        }
+
+        public long getMaxStalenessMsec ()
+        {
+            return m_maxStalenessMsec;
+        }
+
+        public double getRefreshFraction ()
+        {
+            return m_refreshFraction;
+        }
+
+        /**
+         * Uses a shared pool of daemon threads for refreshing.
+         *
+         * @see #of(Executor, double, long, long)
+         */
+        public static RefreshPolicy of (final double refreshFraction, final long maxStalenessMsec,
+            final long failureBackoffMsec)
+        {
+            return new RefreshPolicy (null, refreshFraction, maxStalenessMsec, failureBackoffMsec);
+        }
+
+        /**
+         * @param executor
+         *            runs the background refreshes
+         * @param refreshFraction
+         *            fraction of the lifetime after which a refresh starts, eg 0.8
+         * @param maxStalenessMsec
+         *            how long past its lifetime the previous value may be served while a
+         *            refresh is outstanding or failing; after that, get () blocks on a
+         *            fetch as it does without a RefreshPolicy
+         * @param failureBackoffMsec
+         *            delay before retrying a failed refresh, doubling with each consecutive
+         *            failure up to the lifetime
+         */
+        public static RefreshPolicy of (final Executor executor, final double refreshFraction,
+            final long maxStalenessMsec, final long failureBackoffMsec)
+        {
+            return new RefreshPolicy (executor, refreshFraction, maxStalenessMsec, failureBackoffMsec);
+        }
+
+        private final Executor m_executor;
+
+        private final long m_failureBackoffMsec;
+
+        private final long m_maxStalenessMsec;
+
+        private final double m_refreshFraction;
+    }
+
+    /** Created on first use only */
+    private static class DefaultExecutorHolder
+    {
+        private static final Executor EXECUTOR =
+            Concurrency.createCachedThreadPool (TimeLimitedLazyValue.class.getSimpleName () + "-refresh", true);
     }
 
     public static <T> TimeLimitedLazyValue<T> of (final Class<?> usingClass, final String name,
@@ -111,9 +317,17 @@ public class TimeLimitedLazyValue<T> extends AbstractValue<T>
         return new TimeLimitedLazyValue<> (usingClass, name, evaluator, lifetimeMsec);
     }
 
+    public static <T> TimeLimitedLazyValue<T> of (final Class<?> usingClass, final String name,
+        final Supplier<T> evaluator, final long lifetimeMsec, final RefreshPolicy refreshPolicy)
+    {
+        return new TimeLimitedLazyValue<> (usingClass, name, evaluator, lifetimeMsec, refreshPolicy);
+    }
+
     /** Gather context in lock-free / immutable manner for max concurrency */
     private final AtomicReference<Context> m_context;
 
+    private final Counter m_countRefreshFailure;
+
     private final Counter m_countSnapshotFetch;
 
     private final Counter m_countSnapshotGet;
@@ -121,4 +335,10 @@ public class TimeLimitedLazyValue<T> extends AbstractValue<T>
     private final Supplier<T> m_fetcher;
 
     private final long m_lifetimeNs;
+
+    /** For diagnostics */
+    private final String m_name;
+
+    /** Null for blocking refetch on expiry */
+    private final RefreshPolicy m_refreshPolicy;
 }
@@ -0,0 +1,335 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.BoundedIndexedCache.RemovalCause;
+import au.com.breakpoint.hedron.core.context.FaultException;
+
+public class BoundedIndexedCacheTest
+{
+    @Test
+    public void testExpireAfterAccess ()
+    {
+        final AtomicLong nsNow = new AtomicLong ();
+        final AtomicInteger fetches = new AtomicInteger ();
+        final BoundedIndexedCache<Integer, String> cache = IndexedCache.<Integer, String> builder (a ->
+        {
+            fetches.incrementAndGet ();
+            return String.valueOf (a);
+        })
+            .expireAfterAccess (100)
+            .clock (nsNow::get)
+            .build ();
+
+        cache.get (1);
+        nsNow.set (HcUtil.msecToNs (60));
+        cache.get (1);
+        nsNow.set (HcUtil.msecToNs (120));
+        cache.get (1);
+        assertEquals (1, fetches.get ());
+
+        nsNow.set (HcUtil.msecToNs (220));
+        cache.get (1);
+        assertEquals (2, fetches.get ());
+    }
+
+    @Test
+    public void testConcurrentReads () throws InterruptedException
+    {
+        final int maximumSize = 100;
+        final BoundedIndexedCache<Integer, String> cache = IndexedCache.<Integer, String> builder (String::valueOf)
+            .maximumSize (maximumSize)
+            .build ();
+
+        final List<Thread> threads = GenericFactory.newArrayList ();
+        final AtomicInteger failures = new AtomicInteger ();
+        for (int t = 0; t < 8; ++t)
+        {
+            final int seed = t;
+            final Thread thread = new Thread ( () ->
+            {
+                try
+                {
+                    for (int i = 0; i < 20_000; ++i)
+                    {
+                        // Mostly hits on a hot set, with some misses.
+                        final int key = i % 10 == 0 ? seed * 1_000_000 + i : i % 50;
+                        assertEquals (String.valueOf (key), cache.get (key));
+                    }
+                }
+                catch (final RuntimeException | AssertionError e)
+                {
+                    failures.incrementAndGet ();
+                }
+            });
+            thread.start ();
+            threads.add (thread);
+        }
+
+        for (final Thread thread : threads)
+        {
+            thread.join ();
+        }
+
+        assertEquals (0, failures.get ());
+        cache.cleanUp ();
+        assertTrue (cache.size () <= maximumSize);
+        assertEquals (cache.size (), cache.getWeightedSize ());
+    }
+
+    @Test
+    public void testExpireAfterWrite ()
+    {
+        final AtomicLong nsNow = new AtomicLong ();
+        final List<RemovalCause> causes = GenericFactory.newArrayList ();
+        final BoundedIndexedCache<Integer, String> cache = IndexedCache.<Integer, String> builder (String::valueOf)
+            .expireAfterWrite (100)
+            .removalListener ( (k, v, cause) -> causes.add (cause))
+            .clock (nsNow::get)
+            .build ();
+
+        final String s1 = cache.get (1);
+        nsNow.set (HcUtil.msecToNs (99));
+        assertSame (s1, cache.get (1));
+
+        nsNow.set (HcUtil.msecToNs (100));
+        final String s2 = cache.get (1);
+        assertTrue (s1 != s2);
+        assertEquals (1, causes.size ());
+        assertEquals (RemovalCause.Expired, causes.get (0));
+
+        // cleanUp releases entries that are no longer read.
+        cache.get (2);
+        nsNow.set (HcUtil.msecToNs (300));
+        cache.cleanUp ();
+        assertEquals (0, cache.size ());
+        assertEquals (3, causes.size ());
+    }
+
+    @Test
+    public void testFailedFetchNotCached ()
+    {
+        final AtomicInteger fetches = new AtomicInteger ();
+        final BoundedIndexedCache<Integer, String> cache = IndexedCache.<Integer, String> builder (a ->
+        {
+            if (fetches.incrementAndGet () == 1)
+            {
+                throw new IllegalStateException ("First fetch fails");
+            }
+            return String.valueOf (a);
+        })
+            .maximumSize (10)
+            .build ();
+
+        try
+        {
+            cache.get (1);
+        }
+        catch (final FaultException e)
+        {
+            assertTrue (e.getCause () instanceof IllegalStateException);
+        }
+        assertEquals (0, cache.size ());
+
+        assertEquals ("1", cache.get (1));
+        assertEquals (1, cache.size ());
+    }
+
+    @Test
+    public void testFrequencyAdmission ()
+    {
+        final int maximumSize = 100;
+        final AtomicInteger fetches = new AtomicInteger ();
+        final BoundedIndexedCache<Integer, String> cache = IndexedCache.<Integer, String> builder (a ->
+        {
+            fetches.incrementAndGet ();
+            return String.valueOf (a);
+        })
+            .maximumSize (maximumSize)
+            .build ();
+
+        // Establish a frequently used working set.
+        for (int pass = 0; pass < 5; ++pass)
+        {
+            for (int i = 0; i < maximumSize; ++i)
+            {
+                cache.get (i);
+            }
+        }
+
+        // A scan of one-off keys mustn't flush the working set.
+        for (int i = 0; i < 10 * maximumSize; ++i)
+        {
+            cache.get (1_000_000 + i);
+        }
+
+        fetches.set (0);
+        for (int i = 0; i < maximumSize; ++i)
+        {
+            cache.get (i);
+        }
+        assertTrue (fetches.get () <= maximumSize / 5);
+    }
+
+    @Test
+    public void testGetAllBatch ()
+    {
+        final List<List<Integer>> batches = GenericFactory.newArrayList ();
+        final BoundedIndexedCache<Integer, String> cache = IndexedCache.<Integer, String> builder (null)
+            .batchFetcher (keys ->
+            {
+                batches.add (GenericFactory.newArrayList (keys));
+
+                // 5 has no value.
+                final Map<Integer, String> values = GenericFactory.newHashMap ();
+                keys.stream ().filter (k -> k != 5).forEach (k -> values.put (k, String.valueOf (k)));
+                return values;
+            })
+            .maximumSize (10)
+            .build ();
+
+        assertEquals ("1", cache.get (1));
+        assertEquals (1, batches.size ());
+
+        final Map<Integer, String> values = cache.getAll (Arrays.asList (3, 1, 2, 5, 3));
+        assertEquals (Arrays.asList (3, 1, 2), GenericFactory.newArrayList (values.keySet ()));
+        assertEquals ("2", values.get (2));
+        assertEquals (2, batches.size ());
+        assertEquals (Arrays.asList (3, 2, 5), batches.get (1));
+        assertEquals (3, cache.size ());
+
+        // Only the key with no value is fetched again.
+        cache.getAll (Arrays.asList (1, 2, 3, 5));
+        assertEquals (3, batches.size ());
+        assertEquals (Arrays.asList (5), batches.get (2));
+    }
+
+    @Test
+    public void testInvalidate ()
+    {
+        final List<RemovalCause> causes = GenericFactory.newArrayList ();
+        final BoundedIndexedCache<Integer, String> cache = IndexedCache.<Integer, String> builder (String::valueOf)
+            .maximumSize (10)
+            .removalListener ( (k, v, cause) -> causes.add (cause))
+            .build ();
+
+        cache.get (1);
+        cache.get (2);
+        cache.get (3);
+        cache.invalidate (2);
+        assertEquals (2, cache.size ());
+        assertEquals (RemovalCause.Explicit, causes.get (0));
+
+        cache.invalidateAll ();
+        assertEquals (0, cache.size ());
+        assertEquals (0, cache.getWeightedSize ());
+        assertEquals (3, causes.size ());
+    }
+
+    @Test
+    public void testMaximumSize ()
+    {
+        final AtomicInteger evictions = new AtomicInteger ();
+        final BoundedIndexedCache<Integer, String> cache = IndexedCache.<Integer, String> builder (String::valueOf)
+            .maximumSize (50)
+            .removalListener ( (k, v, cause) ->
+            {
+                assertEquals (RemovalCause.Evicted, cause);
+                evictions.incrementAndGet ();
+            })
+            .recordStats (BoundedIndexedCacheTest.class, "testMaximumSize")
+            .build ();
+
+        final long hitsBefore = getCount ("cacheHit");
+        final long missesBefore = getCount ("cacheMiss");
+        final long evictionsBefore = getCount ("cacheEviction");
+
+        for (int i = 0; i < 1000; ++i)
+        {
+            cache.get (i);
+            cache.get (i);
+            assertTrue (cache.size () <= 50);
+        }
+
+        assertEquals (50, cache.size ());
+        assertEquals (950, evictions.get ());
+        assertEquals (1000, getCount ("cacheHit") - hitsBefore);
+        assertEquals (1000, getCount ("cacheMiss") - missesBefore);
+        assertEquals (950, getCount ("cacheEviction") - evictionsBefore);
+    }
+
+    @Test
+    public void testMaximumWeight ()
+    {
+        final BoundedIndexedCache<Integer, String> cache = IndexedCache.<Integer, String> builder (a -> "x" + a)
+            .maximumWeight (100, (k, v) -> v.length ())
+            .build ();
+
+        for (int i = 0; i < 1000; ++i)
+        {
+            cache.get (i);
+            assertTrue (cache.getWeightedSize () <= 100);
+        }
+    }
+
+    @Test
+    public void testSketchSizedByEntries ()
+    {
+        // Neither sizes the sketch from its (huge) weight bound, which would exhaust memory.
+        for (int i = 0; i < 16; ++i)
+        {
+            final BoundedIndexedCache<Integer, String> expiring =
+                IndexedCache.<Integer, String> builder (String::valueOf)
+                        .expireAfterWrite (60_000)
+                    .build ();
+            final BoundedIndexedCache<Integer, String> weighted =
+                IndexedCache.<Integer, String> builder (String::valueOf)
+                    .maximumWeight (1L << 40, (k, v) -> v.length ())
+                    .build ();
+
+            for (int j = 0; j < 1000; ++j)
+            {
+                expiring.get (j);
+                weighted.get (j);
+                weighted.get (j);
+            }
+            assertEquals (1000, expiring.size ());
+            assertEquals (1000, weighted.size ());
+        }
+    }
+
+    @Test (expected = FaultException.class)
+    public void testUnbounded ()
+    {
+        IndexedCache.<Integer, String> builder (String::valueOf).build ();
+    }
+
+    private static long getCount (final String counterName)
+    {
+        return Counter.getCounter (HcUtil.qualifyName (BoundedIndexedCache.class,
+            HcUtil.qualifyName (counterName, BoundedIndexedCacheTest.class, "testMaximumSize"))).get ();
+    }
+}
@@ -0,0 +1,100 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ConcurrentLogarithmicHistogram32Test
+{
+    @Test
+    public void testMergeFrom ()
+    {
+        LogarithmicHistogram32 immutable = new LogarithmicHistogram32 ();
+        immutable = immutable.accumulate (3);
+        immutable = immutable.accumulate (9);
+
+        final ConcurrentLogarithmicHistogram32 h1 = new ConcurrentLogarithmicHistogram32 ();
+        h1.mergeFrom (immutable);
+        assertEquals ("2-3:1; 8-15:1", h1.toString ());
+
+        final ConcurrentLogarithmicHistogram32 h2 = new ConcurrentLogarithmicHistogram32 ();
+        h2.record (9);
+        h2.mergeFrom (h1);
+        assertEquals ("2-3:1; 8-15:2", h2.toString ());
+
+        // Source is unchanged.
+        assertEquals ("2-3:1; 8-15:1", h1.toString ());
+    }
+
+    @Test
+    public void testRecord ()
+    {
+        final ConcurrentLogarithmicHistogram32 h = new ConcurrentLogarithmicHistogram32 ();
+        assertTrue (h.isUnused ());
+
+        long value = 1;
+        for (int i = 0; i < 31; ++i, value *= 2)
+        {
+            h.record (value);
+        }
+
+        // Extremities too.
+        h.record (0);
+        h.record (Integer.MAX_VALUE);
+        assertFalse (h.isUnused ());
+
+        final LogarithmicHistogram32 snapshot = h.snapshot ();
+        assertEquals (2, snapshot.getHistogramBins ()[0]);
+        assertEquals (2, snapshot.getHistogramBins ()[31 - 1]);
+
+        // Snapshot matches the immutable equivalent.
+        LogarithmicHistogram32 immutable = new LogarithmicHistogram32 ();
+        value = 1;
+        for (int i = 0; i < 31; ++i, value *= 2)
+        {
+            immutable = immutable.accumulate (value);
+        }
+        immutable = immutable.accumulate (0);
+        immutable = immutable.accumulate (Integer.MAX_VALUE);
+        assertArrayEquals (immutable.getHistogramBins (), snapshot.getHistogramBins ());
+
+        // Snapshot is unaffected by later recording.
+        h.record (Integer.MAX_VALUE, 3);
+        assertEquals (2, snapshot.getHistogramBins ()[31 - 1]);
+        assertTrue (h.toString ().endsWith ("1073741824-2147483647:5"));
+
+        h.reset ();
+        assertTrue (h.isUnused ());
+    }
+
+    @Test
+    public void testRecordConcurrently ()
+    {
+        final ConcurrentLogarithmicHistogram32 h = new ConcurrentLogarithmicHistogram32 ();
+
+        final int nrThreads = 20;
+        final int nrTasks = nrThreads * 1000;
+
+        HcUtil.executeManyConcurrently ( () -> h.record (5), nrThreads, nrTasks);
+
+        assertEquals ("4-7:" + nrTasks, h.toString ());
+    }
+}
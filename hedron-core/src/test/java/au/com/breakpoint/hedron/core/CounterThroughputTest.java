@@ -17,6 +17,7 @@
 package au.com.breakpoint.hedron.core;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import org.junit.AfterClass;
 import org.junit.Test;
@@ -26,6 +27,44 @@ import au.com.breakpoint.hedron.core.CounterThroughput.IClock;
 
 public class CounterThroughputTest
 {
+    @Test
+    public void testAdd ()
+    {
+        final long timesSeconds[] =
+            {
+                    // second 500: 5 + 5
+                    500_001_123_456L,
+                    500_999_123_456L,
+
+                    // second 501: 10
+                    501_010_123_456L,
+
+                    // close off 501 second
+                    502_000_000_000L
+        };
+        final int[] deltas =
+            {
+                    5, 5, 10, 1
+        };
+
+        final CounterThroughput e = CounterThroughput.of ("testAdd", 1000);
+        e.setClock (new ClockSimulator (timesSeconds, 1));
+
+        for (final int delta : deltas)
+        {
+            e.add (delta);
+        }
+
+        final int[] h = e.getCounters ().getThroughputs ().getHistogramBins ();
+        final int[] expecteds =
+            {
+                    // Both closed seconds fall in bin 3 (8 to 15).
+                    0, 0, 0, 2, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0
+        };
+        assertArrayEquals (expecteds, h);
+        assertEquals (1, e.getCounters ().getCountForEpoch ());
+    }
+
     @Test
     public void testGetCounterThroughput ()
     {
@@ -0,0 +1,182 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.context.FaultException;
+
+public class HdrHistogramTest
+{
+    @Test
+    public void testCompactBytes ()
+    {
+        final ConcurrentHdrHistogram h = new ConcurrentHdrHistogram (3);
+        for (long v = 1; v < ConcurrentHdrHistogram.DEFAULT_HIGHEST_TRACKABLE_VALUE; v *= 3)
+        {
+            h.record (v);
+            h.record (v);
+        }
+
+        final HdrHistogram expected = h.snapshot ();
+        final byte[] bytes = expected.toCompactBytes ();
+
+        // Much smaller than the counts array.
+        assertTrue (bytes.length < 200);
+
+        final HdrHistogram actual = HdrHistogram.fromCompactBytes (bytes);
+        assertEquals (expected.getTotalCount (), actual.getTotalCount ());
+        assertEquals (expected.getMin (), actual.getMin ());
+        assertEquals (expected.getMax (), actual.getMax ());
+        assertEquals (expected.getSignificantDigits (), actual.getSignificantDigits ());
+        assertArrayEquals (expected.getCounts (), actual.getCounts ());
+
+        assertEquals (expected.toString (), HdrHistogram.fromCompactString (expected.toCompactString ()).toString ());
+    }
+
+    @Test
+    public void testEmpty ()
+    {
+        final HdrHistogram h = new ConcurrentHdrHistogram (2).snapshot ();
+        assertTrue (h.isUnused ());
+        assertEquals (0, h.getPercentile (99.0));
+        assertEquals (0, h.getMin ());
+        assertEquals (0, h.getMax ());
+        assertEquals (0, HdrHistogram.fromCompactBytes (h.toCompactBytes ()).getTotalCount ());
+    }
+
+    @Test (expected = FaultException.class)
+    public void testInvalidSignificantDigits ()
+    {
+        new ConcurrentHdrHistogram (6);
+    }
+
+    @Test
+    public void testPercentiles ()
+    {
+        final ConcurrentHdrHistogram h = new ConcurrentHdrHistogram (3);
+
+        // 1 to 100,000 nsec.
+        for (long v = 1; v <= 100_000; ++v)
+        {
+            h.record (v);
+        }
+
+        final HdrHistogram s = h.snapshot ();
+        assertEquals (100_000, s.getTotalCount ());
+        assertEquals (1, s.getMin ());
+        assertEquals (100_000, s.getMax ());
+
+        // Within 3 significant digits.
+        assertPercentile (50_000, s.getPercentile (50.0));
+        assertPercentile (90_000, s.getPercentile (90.0));
+        assertPercentile (99_000, s.getPercentile (99.0));
+        assertPercentile (99_900, s.getPercentile (99.9));
+        assertEquals (100_000, s.getPercentile (100.0));
+        assertEquals (1, s.getPercentile (0.0));
+        assertEquals (50_000.0, s.getMean (), 50.0);
+    }
+
+    @Test
+    public void testPercentileInZeroBucket ()
+    {
+        final ConcurrentHdrHistogram h = new ConcurrentHdrHistogram (3);
+        for (int i = 0; i < 99; ++i)
+        {
+            h.record (0);
+        }
+        h.record (1000);
+
+        final HdrHistogram s = h.snapshot ();
+        assertEquals (0, s.getPercentile (50.0));
+        assertEquals (0, s.getPercentile (99.0));
+        assertEquals (1000, s.getPercentile (100.0));
+    }
+
+    @Test
+    public void testRecordBeyondHighestTrackable ()
+    {
+        final ConcurrentHdrHistogram h = new ConcurrentHdrHistogram (2, 1000);
+        h.record (5000);
+        h.record (-1);
+
+        final HdrHistogram s = h.snapshot ();
+        assertEquals (2, s.getTotalCount ());
+        assertEquals (0, s.getMin ());
+        assertEquals (1000, s.getMax ());
+    }
+
+    @Test
+    public void testSerializable () throws IOException, ClassNotFoundException
+    {
+        final ConcurrentHdrHistogram h = new ConcurrentHdrHistogram (2);
+        h.record (123_456);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream ();
+        try (final ObjectOutputStream out = new ObjectOutputStream (bytes))
+        {
+            out.writeObject (h);
+            out.writeObject (h.snapshot ());
+        }
+
+        try (final ObjectInputStream in = new ObjectInputStream (new ByteArrayInputStream (bytes.toByteArray ())))
+        {
+            final ConcurrentHdrHistogram h2 = (ConcurrentHdrHistogram) in.readObject ();
+            final HdrHistogram s2 = (HdrHistogram) in.readObject ();
+
+            assertEquals (h.toString (), h2.toString ());
+            assertEquals (h.toString (), s2.toString ());
+
+            // Still recordable.
+            h2.record (1);
+            assertEquals (2, h2.snapshot ().getTotalCount ());
+        }
+    }
+
+    @Test
+    public void testSnapshotAndReset ()
+    {
+        final ConcurrentHdrHistogram h = new ConcurrentHdrHistogram (2);
+
+        final int nrThreads = 20;
+        final int nrTasks = nrThreads * 1000;
+        HcUtil.executeManyConcurrently ( () -> h.record (1000), nrThreads, nrTasks);
+
+        final HdrHistogram interval1 = h.snapshotAndReset ();
+        assertEquals (nrTasks, interval1.getTotalCount ());
+        assertEquals (1000, interval1.getPercentile (99.9));
+
+        h.record (7);
+        final HdrHistogram interval2 = h.snapshotAndReset ();
+        assertEquals (1, interval2.getTotalCount ());
+        assertEquals (7, interval2.getMax ());
+
+        assertTrue (h.snapshot ().isUnused ());
+    }
+
+    private static void assertPercentile (final long expected, final long actual)
+    {
+        assertEquals (expected, actual, expected / 1000.0);
+    }
+}
@@ -19,6 +19,10 @@ package au.com.breakpoint.hedron.core;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import org.junit.Test;
@@ -43,6 +47,69 @@ public class IndexedCacheTest
         assertFalse (s1 == s3);
     }
 
+    @Test
+    public void testGetAll ()
+    {
+        final List<Set<Integer>> batches = GenericFactory.newArrayList ();
+        final IndexedCache<Integer, String> m = IndexedCache.of (null, keys ->
+        {
+            batches.add (GenericFactory.newHashSet (keys));
+
+            // Odd keys have no value.
+            final Map<Integer, String> values = GenericFactory.newHashMap ();
+            keys.stream ().filter (k -> k % 2 == 0).forEach (k -> values.put (k, Integer.toString (k)));
+            return values;
+        });
+
+        final String s2 = m.get (2);
+        assertEquals (1, batches.size ());
+
+        final Map<Integer, String> values = m.getAll (Arrays.asList (6, 2, 3, 4, 4));
+        assertEquals (Arrays.asList (6, 2, 4), GenericFactory.newArrayList (values.keySet ()));
+        assertSame (s2, values.get (2));
+
+        // The misses were fetched together.
+        assertEquals (2, batches.size ());
+        assertEquals (GenericFactory.newHashSet (6, 3, 4), batches.get (1));
+
+        // Keys without values weren't cached.
+        m.getAll (Arrays.asList (2, 3, 4, 6));
+        assertEquals (3, batches.size ());
+        assertEquals (GenericFactory.newHashSet (3), batches.get (2));
+    }
+
+    @Test
+    public void testGetAllConcurrently ()
+    {
+        final int keyCount = 100;
+        final AtomicInteger fetchCount = new AtomicInteger ();
+        final IndexedCache<Integer, String> m = IndexedCache.of (null, keys ->
+        {
+            fetchCount.addAndGet (keys.size ());
+
+            final Map<Integer, String> values = GenericFactory.newHashMap ();
+            keys.forEach (k -> values.put (k, Integer.toString (k)));
+            return values;
+        });
+
+        // Overlapping key ranges.
+        HcUtil.executeConcurrently (50, i ->
+        {
+            final List<Integer> keys = GenericFactory.newArrayList ();
+            for (int k = 0; k < keyCount / 2; ++k)
+            {
+                keys.add ((i + k) % keyCount);
+            }
+
+            final Map<Integer, String> values = m.getAll (keys);
+            assertEquals (keys.size (), values.size ());
+            return values;
+        }, 10, false);
+
+        // Each key was fetched exactly once.
+        assertEquals (keyCount / 2 + 49, fetchCount.get ());
+    }
+
     @Test
     public void testGetValueConcurrently ()
     {
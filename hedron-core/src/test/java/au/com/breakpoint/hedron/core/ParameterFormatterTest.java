@@ -0,0 +1,76 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import java.util.Arrays;
+import java.util.Formattable;
+import java.util.Formatter;
+import org.junit.Test;
+
+public class ParameterFormatterTest
+{
+    @Test
+    public void testFallback ()
+    {
+        final StringBuilder sb = new StringBuilder ();
+        assertFalse (ParameterFormatter.formatTo (sb, "%d", 1));
+        assertFalse (ParameterFormatter.formatTo (sb, "%-5s", "a"));
+        assertFalse (ParameterFormatter.formatTo (sb, "%s %s", "a"));
+
+        final Formattable formattable = (final Formatter formatter, final int flags, final int width,
+            final int precision) -> formatter.format ("formatted");
+        assertFalse (ParameterFormatter.formatTo (sb, "%s", formattable));
+
+        assertFormat ("%d %x", 12, 255);
+        assertFormat ("%-5s|", "a");
+        assertFormat ("[%s]", formattable);
+    }
+
+    @Test
+    public void testFormat ()
+    {
+        assertFormat ("");
+        assertFormat ("no conversions");
+        assertFormat ("%s", "a");
+        assertFormat ("[%s] and [%s]%n", "a", 12);
+        assertFormat ("%s%s%s", null, true, 1.5);
+        assertFormat ("100%% of %s", "cases");
+        assertFormat ("%s", (Object) new int[0]);
+        assertFormat ("ends with %n");
+        assertFormat ("%s", Arrays.asList (1, 2));
+        assertFormat ("extra args ignored %s", "a", "b");
+    }
+
+    @Test
+    public void testFormatFixedArity ()
+    {
+        assertEquals (String.format ("[%s]", "a"), ParameterFormatter.format ("[%s]", "a"));
+        assertEquals (String.format ("%s-%s", 1, null), ParameterFormatter.format ("%s-%s", 1, null));
+        assertEquals (String.format ("%s%s%s%n", 'a', 2L, "c"), ParameterFormatter.format ("%s%s%s%n", 'a', 2L, "c"));
+
+        // Falls back without losing the arguments.
+        assertEquals (String.format ("%d %x", 12, 255), ParameterFormatter.format ("%d %x", 12, 255));
+        assertEquals (String.format ("%s %s %05d", "a", "b", 7), ParameterFormatter.format ("%s %s %05d", "a", "b", 7));
+    }
+
+    private static void assertFormat (final String format, final Object... args)
+    {
+        assertEquals (String.format (format, args), ParameterFormatter.format (format, args));
+    }
+}
@@ -17,12 +17,14 @@
 package au.com.breakpoint.hedron.core;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import java.util.function.Supplier;
 import org.junit.Test;
 import au.com.breakpoint.hedron.core.HcUtil;
 import au.com.breakpoint.hedron.core.TimedScope;
+import au.com.breakpoint.hedron.core.TimedScope.StatisticsMode;
 import au.com.breakpoint.hedron.core.TimedScopeStatistics;
 import au.com.breakpoint.hedron.core.context.FaultException;
 import au.com.breakpoint.hedron.core.context.ThreadContext;
@@ -156,6 +158,70 @@ public class TimedScopeTest
         assertEquals (0, s.getSuccessfulExecutionsCount ());
     }
 
+    @Test
+    public void testLatencyHistogram ()
+    {
+        final TimedScope ts = TimedScope.of (TimedScopeTest.class, "latency");
+        assertNull (ts.getLatencyHistogram ());
+
+        ts.enableLatencyHistogram (2);
+        for (int i = 0; i < 100; ++i)
+        {
+            ts.execute ( () -> HcUtil.pause (1));
+        }
+
+        final HdrHistogram h = ts.getLatencyHistogram ();
+        assertEquals (100, h.getTotalCount ());
+        assertTrue (h.getPercentile (50.0) >= 1_000_000);
+        assertTrue (h.getPercentile (99.9) <= h.getMax ());
+
+        final String results = TimedScope.formatLatencyResults (TimedScope.getSortedResults (true));
+        assertTrue (results.contains ("\"TimedScopeTest.latency\","));
+
+        assertEquals (100, ts.getLatencyHistogramInterval ().getTotalCount ());
+        assertTrue (ts.getLatencyHistogram ().isUnused ());
+    }
+
+    @Test
+    public void testStripedStatistics ()
+    {
+        final TimedScope ts = TimedScope.of (TimedScopeTest.class, "striped", StatisticsMode.Striped);
+        assertEquals (StatisticsMode.Striped, ts.getStatisticsMode ());
+
+        final TimedScopeStatistics initial = ts.getStatistics ();
+        assertEquals (Long.MAX_VALUE, initial.getDurationMin ());
+        assertEquals (0, initial.getExecutionsCount ());
+        assertTrue (initial.getHistogramMsec ().isUnused ());
+
+        final int nrThreads = 20;
+        final int nrTasks = nrThreads * 500;
+
+        final Runnable task = () -> ts.execute ( () ->
+        {
+        });
+        HcUtil.executeManyConcurrently (task, nrThreads, nrTasks);
+
+        final TimedScopeStatistics s = ts.getStatistics ();
+        assertEquals (nrTasks, s.getExecutionsCount ());
+        assertEquals (nrTasks, s.getSuccessfulExecutionsCount ());
+        assertEquals (0, s.getSlowExecutionsCount ());
+        assertTrue (s.getDurationMin () <= s.getDurationMax ());
+        assertTrue (s.getDurationTotal () >= s.getDurationMax ());
+
+        int histogramTotal = 0;
+        for (final int count : s.getHistogramMsec ().getHistogramBins ())
+        {
+            histogramTotal += count;
+        }
+        assertEquals (nrTasks, histogramTotal);
+
+        // Copies are immutable snapshots.
+        final TimedScope copy = TimedScope.getSortedResults (true).stream ()
+            .filter (e -> e.getName ().equals (ts.getName ())).findFirst ().get ();
+        assertEquals (StatisticsMode.Immutable, copy.getStatisticsMode ());
+        assertEquals (nrTasks, copy.getStatistics ().getExecutionsCount ());
+    }
+
     private static final class Sleeper implements Supplier<Integer>
     {
         public Sleeper (final long msec)
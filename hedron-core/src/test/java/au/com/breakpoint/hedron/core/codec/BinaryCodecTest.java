@@ -0,0 +1,135 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.context.FaultException;
+
+public class BinaryCodecTest
+{
+    @Test
+    public void testRoundTrip ()
+    {
+        final Reading r = new Reading ();
+        r.m_active = true;
+        r.m_count = -3;
+        r.m_sensor = "temp\u00e9rature";
+        r.m_timestamp = 1_400_000_000_000L;
+        r.m_value = 21.5;
+        r.m_nested = new Reading ();
+        r.m_nested.m_count = 7;
+
+        final ByteBuffer encoded = Codecs.encode (m_codec, r);
+        final Reading decoded = m_codec.decode (encoded);
+
+        assertTrue (decoded.m_active);
+        assertEquals (-3, decoded.m_count);
+        assertEquals ("temp\u00e9rature", decoded.m_sensor);
+        assertEquals (1_400_000_000_000L, decoded.m_timestamp);
+        assertEquals (21.5, decoded.m_value, 0.0);
+        assertEquals (7, decoded.m_nested.m_count);
+        assertNull (decoded.m_nested.m_sensor);
+        assertNull (decoded.m_nested.m_nested);
+        assertFalse (encoded.hasRemaining ());
+    }
+
+    @Test
+    public void testTruncatedString ()
+    {
+        final Reading r = new Reading ();
+        r.m_sensor = String.join ("", Collections.nCopies (100, "s"));
+        final ByteBuffer encoded = Codecs.encode (m_codec, r);
+
+        // A reused receive buffer: stale bytes lie beyond the limit, which cuts the string short.
+        final ByteBuffer truncated = ByteBuffer.allocate (256);
+        truncated.put (encoded);
+        truncated.flip ();
+        truncated.limit (truncated.limit () - 30);
+
+        try
+        {
+            m_codec.decode (truncated);
+            fail ();
+        }
+        catch (final FaultException e)
+        {
+            assertTrue (e.getMessage ().contains ("Malformed string length"));
+        }
+    }
+
+    @Test
+    public void testVarLong ()
+    {
+        final long[] values =
+            {
+                    0, 1, -1, 63, -64, 64, 300, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE
+        };
+
+        final ByteBuffer buffer = ByteBuffer.allocate (256);
+        for (final long value : values)
+        {
+            BinaryCodec.putVarLong (buffer, value);
+        }
+        buffer.flip ();
+
+        for (final long value : values)
+        {
+            assertEquals (value, BinaryCodec.getVarLong (buffer));
+        }
+
+        // Small values of either sign take one byte.
+        buffer.clear ();
+        BinaryCodec.putVarLong (buffer, -64);
+        assertEquals (1, buffer.position ());
+    }
+
+    private static class Reading
+    {
+        public boolean m_active;
+
+        public int m_count;
+
+        public Reading m_nested;
+
+        public String m_sensor;
+
+        public long m_timestamp;
+
+        public double m_value;
+    }
+
+    private static final ICodec<Reading> m_nestedCodec = BinaryCodec.builder (Reading::new)
+        .addInt (r -> r.m_count, (r, v) -> r.m_count = v)
+        .addString (r -> r.m_sensor, (r, v) -> r.m_sensor = v)
+        .build ();
+
+    private static final ICodec<Reading> m_codec = BinaryCodec.builder (Reading::new)
+        .addBoolean (r -> r.m_active, (r, v) -> r.m_active = v)
+        .addInt (r -> r.m_count, (r, v) -> r.m_count = v)
+        .addObject (r -> r.m_nested, (r, v) -> r.m_nested = v, m_nestedCodec)
+        .addString (r -> r.m_sensor, (r, v) -> r.m_sensor = v)
+        .addLong (r -> r.m_timestamp, (r, v) -> r.m_timestamp = v)
+        .addDouble (r -> r.m_value, (r, v) -> r.m_value = v)
+        .build ();
+}
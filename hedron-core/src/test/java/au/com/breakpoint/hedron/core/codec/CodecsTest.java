@@ -0,0 +1,47 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.codec;
+
+import static org.junit.Assert.assertEquals;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.HcUtilFile;
+
+public class CodecsTest
+{
+    @Test
+    public void testJavaSerialisationCompatibility ()
+    {
+        final ICodec<String> codec = JavaSerialisationCodec.of ();
+
+        final byte[] bytes = HcUtilFile.serialiseObjectAsBytes ("abc");
+        assertEquals ("abc", codec.decode (ByteBuffer.wrap (bytes)));
+        assertEquals ("def", HcUtilFile.deserialiseBytesAsObject (Codecs.encodeToBytes (codec, "def")));
+    }
+
+    @Test
+    public void testScratchBufferGrows ()
+    {
+        final char[] chars = new char[100_000];
+        Arrays.fill (chars, 'x');
+        final String large = new String (chars);
+
+        final ICodec<String> codec = JavaSerialisationCodec.of ();
+        assertEquals (large, codec.decode (ByteBuffer.wrap (Codecs.encodeToBytes (codec, large))));
+    }
+}
@@ -0,0 +1,130 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+
+public class JsonCodecTest
+{
+    @Test
+    public void testDecodeNullTerminated ()
+    {
+        // As sent by DatagramClient.send (String).
+        final byte[] bytes = HcUtil.getNullTerminatedBytes ("{\"m_name\":\"a\",\"m_value\":2}");
+
+        final Item item = JsonCodec.of (Item.class).decode (ByteBuffer.wrap (bytes));
+        assertEquals ("a", item.m_name);
+        assertEquals (2, item.m_value);
+    }
+
+    @Test
+    public void testDecodeReusesReader ()
+    {
+        final ICodec<Item> codec = JsonCodec.of (Item.class);
+
+        // A large message, then a small one: no trace of the first remains.
+        final Item large = new Item ();
+        large.m_name = String.join ("", Collections.nCopies (5_000, "\u00e9x"));
+        large.m_value = 1;
+        assertEquals (large.m_name, codec.decode (Codecs.encode (codec, large)).m_name);
+
+        final ByteBuffer small = ByteBuffer.wrap ("{\"m_name\":\"\u00e9\"}".getBytes (StandardCharsets.UTF_8));
+        final Item decoded = codec.decode (small);
+        assertEquals ("\u00e9", decoded.m_name);
+        assertEquals (0, decoded.m_value);
+        assertFalse (small.hasRemaining ());
+    }
+
+    @Test
+    public void testEncodeReusesWriter ()
+    {
+        final ICodec<Item> codec = JsonCodec.of (Item.class);
+
+        // Surrogate pairs straddle the writer's char buffer boundaries.
+        final Item large = new Item ();
+        large.m_name = String.join ("", Collections.nCopies (3_000, "a\ud83d\ude00"));
+        large.m_value = 1;
+        assertEquals (new Gson ().toJson (large), getString (Codecs.encode (codec, large)));
+
+        // A message that doesn't fit leaves nothing behind for the next.
+        try
+        {
+            codec.encode (large, ByteBuffer.allocate (8));
+            fail ();
+        }
+        catch (final BufferOverflowException e)
+        {
+            // expected
+        }
+
+        final Item small = new Item ();
+        small.m_name = "\u00e9";
+        assertEquals ("{\"m_name\":\"\u00e9\",\"m_value\":0}", getString (Codecs.encode (codec, small)));
+    }
+
+    @Test
+    public void testGenericRoundTrip ()
+    {
+        final ICodec<List<String>> codec = JsonCodec.of (new TypeToken<List<String>> ()
+        {
+        }.getType ());
+
+        final List<String> values = GenericFactory.newArrayList ("x", "y\u00e9");
+        assertEquals (values, codec.decode (Codecs.encode (codec, values)));
+    }
+
+    @Test
+    public void testRoundTrip ()
+    {
+        final Item item = new Item ();
+        item.m_name = "b";
+        item.m_value = 3;
+
+        final ICodec<Item> codec = JsonCodec.of (Item.class);
+        final ByteBuffer encoded = Codecs.encode (codec, item);
+        assertEquals ("{\"m_name\":\"b\",\"m_value\":3}",
+            new String (encoded.array (), 0, encoded.limit (), StandardCharsets.UTF_8));
+
+        final Item decoded = codec.decode (encoded);
+        assertEquals ("b", decoded.m_name);
+        assertEquals (3, decoded.m_value);
+    }
+
+    private static String getString (final ByteBuffer buffer)
+    {
+        return StandardCharsets.UTF_8.decode (buffer).toString ();
+    }
+
+    private static class Item
+    {
+        public String m_name;
+
+        public int m_value;
+    }
+}
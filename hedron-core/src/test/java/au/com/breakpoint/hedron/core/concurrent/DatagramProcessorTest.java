@@ -0,0 +1,182 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.net.DatagramSocket;
+import java.net.SocketException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.Counter;
+import au.com.breakpoint.hedron.core.DatagramClient;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.Tuple.E2;
+import au.com.breakpoint.hedron.core.codec.ICodec;
+import au.com.breakpoint.hedron.core.codec.JavaSerialisationCodec;
+import au.com.breakpoint.hedron.core.concurrent.DatagramProcessor.ChannelOptions;
+import au.com.breakpoint.hedron.core.concurrent.DatagramProcessor.Ordering;
+import au.com.breakpoint.hedron.core.concurrent.DatagramProcessor.OverflowPolicy;
+
+public class DatagramProcessorTest
+{
+    @Test
+    public void testChannelReceive () throws SocketException, InterruptedException
+    {
+        final Map<String, Boolean> received = GenericFactory.newConcurrentHashMap ();
+        final int port = getFreePort ();
+
+        final ObjectDatagramProcessor<String> processor = new ObjectDatagramProcessor<> ("testChannelReceive", port,
+            4, e -> received.put (e.getE1 (), true), JavaSerialisationCodec.of ());
+        processor.setChannelOptions (ChannelOptions.of (1_024, 32, 8, 4, OverflowPolicy.Block));
+
+        runProcessor (processor, () ->
+        {
+            final ICodec<String> codec = JavaSerialisationCodec.of ();
+            try (final DatagramClient client = new DatagramClient ("localhost", port))
+            {
+                for (int i = 0; i < 200; ++i)
+                {
+                    client.send ("message" + i, codec);
+                }
+            }
+
+            waitFor ( () -> received.size () == 200);
+        });
+
+        assertEquals (200, received.size ());
+        assertTrue (received.containsKey ("message199"));
+    }
+
+    @Test
+    public void testDropNewest () throws SocketException, InterruptedException
+    {
+        final AtomicInteger handled = new AtomicInteger ();
+        final int port = getFreePort ();
+
+        final Consumer<E2<String, String>> slowHandler = e ->
+        {
+            HcUtil.pause (20);
+            handled.incrementAndGet ();
+        };
+        final ObjectDatagramProcessor<String> processor =
+            new ObjectDatagramProcessor<> ("testDropNewest", port, 1, slowHandler);
+        processor.setChannelOptions (ChannelOptions.of (1_024, 64, 1, 1, OverflowPolicy.DropNewest));
+
+        final Counter dropped =
+            Counter.getCounter (HcUtil.qualifyName (DatagramProcessor.class, "dropped.testDropNewest"));
+
+        runProcessor (processor, () ->
+        {
+            final ICodec<String> codec = JavaSerialisationCodec.of ();
+            try (final DatagramClient client = new DatagramClient ("localhost", port))
+            {
+                for (int i = 0; i < 50; ++i)
+                {
+                    client.send ("message" + i, codec);
+                }
+            }
+
+            waitFor ( () -> handled.get () + dropped.get () == 50);
+        });
+
+        assertTrue (dropped.get () > 0);
+        assertEquals (50, handled.get () + dropped.get ());
+    }
+
+    @Test
+    public void testMultipleReceiversPerSourceOrdering () throws SocketException, InterruptedException
+    {
+        final List<Integer> received = Collections.synchronizedList (GenericFactory.newArrayList ());
+        final int port = getFreePort ();
+
+        final ICodec<Integer> codec = JavaSerialisationCodec.of ();
+        final ObjectDatagramProcessor<Integer> processor = new ObjectDatagramProcessor<> ("testMultipleReceivers",
+            port, 3, e -> received.add (e.getE1 ()), codec);
+        processor.setChannelOptions (
+            ChannelOptions.of (1_024, 64, 4, 8, OverflowPolicy.Block, 2, Ordering.PerSource));
+
+        runProcessor (processor, () ->
+        {
+            try (final DatagramClient client = new DatagramClient ("localhost", port))
+            {
+                for (int i = 0; i < 300; ++i)
+                {
+                    client.send (i, codec);
+                }
+            }
+
+            waitFor ( () -> received.size () == 300);
+        });
+
+        // A single source, so handled in order of sending.
+        assertEquals (300, received.size ());
+        for (int i = 0; i < 300; ++i)
+        {
+            assertEquals (i, received.get (i).intValue ());
+        }
+
+        long count = 0;
+        for (int i = 0; i < 2; ++i)
+        {
+            final String name = HcUtil.qualifyName (DatagramProcessor.class, "received.testMultipleReceivers." + i);
+            count += Counter.getCounter (name).get ();
+        }
+        assertEquals (300, count);
+    }
+
+    private static int getFreePort () throws SocketException
+    {
+        try (final DatagramSocket socket = new DatagramSocket (0))
+        {
+            return socket.getLocalPort ();
+        }
+    }
+
+    private static void runProcessor (final DatagramProcessor processor, final Runnable test)
+        throws InterruptedException
+    {
+        final Thread thread = new Thread (processor::processUntilShutdown);
+        thread.start ();
+        try
+        {
+            // Allow the channel to be bound.
+            HcUtil.pause (200);
+            test.run ();
+        }
+        finally
+        {
+            processor.signalShutdown ();
+            processor.awaitShutdownComplete ();
+            thread.join ();
+        }
+    }
+
+    private static void waitFor (final BooleanSupplier condition)
+    {
+        for (int i = 0; i < 500 && !condition.getAsBoolean (); ++i)
+        {
+            HcUtil.pause (10);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.HcUtilFile;
+import au.com.breakpoint.hedron.core.TimedScope;
+import au.com.breakpoint.hedron.core.Tuple.E2;
+import au.com.breakpoint.hedron.core.concurrent.HttpServerProcessor.HttpConfiguration;
+import au.com.breakpoint.hedron.core.concurrent.HttpServerProcessor.Response;
+
+public class HttpServerProcessorTest
+{
+    @Test
+    public void testEchoBytes () throws IOException
+    {
+        final byte[] body = new byte[] { 0, 1, 2, (byte) 0xFF };
+        final E2<Integer, byte[]> response = request ("/echo", body);
+
+        assertEquals (200, response.getE0 ().intValue ());
+        assertEquals (4, response.getE1 ().length);
+        assertEquals ((byte) 0xFF, response.getE1 ()[3]);
+    }
+
+    @Test
+    public void testNonAsciiTask () throws IOException
+    {
+        final String text = "caf\u00e9 \u20ac";
+        final E2<Integer, byte[]> response = request ("/task", text.getBytes (StandardCharsets.UTF_8));
+
+        // The content length must be the UTF-8 byte count, not the character count.
+        assertEquals (200, response.getE0 ().intValue ());
+        assertEquals ("POST " + text, new String (response.getE1 (), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testRouteStatistics () throws IOException
+    {
+        final TimedScope timedScope = TimedScope.getTimedScope (HttpServerProcessor.class, "test/echo");
+        final long before = timedScope.getStatistics ().getExecutionsCount ();
+
+        request ("/echo", new byte[] { 1 });
+        request ("/echo", new byte[] { 2 });
+
+        assertEquals (before + 2, timedScope.getStatistics ().getExecutionsCount ());
+    }
+
+    @Test
+    public void testStreaming () throws IOException
+    {
+        final E2<Integer, byte[]> response = request ("/stream", null);
+
+        assertEquals (200, response.getE0 ().intValue ());
+        final String text = new String (response.getE1 (), StandardCharsets.US_ASCII);
+        assertTrue (text.startsWith ("line 0\n"));
+        assertTrue (text.endsWith ("line 999\n"));
+    }
+
+    @Test
+    public void testUnknownPath () throws IOException
+    {
+        assertEquals (404, request ("/unknown", null).getE0 ().intValue ());
+    }
+
+    @BeforeClass
+    public static void setUpBeforeClass ()
+    {
+        final HttpConfiguration config = new HttpConfiguration (0, "/task").setExecutor (4, 16);
+        m_processor = new HttpServerProcessor ("test", (method, data) -> E2.of (200, method + " " + data), config);
+
+        m_processor.addRoute ("/echo", r -> Response.of (200, r.getBody ()));
+        m_processor.addRoute ("/stream", r -> Response.streaming (200, os ->
+        {
+            for (int i = 0; i < 1_000; ++i)
+            {
+                os.write (("line " + i + "\n").getBytes (StandardCharsets.US_ASCII));
+            }
+        }).header ("Content-Type", "text/plain"));
+
+        m_thread = new Thread (m_processor::processUntilShutdown);
+        m_thread.start ();
+
+        for (int i = 0; i < 500 && m_processor.getLocalPort () == 0; ++i)
+        {
+            HcUtil.pause (10);
+        }
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass () throws InterruptedException
+    {
+        m_processor.signalShutdown ();
+        m_processor.awaitShutdownComplete ();
+        m_thread.join ();
+    }
+
+    private static E2<Integer, byte[]> request (final String path, final byte[] body) throws IOException
+    {
+        final URL url = new URL ("http://localhost:" + m_processor.getLocalPort () + path);
+        final HttpURLConnection connection = (HttpURLConnection) url.openConnection ();
+        try
+        {
+            if (body != null)
+            {
+                connection.setRequestMethod ("POST");
+                connection.setDoOutput (true);
+                try (final OutputStream os = connection.getOutputStream ())
+                {
+                    os.write (body);
+                }
+            }
+
+            final int code = connection.getResponseCode ();
+            byte[] responseBody = new byte[0];
+            if (code < 400)
+            {
+                try (final InputStream is = connection.getInputStream ())
+                {
+                    responseBody = HcUtilFile.readStreamBytes (is);
+                }
+            }
+
+            return E2.of (code, responseBody);
+        }
+        finally
+        {
+            connection.disconnect ();
+        }
+    }
+
+    private static HttpServerProcessor m_processor;
+
+    private static Thread m_thread;
+}
@@ -0,0 +1,126 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.Tuple.E2;
+import au.com.breakpoint.hedron.core.context.LoggingSilenceScope;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+
+public class KeyedSequentialRequestProcessorTest
+{
+    @Test
+    public void testPerKeyOrdering () throws InterruptedException
+    {
+        final Map<Integer, List<Integer>> handled = GenericFactory.newConcurrentHashMap ();
+        final AtomicInteger concurrent = new AtomicInteger ();
+        final AtomicInteger maxConcurrent = new AtomicInteger ();
+
+        final KeyedSequentialRequestProcessor<E2<Integer, Integer>> p =
+            new KeyedSequentialRequestProcessor<> ("testPerKeyOrdering", 4, 100, E2::getE0, req ->
+            {
+                maxConcurrent.accumulateAndGet (concurrent.incrementAndGet (), Math::max);
+                HcUtil.pause (1);
+
+                // Only this lane's thread handles this key.
+                handled.computeIfAbsent (req.getE0 (), k -> GenericFactory.newArrayList ()).add (req.getE1 ());
+                concurrent.decrementAndGet ();
+            } , 5_000);
+
+        final Thread thread = new Thread (p::processUntilShutdown);
+        thread.start ();
+
+        for (int i = 0; i < 50; ++i)
+        {
+            for (int key = 0; key < 8; ++key)
+            {
+                p.submit (E2.of (key, i));
+            }
+        }
+
+        // Requests already queued are handled before shutdown completes.
+        p.signalShutdown ();
+        thread.join ();
+        p.awaitShutdownComplete ();
+
+        assertEquals (8, handled.size ());
+        for (final List<Integer> values : handled.values ())
+        {
+            assertEquals (50, values.size ());
+            for (int i = 0; i < 50; ++i)
+            {
+                assertEquals (i, values.get (i).intValue ());
+            }
+        }
+
+        // Keys 0..7 spread evenly over 4 lanes, which run concurrently.
+        assertTrue (maxConcurrent.get () > 1);
+        assertEquals (1.0, p.getSkew (), 0.001);
+        assertEquals (400, sum (p.getLaneCounts ()));
+    }
+
+    @Test
+    public void testFailingRequest () throws InterruptedException
+    {
+        final List<Integer> handled = GenericFactory.newArrayList ();
+
+        final KeyedSequentialRequestProcessor<Integer> p =
+            new KeyedSequentialRequestProcessor<> ("testFailingRequest", 1, 100, req -> 0, req ->
+            {
+                ThreadContext.assertFault (req != 5, "Deliberate");
+                handled.add (req);
+            } , 5_000);
+
+        final Thread thread = new Thread (p::processUntilShutdown);
+        thread.start ();
+
+        try (final LoggingSilenceScope ls = new LoggingSilenceScope ())
+        {
+            for (int i = 0; i < 10; ++i)
+            {
+                p.submit (i);
+            }
+
+            // The lane carries on past the failure and shutdown still completes.
+            p.signalShutdown ();
+            thread.join ();
+            p.awaitShutdownComplete ();
+        }
+
+        assertEquals (Arrays.asList (0, 1, 2, 3, 4, 6, 7, 8, 9), handled);
+        assertEquals (9, sum (p.getLaneCounts ()));
+    }
+
+    private static long sum (final long[] values)
+    {
+        long total = 0;
+        for (final long value : values)
+        {
+            total += value;
+        }
+
+        return total;
+    }
+}
@@ -0,0 +1,129 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.HcUtilFile;
+import au.com.breakpoint.hedron.core.concurrent.MessageFrames.Frame;
+import au.com.breakpoint.hedron.core.context.LoggingSilenceScope;
+
+public class NioObjectSocketProcessorTest
+{
+    @Test
+    public void testPipelinedRequests () throws IOException, InterruptedException
+    {
+        final NioObjectSocketProcessor<String, String> processor =
+            new NioObjectSocketProcessor<> (NioObjectSocketProcessorTest.class, 0, 4);
+        final AtomicInteger goodComms = new AtomicInteger ();
+        processor.setCommsEventCallback (e -> goodComms.incrementAndGet ());
+        processor.setMessageHandler (e ->
+        {
+            final String request = e.getE1 ();
+            switch (request)
+            {
+                case "none":
+                {
+                    return null;
+                }
+
+                case "fail":
+                {
+                    throw new IllegalStateException ("Request failed");
+                }
+
+                default:
+                {
+                    return request.toUpperCase ();
+                }
+            }
+        });
+
+        final Thread thread = new Thread (processor::processUntilShutdown);
+        thread.start ();
+        try (final LoggingSilenceScope ls = new LoggingSilenceScope ())
+        {
+            while (processor.getLocalPort () == 0)
+            {
+                HcUtil.pause (10);
+            }
+
+            try (final SocketChannel channel =
+                SocketChannel.open (new InetSocketAddress ("localhost", processor.getLocalPort ())))
+            {
+                // All requests are sent before any responses are read.
+                final String[] requests =
+                    {
+                            "a",
+                            "none",
+                            "fail",
+                            "b"
+                };
+                for (int i = 0; i < requests.length; ++i)
+                {
+                    final ByteBuffer frame = MessageFrames.encode (100 + i, MessageFrames.STATUS_OK,
+                        HcUtilFile.serialiseObjectAsBytes (requests[i]));
+                    while (frame.hasRemaining ())
+                    {
+                        channel.write (frame);
+                    }
+                }
+
+                final Map<Long, Frame> responses = GenericFactory.newHashMap ();
+                final ByteBuffer buffer = ByteBuffer.allocate (64 * 1024);
+                while (responses.size () < requests.length)
+                {
+                    channel.read (buffer);
+                    buffer.flip ();
+                    Frame frame = MessageFrames.decode (buffer);
+                    while (frame != null)
+                    {
+                        responses.put (frame.m_correlationId, frame);
+                        frame = MessageFrames.decode (buffer);
+                    }
+                    buffer.compact ();
+                }
+
+                assertEquals (MessageFrames.STATUS_OK, responses.get (100L).m_status);
+                assertEquals ("A", HcUtilFile.deserialiseBytesAsObject (responses.get (100L).m_payload));
+                assertEquals (MessageFrames.STATUS_NO_RESPONSE, responses.get (101L).m_status);
+                assertEquals (MessageFrames.STATUS_ERROR, responses.get (102L).m_status);
+                assertTrue (new String (responses.get (102L).m_payload, StandardCharsets.UTF_8)
+                    .contains ("Request failed"));
+                assertEquals ("B", HcUtilFile.deserialiseBytesAsObject (responses.get (103L).m_payload));
+            }
+        }
+        finally
+        {
+            processor.signalShutdown ();
+            processor.awaitShutdownComplete ();
+            thread.join ();
+        }
+
+        assertEquals (4, goodComms.get ());
+    }
+}
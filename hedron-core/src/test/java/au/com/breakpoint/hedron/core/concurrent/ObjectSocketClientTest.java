@@ -0,0 +1,243 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.context.FaultException;
+import au.com.breakpoint.hedron.core.context.LoggingSilenceScope;
+
+public class ObjectSocketClientTest
+{
+    @Test
+    public void testBackpressure () throws InterruptedException
+    {
+        try (final ObjectSocketClient<String, String> client =
+            new ObjectSocketClient<> ("testBackpressure", "localhost", m_processor.getLocalPort (), 1, 1))
+        {
+            final CompletableFuture<String> slow = client.send ("slow", 5_000);
+
+            // The only in-flight slot is taken.
+            final CompletableFuture<String> blocked = client.send ("a", 100);
+            assertTimedOut (blocked);
+
+            assertEquals ("SLOW", HcUtil.waitForFuture (slow));
+            assertEquals ("B", client.sendReceive ("b"));
+        }
+    }
+
+    @Test
+    public void testConnectFailure () throws IOException, InterruptedException
+    {
+        // A port with nothing listening.
+        int port;
+        try (final ServerSocket socket = new ServerSocket (0))
+        {
+            port = socket.getLocalPort ();
+        }
+
+        try (final ObjectSocketClient<String, String> client =
+            new ObjectSocketClient<> ("testConnectFailure", "localhost", port, 1, 4);
+            final LoggingSilenceScope ls = new LoggingSilenceScope ())
+        {
+            for (int i = 0; i < 2; ++i)
+            {
+                try
+                {
+                    client.send ("a", 5_000).get ();
+                    fail ();
+                }
+                catch (final ExecutionException e)
+                {
+                    assertTrue (e.getCause () instanceof IOException);
+                }
+                assertEquals (0, client.getConnectionCount ());
+            }
+        }
+    }
+
+    @Test
+    public void testConnectOutsideLock () throws InterruptedException
+    {
+        // Unroutable, so the connect either hangs until its timeout or fails at once.
+        try (final ObjectSocketClient<String, String> client =
+            new ObjectSocketClient<> ("testConnectOutsideLock", "10.255.255.1", 9, 2, 1);
+            final LoggingSilenceScope ls = new LoggingSilenceScope ())
+        {
+            final long nsStart = System.nanoTime ();
+            final CompletableFuture<CompletableFuture<String>> connecting =
+                CompletableFuture.supplyAsync ( () -> client.send ("a", 1_000));
+
+            // The pool isn't locked while connecting.
+            client.getConnectionCount ();
+            assertTrue (HcUtil.nsToMsec (System.nanoTime () - nsStart) < 900);
+
+            try
+            {
+                HcUtil.waitForFuture (connecting).get ();
+                fail ();
+            }
+            catch (final ExecutionException e)
+            {
+                // Bounded by the request's timeout.
+                assertTrue (HcUtil.nsToMsec (System.nanoTime () - nsStart) < 5_000);
+            }
+        }
+    }
+
+    @Test
+    public void testPipelinedRequests ()
+    {
+        try (final ObjectSocketClient<String, String> client =
+            new ObjectSocketClient<> ("testPipelinedRequests", "localhost", m_processor.getLocalPort (), 2, 8))
+        {
+            final List<CompletableFuture<String>> futures = GenericFactory.newArrayList ();
+            for (int i = 0; i < 50; ++i)
+            {
+                futures.add (client.send ("request" + i));
+            }
+
+            for (int i = 0; i < 50; ++i)
+            {
+                assertEquals ("REQUEST" + i, HcUtil.waitForFuture (futures.get (i)));
+            }
+
+            // Connections are reused rather than opened per request.
+            assertTrue (client.getConnectionCount () <= 2);
+            assertEquals (50, client.getTimedScope ().getStatistics ().getSuccessfulExecutionsCount ());
+        }
+    }
+
+    @Test
+    public void testResponseStatus () throws InterruptedException
+    {
+        try (final ObjectSocketClient<String, String> client =
+            new ObjectSocketClient<> ("testResponseStatus", "localhost", m_processor.getLocalPort (), 1, 4))
+        {
+            try (final LoggingSilenceScope ls = new LoggingSilenceScope ())
+            {
+                assertNull (client.sendReceive ("none"));
+
+                try
+                {
+                    client.send ("fail").get ();
+                    fail ();
+                }
+                catch (final ExecutionException e)
+                {
+                    assertTrue (e.getCause () instanceof FaultException);
+                    assertTrue (e.getCause ().getMessage ().contains ("Request failed"));
+                }
+            }
+
+            // The connection survives a failed request.
+            assertEquals ("A", client.sendReceive ("a"));
+            assertEquals (1, client.getConnectionCount ());
+        }
+    }
+
+    @Test
+    public void testTimeout () throws InterruptedException
+    {
+        try (final ObjectSocketClient<String, String> client =
+            new ObjectSocketClient<> ("testTimeout", "localhost", m_processor.getLocalPort (), 1, 4))
+        {
+            assertTimedOut (client.send ("slow", 100));
+
+            // The late response is discarded.
+            assertEquals ("A", client.sendReceive ("a"));
+        }
+    }
+
+    @BeforeClass
+    public static void setUpBeforeClass () throws Exception
+    {
+        m_processor = new NioObjectSocketProcessor<> (ObjectSocketClientTest.class, 0, 4);
+        m_processor.setMessageHandler (e ->
+        {
+            final String request = e.getE1 ();
+            switch (request)
+            {
+                case "none":
+                {
+                    return null;
+                }
+
+                case "fail":
+                {
+                    throw new IllegalStateException ("Request failed");
+                }
+
+                case "slow":
+                {
+                    HcUtil.pause (500);
+                    return request.toUpperCase ();
+                }
+
+                default:
+                {
+                    return request.toUpperCase ();
+                }
+            }
+        });
+
+        m_thread = new Thread (m_processor::processUntilShutdown);
+        m_thread.start ();
+        while (m_processor.getLocalPort () == 0)
+        {
+            HcUtil.pause (10);
+        }
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass () throws Exception
+    {
+        m_processor.signalShutdown ();
+        m_processor.awaitShutdownComplete ();
+        m_thread.join ();
+    }
+
+    private static void assertTimedOut (final CompletableFuture<String> future) throws InterruptedException
+    {
+        try
+        {
+            future.get ();
+            fail ();
+        }
+        catch (final ExecutionException e)
+        {
+            assertTrue (e.getCause () instanceof TimeoutException);
+        }
+    }
+
+    private static NioObjectSocketProcessor<String, String> m_processor;
+
+    private static Thread m_thread;
+}
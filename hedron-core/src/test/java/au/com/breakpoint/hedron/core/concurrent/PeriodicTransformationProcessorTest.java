@@ -16,8 +16,15 @@
 //
 package au.com.breakpoint.hedron.core.concurrent;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import org.junit.Test;
 import au.com.breakpoint.hedron.core.GenericFactory;
 import au.com.breakpoint.hedron.core.IDataPersistence;
@@ -25,12 +32,105 @@ import au.com.breakpoint.hedron.core.IDataTransformation;
 import au.com.breakpoint.hedron.core.ITransformationQueue;
 import au.com.breakpoint.hedron.core.concurrent.IProcessor;
 import au.com.breakpoint.hedron.core.concurrent.PeriodicTransformationProcessor;
+import au.com.breakpoint.hedron.core.concurrent.PeriodicTransformationProcessor.BatchOptions;
 import au.com.breakpoint.hedron.core.concurrent.RetryProcessor;
 import au.com.breakpoint.hedron.core.context.FaultException;
 import au.com.breakpoint.hedron.core.context.LoggingSilenceScope;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
 
 public class PeriodicTransformationProcessorTest
 {
+    @Test
+    public void testBatchContinuousParallel ()
+    {
+        final Queue<Integer> queue = getQueue (1_000);
+        final List<List<String>> batches = GenericFactory.newArrayList ();
+
+        final PeriodicTransformationProcessor<Integer, String> p = PeriodicTransformationProcessor.ofBatch (
+            "testBatchContinuousParallel", () -> poll (queue, 100), a -> String.valueOf (a), batches::add, 500);
+        p.setBatchOptions (BatchOptions.of (100, 0, 4, true));
+
+        // At most two periods elapse, so only continuous mode can drain the queue.
+        runProcessor (p, 700);
+
+        final List<String> persisted = GenericFactory.newArrayList ();
+        batches.forEach (persisted::addAll);
+
+        assertEquals (1_000, persisted.size ());
+        for (int i = 0; i < 1_000; ++i)
+        {
+            assertEquals (String.valueOf (i), persisted.get (i));
+        }
+        assertTrue (batches.stream ().allMatch (b -> b.size () <= 100));
+    }
+
+    @Test
+    public void testBatchLinger ()
+    {
+        final Queue<Integer> queue = getQueue (25);
+        final List<List<String>> batches = GenericFactory.newArrayList ();
+
+        // Trickle 5 records per poll into batches of at most 10.
+        final PeriodicTransformationProcessor<Integer, String> p = PeriodicTransformationProcessor.ofBatch (
+            "testBatchLinger", () -> poll (queue, 5), a -> String.valueOf (a), batches::add, 10);
+        p.setBatchOptions (BatchOptions.of (10, 60_000, 1, false));
+
+        runProcessor (p, MSEC_RUN_DURATION);
+
+        // The lingering remainder is persisted on shutdown.
+        assertEquals (3, batches.size ());
+        assertEquals (10, batches.get (0).size ());
+        assertEquals (10, batches.get (1).size ());
+        assertEquals (5, batches.get (2).size ());
+    }
+
+    @Test
+    public void testPerRecordOrder ()
+    {
+        final Queue<Integer> queue = getQueue (3);
+        final List<String> events = GenericFactory.newArrayList ();
+
+        final PeriodicTransformationProcessor<Integer, String> p = new PeriodicTransformationProcessor<> (
+            "testPerRecordOrder", () -> poll (queue, 3), a ->
+            {
+                events.add ("transform " + a);
+                return String.valueOf (a);
+            }, d -> events.add ("persist " + d), MSEC_PERIOD);
+
+        runProcessor (p, MSEC_RUN_DURATION);
+
+        assertEquals (Arrays.asList ("transform 0", "persist 0", "transform 1", "persist 1", "transform 2",
+            "persist 2"), events);
+    }
+
+    @Test
+    public void testPerRecordFailure ()
+    {
+        final Queue<Integer> queue = getQueue (3);
+        final List<String> persisted = GenericFactory.newArrayList ();
+
+        final PeriodicTransformationProcessor<Integer, String> p = new PeriodicTransformationProcessor<> (
+            "testPerRecordFailure", () -> poll (queue, 3), a -> String.valueOf (a), d ->
+            {
+                ThreadContext.assertFault (!d.equals ("1"), "Deliberate");
+                persisted.add (d);
+            } , MSEC_PERIOD);
+
+        try (final LoggingSilenceScope ls = new LoggingSilenceScope ())
+        {
+            p.handleProcessing ();
+            fail ();
+        }
+        catch (final FaultException e)
+        {
+            // expected
+        }
+
+        // The failed record is dropped and the persisted one isn't persisted again.
+        p.handleProcessing ();
+        assertEquals (Arrays.asList ("0", "2"), persisted);
+    }
+
     @Test
     public void testProcessUntilShutdown ()
     {
@@ -97,6 +197,30 @@ public class PeriodicTransformationProcessorTest
         return PeriodicTransformationProcessor.of ("PeriodicTransformationProcessorTest", tq, dt, dp, MSEC_PERIOD);
     }
 
+    private Queue<Integer> getQueue (final int size)
+    {
+        final Queue<Integer> queue = new ConcurrentLinkedQueue<> ();
+        for (int i = 0; i < size; ++i)
+        {
+            queue.add (i);
+        }
+
+        return queue;
+    }
+
+    private List<Integer> poll (final Queue<Integer> queue, final int max)
+    {
+        final List<Integer> polled = GenericFactory.newArrayList ();
+
+        Integer i;
+        while (polled.size () < max && (i = queue.poll ()) != null)
+        {
+            polled.add (i);
+        }
+
+        return polled;
+    }
+
     private void runProcessor (final IProcessor rp, final int durationMsec)
     {
         final Timer timer = new Timer ();
@@ -0,0 +1,185 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.TimedScope;
+import au.com.breakpoint.hedron.core.context.LoggingSilenceScope;
+
+public class StagedPipelineProcessorTest
+{
+    @Test
+    public void testBackpressure () throws InterruptedException
+    {
+        final CountDownLatch release = new CountDownLatch (1);
+
+        final StagedPipelineProcessor<Integer> p = StagedPipelineProcessor.<Integer> builder ("testBackpressure")
+            .maxInFlight (4)// pipeline limit
+            .sink ("sink", 1, i -> awaitLatch (release))// blocks
+            .build ();
+
+        runPipeline (p, pipeline ->
+        {
+            for (int i = 0; i < 4; ++i)
+            {
+                assertTrue (pipeline.offer (i, 1_000));
+            }
+
+            // Full: no credit available.
+            assertFalse (pipeline.offer (4, 50));
+            assertEquals (4, pipeline.getInFlight ());
+
+            release.countDown ();
+            assertTrue (pipeline.offer (4, 1_000));
+        });
+
+        assertEquals (0, p.getInFlight ());
+    }
+
+    @Test
+    public void testBatchStage () throws InterruptedException
+    {
+        final List<Integer> batchSizes = Collections.synchronizedList (GenericFactory.newArrayList ());
+        final List<String> output = Collections.synchronizedList (GenericFactory.newArrayList ());
+
+        final StagedPipelineProcessor<Integer> p = StagedPipelineProcessor.<Integer> builder ("testBatchStage")
+            .batchStage ("format", 2, 10, is ->
+            {
+                batchSizes.add (is.size ());
+
+                final List<String> ss = GenericFactory.newArrayList ();
+                is.forEach (i -> ss.add (String.valueOf (i)));
+                return ss;
+            })//
+            .batchSink ("sink", 1, 100, output::addAll)//
+            .build ();
+
+        runPipeline (p, pipeline ->
+        {
+            for (int i = 0; i < 1_000; ++i)
+            {
+                pipeline.submit (i);
+            }
+        });
+
+        assertEquals (1_000, output.size ());
+        assertTrue (batchSizes.stream ().allMatch (n -> n <= 10));
+    }
+
+    @Test
+    public void testFailureDropsItem () throws InterruptedException
+    {
+        final List<Integer> output = Collections.synchronizedList (GenericFactory.newArrayList ());
+
+        final StagedPipelineProcessor<Integer> p =
+            StagedPipelineProcessor.<Integer> builder ("testFailureDropsItem")//
+                .stage ("check", 2, i -> 10 / (i % 10))// fails for multiples of 10
+                .sink ("sink", 1, output::add)//
+                .build ();
+
+        try (final LoggingSilenceScope ls = new LoggingSilenceScope ())
+        {
+            runPipeline (p, pipeline ->
+            {
+                for (int i = 0; i < 100; ++i)
+                {
+                    pipeline.submit (i);
+                }
+            });
+        }
+
+        assertEquals (90, output.size ());
+        assertEquals (0, p.getInFlight ());
+    }
+
+    @Test
+    public void testOrdered () throws InterruptedException
+    {
+        final List<Integer> output = Collections.synchronizedList (GenericFactory.newArrayList ());
+
+        final StagedPipelineProcessor<String> p = StagedPipelineProcessor.<String> builder ("testOrdered")
+            .queueCapacity (16)//
+            .ordered (true)//
+            .stage ("parse", 4, s ->
+            {
+                // Jitter so the workers finish out of order.
+                HcUtil.pause (ThreadLocalRandom.current ().nextInt (2));
+                return Integer.valueOf (s);
+            })//
+            .stage ("filter", 3, i -> i % 3 == 0 ? null : i)//
+            .sink ("sink", 1, output::add)//
+            .build ();
+
+        runPipeline (p, pipeline ->
+        {
+            for (int i = 0; i < 300; ++i)
+            {
+                pipeline.submit (String.valueOf (i));
+            }
+        });
+
+        assertEquals (200, output.size ());
+        for (int i = 1; i < output.size (); ++i)
+        {
+            assertTrue (output.get (i - 1) < output.get (i));
+        }
+
+        final TimedScope timedScope = TimedScope.getTimedScope (StagedPipelineProcessor.class, "testOrdered.parse");
+        assertEquals (300, timedScope.getStatistics ().getExecutionsCount ());
+    }
+
+    private static void awaitLatch (final CountDownLatch latch)
+    {
+        try
+        {
+            latch.await ();
+        }
+        catch (final InterruptedException e)
+        {
+            // Shutting down... don't care.
+        }
+    }
+
+    private static <T> void runPipeline (final StagedPipelineProcessor<T> p,
+        final Consumer<StagedPipelineProcessor<T>> test) throws InterruptedException
+    {
+        final Thread thread = new Thread (p::processUntilShutdown);
+        thread.start ();
+
+        try
+        {
+            test.accept (p);
+        }
+        finally
+        {
+            // Returns once all items submitted have been handled.
+            p.signalShutdown ();
+            thread.join ();
+            p.awaitShutdownComplete ();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.context.ExecutionScopes;
+
+/**
+ * Compares the cost of the schedule then cancel done by each TimedScope.execute () with a
+ * time limit, using the ScheduledExecutorService that TimedScope used to use and the
+ * TimerWheel that replaces it.
+ */
+public class TimerWheelBenchmarkApp
+{
+    public static void main (final String[] args)
+    {
+        ExecutionScopes.executeProgram ( () ->
+        {
+            final int threads = args.length > 0 ? Integer.parseInt (args[0]) : 8;
+
+            final ScheduledExecutorService executor =
+                Concurrency.createScheduledThreadPool (4, "TimerWheelBenchmarkApp", true, false).get ();
+            final TimerWheel timerWheel = TimerWheel.of ("TimerWheelBenchmarkApp", 10, null);
+            final Runnable alert = () ->
+            {
+            };
+
+            for (int run = 0; run < RUNS; ++run)
+            {
+                final double executorRate =
+                    measure (threads, () -> executor.schedule (alert, MSEC_LIMIT, TimeUnit.MILLISECONDS));
+                final double wheelRate = measure (threads, () -> timerWheel.schedule (alert, MSEC_LIMIT));
+
+                System.out.printf ("threads %s: ScheduledExecutorService %,.0f/sec, TimerWheel %,.0f/sec%n", threads,
+                    executorRate, wheelRate);
+            }
+
+            timerWheel.close ();
+            HcUtil.shutdownExecutorService (executor, "TimerWheelBenchmarkApp", 5);
+        });
+    }
+
+    /** @return schedule/cancel pairs per second */
+    private static double measure (final int threads, final Supplier<ScheduledFuture<?>> schedule)
+    {
+        final List<Thread> ts = GenericFactory.newArrayList ();
+        for (int i = 0; i < threads; ++i)
+        {
+            ts.add (new Thread ( () ->
+            {
+                for (int j = 0; j < OPERATIONS_PER_THREAD; ++j)
+                {
+                    schedule.get ().cancel (false);
+                }
+            }));
+        }
+
+        final long nsStart = System.nanoTime ();
+        ts.forEach (Thread::start);
+        for (final Thread t : ts)
+        {
+            try
+            {
+                t.join ();
+            }
+            catch (final InterruptedException e)
+            {
+                // Shutting down... don't care.
+            }
+        }
+        final long nsDuration = System.nanoTime () - nsStart;
+
+        return (double) threads * OPERATIONS_PER_THREAD * TimeUnit.SECONDS.toNanos (1) / nsDuration;
+    }
+
+    private static final long MSEC_LIMIT = 1_000;
+
+    private static final int OPERATIONS_PER_THREAD = 200_000;
+
+    private static final int RUNS = 5;
+}
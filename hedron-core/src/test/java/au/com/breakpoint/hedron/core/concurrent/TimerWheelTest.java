@@ -0,0 +1,144 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+
+public class TimerWheelTest
+{
+    @Test
+    public void testCancel () throws InterruptedException, ExecutionException
+    {
+        final AtomicInteger runs = new AtomicInteger ();
+        final ScheduledFuture<?> f = m_timerWheel.schedule (runs::incrementAndGet, 50);
+
+        assertTrue (f.cancel (false));
+        assertTrue (f.isCancelled ());
+        assertTrue (f.isDone ());
+        assertFalse (f.cancel (false));
+
+        HcUtil.pause (100);
+        assertEquals (0, runs.get ());
+
+        try
+        {
+            f.get ();
+            fail ();
+        }
+        catch (final CancellationException e)
+        {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void testException () throws InterruptedException
+    {
+        final ScheduledFuture<?> f = m_timerWheel.schedule ( () ->
+        {
+            throw new IllegalStateException ("Deliberate");
+        } , 5);
+
+        try
+        {
+            f.get ();
+            fail ();
+        }
+        catch (final ExecutionException e)
+        {
+            assertTrue (e.getCause () instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testFixedRate () throws InterruptedException
+    {
+        final CountDownLatch latch = new CountDownLatch (5);
+        final ScheduledFuture<?> f = m_timerWheel.scheduleAtFixedRate (latch::countDown, 0, 10);
+
+        assertTrue (latch.await (1, TimeUnit.SECONDS));
+        assertTrue (f.cancel (false));
+
+        // No more runs once cancelled.
+        final long count = latch.getCount ();
+        HcUtil.pause (50);
+        assertEquals (count, latch.getCount ());
+    }
+
+    @Test
+    public void testNeverEarly () throws InterruptedException, ExecutionException
+    {
+        // Delays either side of the level boundaries (64 and 4096 ticks).
+        final long[] delays = new long[] { 0, 1, 2, 63, 64, 65, 127, 128, 200, 1_000, 4_095, 4_097 };
+        final List<ScheduledFuture<?>> futures = GenericFactory.newArrayList ();
+        final AtomicInteger early = new AtomicInteger ();
+        final AtomicLong maxLateMsec = new AtomicLong ();
+
+        for (final long delay : delays)
+        {
+            final long nsStart = System.nanoTime ();
+            futures.add (m_timerWheel.schedule ( () ->
+            {
+                final long msecElapsed = TimeUnit.NANOSECONDS.toMillis (System.nanoTime () - nsStart);
+                if (msecElapsed < delay)
+                {
+                    early.incrementAndGet ();
+                }
+                maxLateMsec.accumulateAndGet (msecElapsed - delay, Math::max);
+            } , delay));
+        }
+
+        for (final ScheduledFuture<?> f : futures)
+        {
+            f.get ();
+            assertTrue (f.isDone ());
+        }
+
+        assertEquals (0, early.get ());
+        assertTrue ("Late by " + maxLateMsec.get (), maxLateMsec.get () < 200);
+    }
+
+    @BeforeClass
+    public static void setUpBeforeClass ()
+    {
+        m_timerWheel = TimerWheel.of ("TimerWheelTest", 1, null);
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass ()
+    {
+        m_timerWheel.close ();
+    }
+
+    private static TimerWheel m_timerWheel;
+}
@@ -17,15 +17,36 @@
 package au.com.breakpoint.hedron.core.dao;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.Test;
 import au.com.breakpoint.hedron.core.GenericFactory;
 import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.TimedScope;
+import au.com.breakpoint.hedron.core.context.FaultException;
+import au.com.breakpoint.hedron.core.context.JdbcConnectionCachingDataSource;
+import au.com.breakpoint.hedron.core.context.LoggingSilenceScope;
+import au.com.breakpoint.hedron.core.context.SimpleJdbcTransactionScope;
+import au.com.breakpoint.hedron.core.dao.BatchWriteResult.ChunkFailure;
 import au.com.breakpoint.hedron.core.dao.DaoUtil.SqlData;
 import au.com.breakpoint.hedron.core.dao.WhereElement.Operator;
+import au.com.breakpoint.hedron.core.dao.mock.MockDataSource;
+import au.com.breakpoint.hedron.core.dao.mock.MockResultSet;
 import au.com.breakpoint.hedron.core.dao.sample.dao.BlackList;
+import au.com.breakpoint.hedron.core.dao.sample.dao.BlackListDao;
 
 public class DaoUtilTest
 {
@@ -48,6 +69,130 @@ public class DaoUtilTest
         //System.out.println (s);
     }
 
+    @Test
+    public void testFetchPages ()
+    {
+        final MockDataSource dataSource = newBlackListDataSource (3);
+        DaoUtil.setSqlDialect (dataSource, SqlDialect.Limit);
+        final BlackListDao dao = new BlackListDao (dataSource);
+
+        final FetchSql<BlackList> sql = new FetchSql<> (BlackList.Column.ActionId).lessThan (10) //
+            .orderBy (BlackList.Column.ActionId).then (BlackList.Column.AvcId) //
+            .limit (5);
+        final List<List<BlackList>> pages = dao.fetchPages (sql).collect (Collectors.toList ());
+
+        // One short page, after which the fetch is positioned for the next.
+        assertEquals (1, pages.size ());
+        assertEquals (3, pages.get (0).size ());
+        assertEquals ("avc2", sql.getAfterValues ()[BlackList.ColumnAvcId]);
+        assertEquals (0, dataSource.getOpenConnectionCount ());
+    }
+
+    @Test
+    public void testFetchStream ()
+    {
+        final MockDataSource dataSource = newBlackListDataSource (5);
+        final BlackListDao dao = new BlackListDao (dataSource);
+        final TimedScope ts = SqlTimedScopes.getTimedScope ("STREAM [" + SQL_BLACK_LIST_ACTION_ID + "]");
+        final long executionsBefore = ts.getStatistics ().getExecutionsCount ();
+
+        final FetchSql<BlackList> sql = new FetchSql<> (BlackList.Column.ActionId).lessThan (10).fetchSize (2);
+        try (final Stream<BlackList> s = dao.fetchStream (sql))
+        {
+            // The connection is held while the stream is open.
+            assertEquals (1, dataSource.getOpenConnectionCount ());
+
+            final List<String> ids = s.map (BlackList::getAvcId).collect (Collectors.toList ());
+            assertEquals (GenericFactory.newArrayList ("avc0", "avc1", "avc2", "avc3", "avc4"), ids);
+        }
+
+        // Released on exhaustion, and the whole iteration was timed once.
+        assertEquals (0, dataSource.getOpenConnectionCount ());
+        assertEquals (executionsBefore + 1, ts.getStatistics ().getExecutionsCount ());
+    }
+
+    @Test
+    public void testFetchStreamEarlyClose ()
+    {
+        final MockDataSource dataSource = newBlackListDataSource (1000);
+        final BlackListDao dao = new BlackListDao (dataSource);
+
+        try (final Stream<BlackList> s = dao.fetchStream (new FetchSql<> (BlackList.Column.ActionId).lessThan (10)))
+        {
+            assertEquals (3, s.limit (3).count ());
+            assertEquals (1, dataSource.getOpenConnectionCount ());
+        }
+        assertEquals (0, dataSource.getOpenConnectionCount ());
+    }
+
+    @Test
+    public void testFetchStreamQueryFailure ()
+    {
+        // A runtime failure opening the cursor still releases the connection.
+        final MockDataSource dataSource = new MockDataSource ().setResultSets ( () ->
+        {
+            throw new IllegalStateException ("Deliberate");
+        });
+        final BlackListDao dao = new BlackListDao (dataSource);
+
+        try (final LoggingSilenceScope ls = new LoggingSilenceScope ())
+        {
+            dao.fetchStream (new FetchSql<> (BlackList.Column.ActionId).lessThan (10));
+            fail ();
+        }
+        catch (final RuntimeException e)
+        {
+            assertEquals ("Deliberate", HcUtil.getRootCause (e).getMessage ());
+        }
+        assertEquals (0, dataSource.getOpenConnectionCount ());
+    }
+
+    @Test
+    public void testForEach ()
+    {
+        final MockDataSource dataSource = newBlackListDataSource (10);
+        final BlackListDao dao = new BlackListDao (dataSource);
+
+        final List<BlackList> es = GenericFactory.newArrayList ();
+        dao.forEach (new FetchSql<> (BlackList.Column.ActionId).lessThan (10), es::add);
+
+        assertEquals (10, es.size ());
+        assertEquals ("avc9", es.get (9).getAvcId ());
+        assertEquals (9, es.get (9).getActionIdInt ());
+        assertFalse (es.get (9).getReferenceId ().isPresent ());
+        assertEquals (0, dataSource.getOpenConnectionCount ());
+    }
+
+    @Test
+    public void testGetJdbcTemplate ()
+    {
+        final MockDataSource dataSource = new MockDataSource ();
+        assertSame (DaoUtil.getJdbcTemplate (dataSource), DaoUtil.getJdbcTemplate (dataSource));
+        assertNotSame (DaoUtil.getJdbcTemplate (dataSource), DaoUtil.getJdbcTemplate (new MockDataSource ()));
+
+        // A scoped data source reuses its own template rather than sharing the real one's.
+        final JdbcConnectionCachingDataSource scoped = new JdbcConnectionCachingDataSource (dataSource);
+        assertSame (DaoUtil.getJdbcTemplate (scoped), DaoUtil.getJdbcTemplate (scoped));
+        assertNotSame (DaoUtil.getJdbcTemplate (dataSource), DaoUtil.getJdbcTemplate (scoped));
+    }
+
+    @Test
+    public void testGetSqlDialect ()
+    {
+        // The mock has no metadata, so the standard is assumed.
+        final MockDataSource dataSource = new MockDataSource ();
+        assertEquals (SqlDialect.FetchFirst, DaoUtil.getSqlDialect (dataSource));
+
+        DaoUtil.setSqlDialect (dataSource, SqlDialect.Top);
+        assertEquals (SqlDialect.Top, DaoUtil.getSqlDialect (dataSource));
+
+        // A transaction scope uses its real data source's dialect.
+        try (final SimpleJdbcTransactionScope scope = new SimpleJdbcTransactionScope (dataSource))
+        {
+            assertEquals (SqlDialect.Top, DaoUtil.getSqlDialect (scope.getDataSource ()));
+        }
+    }
+
     @Test
     public void testGetWhereExpressionSqlData ()
     {
@@ -55,6 +200,162 @@ public class DaoUtilTest
         assertTrue (sd.getSql ().equals (m_sqlFragment + " where Column0 = ? and Column1 = ? and Column2 > ?"));
     }
 
+    @Test
+    public void testPerformBatch ()
+    {
+        final MockDataSource dataSource = new MockDataSource ();
+        final BatchWriteResult result = DaoUtil.performBatch (dataSource, SQL_BATCH, newBatchRows (2_500),
+            BatchWriteOptions.of (1_000, 0, 1), false);
+
+        assertFalse (result.hasFailures ());
+        assertEquals (3, result.getChunkCount ());
+        assertEquals (2_500, result.getRowCounts ().length);
+        assertEquals (2_500, result.getRowCountTotal ());
+        assertEquals (0, dataSource.getCommitCount ());
+        assertEquals (0, dataSource.getOpenConnectionCount ());
+    }
+
+    @Test
+    public void testPerformBatchChunkFailure ()
+    {
+        // The second chunk can't get a connection; the others are still written.
+        final MockDataSource dataSource = newRefusingDataSource (2);
+        final BatchWriteResult result =
+            DaoUtil.performBatch (dataSource, SQL_BATCH, newBatchRows (250), BatchWriteOptions.of (100, 0, 1), true);
+
+        assertEquals (3, result.getChunkCount ());
+        assertEquals (150, result.getRowCountTotal ());
+        assertEquals (1, result.getFailures ().size ());
+
+        final ChunkFailure failure = result.getFailures ().get (0);
+        assertEquals (1, failure.getChunkIndex ());
+        assertEquals (100, failure.getFirstRow ());
+        assertEquals (100, failure.getRowCount ());
+        assertEquals (Statement.EXECUTE_FAILED, result.getRowCounts ()[100]);
+        assertEquals (1, result.getRowCounts ()[200]);
+        assertEquals (0, result.getSkippedChunkCount ());
+    }
+
+    @Test
+    public void testPerformBatchChunkFailureStops ()
+    {
+        // The second chunk can't get a connection, so the third isn't attempted.
+        final MockDataSource dataSource = newRefusingDataSource (2);
+        final BatchWriteResult result =
+            DaoUtil.performBatch (dataSource, SQL_BATCH, newBatchRows (250), BatchWriteOptions.of (100, 0, 1), false);
+
+        assertEquals (3, result.getChunkCount ());
+        assertEquals (100, result.getRowCountTotal ());
+        assertEquals (1, result.getFailures ().size ());
+        assertEquals (1, result.getFailures ().get (0).getChunkIndex ());
+        assertEquals (1, result.getSkippedChunkCount ());
+        assertEquals (Statement.EXECUTE_FAILED, result.getRowCounts ()[200]);
+        assertEquals (0, dataSource.getOpenConnectionCount ());
+    }
+
+    @Test
+    public void testPerformBatchCommitGroups ()
+    {
+        // 5 chunks in groups of 2: three transactions, the second of which is lost.
+        final MockDataSource dataSource = newRefusingDataSource (2);
+        final BatchWriteResult result =
+            DaoUtil.performBatch (dataSource, SQL_BATCH, newBatchRows (500), BatchWriteOptions.of (100, 2, 1), true);
+
+        assertEquals (5, result.getChunkCount ());
+        assertEquals (2, dataSource.getCommitCount ());
+        assertEquals (300, result.getRowCountTotal ());
+        assertEquals (GenericFactory.newArrayList (2, 3),
+            result.getFailures ().stream ().map (ChunkFailure::getChunkIndex).collect (Collectors.toList ()));
+        assertEquals (0, dataSource.getOpenConnectionCount ());
+    }
+
+    @Test
+    public void testPerformBatchParallel ()
+    {
+        final MockDataSource dataSource = new MockDataSource ();
+        final BatchWriteResult result =
+            DaoUtil.performBatch (dataSource, SQL_BATCH, newBatchRows (1_000), BatchWriteOptions.of (10, 2, 4), false);
+
+        assertFalse (result.hasFailures ());
+        assertEquals (100, result.getChunkCount ());
+        assertEquals (1_000, result.getRowCountTotal ());
+        assertEquals (50, dataSource.getCommitCount ());
+        assertEquals (0, dataSource.getOpenConnectionCount ());
+    }
+
+    @Test
+    public void testPerformBatchTransactional ()
+    {
+        // Already in a transaction: one connection, and no commits until the caller's.
+        final MockDataSource dataSource = new MockDataSource ();
+        try (final SimpleJdbcTransactionScope scope = new SimpleJdbcTransactionScope (dataSource))
+        {
+            final BatchWriteResult result = DaoUtil.performBatch (scope.getDataSource (), SQL_BATCH,
+                newBatchRows (1_000), BatchWriteOptions.of (10, 2, 4), false);
+
+            assertEquals (1_000, result.getRowCountTotal ());
+            assertEquals (0, dataSource.getCommitCount ());
+            assertEquals (1, dataSource.getOpenConnectionCount ());
+            scope.voteToCommit ();
+        }
+        assertEquals (1, dataSource.getCommitCount ());
+    }
+
+    @Test (expected = FaultException.class)
+    public void testPerformInsertBatchFailure ()
+    {
+        final List<BlackList> es = GenericFactory.newArrayList ();
+        for (int i = 0; i < 25; ++i)
+        {
+            final BlackList e = new BlackList ();
+            e.setAvcId ("avc" + i);
+            es.add (e);
+        }
+
+        final BatchWriteOptions options = DaoUtil.getBatchWriteOptions ();
+        DaoUtil.setBatchWriteOptions (BatchWriteOptions.of (10, 0, 1));
+        try
+        {
+            // The failed chunk's exception reaches the caller of the generated DAO.
+            new BlackListDao (newRefusingDataSource (3)).insert (es);
+        }
+        finally
+        {
+            DaoUtil.setBatchWriteOptions (options);
+        }
+    }
+
+    @Test
+    public void testRowMapperByIndexMatchesByName () throws SQLException
+    {
+        final List<Object[]> rows = GenericFactory.newArrayList ();
+        rows.add (new Object[]
+        {
+                "avc0", new Timestamp (0), "reason", "operator", null, 1
+        });
+        rows.add (new Object[]
+        {
+                "avc1", new Timestamp (1), "reason", "operator", "ref1", 2
+        });
+
+        final List<BlackList> byIndex = GenericFactory.newArrayList ();
+        final List<BlackList> byName = GenericFactory.newArrayList ();
+        try (final ResultSet rsIndex = MockResultSet.of (BlackListDao.COLUMN_NAMES, rows);
+            final ResultSet rsName = MockResultSet.of (BlackListDao.COLUMN_NAMES, rows))
+        {
+            for (int i = 0; rsIndex.next () && rsName.next (); ++i)
+            {
+                byIndex.add (BlackListDao.ROW_MAPPER.mapRow (rsIndex, i));
+                byName.add (BlackListDao.ROW_MAPPER_BY_NAME.mapRow (rsName, i));
+            }
+        }
+
+        assertEquals (2, byIndex.size ());
+        assertEquals (byName, byIndex);
+        assertFalse (byIndex.get (0).getReferenceId ().isPresent ());
+        assertEquals ("ref1", byIndex.get (1).getReferenceId ().get ());
+    }
+
     @Test
     public void testToMap ()
     {
@@ -77,6 +378,54 @@ public class DaoUtilTest
         new MockEntityDao ().update (list);
     }
 
+    private static List<Object[]> newBatchRows (final int rowCount)
+    {
+        final List<Object[]> rows = GenericFactory.newArrayList ();
+        for (int i = 0; i < rowCount; ++i)
+        {
+            rows.add (new Object[]
+            {
+                    i, "value" + i
+            });
+        }
+        return rows;
+    }
+
+    private static MockDataSource newBlackListDataSource (final int rowCount)
+    {
+        return new MockDataSource ().setResultSets ( () ->
+        {
+            final List<Object[]> rows = GenericFactory.newArrayList ();
+            for (int i = 0; i < rowCount; ++i)
+            {
+                rows.add (new Object[]
+                {
+                        "avc" + i, new Timestamp (i), "reason", "operator", null, i
+                });
+            }
+            return MockResultSet.of (BlackListDao.COLUMN_NAMES, rows);
+        });
+    }
+
+    /** Refuses the n'th connection (1-based) */
+    private static MockDataSource newRefusingDataSource (final int n)
+    {
+        return new MockDataSource ()
+        {
+            @Override
+            public Connection getConnection () throws SQLException
+            {
+                if (m_connectionCount.incrementAndGet () == n)
+                {
+                    throw new SQLException ("Connection refused");
+                }
+                return super.getConnection ();
+            }
+
+            private final AtomicInteger m_connectionCount = new AtomicInteger ();
+        };
+    }
+
     private static class MockEntity extends BaseEntity<String>
     {
         public MockEntity (final String s)
@@ -146,6 +495,12 @@ public class DaoUtilTest
     //    }
     //}
 
+    private static final String SQL_BATCH = "insert into BATCH_TEST (ID, VALUE) values (?, ?)";
+
+    private static final String SQL_BLACK_LIST_ACTION_ID =
+        "select AVC_ID, DATE_REQUESTED, REASON, OPERATOR_ID, REFERENCE_ID, ACTION_ID from BLACK_LIST" +
+            " where ACTION_ID < ?";
+
     private static final String[] m_columnPhysicalNames =
         {
                 "Column0",
@@ -0,0 +1,111 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.context.FaultException;
+import au.com.breakpoint.hedron.core.dao.sample.dao.BlackList;
+
+public class KeysetPageIteratorTest
+{
+    @Test
+    public void testExactPages ()
+    {
+        final AtomicInteger fetchCount = new AtomicInteger ();
+        final List<List<BlackList>> pages =
+            KeysetPageIterator.stream (newFetcher (20, fetchCount), newFetchSql (10)).collect (Collectors.toList ());
+
+        // A full last page needs one more (empty) fetch to be sure.
+        assertEquals (2, pages.size ());
+        assertEquals (3, fetchCount.get ());
+    }
+
+    @Test
+    public void testPages ()
+    {
+        final AtomicInteger fetchCount = new AtomicInteger ();
+        final FetchSql<BlackList> sql = newFetchSql (10);
+        final List<List<BlackList>> pages =
+            KeysetPageIterator.stream (newFetcher (25, fetchCount), sql).collect (Collectors.toList ());
+
+        assertEquals (3, pages.size ());
+        assertEquals (10, pages.get (0).size ());
+        assertEquals (5, pages.get (2).size ());
+        assertEquals (10, pages.get (1).get (0).getActionIdInt ());
+        assertEquals (24, pages.get (2).get (4).getActionIdInt ());
+
+        // The short last page ends the iteration without another fetch, and the fetch
+        // is left positioned after the last row.
+        assertEquals (3, fetchCount.get ());
+        assertEquals (24, sql.getAfterValues ()[BlackList.ColumnActionId]);
+    }
+
+    @Test
+    public void testLazy ()
+    {
+        final AtomicInteger fetchCount = new AtomicInteger ();
+        final KeysetPageIterator<BlackList> it =
+            new KeysetPageIterator<> (newFetcher (0, fetchCount), newFetchSql (10));
+        assertEquals (0, fetchCount.get ());
+
+        assertFalse (it.hasNext ());
+        assertFalse (it.hasNext ());
+        assertEquals (1, fetchCount.get ());
+    }
+
+    @Test (expected = FaultException.class)
+    public void testNoLimit ()
+    {
+        new KeysetPageIterator<> (newFetcher (10, new AtomicInteger ()), newFetchSql (0));
+    }
+
+    private static FetchSql<BlackList> newFetchSql (final int limit)
+    {
+        return new FetchSql<BlackList> ().orderBy (BlackList.Column.ActionId).limit (limit);
+    }
+
+    /** Simulates the keyset query over rows with action ids 0 to rowCount - 1 */
+    private static Function<FetchSql<BlackList>, List<BlackList>> newFetcher (final int rowCount,
+        final AtomicInteger fetchCount)
+    {
+        return sql ->
+        {
+            fetchCount.incrementAndGet ();
+
+            final Object[] afterValues = sql.getAfterValues ();
+            final int first = afterValues != null ? (Integer) afterValues[BlackList.ColumnActionId] + 1 : 0;
+
+            final List<BlackList> page = GenericFactory.newArrayList ();
+            for (int i = first; i < rowCount && page.size () < sql.getLimit (); ++i)
+            {
+                final BlackList e = new BlackList ();
+                e.setAvcId ("avc" + i);
+                e.setActionId (i);
+                page.add (e);
+            }
+
+            return page;
+        };
+    }
+}
@@ -0,0 +1,96 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import org.springframework.jdbc.core.RowMapper;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.context.ExecutionScopes;
+import au.com.breakpoint.hedron.core.context.ThreadContext;
+import au.com.breakpoint.hedron.core.dao.mock.MockPreparedStatement;
+import au.com.breakpoint.hedron.core.dao.mock.MockResultSet;
+import au.com.breakpoint.hedron.core.dao.sample.dao.BlackList;
+import au.com.breakpoint.hedron.core.dao.sample.dao.BlackListDao;
+
+/**
+ * Compares the generated column-index ROW_MAPPER with the column-name ROW_MAPPER_BY_NAME
+ * over MockPreparedStatement result sets. The mock resolves names by a case-insensitive
+ * scan, as drivers such as Oracle's do, so the difference is the per-cell name lookup.
+ */
+public class RowMapperBenchmarkApp
+{
+    public static void main (final String[] args)
+    {
+        ExecutionScopes.executeProgram ( () ->
+        {
+            final List<Object[]> rows = GenericFactory.newArrayList ();
+            for (int i = 0; i < ROWS; ++i)
+            {
+                rows.add (new Object[]
+                {
+                        "avc" + i, new Timestamp (i), "reason", "operator", i % 2 == 0 ? null : "ref" + i, i
+                });
+            }
+            final MockPreparedStatement ps =
+                new MockPreparedStatement ( () -> MockResultSet.of (BlackListDao.COLUMN_NAMES, rows));
+
+            for (int run = 0; run < RUNS; ++run)
+            {
+                final double nsByName = measure (ps, BlackListDao.ROW_MAPPER_BY_NAME);
+                final double nsByIndex = measure (ps, BlackListDao.ROW_MAPPER);
+
+                System.out.printf ("%,d rows: by name %,.0f ns/row, by index %,.0f ns/row%n", ROWS, nsByName,
+                    nsByIndex);
+            }
+        });
+    }
+
+    /** @return nanoseconds per mapped row */
+    private static double measure (final MockPreparedStatement ps, final RowMapper<BlackList> mapper)
+    {
+        long nsDuration = 0;
+        long checksum = 0;
+
+        try (final ResultSet rs = ps.executeQuery ())
+        {
+            final long nsStart = System.nanoTime ();
+            int rowNum = 0;
+            while (rs.next ())
+            {
+                checksum += mapper.mapRow (rs, rowNum++).getActionIdInt ();
+            }
+            nsDuration = System.nanoTime () - nsStart;
+        }
+        catch (final SQLException e)
+        {
+            // Propagate exception as unchecked fault up to the fault barrier.
+            ThreadContext.throwFault (e);
+        }
+
+        // Keeps the mapped entities live so the JIT can't discard the work.
+        ThreadContext.assertFault (checksum == (long) ROWS * (ROWS - 1) / 2, "Checksum [%s] is wrong", checksum);
+
+        return (double) nsDuration / ROWS;
+    }
+
+    private static final int ROWS = 200_000;
+
+    private static final int RUNS = 10;
+}
@@ -0,0 +1,55 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.dao;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.context.FaultException;
+
+public class SqlDialectTest
+{
+    @Test
+    public void testApplyLimit ()
+    {
+        final String sql = "select A, B from T where A > ? order by A";
+
+        assertEquals (sql + " fetch first 10 rows only", SqlDialect.FetchFirst.applyLimit (sql, 10));
+        assertEquals (sql + " limit 10", SqlDialect.Limit.applyLimit (sql, 10));
+        assertEquals ("select * from (" + sql + ") where ROWNUM <= 10", SqlDialect.RowNum.applyLimit (sql, 10));
+        assertEquals ("select top 10 A, B from T where A > ? order by A", SqlDialect.Top.applyLimit (sql, 10));
+        assertEquals ("SELECT DISTINCT top 5 A from T", SqlDialect.Top.applyLimit ("SELECT DISTINCT A from T", 5));
+    }
+
+    @Test (expected = FaultException.class)
+    public void testApplyLimitInvalid ()
+    {
+        SqlDialect.Limit.applyLimit ("select A from T", 0);
+    }
+
+    @Test
+    public void testOf ()
+    {
+        assertEquals (SqlDialect.RowNum, SqlDialect.of ("Oracle"));
+        assertEquals (SqlDialect.Top, SqlDialect.of ("Microsoft SQL Server"));
+        assertEquals (SqlDialect.Top, SqlDialect.of ("Adaptive Server Enterprise"));
+        assertEquals (SqlDialect.Limit, SqlDialect.of ("PostgreSQL"));
+        assertEquals (SqlDialect.Limit, SqlDialect.of ("MySQL"));
+        assertEquals (SqlDialect.Limit, SqlDialect.of ("H2"));
+        assertEquals (SqlDialect.FetchFirst, SqlDialect.of ("DB2/LINUXX8664"));
+        assertEquals (SqlDialect.FetchFirst, SqlDialect.of ("Apache Derby"));
+    }
+}
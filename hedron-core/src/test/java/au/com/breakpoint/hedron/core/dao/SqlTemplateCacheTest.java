@@ -0,0 +1,194 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.Counter;
+import au.com.breakpoint.hedron.core.dao.SqlTemplateCache.SqlTemplate;
+import au.com.breakpoint.hedron.core.dao.WhereElement.Operator;
+import au.com.breakpoint.hedron.core.dao.sample.dao.BlackList;
+
+public class SqlTemplateCacheTest
+{
+    @Test
+    public void testFetchTemplate ()
+    {
+        final WhereElement[] where1 =
+            {
+                    new WhereElement (0, "a"), new WhereElement (2, Operator.GreaterThan, 1)
+        };
+        final WhereElement[] where2 =
+            {
+                    new WhereElement (0, "b"), new WhereElement (2, Operator.GreaterThan, 2)
+        };
+        final OrderByElement[] orderBy =
+            {
+                    new OrderByElement (1, false)
+        };
+
+        final SqlTemplate t1 = SqlTemplateCache.getFetchTemplate (SQL_FRAGMENT, COLUMN_NAMES, where1, orderBy);
+        final SqlTemplate t2 = SqlTemplateCache.getFetchTemplate (SQL_FRAGMENT, COLUMN_NAMES, where2, orderBy);
+
+        // Same shape, different values.
+        assertSame (t1, t2);
+        assertEquals (SQL_FRAGMENT + " where Column0 = ? and Column2 > ? order by Column1 desc", t1.getSql ());
+        assertArrayEquals (new Object[]
+        {
+                "b", 2
+        }, t2.bind (null, where2));
+
+        // Any change of column, operator or direction is a different shape.
+        final WhereElement[] where3 =
+            {
+                    new WhereElement (0, "a"), new WhereElement (2, Operator.LessThan, 1)
+        };
+        assertNotSame (t1, SqlTemplateCache.getFetchTemplate (SQL_FRAGMENT, COLUMN_NAMES, where3, orderBy));
+        assertNotSame (t1, SqlTemplateCache.getFetchTemplate (SQL_FRAGMENT, COLUMN_NAMES, where1, new OrderByElement[]
+        {
+                new OrderByElement (1, true)
+        }));
+        assertNotSame (t1, SqlTemplateCache.getFetchTemplate (SQL_FRAGMENT, COLUMN_NAMES, where1, null));
+
+        // Nulls are empty clauses.
+        final SqlTemplate all = SqlTemplateCache.getFetchTemplate (SQL_FRAGMENT, COLUMN_NAMES, null, null);
+        assertEquals (SQL_FRAGMENT, all.getSql ());
+
+        // Delete shares the where handling but not the templates.
+        final SqlTemplate d = SqlTemplateCache.getDeleteTemplate ("delete from Blah", COLUMN_NAMES, where1);
+        assertEquals ("delete from Blah where Column0 = ? and Column2 > ?", d.getSql ());
+    }
+
+    @Test
+    public void testMaxTemplates ()
+    {
+        final int maxTemplates = SqlTemplateCache.getMaxTemplates ();
+        try
+        {
+            SqlTemplateCache.clear ();
+            SqlTemplateCache.setMaxTemplates (5);
+            final long uncachedBefore = Counter.getCounter ("SqlTemplateCache.uncached").get ();
+
+            for (int i = 0; i < 20; ++i)
+            {
+                final WhereElement[] where =
+                    {
+                            new WhereElement (i % 3, i)
+                };
+                final SqlTemplate t = SqlTemplateCache.getFetchTemplate (SQL_FRAGMENT + i, COLUMN_NAMES, where, null);
+                assertEquals (SQL_FRAGMENT + i + " where Column" + i % 3 + " = ?", t.getSql ());
+                assertTrue (SqlTemplateCache.getTemplateCount () <= 5);
+            }
+
+            assertEquals (15, Counter.getCounter ("SqlTemplateCache.uncached").get () - uncachedBefore);
+        }
+        finally
+        {
+            SqlTemplateCache.setMaxTemplates (maxTemplates);
+            SqlTemplateCache.clear ();
+        }
+    }
+
+    @Test
+    public void testPageTemplate ()
+    {
+        final BlackList last = new BlackList ();
+        last.setAvcId ("a9");
+        last.setReason ("r9");
+
+        final FetchSql<BlackList> sql = new FetchSql<> (BlackList.Column.DateRequested).lessThan (5) //
+            .orderBy (BlackList.Column.Reason).descending () //
+            .then (BlackList.Column.AvcId) //
+            .limit (10) //
+            .after (last);
+
+        final SqlTemplate t = SqlTemplateCache.getPageTemplate (SQL_FRAGMENT, COLUMN_NAMES, sql, SqlDialect.Limit);
+        assertEquals (SQL_FRAGMENT + " where Column1 < ? and (Column2 < ? or (Column2 = ? and Column0 > ?))" +
+            " order by Column2 desc, Column0 limit 10", t.getSql ());
+        assertArrayEquals (new Object[]
+        {
+                5, "r9", "r9", "a9"
+        }, t.bind (sql));
+
+        // The next page has the same shape.
+        last.setAvcId ("a19");
+        assertSame (t, SqlTemplateCache.getPageTemplate (SQL_FRAGMENT, COLUMN_NAMES, sql.after (last),
+            SqlDialect.Limit));
+
+        // The page size and dialect are part of the shape.
+        assertNotSame (t, SqlTemplateCache.getPageTemplate (SQL_FRAGMENT, COLUMN_NAMES, sql, SqlDialect.FetchFirst));
+        sql.limit (20);
+        assertNotSame (t, SqlTemplateCache.getPageTemplate (SQL_FRAGMENT, COLUMN_NAMES, sql, SqlDialect.Limit));
+
+        // The first page has no keyset.
+        final SqlTemplate first =
+            SqlTemplateCache.getPageTemplate (SQL_FRAGMENT, COLUMN_NAMES, sql.after (null), SqlDialect.FetchFirst);
+        assertEquals (SQL_FRAGMENT + " where Column1 < ? order by Column2 desc, Column0 fetch first 20 rows only",
+            first.getSql ());
+        assertArrayEquals (new Object[]
+        {
+                5
+        }, first.bind (sql));
+
+        // Without paging it's the plain fetch template.
+        assertSame (
+            SqlTemplateCache.getFetchTemplate (SQL_FRAGMENT, COLUMN_NAMES, sql.getWhereElements (),
+                sql.getOrderByElements ()),
+            SqlTemplateCache.getPageTemplate (SQL_FRAGMENT, COLUMN_NAMES, sql.limit (0), SqlDialect.Limit));
+    }
+
+    @Test
+    public void testUpdateTemplate ()
+    {
+        final SetElement[] set =
+            {
+                    new SetElement (1, "x"), new SetElement (2, 3)
+        };
+        final WhereElement[] where =
+            {
+                    new WhereElement (0, "k")
+        };
+
+        final SqlTemplate t = SqlTemplateCache.getUpdateTemplate ("Blah", COLUMN_NAMES, set, where);
+        assertEquals ("update Blah set Column1 = ?, Column2 = ? where Column0 = ?", t.getSql ());
+        assertArrayEquals (new Object[]
+        {
+                "x", 3, "k"
+        }, t.bind (set, where));
+        assertSame (t, SqlTemplateCache.getUpdateTemplate ("Blah", COLUMN_NAMES, set, where));
+
+        // A set column that matches a where column is still a different shape.
+        final SetElement[] set2 =
+            {
+                    new SetElement (0, "x"), new SetElement (2, 3)
+        };
+        assertNotSame (t, SqlTemplateCache.getUpdateTemplate ("Blah", COLUMN_NAMES, set2, where));
+    }
+
+    private static final String[] COLUMN_NAMES =
+        {
+                "Column0",
+                "Column1",
+                "Column2"
+    };
+
+    private static final String SQL_FRAGMENT = "select Column0, Column1, Column2 from Blah";
+}
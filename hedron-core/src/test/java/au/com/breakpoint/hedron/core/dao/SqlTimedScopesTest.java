@@ -0,0 +1,145 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.Counter;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.TimedScope;
+
+public class SqlTimedScopesTest
+{
+    @Test
+    public void testConcurrentEviction () throws InterruptedException
+    {
+        final int maxScopes = SqlTimedScopes.getMaxScopes ();
+        try
+        {
+            SqlTimedScopes.setMaxScopes (20);
+
+            final List<Thread> threads = GenericFactory.newArrayList ();
+            final AtomicInteger failures = new AtomicInteger ();
+            for (int t = 0; t < 4; ++t)
+            {
+                final Thread thread = new Thread ( () ->
+                {
+                    for (int i = 0; i < 20_000; ++i)
+                    {
+                        // Lookups racing with the evictions of the same few templates.
+                        final String sql = "select * from U where C" + i % 40 + " = ?";
+                        final TimedScope ts = SqlTimedScopes.getTimedScope (sql);
+                        if (ts == null)
+                        {
+                            failures.incrementAndGet ();
+                        }
+                    }
+                });
+                thread.start ();
+                threads.add (thread);
+            }
+
+            for (final Thread thread : threads)
+            {
+                thread.join ();
+            }
+            assertEquals (0, failures.get ());
+
+            // Every scope still handed out is the one in the TimedScope results.
+            for (int i = 0; i < 40; ++i)
+            {
+                final String sql = "select * from U where C" + i + " = ?";
+                assertSame (SqlTimedScopes.getTimedScope (sql), TimedScope.getTimedScope ("[" + sql + "]"));
+            }
+        }
+        finally
+        {
+            SqlTimedScopes.setMaxScopes (maxScopes);
+        }
+    }
+
+    @Test
+    public void testEviction ()
+    {
+        final int maxScopes = SqlTimedScopes.getMaxScopes ();
+        try
+        {
+            SqlTimedScopes.setMaxScopes (50);
+            final long evictionsBefore = Counter.getCounter ("SqlTimedScopes.evictions").get ();
+
+            for (int i = 0; i < 1000; ++i)
+            {
+                // Distinct column names give distinct templates.
+                SqlTimedScopes.getTimedScope ("select * from T where C" + i + " = ?");
+                assertTrue (SqlTimedScopes.getScopeCount () <= 50);
+            }
+
+            final long evictions = Counter.getCounter ("SqlTimedScopes.evictions").get () - evictionsBefore;
+            assertTrue (evictions >= 950);
+
+            // Evicted scopes are gone from the TimedScope results too.
+            final long remaining = TimedScope.getSortedResults (false).stream ()
+                .filter (ts -> ts.getName ().startsWith ("[select * from T where C")).count ();
+            assertTrue (remaining <= 50);
+
+            // A statement whose scope was evicted gets a live scope again.
+            final TimedScope ts = SqlTimedScopes.getTimedScope ("select * from T where C0 = ?");
+            assertSame (ts, TimedScope.getTimedScope ("[select * from T where C0 = ?]"));
+            assertSame (ts, SqlTimedScopes.getTimedScope ("select * from T where C0 = ?"));
+        }
+        finally
+        {
+            SqlTimedScopes.setMaxScopes (maxScopes);
+        }
+    }
+
+    @Test
+    public void testFingerprint ()
+    {
+        assertEquals ("select * from T where A = ? and B = ?",
+            SqlTimedScopes.fingerprint ("  select *\n  from T\twhere A = 'it''s'   and B = 42 "));
+        assertEquals ("select * from T where A in (?...)",
+            SqlTimedScopes.fingerprint ("select * from T where A in (1, 2, 3.5, 'x')"));
+        assertEquals ("select * from T where A IN (?...) and B in (?...)",
+            SqlTimedScopes.fingerprint ("select * from T where A IN (?,?) and B in (?)"));
+
+        // Identifiers containing digits and quoted identifiers are not literals.
+        assertEquals ("select Col1, \"Col 2\" from T1 where x2 = ?",
+            SqlTimedScopes.fingerprint ("select Col1, \"Col 2\" from T1 where x2 = 7e3"));
+
+        // Already parameterised SQL is unchanged.
+        final String sql = "update BlackList set ActionId = ? where AvcId = ?";
+        assertEquals (sql, SqlTimedScopes.fingerprint (sql));
+    }
+
+    @Test
+    public void testGetTimedScope ()
+    {
+        final TimedScope ts1 = SqlTimedScopes.getTimedScope ("delete from T where A = 1");
+        final TimedScope ts2 = SqlTimedScopes.getTimedScope ("delete  from T where A = 2");
+        assertSame (ts1, ts2);
+        assertEquals ("[delete from T where A = ?]", ts1.getName ());
+
+        final TimedScope ts3 = SqlTimedScopes.getTimedScope ("delete from T where B = 2");
+        assertNotSame (ts1, ts3);
+    }
+}
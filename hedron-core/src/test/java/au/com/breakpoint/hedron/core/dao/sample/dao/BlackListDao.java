@@ -1,6 +1,8 @@
 package au.com.breakpoint.hedron.core.dao.sample.dao;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import javax.sql.DataSource;
 import org.springframework.jdbc.core.RowMapper;
 import au.com.breakpoint.hedron.core.context.ThreadContext;
@@ -130,6 +132,58 @@ public class BlackListDao extends BaseEntityDao<BlackList, String>
         return results.size () == 1 ? results.get (0) : null;
     }
 
+    /**
+     * Fetches the rows of the BLACK_LIST relation that satisfy the criteria in the
+     * <i>sql</i> parameter, including any limit and keyset (after) for paging.
+     *
+     * @param sql
+     *            A convenient readable encapsulation of sql where clauses, order by
+     *            statements and paging.
+     *
+     * @return Collection of BlackList entities
+     */
+    @Override
+    public List<BlackList> fetch (final FetchSql<BlackList> sql)
+    {
+        return DaoUtil.performFetch (m_dataSource, BlackListDao.ROW_MAPPER, SQL_FRAGMENT_SELECT_FROM, COLUMN_NAMES,
+            sql);
+    }
+
+    /**
+     * Streams the rows of the BLACK_LIST relation that satisfy the criteria in the
+     * <i>sql</i> parameter through a forward-only cursor. The connection is held until the
+     * stream is closed.
+     *
+     * @param sql
+     *            A convenient readable encapsulation of sql where clauses, order by
+     *            statements and the fetch size.
+     *
+     * @return Stream of BlackList entities which must be closed
+     */
+    @Override
+    public Stream<BlackList> fetchStream (final FetchSql<BlackList> sql)
+    {
+        return DaoUtil.performFetchStream (m_dataSource, BlackListDao.ROW_MAPPER, SQL_FRAGMENT_SELECT_FROM,
+            COLUMN_NAMES, sql);
+    }
+
+    /**
+     * Passes each row of the BLACK_LIST relation that satisfies the criteria in the
+     * <i>sql</i> parameter to the consumer as it is read from a forward-only cursor.
+     *
+     * @param sql
+     *            A convenient readable encapsulation of sql where clauses, order by
+     *            statements and the fetch size.
+     * @param consumer
+     *            Receives each BlackList entity in turn
+     */
+    @Override
+    public void forEach (final FetchSql<BlackList> sql, final Consumer<? super BlackList> consumer)
+    {
+        DaoUtil.performForEach (m_dataSource, BlackListDao.ROW_MAPPER, SQL_FRAGMENT_SELECT_FROM, COLUMN_NAMES, sql,
+            consumer);
+    }
+
     /**
      * Inserts a row into the BLACK_LIST table.
      *
@@ -252,18 +306,42 @@ public class BlackListDao extends BaseEntityDao<BlackList, String>
     };
 
     /**
-     * Function to map BlackList entities from BLACK_LIST result sets.
+     * Function to map BlackList entities from BLACK_LIST result sets. The columns are read
+     * by position, so the result set must list them in COLUMN_NAMES order, as
+     * SQL_FRAGMENT_SELECT_FROM does.
      */
     public static final RowMapper<BlackList> ROW_MAPPER = (rs, rowNum) ->
     {
         final BlackList e = new BlackList ();
 
+        e.setAvcId (rs.getString (BlackList.ColumnAvcId + 1));
+        e.setDateRequested (rs.getTimestamp (BlackList.ColumnDateRequested + 1));
+        e.setReason (rs.getString (BlackList.ColumnReason + 1));
+        e.setOperatorId (rs.getString (BlackList.ColumnOperatorId + 1));
+        final String valueReferenceId = rs.getString (BlackList.ColumnReferenceId + 1);
+        if (valueReferenceId != null)
+        {
+            e.setReferenceId (valueReferenceId);
+        }
+        e.setActionId (rs.getInt (BlackList.ColumnActionId + 1));
+
+        return e;
+    };
+
+    /**
+     * Function to map BlackList entities from result sets whose column order isn't known,
+     * eg stored procedure results. The columns are read by name.
+     */
+    public static final RowMapper<BlackList> ROW_MAPPER_BY_NAME = (rs, rowNum) ->
+    {
+        final BlackList e = new BlackList ();
+
         e.setAvcId (rs.getString (COLUMN_NAMES[BlackList.ColumnAvcId]));
         e.setDateRequested (rs.getTimestamp (COLUMN_NAMES[BlackList.ColumnDateRequested]));
         e.setReason (rs.getString (COLUMN_NAMES[BlackList.ColumnReason]));
         e.setOperatorId (rs.getString (COLUMN_NAMES[BlackList.ColumnOperatorId]));
         final String valueReferenceId = rs.getString (COLUMN_NAMES[BlackList.ColumnReferenceId]);
-        if (!rs.wasNull ())
+        if (valueReferenceId != null)
         {
             e.setReferenceId (valueReferenceId);
         }
@@ -0,0 +1,99 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.HcUtilFile;
+import au.com.breakpoint.hedron.core.NullFormatter;
+
+public class BufferedFolderPerDayLoggerTest
+{
+    @Test
+    public void testBuffering () throws IOException
+    {
+        final File logFolder = Files.createTempDirectory ("BufferedFolderPerDayLoggerTest").toFile ();
+        try
+        {
+            final BufferedFolderPerDayLogger logger = new BufferedFolderPerDayLogger (logFolder.getPath (),
+                new NullFormatter (), "fewi", 1, "log", null, 1024, 60_000, false);
+
+            logger.logString ("", Level.Info, "first");
+            logger.logString ("", Level.Info, "second");
+
+            final File logFile = new File (logger.getLogfilePath ());
+            assertFalse (logFile.exists ());
+
+            logger.flush ();
+            assertEquals ("first" + HcUtil.NewLine + "second" + HcUtil.NewLine, readFile (logFile));
+
+            // Overflowing the buffer writes it without an explicit flush.
+            final StringBuilder sb = new StringBuilder ();
+            for (int i = 0; i < 300; ++i)
+            {
+                final String s = String.format ("message %03d", i);
+                logger.logString ("", Level.Info, s);
+                sb.append (s).append (HcUtil.NewLine);
+            }
+            assertTrue (logFile.length () > 1024);
+
+            logger.flush ();
+            assertEquals ("first" + HcUtil.NewLine + "second" + HcUtil.NewLine + sb, readFile (logFile));
+        }
+        finally
+        {
+            HcUtilFile.deleteFileOrDirectory (logFolder);
+        }
+    }
+
+    @Test
+    public void testClose () throws IOException
+    {
+        final File logFolder = Files.createTempDirectory ("BufferedFolderPerDayLoggerTest").toFile ();
+        try
+        {
+            final BufferedFolderPerDayLogger logger = new BufferedFolderPerDayLogger (logFolder.getPath (),
+                new NullFormatter (), "fewi", 1, "log", null, 1024, 60_000, false);
+
+            logger.logString ("", Level.Info, "first");
+            logger.close ();
+
+            final File logFile = new File (logger.getLogfilePath ());
+            assertEquals ("first" + HcUtil.NewLine, readFile (logFile));
+
+            // Once closed, each message is written as it is logged.
+            logger.logString ("", Level.Info, "second");
+            assertEquals ("first" + HcUtil.NewLine + "second" + HcUtil.NewLine, readFile (logFile));
+            logger.close ();
+        }
+        finally
+        {
+            HcUtilFile.deleteFileOrDirectory (logFolder);
+        }
+    }
+
+    private static String readFile (final File file) throws IOException
+    {
+        return new String (Files.readAllBytes (file.toPath ()));
+    }
+}
@@ -17,6 +17,8 @@
 package au.com.breakpoint.hedron.core.log;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 import au.com.breakpoint.hedron.core.context.FaultException;
 import au.com.breakpoint.hedron.core.context.LoggingSilenceScope;
@@ -25,6 +27,31 @@ import au.com.breakpoint.hedron.core.log.Logging;
 
 public class LoggingTest
 {
+    @Test
+    public void testIsEnabled ()
+    {
+        final boolean wasTraceEnabled = Logging.isEnabled (Level.Trace);
+        assertTrue (Logging.isEnabled (Level.Fatal));
+
+        final DummyLogger logger = new DummyLogger ("f", null, null);
+        Logging.addLogger (logger);
+        try
+        {
+            logger.setLevels ("ft");
+            assertTrue (Logging.isEnabled (Level.Trace));
+
+            Logging.logTrace ("Traced [%s]", 1);
+            assertEquals (1, logger.m_valueLogTrace.size ());
+            assertEquals ("Traced [1]", logger.m_valueLogTrace.get (0));
+        }
+        finally
+        {
+            Logging.removeLogger (logger);
+        }
+
+        assertEquals (wasTraceEnabled, Logging.isEnabled (Level.Trace));
+    }
+
     @Test
     public void testParseLevelString ()
     {
@@ -0,0 +1,239 @@
+//                       __________________________________
+//                ______|      Copyright 2008-2015         |______
+//                \     |     Breakpoint Pty Limited       |     /
+//                 \    |   http://www.breakpoint.com.au   |    /
+//                 /    |__________________________________|    \
+//                /_________/                          \_________\
+//
+// Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy of the License at
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software distributed under the
+// License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+// either express or implied. See the License for the specific language governing
+// permissions and limitations under the License.
+//
+package au.com.breakpoint.hedron.core.log;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import au.com.breakpoint.hedron.core.GenericFactory;
+import au.com.breakpoint.hedron.core.HcUtil;
+import au.com.breakpoint.hedron.core.log.RingBufferLogDispatcher.OverflowPolicy;
+import au.com.breakpoint.hedron.core.log.RingBufferLogDispatcher.WaitStrategy;
+import au.com.breakpoint.hedron.core.value.HeldValue;
+
+public class RingBufferLogDispatcherTest
+{
+    @Test
+    public void testDelivery ()
+    {
+        final int threadCount = 4;
+        final int messageCount = 2_000;
+
+        for (final WaitStrategy waitStrategy : WaitStrategy.values ())
+        {
+            final BatchCountingLogger logger = new BatchCountingLogger ();
+            Logging.addLogger (logger);
+            try
+            {
+                final RingBufferLogDispatcher dispatcher =
+                    RingBufferLogDispatcher.of (64, waitStrategy, OverflowPolicy.Block, Level.Fatal, 1);
+                dispatcher.start ();
+
+                HcUtil.executeConcurrently (threadCount, t ->
+                {
+                    for (int i = 0; i < messageCount; ++i)
+                    {
+                        dispatcher.publish ("", Level.Debug, new HeldValue<> (MESSAGE_PREFIX + t + ":" + i));
+                    }
+                    return null;
+                }, threadCount, false);
+
+                dispatcher.stop ();
+
+                // Everything delivered, in order for each producer.
+                final List<String> messages = logger.m_valueLogDebug.stream ()
+                    .filter (s -> s.startsWith (MESSAGE_PREFIX))
+                    .map (s -> s.substring (MESSAGE_PREFIX.length ()))
+                    .collect (toList ());
+                assertEquals (threadCount * messageCount, messages.size ());
+                final int[] next = new int[threadCount];
+                for (final String s : messages)
+                {
+                    final String[] parts = s.split (":");
+                    final int t = Integer.parseInt (parts[0]);
+                    assertEquals (next[t]++, Integer.parseInt (parts[1]));
+                }
+                assertTrue (logger.m_batchCount.get () > 0);
+                assertEquals (0, dispatcher.getDroppedCount ());
+            }
+            finally
+            {
+                Logging.removeLogger (logger);
+            }
+        }
+    }
+
+    @Test
+    public void testDropBelowLevel ()
+    {
+        final BatchCountingLogger logger = new BatchCountingLogger ();
+        Logging.addLogger (logger);
+        try
+        {
+            final RingBufferLogDispatcher dispatcher =
+                RingBufferLogDispatcher.of (4, WaitStrategy.Yield, OverflowPolicy.DropBelowLevel, Level.Warn, 1);
+
+            // Not started, so nothing is consumed.
+            for (int i = 0; i < dispatcher.getCapacity (); ++i)
+            {
+                assertTrue (dispatcher.publish ("", Level.Info, new HeldValue<> ("kept")));
+            }
+            assertFalse (dispatcher.publish ("", Level.Info, new HeldValue<> ("dropped")));
+            assertFalse (dispatcher.publish ("", Level.Debug, new HeldValue<> ("dropped")));
+            assertEquals (2, dispatcher.getDroppedCount ());
+
+            dispatcher.start ();
+
+            // Warn waits for space rather than being dropped.
+            assertTrue (dispatcher.publish ("", Level.Warn, new HeldValue<> ("warning")));
+            dispatcher.stop ();
+
+            assertEquals (4, logger.m_valueLogInfo.size ());
+            assertEquals (1, logger.m_valueLogWarn.size ());
+        }
+        finally
+        {
+            Logging.removeLogger (logger);
+        }
+    }
+
+    @Test
+    public void testFormatOnConsumer ()
+    {
+        final AtomicReference<Thread> formattingThread = new AtomicReference<> ();
+        final Object arg = new Object ()
+        {
+            @Override
+            public String toString ()
+            {
+                formattingThread.set (Thread.currentThread ());
+                return "arg";
+            }
+        };
+
+        final BatchCountingLogger logger = new BatchCountingLogger ();
+        Logging.addLogger (logger);
+        try
+        {
+            Logging.enableAsyncLogging (RingBufferLogDispatcher.of (16));
+            try
+            {
+                Logging.logDebug (MESSAGE_PREFIX + "%s", arg);
+                Logging.logDebug (MESSAGE_PREFIX + "%s %s", 1, null);
+                Logging.logDebug (MESSAGE_PREFIX + "%s%s%s", "a", "b", "c");
+                Logging.logDebug (MESSAGE_PREFIX + "%s%s%s%s", 1, 2, 3, 4);
+                Logging.logDebugString (MESSAGE_PREFIX + "100%");
+            }
+            finally
+            {
+                Logging.disableAsyncLogging ();
+            }
+
+            final List<String> messages = logger.m_valueLogDebug.stream ()
+                .filter (s -> s.startsWith (MESSAGE_PREFIX))
+                .map (s -> s.substring (MESSAGE_PREFIX.length ()))
+                .collect (toList ());
+            assertEquals (GenericFactory.newArrayList ("arg", "1 null", "abc", "1234", "100%"), messages);
+
+            // The arguments were held in the slot, and only formatted by the consumer.
+            assertNotSame (Thread.currentThread (), formattingThread.get ());
+        }
+        finally
+        {
+            Logging.removeLogger (logger);
+        }
+    }
+
+    @Test
+    public void testPublishAfterStop ()
+    {
+        final BatchCountingLogger logger = new BatchCountingLogger ();
+        Logging.addLogger (logger);
+        try
+        {
+            final RingBufferLogDispatcher dispatcher = RingBufferLogDispatcher.of (4);
+            dispatcher.start ();
+            dispatcher.stop ();
+
+            // A producer racing with stop () is delivered on its own thread, not lost.
+            for (int i = 0; i < 10; ++i)
+            {
+                assertTrue (dispatcher.publish ("", Level.Info, new HeldValue<> ("late")));
+            }
+            assertEquals (10, logger.m_valueLogInfo.size ());
+        }
+        finally
+        {
+            Logging.removeLogger (logger);
+        }
+    }
+
+    @Test
+    public void testSample ()
+    {
+        final BatchCountingLogger logger = new BatchCountingLogger ();
+        Logging.addLogger (logger);
+        try
+        {
+            final RingBufferLogDispatcher dispatcher =
+                RingBufferLogDispatcher.of (2, WaitStrategy.Park, OverflowPolicy.Sample, Level.Info, 3);
+
+            assertTrue (dispatcher.publish ("", Level.Debug, new HeldValue<> ("1")));
+            assertTrue (dispatcher.publish ("", Level.Debug, new HeldValue<> ("2")));
+
+            // Full: two of every three are dropped.
+            assertFalse (dispatcher.publish ("", Level.Debug, new HeldValue<> ("3")));
+            assertFalse (dispatcher.publish ("", Level.Debug, new HeldValue<> ("4")));
+
+            // The third waits for space.
+            dispatcher.start ();
+            assertTrue (dispatcher.publish ("", Level.Debug, new HeldValue<> ("5")));
+            dispatcher.stop ();
+
+            assertEquals (GenericFactory.newArrayList ("1", "2", "5"), logger.m_valueLogDebug);
+            assertEquals (2, dispatcher.getDroppedCount ());
+        }
+        finally
+        {
+            Logging.removeLogger (logger);
+        }
+    }
+
+    private static class BatchCountingLogger extends DummyLogger
+    {
+        public BatchCountingLogger ()
+        {
+            super ("fewidt", null, null);
+        }
+
+        @Override
+        public void endOfBatch ()
+        {
+            m_batchCount.incrementAndGet ();
+        }
+
+        private final AtomicInteger m_batchCount = new AtomicInteger ();
+    }
+
+    private static final String MESSAGE_PREFIX = "RingBufferLogDispatcherTest ";
+}
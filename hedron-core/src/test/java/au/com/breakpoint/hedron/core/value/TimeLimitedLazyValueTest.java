@@ -17,11 +17,15 @@
 package au.com.breakpoint.hedron.core.value;
 
 import static org.junit.Assert.assertEquals;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 import org.junit.Test;
+import au.com.breakpoint.hedron.core.GenericFactory;
 import au.com.breakpoint.hedron.core.HcUtil;
 import au.com.breakpoint.hedron.core.value.TimeLimitedLazyValue;
+import au.com.breakpoint.hedron.core.value.TimeLimitedLazyValue.RefreshPolicy;
 
 public class TimeLimitedLazyValueTest
 {
@@ -60,6 +64,67 @@ public class TimeLimitedLazyValueTest
         }
     }
 
+    @Test
+    public void testRefreshAhead ()
+    {
+        // Queue the refreshes so the test controls when they land.
+        final List<Runnable> refreshes = GenericFactory.newArrayList ();
+        final AtomicInteger fetches = new AtomicInteger ();
+        final Supplier<String> evaluator = () ->
+        {
+            if (fetches.incrementAndGet () == 3)
+            {
+                throw new IllegalStateException ("Third fetch fails");
+            }
+            return String.valueOf (fetches.get ());
+        };
+        final TimeLimitedLazyValue<String> lv = TimeLimitedLazyValue.of (TimeLimitedLazyValueTest.class,
+            "refreshAhead", evaluator, 200, RefreshPolicy.of (refreshes::add, 0.5, 60_000, 60_000));
+
+        assertEquals ("1", lv.get ());
+        assertEquals (0, refreshes.size ());
+
+        // Past the refresh point, the previous value is served while one refresh is queued.
+        HcUtil.pause (150);
+        assertEquals ("1", lv.get ());
+        assertEquals ("1", lv.get ());
+        assertEquals (1, refreshes.size ());
+
+        refreshes.remove (0).run ();
+        assertEquals ("2", lv.get ());
+
+        // A failed refresh keeps the previous value and backs off.
+        HcUtil.pause (150);
+        assertEquals ("2", lv.get ());
+        refreshes.remove (0).run ();
+        assertEquals ("2", lv.get ());
+        assertEquals (0, refreshes.size ());
+    }
+
+    @Test
+    public void testRefreshAheadMaxStaleness ()
+    {
+        final List<Runnable> refreshes = GenericFactory.newArrayList ();
+        final AtomicInteger fetches = new AtomicInteger ();
+        final TimeLimitedLazyValue<String> lv =
+            TimeLimitedLazyValue.of (TimeLimitedLazyValueTest.class, "refreshAheadMaxStaleness",
+                () -> String.valueOf (fetches.incrementAndGet ()), 100, RefreshPolicy.of (refreshes::add, 0.5, 0, 1));
+
+        assertEquals ("1", lv.get ());
+
+        // The queued refresh never runs, so past the staleness limit get () fetches itself.
+        HcUtil.pause (60);
+        assertEquals ("1", lv.get ());
+        assertEquals (1, refreshes.size ());
+
+        HcUtil.pause (60);
+        assertEquals ("2", lv.get ());
+
+        // The late refresh is discarded.
+        refreshes.remove (0).run ();
+        assertEquals ("2", lv.get ());
+    }
+
     private final LongAdder m_countCalcs = new LongAdder ();
 
     private final LongAdder m_countGets = new LongAdder ();
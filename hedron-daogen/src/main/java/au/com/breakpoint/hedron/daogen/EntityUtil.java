@@ -738,8 +738,8 @@ public class EntityUtil
                 jti.m_javaObjectType = jti.m_javaType = "String";
                 jti.m_nonPrimitiveTypeJavaLangType = true;
                 //jti.m_jdbcType = "String";
-                jti.m_jdbcResultSetAccessorFormatter = e3 -> String
-                    .format ("DaoUtil.getClobAsString (rs, COLUMN_NAMES[%s.Column%s])", e3.getE1 (), e3.getE2 ());
+                jti.m_jdbcResultSetAccessorFormatter =
+                    (accessor, columnArgument) -> String.format ("DaoUtil.getClobAsString (rs, %s)", columnArgument);
                 jti.m_importsResultSetAccessorFormatter.add ("au.com.breakpoint.hedron.core.dao.DaoUtil");
                 setJavaSqlType (jti, "CLOB");
                 jti.m_javaCastExpression = "(String)";
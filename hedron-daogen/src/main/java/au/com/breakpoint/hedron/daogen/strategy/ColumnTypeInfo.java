@@ -17,9 +17,8 @@
 package au.com.breakpoint.hedron.daogen.strategy;
 
 import java.util.List;
-import java.util.function.Function;
+import java.util.function.BiFunction;
 import au.com.breakpoint.hedron.core.GenericFactory;
-import au.com.breakpoint.hedron.core.Tuple.E3;
 
 public class ColumnTypeInfo
 {
@@ -62,7 +61,7 @@ public class ColumnTypeInfo
 
     public String m_jdbcResultSetAccessor;// the java type to be used when retrieving from StoredProcedureResultSet etc
 
-    public Function<E3<String, String, String>, String> m_jdbcResultSetAccessorFormatter;
+    public BiFunction<String, String, String> m_jdbcResultSetAccessorFormatter;// (accessor, column name or index expression)
 
     //public String m_jdbcType;// the java type to be used when retrieving from StoredProcedureResultSet etc
 
@@ -21,12 +21,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.function.Function;
+import java.util.Map;
+import java.util.function.BiFunction;
 import au.com.breakpoint.hedron.core.GenericFactory;
 import au.com.breakpoint.hedron.core.HcUtil;
 import au.com.breakpoint.hedron.core.HcUtilFile;
 import au.com.breakpoint.hedron.core.SmartFile;
-import au.com.breakpoint.hedron.core.Tuple.E3;
 import au.com.breakpoint.hedron.core.context.ThreadContext;
 import au.com.breakpoint.hedron.daogen.Attribute;
 import au.com.breakpoint.hedron.daogen.Capability;
@@ -92,7 +92,7 @@ public class SpringJdbcTemplateCodeStrategy implements IRelationCodeStrategy
         final ArrayList<Capability> capabilities = GenericFactory.newArrayList (Capability.READ);
         final String sqlString = cv.getSqlText ();
 
-        return generateRelationalDao (cv, capabilities, sqlString, cv.shouldPreserveNewLinesInSQL (),
+        return generateRelationalDao (cv, capabilities, sqlString, false, cv.shouldPreserveNewLinesInSQL (),
             cv.getParameters (), "Custom");
     }
 
@@ -111,7 +111,7 @@ public class SpringJdbcTemplateCodeStrategy implements IRelationCodeStrategy
         final String sqlString =
             String.format ("select %s from %s", EntityUtil.getStringColumnPhysicalNames (columns), entityPhysicalName);
 
-        return generateRelationalDao (ir, capabilities, sqlString, false, null, "");
+        return generateRelationalDao (ir, capabilities, sqlString, true, false, null, "");
     }
 
     @Override
@@ -722,7 +722,7 @@ public class SpringJdbcTemplateCodeStrategy implements IRelationCodeStrategy
                 for (final StoredProcedureResultSet sprs : resultSets)
                 {
                     pw.printf (
-                        "            declareParameter (new SqlReturnResultSet (VARIABLE_NAME_%s, %sDao.ROW_MAPPER));%n",
+                        "            declareParameter (new SqlReturnResultSet (VARIABLE_NAME_%s, %sDao.ROW_MAPPER_BY_NAME));%n",
                         sprs.getName (), sprs.getType ());
                 }
             }
@@ -744,7 +744,7 @@ public class SpringJdbcTemplateCodeStrategy implements IRelationCodeStrategy
                         if (jti.m_rowMapperType != null)
                         {
                             pw.printf (
-                                "            declareParameter (new %s (VARIABLE_NAME_%s, %s, %sDao.ROW_MAPPER));%n",
+                                "            declareParameter (new %s (VARIABLE_NAME_%s, %s, %sDao.ROW_MAPPER_BY_NAME));%n",
                                 sqlParameterTypeName, c.getName (), jti.m_jdbcJavaSqlType, jti.m_rowMapperType);
                         }
                         else
@@ -1091,11 +1091,18 @@ public class SpringJdbcTemplateCodeStrategy implements IRelationCodeStrategy
         return result;
     }
 
+    /**
+     * @param isSqlGenerated
+     *            true if sqlString is generated from the columns, so it selects them in
+     *            COLUMN_NAMES order and the positional row mapper can be used; false for
+     *            hand-written SQL, which is mapped by column name
+     */
     private List<String> generateRelationalDao (final IRelation ir, final List<Capability> capabilities,
-        final String sqlString, final boolean shouldPreserveNewLinesInSQL, final List<Parameter> parameters,
-        final String suffix)
+        final String sqlString, final boolean isSqlGenerated, final boolean shouldPreserveNewLinesInSQL,
+        final List<Parameter> parameters, final String suffix)
     {
         final List<String> result = GenericFactory.newArrayList ();
+        final String rowMapper = isSqlGenerated ? "ROW_MAPPER" : "ROW_MAPPER_BY_NAME";
 
         final List<Column> columns = ir.getColumns ();
         final String entityPhysicalName = ir.getPhysicalName ();
@@ -1187,8 +1194,8 @@ public class SpringJdbcTemplateCodeStrategy implements IRelationCodeStrategy
                     pw.printf ("    public List<%s> fetch (final OrderByElement... orderByElements)%n", entityName);
                     pw.printf ("    {%n");
                     pw.printf (
-                        "        return DaoUtil.performFetch (m_dataSource, %sDao.ROW_MAPPER, SQL_FRAGMENT_SELECT_FROM, COLUMN_NAMES, orderByElements);%n",
-                        entityName);
+                        "        return DaoUtil.performFetch (m_dataSource, %sDao.%s, SQL_FRAGMENT_SELECT_FROM, COLUMN_NAMES, orderByElements);%n",
+                        entityName, rowMapper);
                     pw.printf ("    }%n");
                     pw.printf ("%n");
                     pw.printf ("    /**%n");
@@ -1211,25 +1218,77 @@ public class SpringJdbcTemplateCodeStrategy implements IRelationCodeStrategy
                         entityName);
                     pw.printf ("    {%n");
                     pw.printf (
-                        "        return DaoUtil.performFetch (m_dataSource, %sDao.ROW_MAPPER, SQL_FRAGMENT_SELECT_FROM, COLUMN_NAMES, whereElements, orderByElements);%n",
-                        entityName);
+                        "        return DaoUtil.performFetch (m_dataSource, %sDao.%s, SQL_FRAGMENT_SELECT_FROM, COLUMN_NAMES, whereElements, orderByElements);%n",
+                        entityName, rowMapper);
+                    pw.printf ("    }%n");
+
+                    pw.addClassImport ("au.com.breakpoint.hedron.core.dao.FetchSql");
+                    pw.addClassImport ("java.util.function.Consumer");
+                    pw.addClassImport ("java.util.stream.Stream");
+
+                    pw.printf ("%n");
+                    pw.printf ("    /**%n");
+                    pw.printf (
+                        "     * Fetches the rows of the %s relation that satisfy the criteria in the <i>sql</i> parameter,%n",
+                        entityPhysicalName);
+                    pw.printf ("     * including any limit and keyset (after) for paging.%n");
+                    pw.printf ("     * %n");
+                    pw.printf ("     * @param sql%n");
+                    pw.printf (
+                        "     *     A convenient readable encapsulation of sql where clauses, order by statements and paging.%n");
+                    pw.printf ("     * %n");
+                    pw.printf ("     * @return Collection of %s entities%n", entityName);
+                    pw.printf ("     */%n");
+                    pw.printf ("    @Override%n");
+                    pw.printf ("    public List<%s> fetch (final FetchSql<%s> sql)%n", entityName, entityName);
+                    pw.printf ("    {%n");
+                    pw.printf (
+                        "        return DaoUtil.performFetch (m_dataSource, %sDao.%s, SQL_FRAGMENT_SELECT_FROM, COLUMN_NAMES, sql);%n",
+                        entityName, rowMapper);
+                    pw.printf ("    }%n");
+
+                    pw.printf ("%n");
+                    pw.printf ("    /**%n");
+                    pw.printf (
+                        "     * Streams the rows of the %s relation that satisfy the criteria in the <i>sql</i> parameter%n",
+                        entityPhysicalName);
+                    pw.printf (
+                        "     * through a forward-only cursor. The connection is held until the stream is closed.%n");
+                    pw.printf ("     * %n");
+                    pw.printf ("     * @param sql%n");
+                    pw.printf (
+                        "     *     A convenient readable encapsulation of sql where clauses, order by statements and the fetch size.%n");
+                    pw.printf ("     * %n");
+                    pw.printf ("     * @return Stream of %s entities which must be closed%n", entityName);
+                    pw.printf ("     */%n");
+                    pw.printf ("    @Override%n");
+                    pw.printf ("    public Stream<%s> fetchStream (final FetchSql<%s> sql)%n", entityName, entityName);
+                    pw.printf ("    {%n");
+                    pw.printf (
+                        "        return DaoUtil.performFetchStream (m_dataSource, %sDao.%s, SQL_FRAGMENT_SELECT_FROM, COLUMN_NAMES, sql);%n",
+                        entityName, rowMapper);
+                    pw.printf ("    }%n");
+                    pw.printf ("%n");
+                    pw.printf ("    /**%n");
+                    pw.printf (
+                        "     * Passes each row of the %s relation that satisfies the criteria in the <i>sql</i> parameter%n",
+                        entityPhysicalName);
+                    pw.printf ("     * to the consumer as it is read from a forward-only cursor.%n");
+                    pw.printf ("     * %n");
+                    pw.printf ("     * @param sql%n");
+                    pw.printf (
+                        "     *     A convenient readable encapsulation of sql where clauses, order by statements and the fetch size.%n");
+                    pw.printf ("     * @param consumer%n");
+                    pw.printf ("     *     Receives each %s entity in turn%n", entityName);
+                    pw.printf ("     */%n");
+                    pw.printf ("    @Override%n");
+                    pw.printf ("    public void forEach (final FetchSql<%s> sql, final Consumer<? super %s> consumer)%n",
+                        entityName, entityName);
+                    pw.printf ("    {%n");
+                    pw.printf (
+                        "        DaoUtil.performForEach (m_dataSource, %sDao.%s, SQL_FRAGMENT_SELECT_FROM, COLUMN_NAMES, sql, consumer);%n",
+                        entityName, rowMapper);
                     pw.printf ("    }%n");
-                    //                    pw.printf ("%n");
-                    //                    pw.printf ("    /**%n");
-                    //                    pw.printf (
-                    //                        "     * Fetches the rows of the %s relation that satisfy the criteria in the <i>whereElements</i> parameter.%n",
-                    //                        entityPhysicalName);
-                    //                    pw.printf ("     * %n");
-                    //                    pw.printf ("     * @param sql%n");
-                    //                    pw.printf (
-                    //                        "     *     A convenient readable encapsulation of sql where clauses and order by statements.%n");
-                    //                    pw.printf ("     * %n");
-                    //                    pw.printf ("     * @return Collection of %s entities%n", entityName);
-                    //                    pw.printf ("     */%n");
-                    //                    pw.printf ("    public List<%s> fetch (final FetchSql<%s> sql)%n", entityName, entityName);
-                    //                    pw.printf ("    {%n");
-                    //                    pw.printf ("        return fetch (sql.getWhereElements (), sql.getOrderByElements ());%n");
-                    //                    pw.printf ("    }%n");
                 }
                 else
                 {
@@ -1263,14 +1322,14 @@ public class SpringJdbcTemplateCodeStrategy implements IRelationCodeStrategy
                     if (parameters.size () == 0)
                     {
                         pw.printf (
-                            "        return DaoUtil.performFetch (m_dataSource, %sDao.ROW_MAPPER, SQL_FRAGMENT_SELECT_FROM);%n",
-                            entityName);
+                            "        return DaoUtil.performFetch (m_dataSource, %sDao.%s, SQL_FRAGMENT_SELECT_FROM);%n",
+                            entityName, rowMapper);
                     }
                     else
                     {
                         pw.printf (
-                            "        return DaoUtil.performFetch (m_dataSource, %sDao.ROW_MAPPER, SQL_FRAGMENT_SELECT_FROM, %s);%n",
-                            entityName, EntityUtil.getStringParameterValues (parameters));
+                            "        return DaoUtil.performFetch (m_dataSource, %sDao.%s, SQL_FRAGMENT_SELECT_FROM, %s);%n",
+                            entityName, rowMapper, EntityUtil.getStringParameterValues (parameters));
                     }
                     pw.printf ("    }%n");
                 }
@@ -1664,51 +1723,31 @@ public class SpringJdbcTemplateCodeStrategy implements IRelationCodeStrategy
             pw.printf (" };%n");
             if (!mapsToAnotherEntity && parameters == null) // don't generate row mapper for custom views (which have parameters != null)
             {
-                pw.printf ("%n");
-                pw.printf ("    /**%n");
-                pw.printf ("     * Function to map %s entities from %s result sets.%n", entityName, entityPhysicalName);
-                pw.printf ("     */%n");
                 pw.addClassImport ("org.springframework.jdbc.core.RowMapper");
-                pw.printf ("    public static final RowMapper<%s> ROW_MAPPER = (rs, rowNum) ->%n", entityName);
-                pw.printf ("    {%n");
-                pw.printf ("        final %s e = new %s ();%n", entityName, entityName);
-                pw.printf ("%n");
-                for (final Column c : columns)
-                {
-                    final String columnName = c.getName ();
-                    final ColumnTypeInfo jti = EntityUtil.getColumnTypeInfo (c);
-
-                    if (jti.m_jdbcResultSetAccessorFormatter != null)
-                    {
-                        pw.addClassImports (jti.m_importsResultSetAccessorFormatter);
-                    }
-
-                    final Function<E3<String, String, String>, String> formatter =
-                        jti.m_jdbcResultSetAccessorFormatter != null ? jti.m_jdbcResultSetAccessorFormatter
-                            : m_accessorDefaultFormatter;// fall back to simple rs.getXxxx ()
-
-                    final String accessorCode =
-                        formatter.apply (E3.of (jti.m_jdbcResultSetAccessor, entityName, columnName));
-
-                    if (c.isNullable ())
-                    {
-                        pw.addClassImports (jti.m_importsJavaType);
 
-                        // Nullable.
-                        pw.printf ("        %s value%s = %s;%n", jti.m_javaType, columnName, accessorCode);
-                        pw.printf ("        if (!rs.wasNull ())%n");
-                        pw.printf ("        {%n");
-                        pw.printf ("            e.set%s (value%s);%n", columnName, columnName);
-                        pw.printf ("        }%n");
-                    }
-                    else
-                    {
-                        pw.printf ("        e.set%s (%s);%n", columnName, accessorCode);
-                    }
+                if (isSqlGenerated)
+                {
+                    pw.printf ("%n");
+                    pw.printf ("    /**%n");
+                    pw.printf (
+                        "     * Function to map %s entities from %s result sets. The columns are read by position, so the%n",
+                        entityName, entityPhysicalName);
+                    pw.printf (
+                        "     * result set must list them in COLUMN_NAMES order, as SQL_FRAGMENT_SELECT_FROM does.%n");
+                    pw.printf ("     */%n");
+                    pw.printf ("    public static final RowMapper<%s> ROW_MAPPER = (rs, rowNum) ->%n", entityName);
+                    generateRowMapperCode (pw, entityName, columns, false);
                 }
+
                 pw.printf ("%n");
-                pw.printf ("        return e;%n");
-                pw.printf ("    };%n");
+                pw.printf ("    /**%n");
+                pw.printf (
+                    "     * Function to map %s entities from result sets whose column order isn't known, eg stored%n",
+                    entityName);
+                pw.printf ("     * procedure results and custom views. The columns are read by name.%n");
+                pw.printf ("     */%n");
+                pw.printf ("    public static final RowMapper<%s> ROW_MAPPER_BY_NAME = (rs, rowNum) ->%n", entityName);
+                generateRowMapperCode (pw, entityName, columns, true);
             }
             if (canRead)
             {
@@ -1760,6 +1799,63 @@ public class SpringJdbcTemplateCodeStrategy implements IRelationCodeStrategy
         return result;
     }
 
+    private void generateRowMapperCode (final SmartFileJavaClass pw, final String entityName,
+        final List<Column> columns, final boolean byName)
+    {
+        pw.printf ("    {%n");
+        pw.printf ("        final %s e = new %s ();%n", entityName, entityName);
+        pw.printf ("%n");
+        for (final Column c : columns)
+        {
+            final String columnName = c.getName ();
+            final ColumnTypeInfo jti = EntityUtil.getColumnTypeInfo (c);
+
+            if (jti.m_jdbcResultSetAccessorFormatter != null)
+            {
+                pw.addClassImports (jti.m_importsResultSetAccessorFormatter);
+            }
+
+            final BiFunction<String, String, String> formatter =
+                jti.m_jdbcResultSetAccessorFormatter != null ? jti.m_jdbcResultSetAccessorFormatter
+                    : m_accessorDefaultFormatter;// fall back to simple rs.getXxxx ()
+
+            // JDBC column positions are 1-based. The Column constants fold, so this costs nothing per row.
+            final String columnArgument = byName ? String.format ("COLUMN_NAMES[%s.Column%s]", entityName, columnName)
+                : String.format ("%s.Column%s + 1", entityName, columnName);
+            final String accessorCode = formatter.apply (jti.m_jdbcResultSetAccessor, columnArgument);
+
+            if (c.isNullable ())
+            {
+                pw.addClassImports (jti.m_importsJavaType);
+
+                // Nullable. Primitive accessors return 0/false for NULL so need wasNull (), and read
+                // into the primitive to box only non-null values. Object accessors return null.
+                final String primitiveType =
+                    jti.m_jdbcResultSetAccessorFormatter == null ? PRIMITIVE_TYPES.get (jti.m_javaObjectType) : null;
+                if (primitiveType != null)
+                {
+                    pw.printf ("        final %s value%s = %s;%n", primitiveType, columnName, accessorCode);
+                    pw.printf ("        if (!rs.wasNull ())%n");
+                }
+                else
+                {
+                    pw.printf ("        final %s value%s = %s;%n", jti.m_javaType, columnName, accessorCode);
+                    pw.printf ("        if (value%s != null)%n", columnName);
+                }
+                pw.printf ("        {%n");
+                pw.printf ("            e.set%s (value%s);%n", columnName, columnName);
+                pw.printf ("        }%n");
+            }
+            else
+            {
+                pw.printf ("        e.set%s (%s);%n", columnName, accessorCode);
+            }
+        }
+        pw.printf ("%n");
+        pw.printf ("        return e;%n");
+        pw.printf ("    };%n");
+    }
+
     private List<String> generateSqlExecutionDao (final Command ir, final String sqlString,
         final boolean shouldPreserveNewLinesInSQL, final List<Parameter> parameters, final String suffix)
     {
@@ -1996,8 +2092,8 @@ public class SpringJdbcTemplateCodeStrategy implements IRelationCodeStrategy
         return sb.toString ();
     }
 
-    final Function<E3<String, String, String>, String> m_accessorDefaultFormatter =
-        e3 -> String.format ("rs.%s (COLUMN_NAMES[%s.Column%s])", e3.getE0 (), e3.getE1 (), e3.getE2 ());
+    final BiFunction<String, String, String> m_accessorDefaultFormatter =
+        (accessor, columnArgument) -> String.format ("rs.%s (%s)", accessor, columnArgument);
 
     private final List<Attribute> m_attributes = Collections.synchronizedList (new ArrayList<Attribute> ());// accumulated during output of entities
 
@@ -2013,6 +2109,18 @@ public class SpringJdbcTemplateCodeStrategy implements IRelationCodeStrategy
 
     private static final String DIRECTORY_ENTITY = "entity";
 
+    /** Boxed java types of nullable columns, mapped to the primitive their rs.getXxx () returns */
+    private static final Map<String, String> PRIMITIVE_TYPES = GenericFactory.newHashMap ();
+    static
+    {
+        PRIMITIVE_TYPES.put ("Boolean", "boolean");
+        PRIMITIVE_TYPES.put ("Byte", "byte");
+        PRIMITIVE_TYPES.put ("Double", "double");
+        PRIMITIVE_TYPES.put ("Integer", "int");
+        PRIMITIVE_TYPES.put ("Long", "long");
+        PRIMITIVE_TYPES.put ("Short", "short");
+    }
+
     //private static boolean m_shouldUseSimpleJdbcCall;// false because doesn't work with Sybase
     //private static boolean m_shouldUseSimpleJdbcInsert;
 }